@@ -0,0 +1,75 @@
+package controller;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Locale;
+
+import model.StudentImportModel;
+
+/**
+ * AccountManagerIndex: Pike13 account managers grouped by full name, and Pike13
+ * students grouped by full name (both ignoring case), for resolving a
+ * student's account manager and an adult's family account.
+ *
+ * The account_manager_names and dependent_names strings are lower-cased once
+ * here instead of on every lookup. A manager still matches a student only when
+ * the student's name appears in the manager's dependent names, as before.
+ */
+public class AccountManagerIndex {
+	private static final ArrayList<StudentImportModel> NO_CLIENTS = new ArrayList<StudentImportModel>();
+
+	private HashMap<String, ArrayList<StudentImportModel>> managersByName;
+	private HashMap<String, ArrayList<StudentImportModel>> studentsByName;
+	private HashMap<StudentImportModel, String> dependentsByManager;
+
+	public AccountManagerIndex(ArrayList<StudentImportModel> students, ArrayList<StudentImportModel> managers) {
+		managersByName = new HashMap<String, ArrayList<StudentImportModel>>(managers.size() * 2);
+		studentsByName = new HashMap<String, ArrayList<StudentImportModel>>(students.size() * 2);
+		dependentsByManager = new HashMap<StudentImportModel, String>(managers.size() * 2);
+
+		for (StudentImportModel m : managers) {
+			addToMap(managersByName, m);
+			dependentsByManager.put(m, normalizeName(m.getDependentNames()));
+		}
+		for (StudentImportModel s : students)
+			addToMap(studentsByName, s);
+	}
+
+	public ArrayList<StudentImportModel> getManagersForDependent(String accountMgrName, String dependentName) {
+		// Keep list order so the first/last match rules are unchanged
+		ArrayList<StudentImportModel> managers = managersByName.get(normalizeName(accountMgrName));
+		if (managers == null)
+			return NO_CLIENTS;
+
+		String dependent = normalizeName(dependentName);
+		ArrayList<StudentImportModel> matches = new ArrayList<StudentImportModel>(managers.size());
+		for (StudentImportModel m : managers) {
+			if (dependentsByManager.get(m).contains(dependent))
+				matches.add(m);
+		}
+		return matches;
+	}
+
+	public ArrayList<StudentImportModel> getStudentsByName(String studentName) {
+		ArrayList<StudentImportModel> students = studentsByName.get(normalizeName(studentName));
+		if (students == null)
+			return NO_CLIENTS;
+		return students;
+	}
+
+	private static void addToMap(HashMap<String, ArrayList<StudentImportModel>> map, StudentImportModel model) {
+		String key = normalizeName(model.getFullName());
+		ArrayList<StudentImportModel> models = map.get(key);
+		if (models == null) {
+			models = new ArrayList<StudentImportModel>(1);
+			map.put(key, models);
+		}
+		models.add(model);
+	}
+
+	private static String normalizeName(String name) {
+		if (name == null)
+			return "";
+		return name.toLowerCase(Locale.ENGLISH);
+	}
+}
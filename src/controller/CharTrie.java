@@ -0,0 +1,69 @@
+package controller;
+
+/**
+ * CharTrie: Small character trie for matching a fixed set of patterns at a
+ * given position in a string without building substrings. Each pattern has an
+ * int value (>= 0); when more than one pattern matches, the lowest value wins,
+ * so callers use the pattern's position in their lookup table as its value.
+ */
+public class CharTrie {
+	public static final int NO_MATCH = -1;
+
+	private Node root = new Node();
+
+	public void add(String pattern, int value) {
+		Node node = root;
+		for (int i = 0; i < pattern.length(); i++)
+			node = node.addChild(pattern.charAt(i));
+
+		if (node.value == NO_MATCH || value < node.value)
+			node.value = value;
+	}
+
+	public int matchAt(String source, int startPos, int bestValue) {
+		// Returns the lowest value of bestValue and any pattern starting at startPos
+		Node node = root;
+
+		for (int i = startPos; i < source.length(); i++) {
+			node = node.getChild(source.charAt(i));
+			if (node == null)
+				break;
+
+			if (node.value != NO_MATCH && (bestValue == NO_MATCH || node.value < bestValue))
+				bestValue = node.value;
+		}
+		return bestValue;
+	}
+
+	private static class Node {
+		private char[] keys = new char[0];
+		private Node[] children = new Node[0];
+		private int value = NO_MATCH;
+
+		private Node getChild(char ch) {
+			for (int i = 0; i < keys.length; i++) {
+				if (keys[i] == ch)
+					return children[i];
+			}
+			return null;
+		}
+
+		private Node addChild(char ch) {
+			Node child = getChild(ch);
+			if (child == null) {
+				child = new Node();
+
+				char[] newKeys = new char[keys.length + 1];
+				Node[] newChildren = new Node[keys.length + 1];
+				System.arraycopy(keys, 0, newKeys, 0, keys.length);
+				System.arraycopy(children, 0, newChildren, 0, keys.length);
+				newKeys[keys.length] = ch;
+				newChildren[keys.length] = child;
+
+				keys = newKeys;
+				children = newChildren;
+			}
+			return child;
+		}
+	}
+}
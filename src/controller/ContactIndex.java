@@ -0,0 +1,59 @@
+package controller;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import com.sforce.soap.enterprise.sobject.Contact;
+
+/**
+ * ContactIndex: SalesForce contacts hashed by Front Desk ID (the Pike13 client
+ * ID), so that attendance, staff hours and graduation records can find their
+ * contact without scanning the whole contact list.
+ *
+ * The index is built once per run from the GetRecordsFromSalesForce results,
+ * then contacts upserted during the run are added to it, so it does not need
+ * to be fetched again. When a Front Desk ID appears more than once, the first
+ * contact in the list wins, same as the original list scan. Phases that run
+ * at the same time share an index, so access is synchronized.
+ */
+public class ContactIndex {
+	private ArrayList<Contact> contactList;
+	private HashMap<String, Contact> contactMap;
+
+	public ContactIndex(ArrayList<Contact> contactList) {
+		this.contactList = contactList;
+		contactMap = new HashMap<String, Contact>(contactList.size() * 2);
+
+		for (Contact c : contactList)
+			addToMap(c);
+	}
+
+	public ContactIndex() {
+		this(new ArrayList<Contact>());
+	}
+
+	public synchronized Contact get(String clientID) {
+		if (clientID == null)
+			return null;
+		return contactMap.get(clientID);
+	}
+
+	public synchronized void add(Contact c) {
+		contactList.add(c);
+		addToMap(c);
+	}
+
+	public synchronized ArrayList<Contact> getContactList() {
+		return contactList;
+	}
+
+	public synchronized int size() {
+		return contactList.size();
+	}
+
+	private void addToMap(Contact c) {
+		String clientID = c.getFront_Desk_Id__c();
+		if (clientID != null && !contactMap.containsKey(clientID))
+			contactMap.put(clientID, c);
+	}
+}
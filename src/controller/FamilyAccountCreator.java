@@ -0,0 +1,156 @@
+package controller;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+
+import com.sforce.soap.enterprise.Error;
+import com.sforce.soap.enterprise.UpsertResult;
+import com.sforce.soap.enterprise.sobject.Account;
+import com.sforce.soap.enterprise.sobject.Contact;
+
+import controller.SObjectUpsertBatcher.BatchError;
+import controller.SObjectUpsertBatcher.RecordError;
+import controller.SObjectUpsertBatcher.RecordHandler;
+import controller.SObjectUpsertBatcher.UpsertReport;
+
+import model.LogDataModel;
+import model.StudentNameModel;
+
+/**
+ * FamilyAccountCreator: Collects the Family accounts that do not yet exist in
+ * Salesforce during a client loop, then creates them all at once through an
+ * SObjectUpsertBatcher, taking the new IDs from the create results.
+ *
+ * Contacts for a new family wait on its account. Once the accounts are
+ * created their AccountId is filled in; contacts whose account could not be
+ * created are dropped, as they were when accounts were created one at a time.
+ */
+public class FamilyAccountCreator {
+	private SalesForceConnectionPool connPool;
+	private int maxBatchesInFlight;
+	private FamilyAccountIndex sfAccounts;
+	private LinkedHashMap<String, NewAccount> newAccounts = new LinkedHashMap<String, NewAccount>();
+	private IdentityHashMap<Account, NewAccount> newAccountsByRecord = new IdentityHashMap<Account, NewAccount>();
+
+	public FamilyAccountCreator(SalesForceConnectionPool connPool, int maxBatchesInFlight,
+			FamilyAccountIndex sfAccounts) {
+		this.connPool = connPool;
+		this.maxBatchesInFlight = Math.max(1, maxBatchesInFlight);
+		this.sfAccounts = sfAccounts;
+	}
+
+	public Account getNewAccount(String familyName, String firstName, String lastName, int clientID) {
+		// Same account for every member of a new family; no Id until created
+		String key = familyName.toLowerCase(Locale.ENGLISH);
+		NewAccount newAccount = newAccounts.get(key);
+		if (newAccount == null) {
+			Account account = new Account();
+			account.setName(familyName);
+			account.setType("Family");
+
+			newAccount = new NewAccount(account, firstName, lastName, clientID);
+			newAccounts.put(key, newAccount);
+			newAccountsByRecord.put(account, newAccount);
+		}
+		return newAccount.account;
+	}
+
+	public void addContact(Account account, Contact contact) {
+		// Contact waits for its AccountId if the account is one of the new ones
+		NewAccount newAccount = newAccountsByRecord.get(account);
+		if (newAccount != null)
+			newAccount.contacts.add(contact);
+	}
+
+	public ArrayList<Contact> createAccounts(ArrayList<Contact> contactList) {
+		// Create the new accounts, then return the contacts that have an account
+		if (newAccounts.size() == 0)
+			return contactList;
+
+		ArrayList<Account> accountList = new ArrayList<Account>(newAccounts.size());
+		for (NewAccount newAccount : newAccounts.values())
+			accountList.add(newAccount.account);
+
+		UpsertReport<Account> report = SObjectUpsertBatcher.<Account>forCreate(connPool, maxBatchesInFlight)
+				.setRecordHandler(new RecordHandler<Account>() {
+					@Override
+					public void upserted(Account account, UpsertResult result) {
+						// Account has its ID now, so add to list in case more dependents belong to it
+						NewAccount a = newAccountsByRecord.get(account);
+						account.setId(result.getId());
+						for (Contact c : a.contacts)
+							c.setAccountId(account.getId());
+						sfAccounts.add(account);
+						System.out.println("Created SalesForce account for " + a.firstName + " " + a.lastName + ": "
+								+ account.getName());
+					}
+				}).upsert(accountList);
+		System.out.println("New Family accounts: " + report);
+		logErrors(report);
+
+		// Drop contacts whose account was not created
+		IdentityHashMap<Contact, Boolean> orphans = new IdentityHashMap<Contact, Boolean>();
+		for (NewAccount newAccount : newAccounts.values()) {
+			if (newAccount.account.getId() == null) {
+				for (Contact c : newAccount.contacts)
+					orphans.put(c, Boolean.TRUE);
+			}
+		}
+		newAccounts.clear();
+		newAccountsByRecord.clear();
+		if (orphans.size() == 0)
+			return contactList;
+
+		ArrayList<Contact> resolvedList = new ArrayList<Contact>(contactList.size());
+		for (Contact c : contactList) {
+			if (!orphans.containsKey(c))
+				resolvedList.add(c);
+		}
+		return resolvedList;
+	}
+
+	private void logErrors(UpsertReport<Account> report) {
+		// Calls that failed outright: log each account in the call
+		for (BatchError<Account> batchError : report.getBatchErrors()) {
+			for (Account account : batchError.getRecords()) {
+				NewAccount a = newAccountsByRecord.get(account);
+				if (batchError.getMessage() == null || batchError.getMessage().equals("null")) {
+					MySqlAccess.insertLogData(LogDataModel.SALES_FORCE_UPSERT_ACCOUNT_ERROR,
+							new StudentNameModel(a.firstName, a.lastName, false), a.clientID,
+							" for " + account.getName());
+					batchError.getException().printStackTrace();
+				} else
+					MySqlAccess.insertLogData(LogDataModel.SALES_FORCE_UPSERT_ACCOUNT_ERROR,
+							new StudentNameModel(a.firstName, a.lastName, false), a.clientID,
+							" for " + account.getName() + ": " + batchError.getMessage());
+			}
+		}
+
+		// Check the returned results for any errors
+		for (RecordError<Account> recordError : report.getRecordErrors()) {
+			NewAccount a = newAccountsByRecord.get(recordError.getRecord());
+			Error[] errors = recordError.getErrors();
+			for (int j = 0; j < errors.length; j++) {
+				MySqlAccess.insertLogData(LogDataModel.SALES_FORCE_UPSERT_ACCOUNT_ERROR,
+						new StudentNameModel(a.firstName, a.lastName, false), a.clientID,
+						" for " + a.account.getName() + ": " + errors[j].getMessage());
+			}
+		}
+	}
+
+	private static class NewAccount {
+		private Account account;
+		private String firstName, lastName;
+		private int clientID;
+		private ArrayList<Contact> contacts = new ArrayList<Contact>();
+
+		private NewAccount(Account account, String firstName, String lastName, int clientID) {
+			this.account = account;
+			this.firstName = firstName;
+			this.lastName = lastName;
+			this.clientID = clientID;
+		}
+	}
+}
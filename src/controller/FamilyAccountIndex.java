@@ -0,0 +1,69 @@
+package controller;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Locale;
+
+import com.sforce.soap.enterprise.sobject.Account;
+
+/**
+ * FamilyAccountIndex: SalesForce Family accounts grouped by case-insensitive
+ * account name. Each name maps to every account with that name, in the order
+ * the accounts were added, so the exact/partial match rules in ListUtilities
+ * behave the same as scanning the full account list.
+ */
+public class FamilyAccountIndex {
+	private static final ArrayList<Account> NO_ACCOUNTS = new ArrayList<Account>();
+
+	private ArrayList<Account> accountList;
+	private HashMap<String, ArrayList<Account>> accountsByName;
+
+	public FamilyAccountIndex(ArrayList<Account> accountList) {
+		this.accountList = accountList;
+		accountsByName = new HashMap<String, ArrayList<Account>>(accountList.size() * 2);
+
+		for (Account a : accountList)
+			addToMap(a);
+	}
+
+	public ArrayList<Account> getAccountsByName(String accountName) {
+		if (accountName == null)
+			return NO_ACCOUNTS;
+
+		ArrayList<Account> accounts = accountsByName.get(normalizeName(accountName));
+		if (accounts == null)
+			return NO_ACCOUNTS;
+		return accounts;
+	}
+
+	public void add(Account account) {
+		// Accounts created mid-run must be visible to the next client
+		accountList.add(account);
+		addToMap(account);
+	}
+
+	public ArrayList<Account> getAccountList() {
+		return accountList;
+	}
+
+	public int size() {
+		return accountList.size();
+	}
+
+	private void addToMap(Account account) {
+		if (account.getName() == null)
+			return;
+
+		String key = normalizeName(account.getName());
+		ArrayList<Account> accounts = accountsByName.get(key);
+		if (accounts == null) {
+			accounts = new ArrayList<Account>(1);
+			accountsByName.put(key, accounts);
+		}
+		accounts.add(account);
+	}
+
+	private static String normalizeName(String name) {
+		return name.toLowerCase(Locale.ENGLISH);
+	}
+}
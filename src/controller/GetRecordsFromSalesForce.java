@@ -9,7 +9,6 @@ import com.sforce.soap.enterprise.sobject.Contact;
 import com.sforce.soap.enterprise.sobject.Contact_Diary__c;
 
 import model.LogDataModel;
-import model.MySqlDbLogging;
 import model.StudentNameModel;
 
 public class GetRecordsFromSalesForce {
@@ -39,7 +38,7 @@ public class GetRecordsFromSalesForce {
 			}
 
 		} catch (Exception e) {
-			MySqlDbLogging.insertLogData(LogDataModel.SALES_FORCE_CONTACTS_IMPORT_ERROR,
+			MySqlAccess.insertLogData(LogDataModel.SALES_FORCE_CONTACTS_IMPORT_ERROR,
 					new StudentNameModel("", "", false), 0, ": " + e.getMessage());
 			return null;
 		}
@@ -47,6 +46,16 @@ public class GetRecordsFromSalesForce {
 		return contactsList;
 	}
 
+	public static boolean isStudentOrTeacher(String frontDeskID, boolean studentRecordType, String staffCategory) {
+		// Same filter as the getSalesForceContacts query, for contacts upserted during the run
+		if (frontDeskID == null || frontDeskID.compareTo("0000000") < 0 || frontDeskID.compareTo("9999999") > 0)
+			return false;
+
+		return studentRecordType || "Vol Teacher".equalsIgnoreCase(staffCategory)
+				|| "Teaching Staff".equalsIgnoreCase(staffCategory) || "Student TA".equalsIgnoreCase(staffCategory)
+				|| "Volunteer".equalsIgnoreCase(staffCategory) || "Admin Staff".equalsIgnoreCase(staffCategory);
+	}
+
 	public ArrayList<Contact> getAllSalesForceContacts() {
 		ArrayList<Contact> contactsList = new ArrayList<Contact>();
 		int recordsProcessed = 0;
@@ -75,7 +84,7 @@ public class GetRecordsFromSalesForce {
 			}
 
 		} catch (Exception e) {
-			MySqlDbLogging.insertLogData(LogDataModel.SALES_FORCE_CONTACTS_IMPORT_ERROR,
+			MySqlAccess.insertLogData(LogDataModel.SALES_FORCE_CONTACTS_IMPORT_ERROR,
 					new StudentNameModel("", "", false), 0, ": " + e.getMessage());
 			return null;
 		}
@@ -101,11 +110,11 @@ public class GetRecordsFromSalesForce {
 		} catch (Exception e) {
 			if (e.getMessage() == null) {
 				e.printStackTrace();
-				MySqlDbLogging.insertLogData(LogDataModel.SF_ACCOUNT_IMPORT_ERROR, new StudentNameModel("", "", false),
+				MySqlAccess.insertLogData(LogDataModel.SF_ACCOUNT_IMPORT_ERROR, new StudentNameModel("", "", false),
 						0, "");
 
 			} else
-				MySqlDbLogging.insertLogData(LogDataModel.SF_ACCOUNT_IMPORT_ERROR, new StudentNameModel("", "", false),
+				MySqlAccess.insertLogData(LogDataModel.SF_ACCOUNT_IMPORT_ERROR, new StudentNameModel("", "", false),
 						0, ": " + e.getMessage());
 			return null;
 		}
@@ -125,7 +134,7 @@ public class GetRecordsFromSalesForce {
 			if (queryResults.getSize() > 0) {
 				account = (Account) queryResults.getRecords()[0];
 				if (queryResults.getSize() > 1)
-					MySqlDbLogging.insertLogData(LogDataModel.DUPLICATE_SF_ACCOUNT_NAME,
+					MySqlAccess.insertLogData(LogDataModel.DUPLICATE_SF_ACCOUNT_NAME,
 							new StudentNameModel("", "", false), 0, " '" + accountMgrName + "'");
 			} else {
 				account = new Account();
@@ -134,11 +143,11 @@ public class GetRecordsFromSalesForce {
 
 		} catch (Exception e) {
 			if (e.getMessage() == null) {
-				MySqlDbLogging.insertLogData(LogDataModel.SF_ACCOUNT_IMPORT_ERROR, new StudentNameModel("", "", false),
+				MySqlAccess.insertLogData(LogDataModel.SF_ACCOUNT_IMPORT_ERROR, new StudentNameModel("", "", false),
 						0, " for " + accountMgrName);
 				e.printStackTrace();
 			} else
-				MySqlDbLogging.insertLogData(LogDataModel.SF_ACCOUNT_IMPORT_ERROR, new StudentNameModel("", "", false),
+				MySqlAccess.insertLogData(LogDataModel.SF_ACCOUNT_IMPORT_ERROR, new StudentNameModel("", "", false),
 						0, " for " + accountMgrName + ": " + e.getMessage());
 		}
 
@@ -163,11 +172,11 @@ public class GetRecordsFromSalesForce {
 		} catch (Exception e) {
 			if (e.getMessage() == null) {
 				e.printStackTrace();
-				MySqlDbLogging.insertLogData(LogDataModel.SF_DIARY_IMPORT_ERROR, new StudentNameModel("", "", false), 0,
+				MySqlAccess.insertLogData(LogDataModel.SF_DIARY_IMPORT_ERROR, new StudentNameModel("", "", false), 0,
 						"");
 
 			} else
-				MySqlDbLogging.insertLogData(LogDataModel.SF_DIARY_IMPORT_ERROR, new StudentNameModel("", "", false), 0,
+				MySqlAccess.insertLogData(LogDataModel.SF_DIARY_IMPORT_ERROR, new StudentNameModel("", "", false), 0,
 						": " + e.getMessage());
 		}
 
@@ -0,0 +1,125 @@
+package controller;
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import model.LogDataModel;
+import model.StudentNameModel;
+
+/**
+ * ImportPhaseRunner: Runs the import as a graph of phases on a bounded
+ * thread pool. A phase is queued as soon as every phase it depends on has
+ * finished, so independent fetches overlap and an update phase does not wait
+ * on anything other than its inputs. A phase never blocks a pool thread
+ * waiting for another phase.
+ *
+ * If a phase throws, the error is logged and its result is null, the same as
+ * a fetch that failed, so dependent phases fall through their null checks.
+ * Phase timings are printed once all phases are done.
+ */
+public class ImportPhaseRunner {
+	private ExecutorService executor;
+	private ArrayList<Phase<?>> phaseList = new ArrayList<Phase<?>>();
+	private long runStartMillis;
+
+	public ImportPhaseRunner(int numThreads) {
+		final AtomicInteger threadCount = new AtomicInteger(0);
+		executor = Executors.newFixedThreadPool(numThreads, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "import-phase-" + threadCount.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		runStartMillis = System.currentTimeMillis();
+	}
+
+	public <T> Phase<T> addPhase(final String name, final Callable<T> task, Phase<?>... dependsOn) {
+		final Phase<T> phase = new Phase<T>(name);
+
+		// Queue task once all dependencies have completed
+		CompletableFuture<?>[] depFutures = new CompletableFuture<?>[dependsOn.length];
+		for (int i = 0; i < dependsOn.length; i++)
+			depFutures[i] = dependsOn[i].future;
+
+		phase.future = CompletableFuture.allOf(depFutures).thenApplyAsync(new Function<Void, T>() {
+			@Override
+			public T apply(Void v) {
+				phase.startMillis = System.currentTimeMillis();
+				try {
+					return task.call();
+
+				} catch (Exception e) {
+					e.printStackTrace();
+					MySqlAccess.insertLogData(LogDataModel.SALES_FORCE_IMPORT_ABORTED, new StudentNameModel("", "", false),
+							0, ": Import phase '" + name + "' failed: " + e.getMessage());
+					phase.failed = true;
+					return null;
+
+				} finally {
+					phase.endMillis = System.currentTimeMillis();
+				}
+			}
+		}, executor);
+
+		phaseList.add(phase);
+		return phase;
+	}
+
+	public void waitForAll() {
+		// Wait for every phase, then release the pool threads
+		for (Phase<?> p : phaseList)
+			p.getResult();
+		executor.shutdown();
+
+		printTimings();
+	}
+
+	private void printTimings() {
+		long serialMillis = 0;
+
+		System.out.println("Import phase timings (start offset / duration in msecs):");
+		for (Phase<?> p : phaseList) {
+			if (p.startMillis == 0) {
+				System.out.println("  " + p.name + ": skipped");
+				continue;
+			}
+
+			long duration = p.endMillis - p.startMillis;
+			serialMillis += duration;
+			System.out.println("  " + p.name + ": " + (p.startMillis - runStartMillis) + " / " + duration
+					+ (p.failed ? " (failed)" : ""));
+		}
+		System.out.println("Import wall clock = " + (System.currentTimeMillis() - runStartMillis)
+				+ " msecs, sum of phases = " + serialMillis + " msecs");
+	}
+
+	public static class Phase<T> {
+		private String name;
+		private CompletableFuture<T> future;
+		private volatile long startMillis, endMillis;
+		private volatile boolean failed = false;
+
+		private Phase(String name) {
+			this.name = name;
+		}
+
+		public T getResult() {
+			// Dependencies are always complete when a phase runs, so this only blocks in waitForAll
+			try {
+				return future.join();
+
+			} catch (RuntimeException e) {
+				// Phase did not run to completion
+				return null;
+			}
+		}
+	}
+}
@@ -7,61 +7,34 @@ import com.sforce.soap.enterprise.sobject.Contact;
 import com.sforce.soap.enterprise.sobject.Contact_Diary__c;
 
 import model.AttendanceEventModel;
-import model.LocationLookup;
-import model.MySqlDbLogging;
-import model.SalesForceAttendanceModel;
 import model.StaffMemberModel;
 import model.StudentImportModel;
 import model.StudentNameModel;
 
 public class ListUtilities {
+	private static LocationCodeMatcher locCodeMatcher;
 
 	public static Contact findClientIDInList(int errorCode, String clientID, String clientName, String eventName,
-			ArrayList<Contact> contactList) {
-		for (Contact c : contactList) {
-			if (c.getFront_Desk_Id__c().equals(clientID)) {
-				return c;
-			}
-		}
+			ContactIndex contacts) {
+		Contact c = contacts.get(clientID);
+		if (c != null)
+			return c;
 
 		// -1 indicates error not to be posted
 		if (errorCode >= 0) {
 			if (clientName == null || clientName.startsWith("null"))
-				MySqlDbLogging.insertLogData(errorCode, new StudentNameModel("", "", false), Integer.parseInt(clientID),
+				MySqlAccess.insertLogData(errorCode, new StudentNameModel("", "", false), Integer.parseInt(clientID),
 						", ClientID " + clientID);
 			else if (!eventName.equals(""))
-				MySqlDbLogging.insertLogData(errorCode, new StudentNameModel(clientName, "", false),
+				MySqlAccess.insertLogData(errorCode, new StudentNameModel(clientName, "", false),
 						Integer.parseInt(clientID), ", " + eventName);
 			else
-				MySqlDbLogging.insertLogData(errorCode, new StudentNameModel(clientName, "", false),
+				MySqlAccess.insertLogData(errorCode, new StudentNameModel(clientName, "", false),
 						Integer.parseInt(clientID), ", ClientID " + clientID + " " + clientName);
 		}
 		return null;
 	}
 
-	public static StaffMemberModel findStaffNameInList(String clientName, ArrayList<StaffMemberModel> staffList) {
-		for (StaffMemberModel s : staffList) {
-			if (clientName.equals(s.getFullName())) {
-				return s;
-			}
-		}
-		return null;
-	}
-
-	public static StudentImportModel findClientIDInPike13List(String clientIDString,
-			ArrayList<StudentImportModel> clientList) {
-		if (!clientIDString.matches("\\d+") || clientList == null)
-			return null;
-
-		int clientID = Integer.parseInt(clientIDString);
-
-		for (StudentImportModel m : clientList) {
-			if (m.getClientID() == clientID)
-				return m;
-		}
-		return null;
-	}
-
 	public static Contact findStudentContactInPike13List(String studentName, String accountID,
 			ArrayList<StudentImportModel> students) {
 		for (StudentImportModel s : students) {
@@ -71,15 +44,6 @@ public class ListUtilities {
 		return null;
 	}
 
-	public static boolean findVisitIdInList(String visitID, ArrayList<SalesForceAttendanceModel> attendanceList) {
-		for (SalesForceAttendanceModel a : attendanceList) {
-			if (a.getVisitID().equals(visitID)) {
-				return true;
-			}
-		}
-		return false;
-	}
-
 	public static AttendanceEventModel findAttendanceEventInList(String visitID,
 			ArrayList<AttendanceEventModel> attendList) {
 		if (visitID == null || visitID.equals("") || visitID.equals("0"))
@@ -93,12 +57,10 @@ public class ListUtilities {
 	}
 
 	public static StaffMemberModel findStaffIDInList(int errorCode, String clientID, String name, String serviceDate,
-			String eventName, ArrayList<StaffMemberModel> staffList) {
-		for (StaffMemberModel s : staffList) {
-			if (s.getClientID().equals(clientID)) {
-				return s;
-			}
-		}
+			String eventName, StaffDirectory staffDirectory) {
+		StaffMemberModel s = staffDirectory.findByClientID(clientID);
+		if (s != null)
+			return s;
 
 		if (errorCode != -1) {
 			// Truncate service name up to '@' character
@@ -107,33 +69,29 @@ public class ListUtilities {
 				if (pos > 0)
 					eventName = eventName.substring(0, pos).trim();
 			}
-			MySqlDbLogging.insertLogData(errorCode, new StudentNameModel(name, "", false), Integer.parseInt(clientID),
+			MySqlAccess.insertLogData(errorCode, new StudentNameModel(name, "", false), Integer.parseInt(clientID),
 					" for " + eventName + " on " + serviceDate);
 		}
 		return null;
 	}
 
 	public static StudentImportModel findAcctManagerInList(StudentImportModel student, String accountMgrName,
-			ArrayList<StudentImportModel> mgrList) {
+			AccountManagerIndex acctMgrIndex) {
 		StudentImportModel partialMatch = null, match = null;
 
-		for (StudentImportModel m : mgrList) {
-			String dependents = m.getDependentNames().toLowerCase();
-
-			if (accountMgrName.equalsIgnoreCase(m.getFullName())
-					&& dependents.contains(student.getFullName().toLowerCase())) {
-				if (m.getAccountID() == null || m.getAccountID().equals(student.getAccountID())) {
-					return m;
-					
-				} else if (student.getAccountID() == null) {
-					student.setAccountID(m.getAccountID());
-					match = m;
-					
-				} else {
-					System.out.println("Partial Acct Mgr match: " + student.getFullName() + ", " + student.getAccountID() + ", " + student.getAccountMgrNames() + ", " 
-							+ accountMgrName + ", " + m.getAccountID() + ", " + m.getDependentNames() + ", " + student.getClientID());
-					partialMatch = m;
-				}
+		// Only managers with this name who list the student as a dependent
+		for (StudentImportModel m : acctMgrIndex.getManagersForDependent(accountMgrName, student.getFullName())) {
+			if (m.getAccountID() == null || m.getAccountID().equals(student.getAccountID())) {
+				return m;
+				
+			} else if (student.getAccountID() == null) {
+				student.setAccountID(m.getAccountID());
+				match = m;
+				
+			} else {
+				System.out.println("Partial Acct Mgr match: " + student.getFullName() + ", " + student.getAccountID() + ", " + student.getAccountMgrNames() + ", " 
+						+ accountMgrName + ", " + m.getAccountID() + ", " + m.getDependentNames() + ", " + student.getClientID());
+				partialMatch = m;
 			}
 		}
 
@@ -148,17 +106,17 @@ public class ListUtilities {
 		return null;
 	}
 
-	public static Account findAccountNameInList(String studentName, String adultAccountID, ArrayList<StudentImportModel> studentList,
-			ArrayList<StudentImportModel> adultList, ArrayList<Account> sfAcctList) {
+	public static Account findAccountNameInList(String studentName, String adultAccountID,
+			AccountManagerIndex acctMgrIndex, FamilyAccountIndex sfAccounts) {
 		// Find matching student, then get Account using account manager name
-		for (StudentImportModel s : studentList) {
-			if (studentName.equalsIgnoreCase(s.getFullName()) && (adultAccountID == null || adultAccountID.equals(s.getAccountID()))) {
+		for (StudentImportModel s : acctMgrIndex.getStudentsByName(studentName)) {
+			if (adultAccountID == null || adultAccountID.equals(s.getAccountID())) {
 				String accountMgrName = getFirstNameInString(s.getAccountMgrNames());
 				if (!accountMgrName.equals("")) {
-					StudentImportModel acctMgrModel = findAcctManagerInList(s, accountMgrName, adultList);
+					StudentImportModel acctMgrModel = findAcctManagerInList(s, accountMgrName, acctMgrIndex);
 					if (acctMgrModel != null && (adultAccountID == null || acctMgrModel.getAccountID().equals(adultAccountID))) {
 						String acctName = acctMgrModel.getLastName() + " " + acctMgrModel.getFirstName() + " Family";
-						return findAccountInSalesForceList(acctName, acctMgrModel, sfAcctList);
+						return findAccountInSalesForceList(acctName, acctMgrModel, sfAccounts);
 					} else {
 						System.out.println("Find Account fail: " + adultAccountID + ", " + acctMgrModel.getAccountID() + studentName);
 					}
@@ -173,11 +131,12 @@ public class ListUtilities {
 	}
 
 	public static Account findAccountInSalesForceList(String accountMgrName, StudentImportModel accountMgrModel,
-			ArrayList<Account> acctList) {
+			FamilyAccountIndex sfAccounts) {
 
 		Account partialMatch = null;
 
-		for (Account a : acctList) {
+		// Only accounts with this name (ignoring case) are candidates
+		for (Account a : sfAccounts.getAccountsByName(accountMgrName)) {
 			if (accountMgrName.equalsIgnoreCase(a.getName())) {
 				if (accountMgrModel.getAccountID() == null || accountMgrModel.getAccountID().equals(a.getId()))
 					return a;
@@ -199,8 +158,8 @@ public class ListUtilities {
 		return account;
 	}
 
-	public static Account findAccountByName(String familyName, ArrayList<Account> acctList) {
-		for (Account a : acctList) {
+	public static Account findAccountByName(String familyName, FamilyAccountIndex sfAccounts) {
+		for (Account a : sfAccounts.getAccountsByName(familyName)) {
 			if (familyName.equalsIgnoreCase(a.getName())) {
 				return a;
 			}
@@ -217,7 +176,7 @@ public class ListUtilities {
 		return name1;
 	}
 
-	public static void fillInAccountID(ArrayList<StudentImportModel> clientList, ArrayList<Contact> contacts) {
+	public static void fillInAccountID(ArrayList<StudentImportModel> clientList, ContactIndex contacts) {
 		for (StudentImportModel m : clientList) {
 			Contact c = ListUtilities.findClientIDInList(-1, String.valueOf(m.getClientID()), m.getFullName(), "",
 					contacts);
@@ -228,7 +187,7 @@ public class ListUtilities {
 		}
 	}
 
-	public static void fillInAccountIDForStaff(ArrayList<StaffMemberModel> clientList, ArrayList<Contact> contacts) {
+	public static void fillInAccountIDForStaff(ArrayList<StaffMemberModel> clientList, ContactIndex contacts) {
 		for (StaffMemberModel m : clientList) {
 			Contact c = ListUtilities.findClientIDInList(-1, String.valueOf(m.getClientID()), m.getFullName(), "",
 					contacts);
@@ -237,25 +196,16 @@ public class ListUtilities {
 		}
 	}
 
-	public static String findLocCodeInList(String sourceString) {
-		int locPos;
-
-		for (int i = 1; i <= LocationLookup.getNumLocactions(); i++) {
-			String locCodeString = LocationLookup.getLocationCodeString(i);
+	public static void setLocationCodes() {
+		// Compile location codes; call after LocationLookup.setLocationData
+		locCodeMatcher = new LocationCodeMatcher();
+	}
 
-			locPos = sourceString.indexOf("@ " + locCodeString + " ");
-			if (locPos >= 0) {
-				String locSubString = sourceString.substring(locPos + 2);
-				return locSubString.substring(0, locSubString.indexOf(" "));
-			}
+	public static String findLocCodeInList(String sourceString) {
+		if (locCodeMatcher == null)
+			setLocationCodes();
 
-			locPos = sourceString.indexOf("@" + locCodeString + " ");
-			if (locPos >= 0) {
-				String locSubString = sourceString.substring(locPos + 1);
-				return locSubString.substring(0, locSubString.indexOf(" "));
-			}
-		}
-		return null;
+		return locCodeMatcher.findLocCode(sourceString);
 	}
 
 	public static String findDiaryIdInList(String clientLevelKey, ArrayList<Contact_Diary__c> diaryList) {
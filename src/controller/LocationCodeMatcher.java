@@ -0,0 +1,69 @@
+package controller;
+
+import java.util.HashMap;
+
+import model.LocationLookup;
+
+/**
+ * LocationCodeMatcher: Finds the location code in an event name, such as
+ * "Java@CV Sat 10:00" or "Java @ CV Sat 10:00".
+ *
+ * The location codes from LocationLookup are compiled once into a trie of
+ * "CODE " strings. The event name is then scanned once: at each '@' (with an
+ * optional space after it) the trie is walked, so no strings are built per
+ * location. When several codes match, the location listed first in
+ * LocationLookup wins, same as the original per-location search. Results are
+ * cached by event name since the same class names repeat across attendance.
+ */
+public class LocationCodeMatcher {
+	private static final int MAX_CACHE_SIZE = 5000;
+	private static final String NO_MATCH = new String("");
+
+	private CharTrie locCodeTrie = new CharTrie();
+	private String[] locCodes;
+	private HashMap<String, String> cache = new HashMap<String, String>();
+
+	public LocationCodeMatcher() {
+		// Locations are numbered starting at 1
+		int numLocations = LocationLookup.getNumLocactions();
+		locCodes = new String[numLocations + 1];
+
+		for (int i = 1; i <= numLocations; i++) {
+			String locCodeString = LocationLookup.getLocationCodeString(i);
+			if (locCodeString == null)
+				continue;
+
+			// Code must be followed by a space in the event name, and is returned up to its first space
+			locCodeTrie.add(locCodeString + " ", i);
+			int spaceIdx = locCodeString.indexOf(' ');
+			locCodes[i] = spaceIdx < 0 ? locCodeString : locCodeString.substring(0, spaceIdx);
+		}
+	}
+
+	public String findLocCode(String sourceString) {
+		String locCode = cache.get(sourceString);
+		if (locCode == null) {
+			locCode = scan(sourceString);
+			if (cache.size() >= MAX_CACHE_SIZE)
+				cache.clear();
+			cache.put(sourceString, locCode);
+		}
+		return locCode == NO_MATCH ? null : locCode;
+	}
+
+	private String scan(String sourceString) {
+		// Lowest location number wins
+		int bestLocNum = CharTrie.NO_MATCH;
+		int atPos = sourceString.indexOf('@');
+
+		while (atPos >= 0) {
+			// Check both "@ CODE " and "@CODE "
+			if (atPos + 1 < sourceString.length() && sourceString.charAt(atPos + 1) == ' ')
+				bestLocNum = locCodeTrie.matchAt(sourceString, atPos + 2, bestLocNum);
+			bestLocNum = locCodeTrie.matchAt(sourceString, atPos + 1, bestLocNum);
+
+			atPos = sourceString.indexOf('@', atPos + 1);
+		}
+		return bestLocNum == CharTrie.NO_MATCH ? NO_MATCH : locCodes[bestLocNum];
+	}
+}
@@ -0,0 +1,23 @@
+package controller;
+
+import model.MySqlDbLogging;
+import model.StudentNameModel;
+
+/**
+ * MySqlAccess: Serializes use of the one MySql connection while the import
+ * phases run on several threads.
+ *
+ * Log entries from the controller classes go through insertLogData here, and
+ * the import engine's database reads and writes hold LOCK, so an error logged
+ * by a fetch thread never runs on the connection in the middle of a query or
+ * reconnects under it.
+ */
+public class MySqlAccess {
+	public static final Object LOCK = new Object();
+
+	public static void insertLogData(int logType, StudentNameModel studentName, int clientID, String logString) {
+		synchronized (LOCK) {
+			MySqlDbLogging.insertLogData(logType, studentName, clientID, logString);
+		}
+	}
+}
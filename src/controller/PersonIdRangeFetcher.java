@@ -0,0 +1,208 @@
+package controller;
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * PersonIdRangeFetcher: Fetches a Pike13 report in parallel by splitting it
+ * into person_id ranges. Each range is paged in person_id order using the last
+ * person_id of the previous page as the lower bound, so a range can be split
+ * at any page boundary.
+ *
+ * Ranges start out evenly split up to the highest person_id, with the top
+ * range left open so clients added after that probe are still fetched. When
+ * a worker runs out of ranges, it splits the busy range with the most
+ * person_id's left (up to the probed highest) and takes the upper half, so a
+ * range that has more pages than the others is shared between workers. The
+ * merged list is in person_id order.
+ */
+public class PersonIdRangeFetcher<T> {
+	private static final int MIN_SPLIT_WIDTH = 16;
+
+	public interface PageSource<T> {
+		// Highest person_id in the report, 0 if empty or -1 on error
+		int getMaxPersonID();
+
+		// One page of rows with afterID < person_id < beforeID in person_id order, or null on error
+		Page<T> getPage(int afterID, int beforeID);
+
+		int getPersonID(T row);
+	}
+
+	public static class Page<T> {
+		private ArrayList<T> rows;
+		private boolean hasMore;
+
+		public Page(ArrayList<T> rows, boolean hasMore) {
+			this.rows = rows;
+			this.hasMore = hasMore;
+		}
+	}
+
+	private PageSource<T> source;
+	private int numWorkers;
+	private int maxPersonID;
+
+	private ArrayList<Range> rangeList = new ArrayList<Range>();
+	private boolean fetchError = false;
+	private int numSplits = 0;
+
+	public PersonIdRangeFetcher(PageSource<T> source, int numWorkers) {
+		this.source = source;
+		this.numWorkers = Math.max(1, numWorkers);
+	}
+
+	public ArrayList<T> fetchAll() {
+		maxPersonID = source.getMaxPersonID();
+		if (maxPersonID < 0)
+			return null;
+
+		// Initial ranges split evenly over 0 <= person_id <= max; the last one has no upper bound
+		long width = (long) maxPersonID + 1;
+		int lowerBound = 0;
+		for (int i = 1; i <= numWorkers; i++) {
+			int upperBound = (i == numWorkers) ? Integer.MAX_VALUE : (int) (width * i / numWorkers);
+			if (upperBound > lowerBound)
+				rangeList.add(new Range(lowerBound - 1, upperBound));
+			lowerBound = upperBound;
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(numWorkers);
+		try {
+			ArrayList<Future<Boolean>> workers = new ArrayList<Future<Boolean>>();
+			for (int i = 0; i < numWorkers; i++) {
+				workers.add(executor.submit(new Callable<Boolean>() {
+					public Boolean call() {
+						return runWorker();
+					}
+				}));
+			}
+
+			// Every worker must finish without error
+			for (Future<Boolean> w : workers) {
+				if (!w.get())
+					return null;
+			}
+
+		} catch (InterruptedException | ExecutionException e) {
+			e.printStackTrace();
+			return null;
+
+		} finally {
+			executor.shutdown();
+		}
+
+		// Merge ranges in person_id order; new ranges were inserted after the range they split from
+		ArrayList<T> rowList = new ArrayList<T>();
+		int numPages = 0;
+		for (Range r : rangeList) {
+			rowList.addAll(r.rows);
+			numPages += r.numPages;
+		}
+		System.out.println("Fetched " + rowList.size() + " rows in " + numPages + " pages from " + rangeList.size()
+				+ " person_id ranges (" + numSplits + " splits)");
+		return rowList;
+	}
+
+	private boolean runWorker() {
+		Range range;
+		while ((range = takeRange()) != null) {
+			if (!fetchRange(range))
+				return false;
+		}
+		return true;
+	}
+
+	private synchronized Range takeRange() {
+		if (fetchError)
+			return null;
+
+		// Take an idle range first
+		for (Range r : rangeList) {
+			if (!r.busy && !r.done) {
+				r.busy = true;
+				return r;
+			}
+		}
+
+		// Otherwise split the busy range with the most person_id's left, once it is known to need more pages
+		Range widest = null;
+		for (Range r : rangeList) {
+			if (r.busy && !r.done && r.numPages > 0 && getWidth(r) > MIN_SPLIT_WIDTH
+					&& (widest == null || getWidth(r) > getWidth(widest)))
+				widest = r;
+		}
+		if (widest == null)
+			return null;
+
+		int midID = (int) (widest.afterID + getWidth(widest) / 2);
+		Range upper = new Range(midID - 1, widest.beforeID);
+		upper.busy = true;
+		widest.beforeID = midID;
+		rangeList.add(rangeList.indexOf(widest) + 1, upper);
+		numSplits++;
+		return upper;
+	}
+
+	private long getWidth(Range r) {
+		// Open top range counts only up to the probed highest person_id
+		return Math.min((long) r.beforeID, (long) maxPersonID + 1) - r.afterID;
+	}
+
+	private boolean fetchRange(Range range) {
+		while (true) {
+			int afterID, beforeID;
+			synchronized (this) {
+				if (fetchError)
+					return false;
+				afterID = range.afterID;
+				beforeID = range.beforeID;
+			}
+
+			Page<T> page = source.getPage(afterID, beforeID);
+
+			synchronized (this) {
+				if (page == null) {
+					fetchError = true;
+					return false;
+				}
+				range.numPages++;
+
+				// Drop rows that now belong to a range split off while this page was in flight
+				boolean reachedEnd = !page.hasMore || page.rows.size() == 0;
+				for (T row : page.rows) {
+					int personID = source.getPersonID(row);
+					if (personID >= range.beforeID) {
+						reachedEnd = true;
+						break;
+					}
+					range.rows.add(row);
+					range.afterID = personID;
+				}
+
+				if (reachedEnd) {
+					range.done = true;
+					range.busy = false;
+					return true;
+				}
+			}
+		}
+	}
+
+	private class Range {
+		// Covers afterID < person_id < beforeID
+		private int afterID, beforeID;
+		private ArrayList<T> rows = new ArrayList<T>();
+		private int numPages = 0;
+		private boolean busy = false, done = false;
+
+		private Range(int afterID, int beforeID) {
+			this.afterID = afterID;
+			this.beforeID = beforeID;
+		}
+	}
+}
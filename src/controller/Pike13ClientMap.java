@@ -0,0 +1,92 @@
+package controller;
+
+import java.util.ArrayList;
+
+import model.StudentImportModel;
+
+/**
+ * Pike13ClientMap: Open-addressing map of Pike13 clients keyed by the primitive
+ * int client ID. Lookups parse the client ID string in place, so finding the
+ * client for an attendance row does no allocation.
+ */
+public class Pike13ClientMap {
+	private static final int EMPTY_SLOT = 0;
+
+	private int[] keys;
+	private StudentImportModel[] values;
+	private int mask;
+
+	public Pike13ClientMap(ArrayList<StudentImportModel> clientList) {
+		// Keep table at most half full
+		int capacity = 16;
+		if (clientList != null) {
+			while (capacity < clientList.size() * 2)
+				capacity <<= 1;
+		}
+
+		keys = new int[capacity];
+		values = new StudentImportModel[capacity];
+		mask = capacity - 1;
+
+		if (clientList != null) {
+			for (StudentImportModel m : clientList)
+				put(m.getClientID(), m);
+		}
+	}
+
+	public StudentImportModel get(String clientIDString) {
+		int clientID = parseClientID(clientIDString);
+		if (clientID <= EMPTY_SLOT)
+			return null;
+
+		return get(clientID);
+	}
+
+	public StudentImportModel get(int clientID) {
+		int idx = hash(clientID) & mask;
+		while (keys[idx] != EMPTY_SLOT) {
+			if (keys[idx] == clientID)
+				return values[idx];
+			idx = (idx + 1) & mask;
+		}
+		return null;
+	}
+
+	private void put(int clientID, StudentImportModel model) {
+		// Client ID's are always positive; first client in list wins
+		if (clientID <= EMPTY_SLOT)
+			return;
+
+		int idx = hash(clientID) & mask;
+		while (keys[idx] != EMPTY_SLOT) {
+			if (keys[idx] == clientID)
+				return;
+			idx = (idx + 1) & mask;
+		}
+		keys[idx] = clientID;
+		values[idx] = model;
+	}
+
+	private static int hash(int key) {
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	public static int parseClientID(String clientIDString) {
+		// Returns -1 if string is empty, non-numeric or too large for an int
+		if (clientIDString == null || clientIDString.length() == 0)
+			return -1;
+
+		long clientID = 0;
+		for (int i = 0; i < clientIDString.length(); i++) {
+			char ch = clientIDString.charAt(i);
+			if (ch < '0' || ch > '9')
+				return -1;
+
+			clientID = (clientID * 10) + (ch - '0');
+			if (clientID > Integer.MAX_VALUE)
+				return -1;
+		}
+		return (int) clientID;
+	}
+}
@@ -1,25 +1,59 @@
 package controller;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.ByteArrayInputStream;
 import java.net.HttpURLConnection;
-import java.net.URL;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.json.Json;
+import javax.json.JsonException;
 import javax.json.JsonObject;
 import javax.json.JsonReader;
 
 import model.LogDataModel;
-import model.MySqlDbLogging;
 import model.StudentNameModel;
 
 public class Pike13Connect {
 	private final String USER_AGENT = "Mozilla/5.0";
+	private static final int MAX_SEND_ATTEMPTS = 5;
+	private static final double DEFAULT_REQUESTS_PER_SEC = 10.0;
+	public static final String DEFAULT_BASE_URL = "https://jtl.pike13.com";
+
 	private String pike13Token;
+	private Pike13HttpTransport transport;
+	private Pike13RateLimiter rateLimiter;
+	private String baseUrl = DEFAULT_BASE_URL;
+
+	// When recording, the query sent on each connection until its response is read
+	private Pike13ResponseCorpus recordCorpus;
+	private ConcurrentHashMap<HttpURLConnection, String> recordQueries = new ConcurrentHashMap<HttpURLConnection, String>();
 	
 	public Pike13Connect(String pike13Token) {
+		this(pike13Token, new Pike13HttpTransport());
+	}
+
+	public Pike13Connect(String pike13Token, Pike13HttpTransport transport) {
+		this(pike13Token, transport,
+				new Pike13RateLimiter(DEFAULT_REQUESTS_PER_SEC, Pike13HttpTransport.DEFAULT_MAX_CONNECTIONS));
+	}
+
+	public Pike13Connect(String pike13Token, Pike13HttpTransport transport, Pike13RateLimiter rateLimiter) {
 		this.pike13Token = pike13Token;
+		this.transport = transport;
+		this.rateLimiter = rateLimiter;
+	}
+
+	public void setBaseUrl(String baseUrl) {
+		// Pike13ReplayServer URL for offline runs
+		this.baseUrl = baseUrl;
+	}
+
+	public void setRecordCorpus(String corpusDirName) {
+		// Save every request and response to the corpus, or stop recording if null
+		recordCorpus = (corpusDirName == null) ? null : new Pike13ResponseCorpus(corpusDirName);
 	}
 
 	private HttpURLConnection connectUrl(String endPoint, boolean coreApi) {
@@ -29,16 +63,15 @@ public class Pike13Connect {
 		// Typically the 'reporting' API is used; occasionally fields are not available
 		// in the reporting API so the core API must be used instead.
 		if (coreApi)
-			urlString = "https://jtl.pike13.com/api/v2/desk/" + endPoint;
+			urlString = baseUrl + "/api/v2/desk/" + endPoint;
 		else
-			urlString = "https://jtl.pike13.com/desk/api/v3/reports/" + endPoint + "/queries";
+			urlString = baseUrl + "/desk/api/v3/reports/" + endPoint + "/queries";
 
 		try {
 			// Get URL connection with authorization
-			URL url = new URL(urlString);
-			conn = (HttpURLConnection) url.openConnection();
+			conn = transport.openConnection(urlString);
 			if (conn == null) {
-				MySqlDbLogging.insertLogData(LogDataModel.PIKE13_CONNECTION_ERROR, new StudentNameModel("", "", false), 0,
+				MySqlAccess.insertLogData(LogDataModel.PIKE13_CONNECTION_ERROR, new StudentNameModel("", "", false), 0,
 						": Failed to open connection for endpoint '" + endPoint + "'");
 				return null;
 			}
@@ -56,25 +89,39 @@ public class Pike13Connect {
 			return conn;
 
 		} catch (Exception e) {
-			MySqlDbLogging.insertLogData(LogDataModel.PIKE13_CONNECTION_ERROR, new StudentNameModel("", "", false), 0,
+			MySqlAccess.insertLogData(LogDataModel.PIKE13_CONNECTION_ERROR, new StudentNameModel("", "", false), 0,
 					": " + e.getMessage());
 			e.printStackTrace();
 		
 			if (conn != null)
-				conn.disconnect();
+				transport.release(conn);
 		}
 		return null;
 	}
 
 	public HttpURLConnection sendQueryToUrl(String connName, String getCommand, boolean coreApi) {
-		try {
-			// If necessary, try twice to send query
-			for (int i = 0; i < 2; i++) {
-				// Get URL connection with authorization
-				HttpURLConnection conn = connectUrl(connName, coreApi);
-				if (conn == null)
-					continue;
+		String lastError = "";
+		int attempt;
+
+		// Retry throttled, server and IO errors with backoff
+		for (attempt = 0; attempt < MAX_SEND_ATTEMPTS; attempt++) {
+			// Wait for rate limiter, then get URL connection with authorization
+			if (!rateLimiter.acquire()) {
+				lastError = "interrupted";
+				break;
+			}
+			HttpURLConnection conn = connectUrl(connName, coreApi);
+			if (conn == null) {
+				rateLimiter.release(Pike13RateLimiter.IO_ERROR);
+				lastError = "no connection";
+				if (!waitToRetry(attempt, null))
+					break;
+				continue;
+			}
 
+			int responseCode = Pike13RateLimiter.IO_ERROR;
+			String retryAfter = null;
+			try {
 				// Send the query
 				if (!coreApi) {
 					OutputStream outputStream = conn.getOutputStream();
@@ -84,63 +131,165 @@ public class Pike13Connect {
 				}
 
 				// Check result
-				int responseCode = conn.getResponseCode();
-				if (responseCode == HttpURLConnection.HTTP_OK)
+				responseCode = conn.getResponseCode();
+				if (responseCode == HttpURLConnection.HTTP_OK) {
+					rateLimiter.release(responseCode);
+					if (recordCorpus != null)
+						recordQueries.put(conn, coreApi ? "" : getCommand);
 					return conn;
-				else {
-					MySqlDbLogging.insertLogData(LogDataModel.PIKE13_IMPORT_ERROR, new StudentNameModel("", "", false), 0,
-							" " + responseCode + " for '" + connName + "' (attempt #" + (i + 1) + "): " + conn.getResponseMessage());
-					conn.disconnect();
 				}
+				retryAfter = conn.getHeaderField("Retry-After");
+				lastError = responseCode + " " + conn.getResponseMessage();
+
+			} catch (IOException e) {
+				lastError = e.getMessage();
 			}
 
-		} catch (IOException e) {
-			e.printStackTrace();
-			MySqlDbLogging.insertLogData(LogDataModel.PIKE13_IMPORT_ERROR, new StudentNameModel("", "", false), 0, 
-					": " + e.getMessage());
+			rateLimiter.release(responseCode);
+			transport.release(conn);
+			if (!Pike13RateLimiter.isRetryable(responseCode) || !waitToRetry(attempt, retryAfter))
+				break;
 		}
 
+		MySqlAccess.insertLogData(LogDataModel.PIKE13_IMPORT_ERROR, new StudentNameModel("", "", false), 0,
+				" for '" + connName + "' (" + Math.min(attempt + 1, MAX_SEND_ATTEMPTS) + " attempts): " + lastError);
 		return null;
 	}
 
+	private boolean waitToRetry(int attempt, String retryAfter) {
+		// Back off before the next attempt; false if out of attempts or interrupted
+		if (attempt == MAX_SEND_ATTEMPTS - 1)
+			return false;
+
+		try {
+			Thread.sleep(rateLimiter.getBackoffMsec(attempt, retryAfter));
+			return true;
+
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
 	public JsonObject readInputStream(HttpURLConnection conn) {
 		try {
 			// Get input stream and read data
-			InputStream inputStream = conn.getInputStream();
+			InputStream inputStream = getResponseStream(conn);
 			JsonReader repoReader = Json.createReader(inputStream);
 			JsonObject object = ((JsonObject) repoReader.read()).getJsonObject("data").getJsonObject("attributes");
 
+			transport.finishInputStream(conn, inputStream);
 			repoReader.close();
-			inputStream.close();
 			return object;
 
-		} catch (IOException e) {
+		} catch (IOException | JsonException e) {
 			e.printStackTrace();
-			MySqlDbLogging.insertLogData(LogDataModel.PIKE13_IMPORT_ERROR, new StudentNameModel("", "", false), 0,
+			MySqlAccess.insertLogData(LogDataModel.PIKE13_IMPORT_ERROR, new StudentNameModel("", "", false), 0,
 					": " + e.getMessage());
+		} finally {
+			// Whole response is read here, so the connection goes back to the transport
+			releaseConnection(conn);
 		}
 		return null;
 	}
 	
+	public Pike13RowDecoder.PageInfo readRows(HttpURLConnection conn, Pike13RowDecoder.RowHandler handler) {
+		try {
+			// Stream the report rows to the handler without building the Json tree
+			InputStream inputStream = getResponseStream(conn);
+			Pike13RowDecoder.PageInfo pageInfo = Pike13RowDecoder.decode(inputStream, handler);
+
+			transport.finishInputStream(conn, inputStream);
+			return pageInfo;
+
+		} catch (IOException | RuntimeException e) {
+			// Includes bad Json and rows the handler could not parse
+			e.printStackTrace();
+			MySqlAccess.insertLogData(LogDataModel.PIKE13_IMPORT_ERROR, new StudentNameModel("", "", false), 0,
+					": " + e.getMessage());
+		}
+		return null;
+	}
+
+	public byte[] readResponseBytes(HttpURLConnection conn) {
+		try {
+			// Read the whole response so it can be decoded on another thread
+			InputStream inputStream = getResponseStream(conn);
+			ByteArrayOutputStream outputStream = new ByteArrayOutputStream(64 * 1024);
+			byte[] buffer = new byte[16 * 1024];
+			int numBytes;
+			while ((numBytes = inputStream.read(buffer)) >= 0)
+				outputStream.write(buffer, 0, numBytes);
+
+			transport.finishInputStream(conn, inputStream);
+			return outputStream.toByteArray();
+
+		} catch (IOException e) {
+			e.printStackTrace();
+			MySqlAccess.insertLogData(LogDataModel.PIKE13_IMPORT_ERROR, new StudentNameModel("", "", false), 0,
+					": " + e.getMessage());
+		}
+		return null;
+	}
+
 	public JsonObject readCoreInputStream(HttpURLConnection conn) {
 		try {
 			// Get input stream and read data
-			InputStream inputStream = conn.getInputStream();
+			InputStream inputStream = getResponseStream(conn);
 			JsonReader repoReader = Json.createReader(inputStream);
 			JsonObject object = ((JsonObject) repoReader.read());
 
+			transport.finishInputStream(conn, inputStream);
 			repoReader.close();
-			inputStream.close();
 			return object;
 
-		} catch (IOException e) {
+		} catch (IOException | JsonException e) {
 			e.printStackTrace();
-			MySqlDbLogging.insertLogData(LogDataModel.PIKE13_IMPORT_ERROR, new StudentNameModel("", "", false), 0,
+			MySqlAccess.insertLogData(LogDataModel.PIKE13_IMPORT_ERROR, new StudentNameModel("", "", false), 0,
 					" for Core API: " + e.getMessage());
+		} finally {
+			// Whole response is read here, so the connection goes back to the transport
+			releaseConnection(conn);
 		}
 		return null;
 	}
 
+	public String getRequestMetrics() {
+		return rateLimiter.getMetrics();
+	}
+
+	public void releaseConnection(HttpURLConnection conn) {
+		// Keeps the socket open for reuse if the response was read to the end
+		recordQueries.remove(conn);
+		transport.release(conn);
+	}
+
+	private InputStream getResponseStream(HttpURLConnection conn) throws IOException {
+		String query = recordQueries.remove(conn);
+		if (query == null)
+			return transport.getInputStream(conn);
+
+		// Recording: read the whole response and save it before it is parsed
+		InputStream inputStream = transport.getInputStream(conn);
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream(64 * 1024);
+		byte[] buffer = new byte[16 * 1024];
+		int numBytes;
+		while ((numBytes = inputStream.read(buffer)) >= 0)
+			outputStream.write(buffer, 0, numBytes);
+		transport.finishInputStream(conn, inputStream);
+
+		byte[] response = outputStream.toByteArray();
+		try {
+			recordCorpus.record(conn.getURL().getFile(), query, response);
+
+		} catch (IOException e) {
+			// Keep going; the import does not depend on the recording
+			MySqlAccess.insertLogData(LogDataModel.PIKE13_IMPORT_ERROR, new StudentNameModel("", "", false), 0,
+					" recording response: " + e.getMessage());
+		}
+		return new ByteArrayInputStream(response);
+	}
+
 	public String stripQuotes(String fieldData) {
 		// Strip off quotes around field string
 		if (fieldData.equals("\"\"") || fieldData.startsWith("null"))
@@ -0,0 +1,96 @@
+package controller;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Pike13HttpTransport: Opens the HTTP connections used by Pike13Connect.
+ *
+ * Connections have connect and read timeouts and ask for gzip or deflate
+ * responses. A response that is read to the end is closed rather than
+ * disconnected, so the JDK keep-alive cache reuses the socket (and its TLS
+ * session) for the next page. The number of requests in flight is limited;
+ * a permit is held from openConnection until release.
+ */
+public class Pike13HttpTransport {
+	public static final int DEFAULT_CONNECT_TIMEOUT_MSEC = 15000;
+	public static final int DEFAULT_READ_TIMEOUT_MSEC = 60000;
+	public static final int DEFAULT_MAX_CONNECTIONS = 8;
+
+	private int connectTimeoutMsec, readTimeoutMsec;
+	private Semaphore connectionPermits;
+
+	// Connections holding a permit; true once the response has been read to the end
+	private ConcurrentHashMap<HttpURLConnection, Boolean> activeConns = new ConcurrentHashMap<HttpURLConnection, Boolean>();
+
+	public Pike13HttpTransport() {
+		this(DEFAULT_CONNECT_TIMEOUT_MSEC, DEFAULT_READ_TIMEOUT_MSEC, DEFAULT_MAX_CONNECTIONS);
+	}
+
+	public Pike13HttpTransport(int connectTimeoutMsec, int readTimeoutMsec, int maxConnections) {
+		this.connectTimeoutMsec = connectTimeoutMsec;
+		this.readTimeoutMsec = readTimeoutMsec;
+		connectionPermits = new Semaphore(Math.max(1, maxConnections), true);
+
+		// Idle sockets kept per host; the JDK reads this when the keep-alive cache is first used
+		if (System.getProperty("http.maxConnections") == null)
+			System.setProperty("http.maxConnections", String.valueOf(Math.max(1, maxConnections)));
+	}
+
+	public HttpURLConnection openConnection(String urlString) throws IOException {
+		connectionPermits.acquireUninterruptibly();
+		try {
+			HttpURLConnection conn = (HttpURLConnection) new URL(urlString).openConnection();
+			conn.setConnectTimeout(connectTimeoutMsec);
+			conn.setReadTimeout(readTimeoutMsec);
+			conn.setRequestProperty("Accept-Encoding", "gzip, deflate");
+
+			activeConns.put(conn, false);
+			return conn;
+
+		} catch (IOException | RuntimeException e) {
+			connectionPermits.release();
+			throw e;
+		}
+	}
+
+	public InputStream getInputStream(HttpURLConnection conn) throws IOException {
+		// Decode compressed response
+		InputStream inputStream = conn.getInputStream();
+		String encoding = conn.getContentEncoding();
+
+		if ("gzip".equalsIgnoreCase(encoding))
+			return new GZIPInputStream(inputStream);
+		else if ("deflate".equalsIgnoreCase(encoding))
+			return new InflaterInputStream(inputStream);
+		else
+			return inputStream;
+	}
+
+	public void finishInputStream(HttpURLConnection conn, InputStream inputStream) throws IOException {
+		// Read to the end so the socket goes back to the keep-alive cache
+		byte[] buffer = new byte[1024];
+		while (inputStream.read(buffer) >= 0)
+			;
+		inputStream.close();
+
+		activeConns.replace(conn, true);
+	}
+
+	public void release(HttpURLConnection conn) {
+		Boolean finished = activeConns.remove(conn);
+		if (finished == null)
+			return; // Already released
+
+		// Drop the socket if the response was not read to the end
+		if (!finished)
+			conn.disconnect();
+		connectionPermits.release();
+	}
+}
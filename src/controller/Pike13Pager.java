@@ -0,0 +1,219 @@
+package controller;
+
+import java.io.ByteArrayInputStream;
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import model.LogDataModel;
+import model.StudentNameModel;
+
+/**
+ * Pike13Pager: Pages through a cursor-paginated Pike13 report with the
+ * network and the row decoding overlapped.
+ *
+ * A fetch thread downloads each page, finds has_more and last_key by
+ * scanning the raw bytes, and requests the next page right away. Downloaded
+ * pages go through a bounded queue to the calling thread, which decodes the
+ * rows into the RowHandler, so the handler only ever runs on the caller's
+ * thread. The cursor found by the scan is checked against the decoded page.
+ */
+public class Pike13Pager {
+	private static final int MAX_QUEUED_PAGES = 4;
+	private static final byte[] HAS_MORE_KEY = "\"has_more\"".getBytes(StandardCharsets.UTF_8);
+	private static final byte[] LAST_KEY_KEY = "\"last_key\"".getBytes(StandardCharsets.UTF_8);
+
+	private Pike13Connect pike13Conn;
+
+	public Pike13Pager(Pike13Connect pike13Conn) {
+		this.pike13Conn = pike13Conn;
+	}
+
+	public boolean fetchAll(final String connName, final String queryStart, final String queryEnd,
+			Pike13RowDecoder.RowHandler handler) {
+		// Returns false if any page failed
+		final ArrayBlockingQueue<QueuedPage> pageQueue = new ArrayBlockingQueue<QueuedPage>(MAX_QUEUED_PAGES);
+		final AtomicBoolean stopFetch = new AtomicBoolean(false);
+
+		ExecutorService fetcher = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "pike13-pager-" + connName);
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		fetcher.submit(new Runnable() {
+			public void run() {
+				fetchPages(connName, queryStart, queryEnd, pageQueue, stopFetch);
+			}
+		});
+
+		try {
+			while (true) {
+				QueuedPage page = pageQueue.take();
+				if (page.pageBytes == null)
+					return page.success; // Last page or fetch error
+
+				// Decode rows while the next page downloads
+				Pike13RowDecoder.PageInfo pageInfo = Pike13RowDecoder.decode(new ByteArrayInputStream(page.pageBytes),
+						handler);
+				if (pageInfo.hasMore() != page.pageInfo.hasMore() || (pageInfo.hasMore()
+						&& (pageInfo.getLastKey() == null || !pageInfo.getLastKey().equals(page.pageInfo.getLastKey())))) {
+					MySqlAccess.insertLogData(LogDataModel.PIKE13_IMPORT_ERROR, new StudentNameModel("", "", false), 0,
+							": Page cursor mismatch for '" + connName + "'");
+					return false;
+				}
+			}
+
+		} catch (InterruptedException | RuntimeException e) {
+			e.printStackTrace();
+			MySqlAccess.insertLogData(LogDataModel.PIKE13_IMPORT_ERROR, new StudentNameModel("", "", false), 0,
+					" for '" + connName + "': " + e.getMessage());
+			return false;
+
+		} finally {
+			// Stop the fetch thread if rows were not all decoded
+			stopFetch.set(true);
+			pageQueue.clear();
+			fetcher.shutdownNow();
+		}
+	}
+
+	private void fetchPages(String connName, String queryStart, String queryEnd,
+			ArrayBlockingQueue<QueuedPage> pageQueue, AtomicBoolean stopFetch) {
+		String lastKey = null;
+		boolean success = false, interrupted = false;
+
+		try {
+			do {
+				// Send the query; add page info if necessary
+				HttpURLConnection conn;
+				if (lastKey != null)
+					conn = pike13Conn.sendQueryToUrl(connName, queryStart + ",\"starting_after\":\"" + lastKey + "\"" + queryEnd, false);
+				else
+					conn = pike13Conn.sendQueryToUrl(connName, queryStart + queryEnd, false);
+
+				if (conn == null)
+					break;
+
+				byte[] pageBytes = pike13Conn.readResponseBytes(conn);
+				pike13Conn.releaseConnection(conn);
+				if (pageBytes == null)
+					break;
+
+				// Find the cursor for the next page
+				Pike13RowDecoder.PageInfo pageInfo = getPageInfo(pageBytes);
+				if (pageInfo == null || (pageInfo.hasMore() && pageInfo.getLastKey() == null))
+					break;
+
+				pageQueue.put(new QueuedPage(pageBytes, pageInfo, true));
+				lastKey = pageInfo.hasMore() ? pageInfo.getLastKey() : null;
+				success = (lastKey == null);
+
+			} while (lastKey != null && !stopFetch.get());
+
+		} catch (InterruptedException e) {
+			// Caller has stopped reading pages
+			interrupted = true;
+
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+			MySqlAccess.insertLogData(LogDataModel.PIKE13_IMPORT_ERROR, new StudentNameModel("", "", false), 0,
+					" for '" + connName + "': " + e.getMessage());
+
+		} finally {
+			// Tell the caller this is the end, good or bad, so it never waits forever
+			if (!interrupted && !stopFetch.get()) {
+				try {
+					pageQueue.put(new QueuedPage(null, null, success));
+
+				} catch (InterruptedException e) {
+					// Caller has stopped reading pages
+				}
+			}
+		}
+	}
+
+	private static Pike13RowDecoder.PageInfo getPageInfo(byte[] pageBytes) {
+		// Scan for the cursor keys; decode the page without rows if the scan fails
+		int hasMoreIdx = findValue(pageBytes, HAS_MORE_KEY);
+		int lastKeyIdx = findValue(pageBytes, LAST_KEY_KEY);
+
+		if (hasMoreIdx >= 0 && (pageBytes[hasMoreIdx] == 't' || pageBytes[hasMoreIdx] == 'f')) {
+			boolean hasMore = pageBytes[hasMoreIdx] == 't';
+			if (!hasMore)
+				return new Pike13RowDecoder.PageInfo(false, null);
+
+			String lastKey = readSimpleString(pageBytes, lastKeyIdx);
+			if (lastKey != null)
+				return new Pike13RowDecoder.PageInfo(true, lastKey);
+		}
+
+		try {
+			return Pike13RowDecoder.decode(new ByteArrayInputStream(pageBytes), new Pike13RowDecoder.RowHandler() {
+				public void handleRow(Pike13RowDecoder.Row row) {
+				}
+			});
+
+		} catch (RuntimeException e) {
+			MySqlAccess.insertLogData(LogDataModel.PIKE13_IMPORT_ERROR, new StudentNameModel("", "", false), 0,
+					": " + e.getMessage());
+			return null;
+		}
+	}
+
+	private static int findValue(byte[] pageBytes, byte[] key) {
+		// Returns index of the value after the last "key": or -1. A key in quotes
+		// cannot appear inside a Json string, since quotes there are escaped.
+		for (int i = pageBytes.length - key.length; i >= 0; i--) {
+			int j = 0;
+			while (j < key.length && pageBytes[i + j] == key[j])
+				j++;
+			if (j < key.length)
+				continue;
+
+			int idx = skipSpaces(pageBytes, i + key.length);
+			if (idx < pageBytes.length && pageBytes[idx] == ':')
+				return skipSpaces(pageBytes, idx + 1);
+		}
+		return -1;
+	}
+
+	private static int skipSpaces(byte[] pageBytes, int idx) {
+		while (idx < pageBytes.length
+				&& (pageBytes[idx] == ' ' || pageBytes[idx] == '\t' || pageBytes[idx] == '\n' || pageBytes[idx] == '\r'))
+			idx++;
+		return idx;
+	}
+
+	private static String readSimpleString(byte[] pageBytes, int idx) {
+		// Quoted string with no escapes, otherwise null
+		if (idx < 0 || idx >= pageBytes.length || pageBytes[idx] != '"')
+			return null;
+
+		for (int end = idx + 1; end < pageBytes.length; end++) {
+			if (pageBytes[end] == '\\')
+				return null;
+			else if (pageBytes[end] == '"')
+				return new String(pageBytes, idx + 1, end - idx - 1, StandardCharsets.UTF_8);
+		}
+		return null;
+	}
+
+	private static class QueuedPage {
+		private byte[] pageBytes;
+		private Pike13RowDecoder.PageInfo pageInfo;
+		private boolean success;
+
+		private QueuedPage(byte[] pageBytes, Pike13RowDecoder.PageInfo pageInfo, boolean success) {
+			this.pageBytes = pageBytes;
+			this.pageInfo = pageInfo;
+			this.success = success;
+		}
+	}
+}
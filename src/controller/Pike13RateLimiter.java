@@ -0,0 +1,166 @@
+package controller;
+
+import java.util.Locale;
+import java.util.Random;
+
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+
+/**
+ * Pike13RateLimiter: Paces requests to Pike13 when several pulls run at once.
+ *
+ * Each request takes a token from a bucket refilled at a fixed rate, and a
+ * slot under an AIMD concurrency limit: the limit grows by 1 for every
+ * 'limit' successful requests and is halved (at most once a second) when
+ * Pike13 throttles with a 429 or 503. Retries back off exponentially with
+ * full jitter, or wait for Retry-After when the server sends it.
+ *
+ * Request, throttle and retry counts are kept for the run summary.
+ */
+public class Pike13RateLimiter {
+	public static final int IO_ERROR = -1;
+
+	private static final long BASE_BACKOFF_MSEC = 500;
+	private static final long MAX_BACKOFF_MSEC = 60000;
+	private static final long MAX_RETRY_JITTER_MSEC = 250;
+	private static final long DECREASE_INTERVAL_MSEC = 1000;
+	private static final DateTimeFormatter HTTP_DATE_FORMAT = DateTimeFormat
+			.forPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'").withZoneUTC().withLocale(Locale.US);
+
+	// Token bucket
+	private double tokensPerMsec, maxTokens, tokens;
+	private long lastRefillMsec;
+
+	// AIMD concurrency limit
+	private double concurrencyLimit;
+	private int maxConcurrency;
+	private int numInFlight = 0;
+	private long lastDecreaseMsec = 0;
+
+	// Metrics
+	private long startMsec;
+	private int numRequests = 0, numThrottled = 0, numServerErrors = 0, numIoErrors = 0, numRetries = 0;
+	private double minLimitSeen, maxLimitSeen;
+
+	private Random random = new Random();
+
+	public Pike13RateLimiter(double requestsPerSecond, int maxConcurrency) {
+		tokensPerMsec = requestsPerSecond / 1000.0;
+		maxTokens = Math.max(1.0, requestsPerSecond);
+		tokens = maxTokens;
+
+		// Start low and grow until Pike13 pushes back
+		this.maxConcurrency = Math.max(1, maxConcurrency);
+		concurrencyLimit = Math.min(2, this.maxConcurrency);
+		minLimitSeen = maxLimitSeen = concurrencyLimit;
+
+		startMsec = lastRefillMsec = System.currentTimeMillis();
+	}
+
+	public synchronized boolean acquire() {
+		// Wait for a slot under the concurrency limit, then for a token; false if interrupted
+		boolean haveSlot = false;
+		try {
+			while (numInFlight >= (int) concurrencyLimit)
+				wait();
+			numInFlight++;
+			haveSlot = true;
+
+			refillTokens();
+			while (tokens < 1.0) {
+				wait(Math.max(1, (long) Math.ceil((1.0 - tokens) / tokensPerMsec)));
+				refillTokens();
+			}
+			tokens -= 1.0;
+			numRequests++;
+			return true;
+
+		} catch (InterruptedException e) {
+			// Skip the request and give back the slot; caller does not call release
+			if (haveSlot) {
+				numInFlight--;
+				notifyAll();
+			}
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	public synchronized void release(int responseCode) {
+		// Response code of the request, or IO_ERROR
+		numInFlight--;
+
+		if (isThrottled(responseCode)) {
+			numThrottled++;
+			long now = System.currentTimeMillis();
+			if (now - lastDecreaseMsec >= DECREASE_INTERVAL_MSEC) {
+				concurrencyLimit = Math.max(1.0, concurrencyLimit / 2);
+				lastDecreaseMsec = now;
+			}
+
+		} else if (responseCode >= 500)
+			numServerErrors++;
+
+		else if (responseCode == IO_ERROR)
+			numIoErrors++;
+
+		else if (responseCode < 400)
+			concurrencyLimit = Math.min(maxConcurrency, concurrencyLimit + 1.0 / concurrencyLimit);
+
+		minLimitSeen = Math.min(minLimitSeen, concurrencyLimit);
+		maxLimitSeen = Math.max(maxLimitSeen, concurrencyLimit);
+		notifyAll();
+	}
+
+	public long getBackoffMsec(int attempt, String retryAfter) {
+		// Honor Retry-After (seconds or HTTP date), otherwise exponential backoff with full jitter
+		long retryAfterMsec = parseRetryAfter(retryAfter);
+		synchronized (this) {
+			numRetries++;
+
+			if (retryAfterMsec >= 0)
+				return Math.min(MAX_BACKOFF_MSEC, retryAfterMsec) + (long) (random.nextDouble() * MAX_RETRY_JITTER_MSEC);
+
+			long maxBackoff = Math.min(MAX_BACKOFF_MSEC, BASE_BACKOFF_MSEC << Math.min(attempt, 16));
+			return (long) (random.nextDouble() * maxBackoff);
+		}
+	}
+
+	public static boolean isThrottled(int responseCode) {
+		return responseCode == 429 || responseCode == 503;
+	}
+
+	public static boolean isRetryable(int responseCode) {
+		return responseCode == IO_ERROR || responseCode == 408 || responseCode == 429 || responseCode >= 500;
+	}
+
+	public synchronized String getMetrics() {
+		double elapsedSec = Math.max(1, System.currentTimeMillis() - startMsec) / 1000.0;
+		return String.format("Pike13 requests: %d (%.1f/sec), throttled %d, server errors %d, IO errors %d, retries %d, "
+				+ "concurrency limit %.1f (range %.1f - %.1f)", numRequests, numRequests / elapsedSec, numThrottled,
+				numServerErrors, numIoErrors, numRetries, concurrencyLimit, minLimitSeen, maxLimitSeen);
+	}
+
+	private void refillTokens() {
+		long now = System.currentTimeMillis();
+		tokens = Math.min(maxTokens, tokens + (now - lastRefillMsec) * tokensPerMsec);
+		lastRefillMsec = now;
+	}
+
+	private static long parseRetryAfter(String retryAfter) {
+		if (retryAfter == null || retryAfter.trim().isEmpty())
+			return -1;
+
+		try {
+			return Long.parseLong(retryAfter.trim()) * 1000;
+
+		} catch (NumberFormatException e) {
+			try {
+				return Math.max(0, HTTP_DATE_FORMAT.parseMillis(retryAfter.trim()) - System.currentTimeMillis());
+
+			} catch (IllegalArgumentException e2) {
+				return -1;
+			}
+		}
+	}
+}
@@ -0,0 +1,161 @@
+package controller;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Pike13ReplayServer: Local stand-in for Pike13 that serves the responses in
+ * a Pike13ResponseCorpus, so the Pike13 import can be load-tested and
+ * profiled with no network. Point Pike13Connect at getBaseUrl().
+ *
+ * Requests are matched on path and query body; anything not recorded gets a
+ * 404. Each response is delayed by a fixed latency plus a random jitter and
+ * is gzipped when the client asks for it, as Pike13 does. Client person_id
+ * range splits depend on timing, so record with CLIENT_FETCH_SHARDS = 1 for
+ * a corpus that always replays in full.
+ */
+public class Pike13ReplayServer {
+	private static final int NUM_HANDLER_THREADS = 16;
+
+	private HashMap<String, byte[]> responses;
+	private HashMap<String, byte[]> gzipResponses = new HashMap<String, byte[]>();
+	private int latencyMsec, jitterMsec;
+	private Random random = new Random();
+	private AtomicInteger numServed = new AtomicInteger(), numMissing = new AtomicInteger();
+
+	private HttpServer server;
+	private ExecutorService executor;
+
+	public Pike13ReplayServer(String corpusDirName, int latencyMsec, int jitterMsec) throws IOException {
+		this.latencyMsec = latencyMsec;
+		this.jitterMsec = jitterMsec;
+
+		// Compress once up front so serving does not skew the client's timing
+		responses = new Pike13ResponseCorpus(corpusDirName).loadAll();
+		for (Map.Entry<String, byte[]> entry : responses.entrySet())
+			gzipResponses.put(entry.getKey(), gzip(entry.getValue()));
+	}
+
+	public void start(int port) throws IOException {
+		// Without nodelay, requests on a reused socket stall on delayed ACKs; read when the server class loads
+		if (System.getProperty("sun.net.httpserver.nodelay") == null)
+			System.setProperty("sun.net.httpserver.nodelay", "true");
+
+		server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+		server.createContext("/", new HttpHandler() {
+			public void handle(HttpExchange exchange) throws IOException {
+				handleRequest(exchange);
+			}
+		});
+		executor = Executors.newFixedThreadPool(NUM_HANDLER_THREADS);
+		server.setExecutor(executor);
+		server.start();
+	}
+
+	public void stop() {
+		if (server != null) {
+			server.stop(0);
+			executor.shutdownNow();
+			server = null;
+		}
+	}
+
+	public String getBaseUrl() {
+		return "http://localhost:" + server.getAddress().getPort();
+	}
+
+	public int getNumResponses() {
+		return responses.size();
+	}
+
+	public String getMetrics() {
+		return "Pike13 replay: " + numServed.get() + " served, " + numMissing.get() + " not in corpus";
+	}
+
+	private void handleRequest(HttpExchange exchange) throws IOException {
+		try {
+			String query = new String(readAll(exchange.getRequestBody()), StandardCharsets.UTF_8);
+			String key = Pike13ResponseCorpus.getKey(exchange.getRequestURI().toString(), query);
+
+			// Simulate network and server time
+			int delayMsec = latencyMsec;
+			if (jitterMsec > 0)
+				delayMsec += random.nextInt(jitterMsec + 1);
+			if (delayMsec > 0)
+				Thread.sleep(delayMsec);
+
+			byte[] response;
+			String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+			if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+				response = gzipResponses.get(key);
+				if (response != null)
+					exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+			} else
+				response = responses.get(key);
+
+			if (response == null) {
+				numMissing.incrementAndGet();
+				System.out.println("Pike13 replay: no recorded response for " + exchange.getRequestURI());
+				exchange.sendResponseHeaders(404, -1);
+				return;
+			}
+
+			numServed.incrementAndGet();
+			exchange.getResponseHeaders().set("Content-Type", "application/vnd.api+json; charset=utf-8");
+			exchange.sendResponseHeaders(200, response.length);
+			OutputStream out = exchange.getResponseBody();
+			out.write(response);
+			out.close();
+
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private static byte[] readAll(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int numBytes;
+		while ((numBytes = in.read(buffer)) >= 0)
+			out.write(buffer, 0, numBytes);
+		return out.toByteArray();
+	}
+
+	private static byte[] gzip(byte[] data) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4 + 64);
+		GZIPOutputStream gzipOut = new GZIPOutputStream(out);
+		gzipOut.write(data);
+		gzipOut.close();
+		return out.toByteArray();
+	}
+
+	public static void main(String[] args) throws IOException {
+		// Args: corpus directory, port, latency msec, jitter msec
+		if (args.length < 2) {
+			System.out.println("Usage: Pike13ReplayServer <corpus dir> <port> [latency msec] [jitter msec]");
+			return;
+		}
+		Pike13ReplayServer replayServer = new Pike13ReplayServer(args[0], args.length > 2 ? Integer.parseInt(args[2]) : 0,
+				args.length > 3 ? Integer.parseInt(args[3]) : 0);
+		replayServer.start(Integer.parseInt(args[1]));
+		System.out.println("Serving " + replayServer.getNumResponses() + " Pike13 responses at " + replayServer.getBaseUrl());
+	}
+}
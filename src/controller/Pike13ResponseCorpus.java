@@ -0,0 +1,117 @@
+package controller;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Pike13ResponseCorpus: On-disk corpus of recorded Pike13 requests and
+ * responses, used to replay an import without the network.
+ *
+ * Each request is one gzip file in the corpus directory, named by a hash of
+ * the request path and body, holding the path, the query body and the
+ * decoded response body. Pike13Connect records into the corpus while
+ * Pike13ReplayServer serves from it.
+ */
+public class Pike13ResponseCorpus {
+	private static final String FILE_SUFFIX = ".pike13.gz";
+	private static final int FORMAT_VERSION = 1;
+
+	private File corpusDir;
+
+	public Pike13ResponseCorpus(String corpusDirName) {
+		corpusDir = new File(corpusDirName);
+	}
+
+	public void record(String path, String query, byte[] response) throws IOException {
+		if (!corpusDir.isDirectory() && !corpusDir.mkdirs())
+			throw new IOException("Cannot create corpus directory " + corpusDir);
+
+		// Write to a temp file first so a replay never sees half an entry
+		String key = getKey(path, query);
+		File tempFile = File.createTempFile("record", ".tmp", corpusDir);
+		DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(tempFile))));
+		try {
+			byte[] queryBytes = query.getBytes(StandardCharsets.UTF_8);
+			out.writeInt(FORMAT_VERSION);
+			out.writeUTF(path);
+			out.writeInt(queryBytes.length);
+			out.write(queryBytes);
+			out.writeInt(response.length);
+			out.write(response);
+
+		} finally {
+			out.close();
+		}
+
+		File entryFile = new File(corpusDir, hashKey(key) + FILE_SUFFIX);
+		if (entryFile.exists())
+			entryFile.delete(); // Latest recording wins
+		if (!tempFile.renameTo(entryFile)) {
+			tempFile.delete();
+			throw new IOException("Cannot write corpus entry " + entryFile);
+		}
+	}
+
+	public HashMap<String, byte[]> loadAll() throws IOException {
+		// Returns response bodies by request key
+		HashMap<String, byte[]> responses = new HashMap<String, byte[]>();
+		File[] entryFiles = corpusDir.listFiles();
+		if (entryFiles == null)
+			throw new IOException("Corpus directory " + corpusDir + " not found");
+
+		for (File entryFile : entryFiles) {
+			if (!entryFile.getName().endsWith(FILE_SUFFIX))
+				continue;
+
+			DataInputStream in = new DataInputStream(
+					new BufferedInputStream(new GZIPInputStream(new FileInputStream(entryFile))));
+			try {
+				if (in.readInt() != FORMAT_VERSION)
+					throw new IOException("Unknown corpus format in " + entryFile);
+
+				String path = in.readUTF();
+				byte[] queryBytes = new byte[in.readInt()];
+				in.readFully(queryBytes);
+				byte[] response = new byte[in.readInt()];
+				in.readFully(response);
+
+				responses.put(getKey(path, new String(queryBytes, StandardCharsets.UTF_8)), response);
+
+			} finally {
+				in.close();
+			}
+		}
+		return responses;
+	}
+
+	public static String getKey(String path, String query) {
+		// Core API queries are in the path and have no body
+		return path + "\n" + (query == null ? "" : query);
+	}
+
+	private static String hashKey(String key) {
+		try {
+			byte[] hash = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+			StringBuilder hex = new StringBuilder();
+			for (int i = 0; i < 16; i++)
+				hex.append(String.format("%02x", hash[i]));
+			return hex.toString();
+
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
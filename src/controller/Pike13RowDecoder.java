@@ -0,0 +1,239 @@
+package controller;
+
+import java.io.FilterInputStream;
+import java.io.InputStream;
+
+import javax.json.Json;
+import javax.json.stream.JsonParser;
+import javax.json.stream.JsonParser.Event;
+import javax.json.stream.JsonParsingException;
+
+/**
+ * Pike13RowDecoder: Streams a Pike13 reporting API page with JsonParser,
+ * handing each entry of data.attributes.rows to a RowHandler as it is parsed.
+ * No JSON object tree is built. The column values of each row are kept as
+ * typed values in a single Row, which is reused for every row on the page,
+ * so a handler must copy out what it needs before returning.
+ *
+ * has_more and last_key are returned in the PageInfo; all other keys are
+ * skipped.
+ */
+public class Pike13RowDecoder {
+	public static final int TYPE_NULL = 0;
+	public static final int TYPE_STRING = 1;
+	public static final int TYPE_NUMBER = 2;
+	public static final int TYPE_BOOLEAN = 3;
+	public static final int TYPE_OTHER = 4; // Nested array or object
+
+	public interface RowHandler {
+		void handleRow(Row row);
+	}
+
+	public static PageInfo decode(InputStream inputStream, RowHandler handler) {
+		// Leave the stream open so the caller can read it to the end for connection reuse
+		JsonParser parser = Json.createParser(new FilterInputStream(inputStream) {
+			@Override
+			public void close() {
+			}
+		});
+		try {
+			PageInfo pageInfo = new PageInfo();
+			boolean foundRows = false;
+
+			// Top level object: find data.attributes
+			expect(parser, Event.START_OBJECT);
+			while (parser.next() == Event.KEY_NAME) {
+				if (!parser.getString().equals("data")) {
+					skipValue(parser, parser.next());
+					continue;
+				}
+
+				expect(parser, Event.START_OBJECT);
+				while (parser.next() == Event.KEY_NAME) {
+					if (!parser.getString().equals("attributes")) {
+						skipValue(parser, parser.next());
+						continue;
+					}
+
+					expect(parser, Event.START_OBJECT);
+					while (parser.next() == Event.KEY_NAME) {
+						String key = parser.getString();
+						Event event = parser.next();
+
+						if (key.equals("rows") && event == Event.START_ARRAY) {
+							decodeRows(parser, handler);
+							foundRows = true;
+						} else if (key.equals("has_more") && (event == Event.VALUE_TRUE || event == Event.VALUE_FALSE))
+							pageInfo.hasMore = (event == Event.VALUE_TRUE);
+						else if (key.equals("last_key") && event == Event.VALUE_STRING)
+							pageInfo.lastKey = parser.getString();
+						else
+							skipValue(parser, event);
+					}
+				}
+			}
+
+			if (!foundRows)
+				throw new JsonParsingException("Page has no data.attributes.rows", parser.getLocation());
+			return pageInfo;
+
+		} finally {
+			parser.close();
+		}
+	}
+
+	private static void decodeRows(JsonParser parser, RowHandler handler) {
+		Row row = new Row();
+		Event event;
+
+		while ((event = parser.next()) != Event.END_ARRAY) {
+			if (event != Event.START_ARRAY)
+				throw new JsonParsingException("Row is not an array", parser.getLocation());
+
+			row.numColumns = 0;
+			while ((event = parser.next()) != Event.END_ARRAY) {
+				switch (event) {
+				case VALUE_STRING:
+					row.addColumn(TYPE_STRING, parser.getString());
+					break;
+				case VALUE_NUMBER:
+					row.addColumn(TYPE_NUMBER, parser.getString());
+					break;
+				case VALUE_TRUE:
+					row.addColumn(TYPE_BOOLEAN, "true");
+					break;
+				case VALUE_FALSE:
+					row.addColumn(TYPE_BOOLEAN, "false");
+					break;
+				case VALUE_NULL:
+					row.addColumn(TYPE_NULL, null);
+					break;
+				default:
+					skipValue(parser, event);
+					row.addColumn(TYPE_OTHER, null);
+					break;
+				}
+			}
+			handler.handleRow(row);
+		}
+	}
+
+	private static void expect(JsonParser parser, Event expected) {
+		if (parser.next() != expected)
+			throw new JsonParsingException("Expected " + expected, parser.getLocation());
+	}
+
+	private static void skipValue(JsonParser parser, Event event) {
+		// Skip nested arrays and objects; scalar values are already consumed
+		if (event != Event.START_ARRAY && event != Event.START_OBJECT)
+			return;
+
+		int depth = 1;
+		while (depth > 0) {
+			event = parser.next();
+			if (event == Event.START_ARRAY || event == Event.START_OBJECT)
+				depth++;
+			else if (event == Event.END_ARRAY || event == Event.END_OBJECT)
+				depth--;
+		}
+	}
+
+	public static class PageInfo {
+		private boolean hasMore = false;
+		private String lastKey = null;
+
+		public PageInfo() {
+		}
+
+		public PageInfo(boolean hasMore, String lastKey) {
+			this.hasMore = hasMore;
+			this.lastKey = lastKey;
+		}
+
+		public boolean hasMore() {
+			return hasMore;
+		}
+
+		public String getLastKey() {
+			return lastKey;
+		}
+	}
+
+	public static class Row {
+		private int numColumns = 0;
+		private int[] types = new int[64];
+		private String[] values = new String[64];
+
+		private void addColumn(int type, String value) {
+			if (numColumns == types.length) {
+				int[] newTypes = new int[numColumns * 2];
+				String[] newValues = new String[numColumns * 2];
+				System.arraycopy(types, 0, newTypes, 0, numColumns);
+				System.arraycopy(values, 0, newValues, 0, numColumns);
+				types = newTypes;
+				values = newValues;
+			}
+			types[numColumns] = type;
+			values[numColumns] = value;
+			numColumns++;
+		}
+
+		public int size() {
+			return numColumns;
+		}
+
+		public int getType(int idx) {
+			return idx < numColumns ? types[idx] : TYPE_NULL;
+		}
+
+		public boolean isNull(int idx) {
+			return getType(idx) == TYPE_NULL;
+		}
+
+		public String getString(int idx) {
+			// Null is returned as an empty string, the same as Pike13Connect.stripQuotes
+			if (idx >= numColumns || values[idx] == null)
+				return "";
+			return values[idx];
+		}
+
+		public String getText(int idx) {
+			// JSON text of a number or null column, as used for ID's
+			if (idx >= numColumns || types[idx] == TYPE_NULL)
+				return "null";
+			else if (types[idx] == TYPE_STRING)
+				return "\"" + values[idx] + "\"";
+			return values[idx];
+		}
+
+		public int getInt(int idx) {
+			checkNumber(idx);
+			try {
+				return Integer.parseInt(values[idx]);
+
+			} catch (NumberFormatException e) {
+				return (int) Double.parseDouble(values[idx]);
+			}
+		}
+
+		public double getDouble(int idx) {
+			checkNumber(idx);
+			return Double.parseDouble(values[idx]);
+		}
+
+		public boolean getBoolean(int idx) {
+			// JSON true, or the "t" Pike13 uses for boolean fields
+			if (idx >= numColumns)
+				return false;
+			else if (types[idx] == TYPE_BOOLEAN)
+				return values[idx].equals("true");
+			return types[idx] == TYPE_STRING && values[idx].equals("t");
+		}
+
+		private void checkNumber(int idx) {
+			// Same failure as JsonArray.getInt for a column that is not a number
+			if (getType(idx) != TYPE_NUMBER)
+				throw new ClassCastException("Pike13 column " + idx + " is not a number");
+		}
+	}
+}
@@ -2,14 +2,22 @@ package controller;
 
 import java.net.HttpURLConnection;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
-import javax.json.JsonArray;
-import javax.json.JsonObject;
+import org.joda.time.Days;
+import org.joda.time.LocalDate;
 
+import model.LogDataModel;
 import model.SalesForceAttendanceModel;
 import model.SalesForceStaffHoursModel;
 import model.StaffMemberModel;
 import model.StudentImportModel;
+import model.StudentNameModel;
 
 public class Pike13SalesforceImport {
 	// Custom field names for client data
@@ -243,6 +251,19 @@ public class Pike13SalesforceImport {
 			+ "                                        [\"eq\",\"service_category\",\"leave\"]]]]],"
 			+ "                     [\"eq\",\"service_state\",\"active\"]]]}}}";
 
+	// Sharded enrollment filters: one date range of the window, or the summer slam,
+	// workshops and leave after the window
+	private final String getEnrollmentSalesForceRange = "},"
+			+ "\"filter\":[\"and\",[[\"btw\",\"service_date\",[\"0000-00-00\",\"1111-11-11\"]],"
+			+ "                     [\"eq\",\"service_state\",\"active\"]]]}}}";
+
+	private final String getEnrollmentSalesForceFuture = "},"
+			+ "\"filter\":[\"and\",[[\"gt\",\"service_date\",\"2222-22-22\"],"
+			+ "                     [\"or\",[[\"starts\",\"service_category\",\"class jslam\"],"
+			+ "                              [\"starts\",\"service_category\",\"works\"],"
+			+ "                              [\"eq\",\"service_category\",\"leave\"]]],"
+			+ "                     [\"eq\",\"service_state\",\"active\"]]]}}}";
+
 	// Get staff member data
 	private final String getStaffMemberData = "{\"data\":{\"type\":\"queries\","
 			// Get attributes: fields, page limit and filters
@@ -290,300 +311,438 @@ public class Pike13SalesforceImport {
 			+ "                     [\"wo\",\"home_location_name\",\"Tax ID#\"]]]}}}";
 
 	Pike13Connect pike13Conn;
+	Pike13Pager pager;
+	private int attendanceShards = 1;
+	private boolean verifyAttendanceShards = false;
+	private int clientShards = 1;
+	private boolean verifyClientShards = false;
 
 	public Pike13SalesforceImport(Pike13Connect pike13Conn) {
 		this.pike13Conn = pike13Conn;
+		pager = new Pike13Pager(pike13Conn);
 	}
 
-	public ArrayList<StudentImportModel> getClientsForSfImport(boolean isAcctMgr) {
-		ArrayList<StudentImportModel> studentList = new ArrayList<StudentImportModel>();
-		boolean hasMore = false;
-		String lastKey = "";
-
-		do {
-			// URL connection with authorization
-			HttpURLConnection conn;
-
-			// Send the query (set dependents not empty for manager)
-			String cmd2;
-			if (isAcctMgr)
-				cmd2 = getClientDataForSF2adult;
-			else
-				cmd2 = getClientDataForSF2student;
-			if (hasMore)
-				conn = pike13Conn.sendQueryToUrl("clients", getClientDataForSF + ",\"starting_after\":\"" + lastKey + "\"" + cmd2, false);
-			else
-				conn = pike13Conn.sendQueryToUrl("clients", getClientDataForSF + cmd2, false);
+	public void setClientShards(int numShards, boolean verify) {
+		// Number of person_id ranges fetched in parallel (1 = single query); verify compares with the single query
+		clientShards = Math.max(1, numShards);
+		verifyClientShards = verify;
+	}
 
-			// Check result
-			if (conn == null)
-				return null;
+	public void setAttendanceShards(int numShards, boolean verify) {
+		// Number of date ranges fetched in parallel (1 = single query); verify compares with the single query
+		attendanceShards = Math.max(1, numShards);
+		verifyAttendanceShards = verify;
+	}
 
-			// Get input stream and read data
-			JsonObject jsonObj = pike13Conn.readInputStream(conn);
-			if (jsonObj == null) {
-				conn.disconnect();
-				return null;
+	public ArrayList<StudentImportModel> getClientsForSfImport(boolean isAcctMgr) {
+		// Set dependents not empty for manager
+		String cmd2;
+		if (isAcctMgr)
+			cmd2 = getClientDataForSF2adult;
+		else
+			cmd2 = getClientDataForSF2student;
+
+		if (clientShards <= 1)
+			return getClientPages(cmd2);
+
+		// Fetch person_id ranges in parallel; use single query if a range fails or when verifying
+		ArrayList<StudentImportModel> studentList = new PersonIdRangeFetcher<StudentImportModel>(
+				new ClientPageSource(cmd2), clientShards).fetchAll();
+		if (studentList == null || verifyClientShards) {
+			ArrayList<StudentImportModel> serialList = getClientPages(cmd2);
+
+			if (studentList != null && serialList != null) {
+				String mismatch = compareClients(studentList, serialList);
+				if (mismatch == null)
+					System.out.println("Sharded clients match single query: " + studentList.size() + " rows");
+				else
+					MySqlAccess.insertLogData(LogDataModel.PIKE13_IMPORT_ERROR, new StudentNameModel("", "", false), 0,
+							": Sharded clients incomplete, " + mismatch);
 			}
-			JsonArray jsonArray = jsonObj.getJsonArray("rows");
-
-			for (int i = 0; i < jsonArray.size(); i++) {
-				// Get fields for each person
-				JsonArray personArray = (JsonArray) jsonArray.get(i);
-
-				// Get fields for this Json array entry
-				StudentImportModel model = new StudentImportModel(personArray.getInt(CLIENT_SF_ID_IDX),
-						personArray.getString(CLIENT_FIRST_NAME_IDX),
-						personArray.getString(CLIENT_LAST_NAME_IDX),
-						pike13Conn.stripQuotes(personArray.get(CLIENT_GENDER_IDX).toString()),
-						pike13Conn.stripQuotes(personArray.get(CLIENT_BIRTHDATE_IDX).toString()),
-						pike13Conn.stripQuotes(personArray.get(CLIENT_CURR_GRADE_IDX).toString()),
-						pike13Conn.stripQuotes(personArray.get(CLIENT_GRAD_YEAR_IDX).toString()),
-						pike13Conn.stripQuotes(personArray.get(CLIENT_FIRST_VISIT_IDX).toString()),
-						pike13Conn.stripQuotes(personArray.get(CLIENT_HOME_LOC_LONG_IDX).toString()),
-						pike13Conn.stripQuotes(personArray.get(CLIENT_EMAIL_IDX).toString()),
-						pike13Conn.stripQuotes(personArray.get(CLIENT_PHONE_1_IDX).toString()),
-						pike13Conn.stripQuotes(personArray.get(CLIENT_FULL_ADDRESS_IDX).toString()),
-						pike13Conn.stripQuotes(personArray.get(CLIENT_SCHOOL_NAME_IDX).toString()),
-						pike13Conn.stripQuotes(personArray.get(CLIENT_GITHUB_IDX).toString()),
-						personArray.getInt(CLIENT_COMPLETED_VISITS_IDX),
-						personArray.getInt(CLIENT_FUTURE_VISITS_IDX),
-						pike13Conn.stripQuotes(personArray.get(CLIENT_HAS_SIGNED_WAIVER_IDX).toString()).equals("t") ? true : false,
-						pike13Conn.stripQuotes(personArray.get(CLIENT_HAS_MEMBERSHIP_IDX).toString()).equals("t") ? "Yes" : "No",
-						pike13Conn.stripQuotes(personArray.get(CLIENT_PASS_ON_FILE_IDX).toString()),
-						false, // CLIENT_STOP_EMAIL_IDX removed from Pike13
-						pike13Conn.stripQuotes(personArray.get(CLIENT_FINANCIAL_AID_IDX).toString()).equals("t") ? true : false,
-						pike13Conn.stripQuotes(personArray.get(CLIENT_FINANCIAL_AID_PERCENT_IDX).toString()),
-						pike13Conn.stripQuotes(personArray.get(CLIENT_GRANT_INFO_IDX).toString()),
-						null, // CLIENT_LEAVE_REASON_IDX removed from Pike13
-						pike13Conn.stripQuotes(personArray.get(CLIENT_HEAR_ABOUT_US_IDX).toString()),
-						pike13Conn.stripQuotes(personArray.get(CLIENT_WHO_TO_THANK_IDX).toString()),
-						pike13Conn.stripQuotes(personArray.get(CLIENT_EMERG_CONTACT_NAME_IDX).toString()),
-						pike13Conn.stripQuotes(personArray.get(CLIENT_EMERG_CONTACT_PHONE_IDX).toString()),
-						pike13Conn.stripQuotes(personArray.get(CLIENT_EMERG_CONTACT_EMAIL_IDX).toString()),
-						"", // CLIENT_EXTRA_PHONE_IDX removed from Pike13
-						pike13Conn.stripQuotes(personArray.get(CLIENT_ACCOUNT_MGR_NAMES_IDX).toString()),
-						pike13Conn.stripQuotes(personArray.get(CLIENT_ACCOUNT_MGR_PHONES_IDX).toString()),
-						pike13Conn.stripQuotes(personArray.get(CLIENT_ACCOUNT_MGR_EMAILS_IDX).toString()),
-						pike13Conn.stripQuotes(personArray.get(CLIENT_DEPENDENT_NAMES_IDX).toString()),
-						pike13Conn.stripQuotes(personArray.get(CLIENT_CURRENT_LEVEL_IDX).toString()));
-				
-				model.addMoreFields (pike13Conn.stripQuotes(personArray.get(CLIENT_RELATIONSHIP_IDX).toString()),
-						"", // CLIENT_PHONE_NUM_TYPE_IDX removed from Pike13
-						"", // CLIENT_EXTRA_PHONE_TYPE_IDX removed from Pike13
-						pike13Conn.stripQuotes(personArray.get(CLIENT_PREF_CONTACT_METHOD_IDX).toString()),
-						pike13Conn.stripQuotes(personArray.get(CLIENT_PRIMARY_LANGUAGE_IDX).toString()),
-						null, // CLIENT_PREF_CONTACT_LANG_IDX removed from Pike13
-						pike13Conn.stripQuotes(personArray.get(CLIENT_EMERG_RELATION_TO_STUD_IDX).toString()),
-						pike13Conn.stripQuotes(personArray.get(CLIENT_PREF_CLASS_LOC_IDX).toString()),
-						pike13Conn.stripQuotes(personArray.get(CLIENT_STUD_ADDR_SAME_IDX).toString()).equals("t") ? true : false,
-						pike13Conn.stripQuotes(personArray.get(CLIENT_STUD_ADDR_IF_DIFF_IDX).toString()),
-						pike13Conn.stripQuotes(personArray.get(CLIENT_WORK_WITH_COMPUTER_IDX).toString()).equals("t") ? true : false,
-						pike13Conn.stripQuotes(personArray.get(CLIENT_SCHOOL_COMPLETED_1_IDX).toString()),
-						pike13Conn.stripQuotes(personArray.get(CLIENT_SCHOOL_COMPLETED_2_IDX).toString()),
-						pike13Conn.stripQuotes(personArray.get(CLIENT_STUDENT_ETHNICITY_IDX).toString()),
-						pike13Conn.stripQuotes(personArray.get(CLIENT_STUDENT_RACE_IDX).toString()),
-						pike13Conn.stripQuotes(personArray.get(CLIENT_TECH_ACCESS_IDX).toString()),
-						pike13Conn.stripQuotes(personArray.get(CLIENT_QUESTIONS_COMMENTS_IDX).toString()));
-
-				studentList.add(model);
+			if (serialList != null)
+				return serialList;
+		}
+		return studentList;
+	}
+
+	private ArrayList<StudentImportModel> getClientPages(String cmd2) {
+		final ArrayList<StudentImportModel> studentList = new ArrayList<StudentImportModel>();
+
+		// Next page is fetched while rows of this page are read
+		boolean success = pager.fetchAll("clients", getClientDataForSF, cmd2, new Pike13RowDecoder.RowHandler() {
+			public void handleRow(Pike13RowDecoder.Row personArray) {
+				studentList.add(parseClientRow(personArray));
 			}
+		});
 
-			// Check to see if there are more pages
-			hasMore = jsonObj.getBoolean("has_more");
-			if (hasMore)
-				lastKey = jsonObj.getString("last_key");
+		return success ? studentList : null;
+	}
 
-			conn.disconnect();
+	private StudentImportModel parseClientRow(Pike13RowDecoder.Row personArray) {
+		// Get fields for this row
+		StudentImportModel model = new StudentImportModel(personArray.getInt(CLIENT_SF_ID_IDX),
+				personArray.getString(CLIENT_FIRST_NAME_IDX),
+				personArray.getString(CLIENT_LAST_NAME_IDX),
+				personArray.getString(CLIENT_GENDER_IDX),
+				personArray.getString(CLIENT_BIRTHDATE_IDX),
+				personArray.getString(CLIENT_CURR_GRADE_IDX),
+				personArray.getString(CLIENT_GRAD_YEAR_IDX),
+				personArray.getString(CLIENT_FIRST_VISIT_IDX),
+				personArray.getString(CLIENT_HOME_LOC_LONG_IDX),
+				personArray.getString(CLIENT_EMAIL_IDX),
+				personArray.getString(CLIENT_PHONE_1_IDX),
+				personArray.getString(CLIENT_FULL_ADDRESS_IDX),
+				personArray.getString(CLIENT_SCHOOL_NAME_IDX),
+				personArray.getString(CLIENT_GITHUB_IDX),
+				personArray.getInt(CLIENT_COMPLETED_VISITS_IDX),
+				personArray.getInt(CLIENT_FUTURE_VISITS_IDX),
+				personArray.getString(CLIENT_HAS_SIGNED_WAIVER_IDX).equals("t") ? true : false,
+				personArray.getString(CLIENT_HAS_MEMBERSHIP_IDX).equals("t") ? "Yes" : "No",
+				personArray.getString(CLIENT_PASS_ON_FILE_IDX),
+				false, // CLIENT_STOP_EMAIL_IDX removed from Pike13
+				personArray.getString(CLIENT_FINANCIAL_AID_IDX).equals("t") ? true : false,
+				personArray.getString(CLIENT_FINANCIAL_AID_PERCENT_IDX),
+				personArray.getString(CLIENT_GRANT_INFO_IDX),
+				null, // CLIENT_LEAVE_REASON_IDX removed from Pike13
+				personArray.getString(CLIENT_HEAR_ABOUT_US_IDX),
+				personArray.getString(CLIENT_WHO_TO_THANK_IDX),
+				personArray.getString(CLIENT_EMERG_CONTACT_NAME_IDX),
+				personArray.getString(CLIENT_EMERG_CONTACT_PHONE_IDX),
+				personArray.getString(CLIENT_EMERG_CONTACT_EMAIL_IDX),
+				"", // CLIENT_EXTRA_PHONE_IDX removed from Pike13
+				personArray.getString(CLIENT_ACCOUNT_MGR_NAMES_IDX),
+				personArray.getString(CLIENT_ACCOUNT_MGR_PHONES_IDX),
+				personArray.getString(CLIENT_ACCOUNT_MGR_EMAILS_IDX),
+				personArray.getString(CLIENT_DEPENDENT_NAMES_IDX),
+				personArray.getString(CLIENT_CURRENT_LEVEL_IDX));
+		
+		model.addMoreFields (personArray.getString(CLIENT_RELATIONSHIP_IDX),
+				"", // CLIENT_PHONE_NUM_TYPE_IDX removed from Pike13
+				"", // CLIENT_EXTRA_PHONE_TYPE_IDX removed from Pike13
+				personArray.getString(CLIENT_PREF_CONTACT_METHOD_IDX),
+				personArray.getString(CLIENT_PRIMARY_LANGUAGE_IDX),
+				null, // CLIENT_PREF_CONTACT_LANG_IDX removed from Pike13
+				personArray.getString(CLIENT_EMERG_RELATION_TO_STUD_IDX),
+				personArray.getString(CLIENT_PREF_CLASS_LOC_IDX),
+				personArray.getString(CLIENT_STUD_ADDR_SAME_IDX).equals("t") ? true : false,
+				personArray.getString(CLIENT_STUD_ADDR_IF_DIFF_IDX),
+				personArray.getString(CLIENT_WORK_WITH_COMPUTER_IDX).equals("t") ? true : false,
+				personArray.getString(CLIENT_SCHOOL_COMPLETED_1_IDX),
+				personArray.getString(CLIENT_SCHOOL_COMPLETED_2_IDX),
+				personArray.getString(CLIENT_STUDENT_ETHNICITY_IDX),
+				personArray.getString(CLIENT_STUDENT_RACE_IDX),
+				personArray.getString(CLIENT_TECH_ACCESS_IDX),
+				personArray.getString(CLIENT_QUESTIONS_COMMENTS_IDX));
+
+		return model;
+	}
 
-		} while (hasMore);
+	private String compareClients(ArrayList<StudentImportModel> shardedList, ArrayList<StudentImportModel> serialList) {
+		// Returns null if both lists have the same clients, otherwise a description of the difference
+		if (shardedList.size() != serialList.size())
+			return shardedList.size() + " rows vs " + serialList.size();
 
-		return studentList;
+		HashMap<Integer, Integer> clientCounts = new HashMap<Integer, Integer>();
+		for (StudentImportModel student : serialList) {
+			Integer count = clientCounts.get(student.getClientID());
+			clientCounts.put(student.getClientID(), count == null ? 1 : count + 1);
+		}
+		for (StudentImportModel student : shardedList) {
+			Integer count = clientCounts.get(student.getClientID());
+			if (count == null)
+				return "extra client " + student.getClientID();
+			else if (count == 1)
+				clientCounts.remove(student.getClientID());
+			else
+				clientCounts.put(student.getClientID(), count - 1);
+		}
+		return null;
 	}
 
-	public ArrayList<SalesForceAttendanceModel> getSalesForceAttendance(String startDate, String endDate) {
-		// Get attendance for export to SalesForce database
-		ArrayList<SalesForceAttendanceModel> eventList = new ArrayList<SalesForceAttendanceModel>();
-		boolean hasMore = false;
-		String lastKey = "";
+	private class ClientPageSource implements PersonIdRangeFetcher.PageSource<StudentImportModel> {
+		// Adds person_id order and range to the client filter
+		private static final String FILTER_START = "\"filter\":[\"and\",[";
+		private String cmd2;
+
+		private ClientPageSource(String cmd2) {
+			this.cmd2 = cmd2;
+		}
+
+		public int getMaxPersonID() {
+			// Get the last person_id only
+			String query = "{\"data\":{\"type\":\"queries\",\"attributes\":{\"fields\":[\"person_id\"],\"page\":{\"limit\":1"
+					+ cmd2.replace(FILTER_START, "\"sort\":[\"person_id-\"]," + FILTER_START);
+
+			HttpURLConnection conn = pike13Conn.sendQueryToUrl("clients", query, false);
+			if (conn == null)
+				return -1;
+
+			final int[] maxPersonID = { 0 };
+			Pike13RowDecoder.PageInfo page = pike13Conn.readRows(conn, new Pike13RowDecoder.RowHandler() {
+				public void handleRow(Pike13RowDecoder.Row row) {
+					maxPersonID[0] = row.getInt(0);
+				}
+			});
+			pike13Conn.releaseConnection(conn);
+			return (page == null) ? -1 : maxPersonID[0];
+		}
+
+		public PersonIdRangeFetcher.Page<StudentImportModel> getPage(int afterID, int beforeID) {
+			String query = getClientDataForSF + cmd2.replace(FILTER_START, "\"sort\":[\"person_id+\"]," + FILTER_START
+					+ "[\"gt\",\"person_id\"," + afterID + "],[\"lt\",\"person_id\"," + beforeID + "],");
+
+			HttpURLConnection conn = pike13Conn.sendQueryToUrl("clients", query, false);
+			if (conn == null)
+				return null;
+
+			final ArrayList<StudentImportModel> rows = new ArrayList<StudentImportModel>();
+			Pike13RowDecoder.PageInfo page = pike13Conn.readRows(conn, new Pike13RowDecoder.RowHandler() {
+				public void handleRow(Pike13RowDecoder.Row personArray) {
+					rows.add(parseClientRow(personArray));
+				}
+			});
+			pike13Conn.releaseConnection(conn);
+			return (page == null) ? null : new PersonIdRangeFetcher.Page<StudentImportModel>(rows, page.hasMore());
+		}
+
+		public int getPersonID(StudentImportModel row) {
+			return row.getClientID();
+		}
+	}
 
+	public ArrayList<SalesForceAttendanceModel> getSalesForceAttendance(String startDate, String endDate) {
 		// Insert start date and end date into enrollment command string
 		String enroll2 = getEnrollmentSalesForce2.replaceFirst("0000-00-00", startDate);
 		enroll2 = enroll2.replaceFirst("1111-11-11", endDate);
 		enroll2 = enroll2.replace("2222-22-22", startDate);
 
-		do {
-			// Get URL connection and send the query; add page info if necessary
-			HttpURLConnection conn;
-			if (hasMore)
-				conn = pike13Conn.sendQueryToUrl("enrollments", getEnrollmentSalesForce + ",\"starting_after\":\"" + lastKey + "\"" + enroll2, false);
-			else
-				conn = pike13Conn.sendQueryToUrl("enrollments", getEnrollmentSalesForce + enroll2, false);
-
-			if (conn == null)
-				return null;
+		if (attendanceShards <= 1)
+			return getEnrollmentPages(enroll2);
+
+		// Fetch date ranges in parallel; use single query if a shard fails or when verifying
+		ArrayList<SalesForceAttendanceModel> eventList = getShardedAttendance(startDate, endDate);
+		if (eventList == null || verifyAttendanceShards) {
+			ArrayList<SalesForceAttendanceModel> serialList = getEnrollmentPages(enroll2);
+
+			if (eventList != null && serialList != null) {
+				String mismatch = compareAttendance(eventList, serialList);
+				if (mismatch == null)
+					System.out.println("Sharded attendance matches single query: " + eventList.size() + " rows");
+				else
+					MySqlAccess.insertLogData(LogDataModel.PIKE13_IMPORT_ERROR, new StudentNameModel("", "", false), 0,
+							": Sharded attendance incomplete, " + mismatch);
+			}
+			if (serialList != null)
+				return serialList;
+		}
+		return eventList;
+	}
 
-			// Get input stream and read data
-			JsonObject jsonObj = pike13Conn.readInputStream(conn);
-			if (jsonObj == null) {
-				conn.disconnect();
-				return null;
+	private ArrayList<SalesForceAttendanceModel> getShardedAttendance(String startDate, String endDate) {
+		// Split the date window into consecutive, non-overlapping ranges
+		LocalDate start = LocalDate.parse(startDate);
+		int numDays = Days.daysBetween(start, LocalDate.parse(endDate)).getDays() + 1;
+		int numShards = Math.min(attendanceShards, Math.max(1, numDays));
+
+		// Last shard gets the future summer slam, workshops and leave after the window
+		final String[] filters = new String[numShards + 1];
+		String[] shardStart = new String[numShards + 1];
+		String[] shardEnd = new String[numShards + 1];
+
+		for (int i = 0; i < numShards; i++) {
+			shardStart[i] = start.plusDays((int) ((long) numDays * i / numShards)).toString("yyyy-MM-dd");
+			shardEnd[i] = start.plusDays((int) ((long) numDays * (i + 1) / numShards) - 1).toString("yyyy-MM-dd");
+			filters[i] = getEnrollmentSalesForceRange.replaceFirst("0000-00-00", shardStart[i])
+					.replaceFirst("1111-11-11", shardEnd[i]);
+		}
+		filters[numShards] = getEnrollmentSalesForceFuture.replace("2222-22-22", endDate);
+
+		ExecutorService executor = Executors.newFixedThreadPool(filters.length);
+		try {
+			ArrayList<Future<ArrayList<SalesForceAttendanceModel>>> shards = new ArrayList<Future<ArrayList<SalesForceAttendanceModel>>>();
+			for (int i = 0; i < filters.length; i++) {
+				final String filter = filters[i];
+				shards.add(executor.submit(new Callable<ArrayList<SalesForceAttendanceModel>>() {
+					public ArrayList<SalesForceAttendanceModel> call() {
+						return getEnrollmentPages(filter);
+					}
+				}));
 			}
-			JsonArray jsonArray = jsonObj.getJsonArray("rows");
-
-			for (int i = 0; i < jsonArray.size(); i++) {
-				// Get fields for each event
-				JsonArray eventArray = (JsonArray) jsonArray.get(i);
-
-				// Add event to list
-				eventList.add(new SalesForceAttendanceModel(eventArray.get(SF_PERSON_ID_IDX).toString(),
-						pike13Conn.stripQuotes(eventArray.get(SF_FULL_NAME_IDX).toString()),
-						pike13Conn.stripQuotes(eventArray.get(SF_SERVICE_DATE_IDX).toString()),
-						pike13Conn.stripQuotes(eventArray.get(SF_SERVICE_TIME_IDX).toString()),
-						pike13Conn.stripQuotes(eventArray.get(SF_END_AT_IDX).toString()).substring(11, 16),
-						eventArray.getJsonNumber(SF_DURATION_IDX).doubleValue(),
-						pike13Conn.stripQuotes(eventArray.get(SF_EVENT_NAME_IDX).toString()),
-						pike13Conn.stripQuotes(eventArray.get(SF_SERVICE_CATEGORY_IDX).toString()),
-						pike13Conn.stripQuotes(eventArray.get(SF_SERVICE_NAME_IDX).toString()),
-						pike13Conn.stripQuotes(eventArray.get(SF_STATE_IDX).toString()),
-						eventArray.get(SF_VISIT_ID_IDX).toString(),
-						eventArray.get(SF_EVENT_OCCURRENCE_ID_IDX).toString(),
-						pike13Conn.stripQuotes(eventArray.get(SF_LOCATION_NAME_IDX).toString()),
-						pike13Conn.stripQuotes(eventArray.get(SF_INSTRUCTOR_NAMES_IDX).toString())));
+
+			// Merge in date order; each row must be inside its shard's range
+			ArrayList<SalesForceAttendanceModel> eventList = new ArrayList<SalesForceAttendanceModel>();
+			for (int i = 0; i < filters.length; i++) {
+				ArrayList<SalesForceAttendanceModel> shardList = shards.get(i).get();
+				if (shardList == null)
+					return null;
+
+				for (SalesForceAttendanceModel event : shardList) {
+					String serviceDate = event.getServiceDate();
+					boolean inRange = (i < numShards)
+							? serviceDate.compareTo(shardStart[i]) >= 0 && serviceDate.compareTo(shardEnd[i]) <= 0
+							: serviceDate.compareTo(endDate) > 0;
+
+					if (!inRange) {
+						MySqlAccess.insertLogData(LogDataModel.PIKE13_IMPORT_ERROR, new StudentNameModel("", "", false),
+								0, ": Sharded attendance date " + serviceDate + " outside shard " + (i + 1) + " of "
+										+ filters.length);
+						return null;
+					}
+				}
+				eventList.addAll(shardList);
 			}
+			return eventList;
 
-			// Check to see if there are more pages
-			hasMore = jsonObj.getBoolean("has_more");
-			if (hasMore)
-				lastKey = jsonObj.getString("last_key");
+		} catch (InterruptedException | ExecutionException e) {
+			MySqlAccess.insertLogData(LogDataModel.PIKE13_IMPORT_ERROR, new StudentNameModel("", "", false), 0,
+					": Sharded attendance: " + e.getMessage());
+			return null;
 
-			conn.disconnect();
+		} finally {
+			executor.shutdown();
+		}
+	}
 
-		} while (hasMore);
+	private String compareAttendance(ArrayList<SalesForceAttendanceModel> shardedList,
+			ArrayList<SalesForceAttendanceModel> serialList) {
+		// Returns null if both lists have the same visits, otherwise a description of the difference
+		if (shardedList.size() != serialList.size())
+			return shardedList.size() + " rows vs " + serialList.size();
+
+		HashMap<String, Integer> visitCounts = new HashMap<String, Integer>();
+		for (SalesForceAttendanceModel event : serialList) {
+			String key = getVisitKey(event);
+			Integer count = visitCounts.get(key);
+			visitCounts.put(key, count == null ? 1 : count + 1);
+		}
+		for (SalesForceAttendanceModel event : shardedList) {
+			String key = getVisitKey(event);
+			Integer count = visitCounts.get(key);
+			if (count == null)
+				return "extra visit " + key;
+			else if (count == 1)
+				visitCounts.remove(key);
+			else
+				visitCounts.put(key, count - 1);
+		}
+		return null;
+	}
 
-		return eventList;
+	private static String getVisitKey(SalesForceAttendanceModel event) {
+		return event.getVisitID() + "/" + event.getClientID() + "/" + event.getServiceDate();
+	}
+
+	private ArrayList<SalesForceAttendanceModel> getEnrollmentPages(String enroll2) {
+		// Get attendance for export to SalesForce database
+		final ArrayList<SalesForceAttendanceModel> eventList = new ArrayList<SalesForceAttendanceModel>();
+
+		// Next page is fetched while rows of this page are read
+		boolean success = pager.fetchAll("enrollments", getEnrollmentSalesForce, enroll2,
+				new Pike13RowDecoder.RowHandler() {
+					public void handleRow(Pike13RowDecoder.Row eventArray) {
+						// Add event to list
+						eventList.add(new SalesForceAttendanceModel(eventArray.getText(SF_PERSON_ID_IDX),
+								eventArray.getString(SF_FULL_NAME_IDX),
+								eventArray.getString(SF_SERVICE_DATE_IDX),
+								eventArray.getString(SF_SERVICE_TIME_IDX),
+								eventArray.getString(SF_END_AT_IDX).substring(11, 16),
+								eventArray.getDouble(SF_DURATION_IDX),
+								eventArray.getString(SF_EVENT_NAME_IDX),
+								eventArray.getString(SF_SERVICE_CATEGORY_IDX),
+								eventArray.getString(SF_SERVICE_NAME_IDX),
+								eventArray.getString(SF_STATE_IDX),
+								eventArray.getText(SF_VISIT_ID_IDX),
+								eventArray.getText(SF_EVENT_OCCURRENCE_ID_IDX),
+								eventArray.getString(SF_LOCATION_NAME_IDX),
+								eventArray.getString(SF_INSTRUCTOR_NAMES_IDX)));
+					}
+				});
+
+		return success ? eventList : null;
 	}
 
 	public ArrayList<StaffMemberModel> getSalesForceStaffMembers() {
-		ArrayList<StaffMemberModel> staffList = new ArrayList<StaffMemberModel>();
+		final ArrayList<StaffMemberModel> staffList = new ArrayList<StaffMemberModel>();
 
 		// Get URL connection and send the query
 		HttpURLConnection conn = pike13Conn.sendQueryToUrl("staff_members", getStaffMemberData, false);
 		if (conn == null)
 			return null;
 
-		// Get input stream and read data
-		JsonObject jsonObj = pike13Conn.readInputStream(conn);
-		if (jsonObj == null) {
-			conn.disconnect();
-			return null;
-		}
-		JsonArray jsonArray = jsonObj.getJsonArray("rows");
-
-		for (int i = 0; i < jsonArray.size(); i++) {
-			// Get fields for each staff member
-			JsonArray staffArray = (JsonArray) jsonArray.get(i);
-
-			// Get fields for this Json array entry
-			String sfClientID = null;
-			if (staffArray.get(TEACHER_SF_CLIENT_ID_IDX) != null)
-				sfClientID = pike13Conn.stripQuotes(staffArray.get(TEACHER_SF_CLIENT_ID_IDX).toString());
-
-			staffList.add(new StaffMemberModel(staffArray.get(TEACHER_CLIENT_ID_IDX).toString(), sfClientID,
-					staffArray.getString(TEACHER_FIRST_NAME_IDX), staffArray.getString(TEACHER_LAST_NAME_IDX),
-					pike13Conn.stripQuotes(staffArray.get(TEACHER_CATEGORY_IDX).toString()),
-					pike13Conn.stripQuotes(staffArray.get(TEACHER_ROLE_IDX).toString()),
-					pike13Conn.stripQuotes(staffArray.get(TEACHER_OCCUPATION_IDX).toString()),
-					pike13Conn.stripQuotes(staffArray.get(TEACHER_EMPLOYER_IDX).toString()),
-					pike13Conn.stripQuotes(staffArray.get(TEACHER_START_INFO_IDX).toString()),
-					pike13Conn.stripQuotes(staffArray.get(TEACHER_GENDER_IDX).toString()),
-					pike13Conn.stripQuotes(staffArray.get(TEACHER_BIRTHDATE_IDX).toString()),
-					pike13Conn.stripQuotes(staffArray.get(TEACHER_PHONE_IDX).toString()),
-					"", //pike13Conn.stripQuotes(staffArray.get(TEACHER_HOME_PHONE_IDX).toString()),
-					pike13Conn.stripQuotes(staffArray.get(TEACHER_ADDRESS_IDX).toString()),
-					pike13Conn.stripQuotes(staffArray.get(TEACHER_EMAIL_IDX).toString()),
-					pike13Conn.stripQuotes(staffArray.get(TEACHER_ALTERNATE_EMAIL_IDX).toString()),
-					pike13Conn.stripQuotes(staffArray.get(TEACHER_HOME_LOCATION_IDX).toString()),
-					pike13Conn.stripQuotes(staffArray.get(TEACHER_GITHUB_USER_IDX).toString()),
-					staffArray.getInt(TEACHER_PAST_EVENTS_IDX),
-					staffArray.getInt(TEACHER_FUTURE_EVENTS_IDX),
-					pike13Conn.stripQuotes(staffArray.get(TEACHER_KEY_HOLDER_IDX).toString()).equals("t") ? true : false,
-					pike13Conn.stripQuotes(staffArray.get(TEACHER_LIVE_SCAN_DATE_IDX).toString()),
-					pike13Conn.stripQuotes(staffArray.get(TEACHER_T_SHIRT_IDX).toString()),
-					pike13Conn.stripQuotes(staffArray.get(TEACHER_WHERE_DID_YOU_HEAR_IDX).toString()),
-					pike13Conn.stripQuotes(staffArray.get(TEACHER_LEAVE_IDX).toString()),
-					pike13Conn.stripQuotes(staffArray.get(TEACHER_EMERG_NAME_IDX).toString()),
-					pike13Conn.stripQuotes(staffArray.get(TEACHER_EMERG_EMAIL_IDX).toString()),
-					pike13Conn.stripQuotes(staffArray.get(TEACHER_EMERG_PHONE_IDX).toString()),
-					pike13Conn.stripQuotes(staffArray.get(TEACHER_CURR_BOARD_MEMBER_IDX).toString()).equalsIgnoreCase("t") ? true : false,
-					pike13Conn.stripQuotes(staffArray.get(TEACHER_CURR_STAFF_MEMBER_IDX).toString()).equalsIgnoreCase("t") ? true : false,
-					pike13Conn.stripQuotes(staffArray.get(TEACHER_IS_ALSO_CLIENT_IDX).toString()).equalsIgnoreCase("t") ? true : false,
-					pike13Conn.stripQuotes(staffArray.get(TEACHER_TITLE_IDX).toString())));
-		}
+		// Get input stream and read fields for each staff member as it is read
+		Pike13RowDecoder.PageInfo page = pike13Conn.readRows(conn, new Pike13RowDecoder.RowHandler() {
+			public void handleRow(Pike13RowDecoder.Row staffArray) {
+				// Get fields for this row
+				String sfClientID = staffArray.getString(TEACHER_SF_CLIENT_ID_IDX);
+
+				staffList.add(new StaffMemberModel(staffArray.getText(TEACHER_CLIENT_ID_IDX), sfClientID,
+						staffArray.getString(TEACHER_FIRST_NAME_IDX), staffArray.getString(TEACHER_LAST_NAME_IDX),
+						staffArray.getString(TEACHER_CATEGORY_IDX),
+						staffArray.getString(TEACHER_ROLE_IDX),
+						staffArray.getString(TEACHER_OCCUPATION_IDX),
+						staffArray.getString(TEACHER_EMPLOYER_IDX),
+						staffArray.getString(TEACHER_START_INFO_IDX),
+						staffArray.getString(TEACHER_GENDER_IDX),
+						staffArray.getString(TEACHER_BIRTHDATE_IDX),
+						staffArray.getString(TEACHER_PHONE_IDX),
+						"", //staffArray.getString(TEACHER_HOME_PHONE_IDX),
+						staffArray.getString(TEACHER_ADDRESS_IDX),
+						staffArray.getString(TEACHER_EMAIL_IDX),
+						staffArray.getString(TEACHER_ALTERNATE_EMAIL_IDX),
+						staffArray.getString(TEACHER_HOME_LOCATION_IDX),
+						staffArray.getString(TEACHER_GITHUB_USER_IDX),
+						staffArray.getInt(TEACHER_PAST_EVENTS_IDX),
+						staffArray.getInt(TEACHER_FUTURE_EVENTS_IDX),
+						staffArray.getString(TEACHER_KEY_HOLDER_IDX).equals("t") ? true : false,
+						staffArray.getString(TEACHER_LIVE_SCAN_DATE_IDX),
+						staffArray.getString(TEACHER_T_SHIRT_IDX),
+						staffArray.getString(TEACHER_WHERE_DID_YOU_HEAR_IDX),
+						staffArray.getString(TEACHER_LEAVE_IDX),
+						staffArray.getString(TEACHER_EMERG_NAME_IDX),
+						staffArray.getString(TEACHER_EMERG_EMAIL_IDX),
+						staffArray.getString(TEACHER_EMERG_PHONE_IDX),
+						staffArray.getString(TEACHER_CURR_BOARD_MEMBER_IDX).equalsIgnoreCase("t") ? true : false,
+						staffArray.getString(TEACHER_CURR_STAFF_MEMBER_IDX).equalsIgnoreCase("t") ? true : false,
+						staffArray.getString(TEACHER_IS_ALSO_CLIENT_IDX).equalsIgnoreCase("t") ? true : false,
+						staffArray.getString(TEACHER_TITLE_IDX)));
+			}
+		});
 
-		conn.disconnect();
+		pike13Conn.releaseConnection(conn);
+		if (page == null)
+			return null;
 		return staffList;
 	}
 
 	public ArrayList<SalesForceStaffHoursModel> getSalesForceStaffHours(String startDate, String endDate) {
 		// Get staff hours for export to SalesForce database
-		ArrayList<SalesForceStaffHoursModel> eventList = new ArrayList<SalesForceStaffHoursModel>();
-		boolean hasMore = false;
-		String lastKey = "";
+		final ArrayList<SalesForceStaffHoursModel> eventList = new ArrayList<SalesForceStaffHoursModel>();
 
 		// Insert start date and end date into staff hours command string
 		String staffHours2 = getStaffHoursSalesForce2.replaceFirst("0000-00-00", startDate);
 		staffHours2 = staffHours2.replaceFirst("1111-11-11", endDate);
 
-		do {
-			// Get URL connection and send the query; add page info if necessary
-			HttpURLConnection conn;
-			if (hasMore)
-				conn = pike13Conn.sendQueryToUrl("event_occurrence_staff_members",
-						getStaffHoursSalesForce + ",\"starting_after\":\"" + lastKey + "\"" + staffHours2, false);
-			else
-				conn = pike13Conn.sendQueryToUrl("event_occurrence_staff_members", getStaffHoursSalesForce + staffHours2, false);
-
-			if (conn == null)
-				return null;
-
-			// Get input stream and read data
-			JsonObject jsonObj = pike13Conn.readInputStream(conn);
-			if (jsonObj == null) {
-				conn.disconnect();
-				return null;
-			}
-			JsonArray jsonArray = jsonObj.getJsonArray("rows");
-
-			for (int i = 0; i < jsonArray.size(); i++) {
-				// Get fields for each event
-				JsonArray eventArray = (JsonArray) jsonArray.get(i);
-
-				// Add event to list
-				eventList.add(new SalesForceStaffHoursModel(eventArray.get(STAFF_CLIENT_ID_IDX).toString(),
-						eventArray.getString(STAFF_EVENT_FULL_NAME_IDX),
-						eventArray.getString(STAFF_EVENT_SERVICE_NAME_IDX),
-						eventArray.getString(STAFF_EVENT_SERVICE_DATE_IDX),
-						eventArray.getString(STAFF_EVENT_SERVICE_TIME_IDX),
-						eventArray.getJsonNumber(STAFF_EVENT_DURATION_IDX).doubleValue(),
-						eventArray.getString(STAFF_EVENT_LOCATION_IDX),
-						eventArray.getJsonNumber(STAFF_EVENT_COMPLETED_COUNT_IDX).doubleValue(),
-						eventArray.getJsonNumber(STAFF_EVENT_NO_SHOW_COUNT_IDX).doubleValue(),
-						eventArray.getJsonNumber(STAFF_EVENT_CANCELED_COUNT_IDX).doubleValue(),
-						pike13Conn.stripQuotes(eventArray.get(STAFF_EVENT_NAME_IDX).toString()),
-						eventArray.get(STAFF_EVENT_SCHEDULE_ID_IDX).toString(),
-						pike13Conn.stripQuotes(eventArray.get(STAFF_EVENT_SERVICE_CATEGORY_IDX).toString())));
-			}
-
-			// Check to see if there are more pages
-			hasMore = jsonObj.getBoolean("has_more");
-			if (hasMore)
-				lastKey = jsonObj.getString("last_key");
-
-			conn.disconnect();
-
-		} while (hasMore);
-
-		return eventList;
+		// Next page is fetched while rows of this page are read
+		boolean success = pager.fetchAll("event_occurrence_staff_members", getStaffHoursSalesForce, staffHours2,
+				new Pike13RowDecoder.RowHandler() {
+					public void handleRow(Pike13RowDecoder.Row eventArray) {
+						// Add event to list
+						eventList.add(new SalesForceStaffHoursModel(eventArray.getText(STAFF_CLIENT_ID_IDX),
+								eventArray.getString(STAFF_EVENT_FULL_NAME_IDX),
+								eventArray.getString(STAFF_EVENT_SERVICE_NAME_IDX),
+								eventArray.getString(STAFF_EVENT_SERVICE_DATE_IDX),
+								eventArray.getString(STAFF_EVENT_SERVICE_TIME_IDX),
+								eventArray.getDouble(STAFF_EVENT_DURATION_IDX),
+								eventArray.getString(STAFF_EVENT_LOCATION_IDX),
+								eventArray.getDouble(STAFF_EVENT_COMPLETED_COUNT_IDX),
+								eventArray.getDouble(STAFF_EVENT_NO_SHOW_COUNT_IDX),
+								eventArray.getDouble(STAFF_EVENT_CANCELED_COUNT_IDX),
+								eventArray.getString(STAFF_EVENT_NAME_IDX),
+								eventArray.getText(STAFF_EVENT_SCHEDULE_ID_IDX),
+								eventArray.getString(STAFF_EVENT_SERVICE_CATEGORY_IDX)));
+					}
+				});
+
+		return success ? eventList : null;
 	}
 }
@@ -0,0 +1,128 @@
+package controller;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import model.RepoNameModel;
+
+/**
+ * RepoNameParser: Parses a github classroom repo name into the level, module
+ * and repo level used by the attendance records, in a single pass over the
+ * name. Results are kept in a bounded cache since only a small number of
+ * distinct repos show up in the attendance window.
+ *
+ * Github classroom names are formatted level-0-module-3 OR level3-module1,
+ * with a few older project names mapped to their level.
+ */
+public class RepoNameParser {
+	private static final int MAX_CACHE_SIZE = 1000;
+
+	private LinkedHashMap<String, RepoNameModel> cache = new LinkedHashMap<String, RepoNameModel>(64, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, RepoNameModel> eldest) {
+			return size() > MAX_CACHE_SIZE;
+		}
+	};
+
+	public RepoNameModel parse(String repoName) {
+		if (repoName == null)
+			return null;
+
+		RepoNameModel model = cache.get(repoName);
+		if (model == null) {
+			model = parseRepoName(repoName.toLowerCase());
+			cache.put(repoName, model);
+		}
+		return model;
+	}
+
+	private static RepoNameModel parseRepoName(String repoName) {
+		String levelName = null, moduleName = null;
+		int moduleStartIdx = -1;
+		boolean parsed = true;
+
+		// Level and module stored in attendance record
+		if (repoName.contains("intro-to-java-workshop")) {
+			// Workshop repos have no level or module
+		} else if (repoName.startsWith("level") && repoName.startsWith("-module", 6)) {
+			levelName = repoName.substring(5, 6);
+			moduleStartIdx = 13;
+		} else if (repoName.startsWith("level-") && repoName.startsWith("-module", 7)) {
+			levelName = repoName.substring(6, 7);
+			moduleStartIdx = 14;
+		} else if (repoName.startsWith("old-level") && repoName.startsWith("-module", 10)) {
+			levelName = repoName.substring(9, 10);
+			moduleStartIdx = 17;
+		} else if (repoName.length() > 10 && repoName.startsWith("level5-0") && repoName.charAt(9) == '-') {
+			levelName = repoName.substring(8, 9);
+			moduleStartIdx = 8;
+		} else if (repoName.startsWith("processingsnake-")) {
+			levelName = "2";
+			moduleName = "2";
+		} else if (repoName.startsWith("league-invaders-")) {
+			levelName = "2";
+			moduleName = "3";
+		} else if (repoName.startsWith("league-level2-game-")) {
+			levelName = "2";
+			moduleName = "4";
+		} else if (repoName.startsWith("level")
+				&& (repoName.startsWith("-coding-exam-", 6) || repoName.startsWith("-codingexam-", 6))) {
+			levelName = repoName.substring(5, 6);
+			moduleName = "E";
+		} else if (repoName.startsWith("level-")
+				&& (repoName.startsWith("-coding-exam-", 7) || repoName.startsWith("-codingexam-", 7))) {
+			levelName = repoName.substring(6, 7);
+			moduleName = "E";
+		} else
+			parsed = false; // No matching level in repo name
+
+		if (moduleStartIdx >= 0) {
+			if (moduleStartIdx < repoName.length() && repoName.charAt(moduleStartIdx) == '-')
+				moduleStartIdx++;
+
+			// Now find module #
+			if (moduleStartIdx < repoName.length() && repoName.charAt(moduleStartIdx) >= '0'
+					&& repoName.charAt(moduleStartIdx) <= '9'
+					&& (repoName.length() == (moduleStartIdx + 1) || repoName.charAt(moduleStartIdx + 1) == '-')) {
+				moduleName = repoName.substring(moduleStartIdx, moduleStartIdx + 1);
+			}
+		}
+
+		return new RepoNameModel(levelName, moduleName, parseRepoLevel(repoName), parsed);
+	}
+
+	private static String parseRepoLevel(String repoName) {
+		// Check if github repo matches classroom naming for level
+		char levelChar = 0;
+		if ((repoName.startsWith("level-") || repoName.startsWith("level_")) && repoName.length() > 7
+				&& (repoName.startsWith("-module", 7) || repoName.startsWith("-coding", 7)
+						|| repoName.startsWith("-practice", 7) || repoName.startsWith("-checkpoint", 7)))
+			levelChar = repoName.charAt(6);
+
+		else if (repoName.startsWith("level") && repoName.length() > 6
+				&& (repoName.startsWith("-module", 6) || repoName.startsWith("-exam", 6)
+						|| repoName.startsWith("-coding", 6) || repoName.startsWith("-checkpoint", 6)))
+			levelChar = repoName.charAt(5);
+
+		else if (repoName.startsWith("old-level") && repoName.length() > 10 && repoName.startsWith("-module", 10))
+			levelChar = repoName.charAt(9);
+
+		else if (repoName.startsWith("level5-0") && repoName.length() > 9 && repoName.charAt(9) == '-')
+			levelChar = '5';
+
+		else if (repoName.startsWith("processingsnake-") || repoName.startsWith("league-level2-game")
+				|| repoName.startsWith("league-invaders-"))
+			levelChar = '2';
+
+		else if (repoName.startsWith("lvl6-project"))
+			levelChar = '6';
+
+		// Found github classroom, now check level is 0 - 5
+		if (levelChar >= '0' && levelChar <= '5')
+			return String.valueOf(levelChar);
+		else
+			return null;
+	}
+}
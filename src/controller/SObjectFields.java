@@ -0,0 +1,95 @@
+package controller;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * SObjectFields: Reads and writes the fields of a generated Enterprise API
+ * sObject class by name, using its get/set methods. Field names are matched
+ * without regard to case, as in SOQL. One instance is cached per class.
+ */
+public class SObjectFields {
+	private static ConcurrentHashMap<Class<?>, SObjectFields> fieldsByClass = new ConcurrentHashMap<Class<?>, SObjectFields>();
+
+	// Keyed by lower case field name
+	private HashMap<String, String> fieldNames = new HashMap<String, String>();
+	private HashMap<String, Method> getters = new HashMap<String, Method>();
+	private HashMap<String, Method> setters = new HashMap<String, Method>();
+
+	private SObjectFields(Class<?> sObjectClass) {
+		for (Method method : sObjectClass.getMethods()) {
+			String methodName = method.getName();
+			if (!methodName.startsWith("get") || method.getParameterTypes().length != 0
+					|| methodName.equals("getClass") || methodName.equals("getFieldsToNull"))
+				continue;
+
+			// Only fields that can be both read and written
+			String fieldName = methodName.substring(3);
+			try {
+				Method setter = sObjectClass.getMethod("set" + fieldName, method.getReturnType());
+				String key = fieldName.toLowerCase();
+				fieldNames.put(key, fieldName);
+				getters.put(key, method);
+				setters.put(key, setter);
+
+			} catch (NoSuchMethodException e) {
+				// Read-only property
+			}
+		}
+	}
+
+	public static SObjectFields forClass(Class<?> sObjectClass) {
+		SObjectFields fields = fieldsByClass.get(sObjectClass);
+		if (fields == null) {
+			fields = new SObjectFields(sObjectClass);
+			fieldsByClass.putIfAbsent(sObjectClass, fields);
+		}
+		return fields;
+	}
+
+	public boolean hasField(String fieldName) {
+		return getters.containsKey(fieldName.toLowerCase());
+	}
+
+	public String getFieldName(String fieldName) {
+		// Field name as declared, or null if not a field
+		return fieldNames.get(fieldName.toLowerCase());
+	}
+
+	public ArrayList<String> getFieldNames() {
+		return new ArrayList<String>(fieldNames.values());
+	}
+
+	public Class<?> getFieldType(String fieldName) {
+		Method getter = getters.get(fieldName.toLowerCase());
+		return getter == null ? null : getter.getReturnType();
+	}
+
+	public Object get(Object sObject, String fieldName) {
+		Method getter = getters.get(fieldName.toLowerCase());
+		if (getter == null)
+			throw new IllegalArgumentException("No such column '" + fieldName + "' on entity '"
+					+ sObject.getClass().getSimpleName() + "'");
+		return invoke(getter, sObject);
+	}
+
+	public void set(Object sObject, String fieldName, Object value) {
+		Method setter = setters.get(fieldName.toLowerCase());
+		if (setter == null)
+			throw new IllegalArgumentException("No such column '" + fieldName + "' on entity '"
+					+ sObject.getClass().getSimpleName() + "'");
+		invoke(setter, sObject, value);
+	}
+
+	private static Object invoke(Method method, Object target, Object... args) {
+		try {
+			return method.invoke(target, args);
+
+		} catch (IllegalAccessException | InvocationTargetException e) {
+			throw new IllegalStateException("Cannot call " + method.getName() + ": " + e.getMessage(), e);
+		}
+	}
+}
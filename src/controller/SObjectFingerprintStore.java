@@ -0,0 +1,294 @@
+package controller;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.sforce.soap.enterprise.sobject.SObject;
+
+/**
+ * SObjectFingerprintStore: Remembers a hash of the fields last pushed to
+ * Salesforce for each record, so an upsert can skip records that have not
+ * changed since the last run.
+ *
+ * Records are keyed by a record type name plus a key field, such as
+ * Front_Desk_Id__c for contacts. The hash covers every field that is set on
+ * the outgoing record, so any change in what would be sent causes a push. A
+ * hash is only stored once its upsert has succeeded.
+ *
+ * Saving drops the hashes of any record type that was checked this run but
+ * did not include that record, e.g. visits that have left the date window.
+ * A record that fails to upsert loses its hash, so the next run pushes it;
+ * so does a record forgotten because it is missing from Salesforce.
+ *
+ * The store is a tab separated text file. In full resync mode every record is
+ * pushed and the hashes are rewritten; this also happens when the last full
+ * resync is older than FULL_RESYNC_INTERVAL_DAYS, to pick up edits made
+ * directly in Salesforce. A full resync only counts as done if every expected
+ * record type was checked and nothing failed; otherwise the next run is a
+ * full resync again.
+ */
+public class SObjectFingerprintStore {
+	public static final int FULL_RESYNC_INTERVAL_DAYS = 7;
+	private static final String FULL_RESYNC_HEADER = "#fullResync";
+	private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+	private File storeFile;
+	private boolean fullResync;
+	private long lastFullResyncMillis = 0;
+	private HashMap<String, String> fingerprints = new HashMap<String, String>();
+	private HashSet<String> seenKeys = new HashSet<String>();
+	private String[] expectedRecordTypes = new String[0];
+
+	// Counts by record type: {checked, skipped, pushed, failed}
+	private LinkedHashMap<String, int[]> counts = new LinkedHashMap<String, int[]>();
+
+	public SObjectFingerprintStore(String storeFileName, boolean forceFullResync) {
+		storeFile = new File(storeFileName);
+		try {
+			load();
+
+		} catch (IOException e) {
+			System.out.println("Fingerprint store " + storeFile + " not loaded: " + e.getMessage());
+			fingerprints.clear();
+			lastFullResyncMillis = 0;
+		}
+
+		// Full resync if forced, if there are no hashes yet, or if the last one is too old
+		fullResync = forceFullResync || fingerprints.size() == 0
+				|| System.currentTimeMillis() - lastFullResyncMillis > FULL_RESYNC_INTERVAL_DAYS * MILLIS_PER_DAY;
+		if (fullResync)
+			System.out.println("Fingerprint store " + storeFile + ": full resync");
+	}
+
+	public boolean isFullResync() {
+		return fullResync;
+	}
+
+	public void setExpectedRecordTypes(String... recordTypes) {
+		// Record types a run must check before a full resync counts as done
+		expectedRecordTypes = recordTypes;
+	}
+
+	public synchronized boolean isFullResyncComplete() {
+		// Every expected record type was checked and no upsert failed
+		if (!fullResync)
+			return false;
+
+		for (String recordType : expectedRecordTypes) {
+			if (!counts.containsKey(recordType))
+				return false;
+		}
+		for (int[] typeCounts : counts.values()) {
+			if (typeCounts[3] > 0)
+				return false;
+		}
+		return true;
+	}
+
+	public synchronized <T extends SObject> ArrayList<T> getChangedRecords(String recordType, String keyField,
+			ArrayList<T> records) {
+		// Returns the records whose fields differ from the last push
+		ArrayList<T> changedRecords = new ArrayList<T>();
+		int[] typeCounts = getCounts(recordType);
+
+		for (T record : records) {
+			typeCounts[0]++;
+			String key = getKey(recordType, keyField, record);
+			if (key != null)
+				seenKeys.add(key);
+			if (!fullResync && key != null && getFingerprint(record).equals(fingerprints.get(key)))
+				typeCounts[1]++;
+			else
+				changedRecords.add(record);
+		}
+		return changedRecords;
+	}
+
+	public synchronized void pushed(String recordType, String keyField, SObject record) {
+		// Record was upserted successfully, so remember what was sent
+		String key = getKey(recordType, keyField, record);
+		if (key != null) {
+			fingerprints.put(key, getFingerprint(record));
+			getCounts(recordType)[2]++;
+		}
+	}
+
+	public synchronized void forget(String recordType, String keyField, SObject record) {
+		// Record is no longer in Salesforce, so push it even if unchanged
+		String key = getKey(recordType, keyField, record);
+		if (key != null)
+			fingerprints.remove(key);
+	}
+
+	public synchronized void failed(String recordType, String keyField, SObject record) {
+		// Record or its whole call failed, so forget the hash and push it next run
+		String key = getKey(recordType, keyField, record);
+		if (key != null)
+			fingerprints.remove(key);
+		getCounts(recordType)[3]++;
+	}
+
+	public synchronized void save() throws IOException {
+		File parentDir = storeFile.getAbsoluteFile().getParentFile();
+		if (parentDir != null && !parentDir.isDirectory() && !parentDir.mkdirs())
+			throw new IOException("Cannot create directory " + parentDir);
+
+		// Keep hashes for record types not checked this run, e.g. if a fetch failed
+		ArrayList<String> keys = new ArrayList<String>();
+		for (String key : fingerprints.keySet()) {
+			if (seenKeys.contains(key) || !counts.containsKey(key.substring(0, key.indexOf(':'))))
+				keys.add(key);
+		}
+
+		// Write to a temp file first so a crash never leaves half a store
+		Collections.sort(keys);
+		File tempFile = File.createTempFile("fingerprints", ".tmp", parentDir);
+		BufferedWriter out = new BufferedWriter(
+				new OutputStreamWriter(new FileOutputStream(tempFile), StandardCharsets.UTF_8));
+		try {
+			// Keep the old stamp if the full resync did not finish, so the next run resyncs too
+			long fullResyncMillis = isFullResyncComplete() ? System.currentTimeMillis() : lastFullResyncMillis;
+			out.write(FULL_RESYNC_HEADER + "\t" + fullResyncMillis + "\n");
+			for (String key : keys)
+				out.write(key + "\t" + fingerprints.get(key) + "\n");
+
+		} finally {
+			out.close();
+		}
+
+		if (storeFile.exists())
+			storeFile.delete();
+		if (!tempFile.renameTo(storeFile)) {
+			tempFile.delete();
+			throw new IOException("Cannot write fingerprint store " + storeFile);
+		}
+	}
+
+	public synchronized String getSummary() {
+		String summary = "Delta sync" + (fullResync ? (isFullResyncComplete() ? " (full resync)"
+				: " (full resync incomplete, repeats next run)") : "") + ":";
+		for (Map.Entry<String, int[]> entry : counts.entrySet()) {
+			int[] c = entry.getValue();
+			summary += " " + entry.getKey() + " " + c[1] + " of " + c[0] + " unchanged, " + c[2] + " pushed, "
+					+ (c[3] > 0 ? c[3] + " failed, " : "") + getApiCallsSaved(entry.getKey()) + " API calls saved;";
+		}
+		return summary;
+	}
+
+	public synchronized int getNumSkipped(String recordType) {
+		int[] typeCounts = counts.get(recordType);
+		return typeCounts == null ? 0 : typeCounts[1];
+	}
+
+	public synchronized int getApiCallsSaved(String recordType) {
+		// Upsert calls for all the records checked, less calls for the changed ones
+		int[] typeCounts = counts.get(recordType);
+		if (typeCounts == null)
+			return 0;
+		return getNumCalls(typeCounts[0]) - getNumCalls(typeCounts[0] - typeCounts[1]);
+	}
+
+	private static int getNumCalls(int numRecords) {
+		int batchSize = SObjectUpsertBatcher.MAX_NUM_UPSERT_RECORDS;
+		return (numRecords + batchSize - 1) / batchSize;
+	}
+
+	public static String getFingerprint(SObject record) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			digest.update(getFieldString(record).getBytes(StandardCharsets.UTF_8));
+			byte[] hash = digest.digest();
+
+			StringBuilder hex = new StringBuilder();
+			for (int i = 0; i < 16; i++)
+				hex.append(String.format("%02x", hash[i]));
+			return hex.toString();
+
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String getFieldString(Object sObject) {
+		// Set fields in name order; parent records (e.g. Contact__r) are expanded
+		SObjectFields fields = SObjectFields.forClass(sObject.getClass());
+		ArrayList<String> fieldNames = fields.getFieldNames();
+		Collections.sort(fieldNames);
+
+		StringBuilder fieldString = new StringBuilder();
+		for (String fieldName : fieldNames) {
+			Object value = fields.get(sObject, fieldName);
+			if (value == null)
+				continue;
+
+			fieldString.append(fieldName).append('=');
+			if (value instanceof SObject)
+				fieldString.append('{').append(getFieldString(value)).append('}');
+			else if (value instanceof Calendar)
+				fieldString.append(((Calendar) value).getTimeInMillis());
+			else
+				fieldString.append(value);
+			fieldString.append('\u0001');
+		}
+		return fieldString.toString();
+	}
+
+	private static String getKey(String recordType, String keyField, SObject record) {
+		Object keyValue = SObjectFields.forClass(record.getClass()).get(record, keyField);
+		if (keyValue == null || keyValue.toString().equals(""))
+			return null;
+		return recordType + ":" + keyValue;
+	}
+
+	private int[] getCounts(String recordType) {
+		int[] typeCounts = counts.get(recordType);
+		if (typeCounts == null) {
+			typeCounts = new int[4];
+			counts.put(recordType, typeCounts);
+		}
+		return typeCounts;
+	}
+
+	private void load() throws IOException {
+		if (!storeFile.exists())
+			return;
+
+		BufferedReader in = new BufferedReader(
+				new InputStreamReader(new FileInputStream(storeFile), StandardCharsets.UTF_8));
+		try {
+			String line;
+			while ((line = in.readLine()) != null) {
+				int tabIdx = line.indexOf('\t');
+				if (tabIdx < 0)
+					continue;
+
+				if (line.startsWith(FULL_RESYNC_HEADER))
+					lastFullResyncMillis = Long.parseLong(line.substring(tabIdx + 1));
+				else
+					fingerprints.put(line.substring(0, tabIdx), line.substring(tabIdx + 1));
+			}
+
+		} catch (NumberFormatException e) {
+			throw new IOException("Bad full resync time in " + storeFile);
+
+		} finally {
+			in.close();
+		}
+	}
+}
@@ -0,0 +1,301 @@
+package controller;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import com.sforce.soap.enterprise.EnterpriseConnection;
+import com.sforce.soap.enterprise.Error;
+import com.sforce.soap.enterprise.SaveResult;
+import com.sforce.soap.enterprise.StatusCode;
+import com.sforce.soap.enterprise.UpsertResult;
+import com.sforce.soap.enterprise.sobject.SObject;
+import com.sforce.ws.ConnectionException;
+
+/**
+ * SObjectUpsertBatcher: Upserts a stream of records on an external ID field,
+ * MAX_NUM_UPSERT_RECORDS per call, with up to a set number of calls in flight
+ * on a SalesForceConnectionPool. A batcher made by forCreate inserts the
+ * records instead; its results are reported as created UpsertResults.
+ *
+ * Results are handled on the calling thread in record order, so a
+ * RecordHandler does not need to be thread safe. Failed records and failed
+ * calls are collected in an UpsertReport rather than logged here, since each
+ * record type logs its errors differently.
+ *
+ * Batches in flight together can lock the same parent row, e.g. two visits
+ * of one Contact. Records that fail with UNABLE_TO_LOCK_ROW are retried once
+ * after all the other batches are done, one call at a time, and handled last.
+ */
+public class SObjectUpsertBatcher<T extends SObject> {
+	public static final int MAX_NUM_UPSERT_RECORDS = 200;
+
+	private SalesForceConnectionPool connPool;
+	private String externalIdField;
+	private int maxBatchesInFlight;
+	private RecordHandler<T> recordHandler;
+
+	public interface RecordHandler<T> {
+		public void upserted(T record, UpsertResult result);
+	}
+
+	public SObjectUpsertBatcher(SalesForceConnectionPool connPool, String externalIdField, int maxBatchesInFlight) {
+		this.connPool = connPool;
+		this.externalIdField = externalIdField;
+		this.maxBatchesInFlight = Math.max(1, maxBatchesInFlight);
+	}
+
+	public static <T extends SObject> SObjectUpsertBatcher<T> forCreate(SalesForceConnectionPool connPool,
+			int maxBatchesInFlight) {
+		// Creates new records; the new IDs come back in the results
+		return new SObjectUpsertBatcher<T>(connPool, null, maxBatchesInFlight);
+	}
+
+	public SObjectUpsertBatcher<T> setRecordHandler(RecordHandler<T> recordHandler) {
+		// Called for each record that was upserted successfully
+		this.recordHandler = recordHandler;
+		return this;
+	}
+
+	public UpsertReport<T> upsert(Iterable<? extends T> records) {
+		UpsertReport<T> report = new UpsertReport<T>(externalIdField);
+		ArrayDeque<Batch<T>> inFlight = new ArrayDeque<Batch<T>>();
+		ArrayList<T> batchRecords = new ArrayList<T>(MAX_NUM_UPSERT_RECORDS);
+		ArrayList<T> lockedRecords = new ArrayList<T>();
+		long startMillis = System.currentTimeMillis();
+
+		for (T record : records) {
+			batchRecords.add(record);
+			if (batchRecords.size() == MAX_NUM_UPSERT_RECORDS) {
+				submitBatch(batchRecords, inFlight, report, lockedRecords);
+				batchRecords = new ArrayList<T>(MAX_NUM_UPSERT_RECORDS);
+			}
+		}
+		if (batchRecords.size() > 0)
+			submitBatch(batchRecords, inFlight, report, lockedRecords);
+
+		while (!inFlight.isEmpty())
+			finishBatch(inFlight.poll(), report, lockedRecords);
+
+		// Retry row lock failures serially, so no other batch holds their parent rows
+		report.numRetried = lockedRecords.size();
+		for (int i = 0; i < lockedRecords.size(); i += MAX_NUM_UPSERT_RECORDS) {
+			Batch<T> batch = new Batch<T>(report.numBatches++, new ArrayList<T>(
+					lockedRecords.subList(i, Math.min(i + MAX_NUM_UPSERT_RECORDS, lockedRecords.size()))));
+			batch.retry = true;
+			startBatch(batch);
+			finishBatch(batch, report, null);
+		}
+
+		report.elapsedMillis = System.currentTimeMillis() - startMillis;
+		return report;
+	}
+
+	private void submitBatch(ArrayList<T> batchRecords, ArrayDeque<Batch<T>> inFlight, UpsertReport<T> report,
+			ArrayList<T> lockedRecords) {
+		// Wait for the oldest batch once the in-flight limit is reached
+		if (inFlight.size() >= maxBatchesInFlight)
+			finishBatch(inFlight.poll(), report, lockedRecords);
+
+		Batch<T> batch = new Batch<T>(report.numBatches++, batchRecords);
+		startBatch(batch);
+		inFlight.add(batch);
+	}
+
+	private void startBatch(Batch<T> batch) {
+		final SObject[] recordArray = batch.records.toArray(new SObject[batch.records.size()]);
+		batch.future = connPool.submit(new SalesForceConnectionPool.ConnectionTask<UpsertResult[]>() {
+			@Override
+			public UpsertResult[] call(EnterpriseConnection connection) throws ConnectionException {
+				if (externalIdField == null)
+					return getCreateResults(connection.create(recordArray));
+				return connection.upsert(externalIdField, recordArray);
+			}
+		});
+	}
+
+	private void finishBatch(Batch<T> batch, UpsertReport<T> report, ArrayList<T> lockedRecords) {
+		// Row lock failures go to lockedRecords for a retry; null on the retry itself
+		UpsertResult[] upsertResults;
+		if (!batch.retry)
+			report.numRecords += batch.records.size();
+
+		try {
+			upsertResults = batch.future.get();
+
+		} catch (ExecutionException e) {
+			Throwable cause = (e.getCause() == null) ? e : e.getCause();
+			report.batchErrors.add(new BatchError<T>(batch.batchIdx, batch.records, cause));
+			report.numFailed += batch.records.size();
+			return;
+
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			report.batchErrors.add(new BatchError<T>(batch.batchIdx, batch.records, e));
+			report.numFailed += batch.records.size();
+			return;
+		}
+
+		// Check the returned results for any errors
+		for (int i = 0; i < upsertResults.length; i++) {
+			T record = batch.records.get(i);
+			if (upsertResults[i].isSuccess()) {
+				if (upsertResults[i].isCreated())
+					report.numCreated++;
+				else
+					report.numUpdated++;
+				if (recordHandler != null)
+					recordHandler.upserted(record, upsertResults[i]);
+
+			} else if (lockedRecords != null && isRowLockError(upsertResults[i].getErrors())) {
+				lockedRecords.add(record);
+
+			} else {
+				report.numFailed++;
+				report.recordErrors.add(new RecordError<T>(record, upsertResults[i].getErrors()));
+			}
+		}
+	}
+
+	private static UpsertResult[] getCreateResults(SaveResult[] saveResults) {
+		// Same result type as upsert, so one handler and report serve both
+		UpsertResult[] upsertResults = new UpsertResult[saveResults.length];
+		for (int i = 0; i < saveResults.length; i++) {
+			upsertResults[i] = new UpsertResult();
+			upsertResults[i].setId(saveResults[i].getId());
+			upsertResults[i].setSuccess(saveResults[i].isSuccess());
+			upsertResults[i].setCreated(saveResults[i].isSuccess());
+			upsertResults[i].setErrors(saveResults[i].getErrors());
+		}
+		return upsertResults;
+	}
+
+	private static boolean isRowLockError(Error[] errors) {
+		for (Error error : errors) {
+			if (error.getStatusCode() == StatusCode.UNABLE_TO_LOCK_ROW)
+				return true;
+		}
+		return false;
+	}
+
+	private static class Batch<T> {
+		private int batchIdx;
+		private ArrayList<T> records;
+		private boolean retry;
+		private Future<UpsertResult[]> future;
+
+		private Batch(int batchIdx, ArrayList<T> records) {
+			this.batchIdx = batchIdx;
+			this.records = records;
+		}
+	}
+
+	public static class UpsertReport<T> {
+		private String externalIdField;
+		private int numRecords, numBatches, numCreated, numUpdated, numFailed, numRetried;
+		private long elapsedMillis;
+		private ArrayList<RecordError<T>> recordErrors = new ArrayList<RecordError<T>>();
+		private ArrayList<BatchError<T>> batchErrors = new ArrayList<BatchError<T>>();
+
+		private UpsertReport(String externalIdField) {
+			this.externalIdField = externalIdField;
+		}
+
+		public int getNumRecords() {
+			return numRecords;
+		}
+
+		public int getNumBatches() {
+			return numBatches;
+		}
+
+		public int getNumCreated() {
+			return numCreated;
+		}
+
+		public int getNumUpdated() {
+			return numUpdated;
+		}
+
+		public int getNumFailed() {
+			// Records with errors plus records in failed calls
+			return numFailed;
+		}
+
+		public int getNumRetried() {
+			// Records retried after a row lock failure
+			return numRetried;
+		}
+
+		public long getElapsedMillis() {
+			return elapsedMillis;
+		}
+
+		public boolean hasErrors() {
+			return numFailed > 0;
+		}
+
+		public ArrayList<RecordError<T>> getRecordErrors() {
+			return recordErrors;
+		}
+
+		public ArrayList<BatchError<T>> getBatchErrors() {
+			return batchErrors;
+		}
+
+		@Override
+		public String toString() {
+			return (externalIdField == null ? "Create" : "Upsert on " + externalIdField) + ": " + numRecords + " records in " + numBatches + " calls, "
+					+ numCreated + " created, " + numUpdated + " updated, " + numRetried + " retried, "
+					+ recordErrors.size() + " record errors, "
+					+ batchErrors.size() + " failed calls, " + elapsedMillis + " msecs";
+		}
+	}
+
+	public static class RecordError<T> {
+		private T record;
+		private Error[] errors;
+
+		private RecordError(T record, Error[] errors) {
+			this.record = record;
+			this.errors = errors;
+		}
+
+		public T getRecord() {
+			return record;
+		}
+
+		public Error[] getErrors() {
+			return errors;
+		}
+	}
+
+	public static class BatchError<T> {
+		private int batchIdx;
+		private ArrayList<T> records;
+		private Throwable exception;
+
+		private BatchError(int batchIdx, ArrayList<T> records, Throwable exception) {
+			this.batchIdx = batchIdx;
+			this.records = records;
+			this.exception = exception;
+		}
+
+		public int getBatchIdx() {
+			return batchIdx;
+		}
+
+		public ArrayList<T> getRecords() {
+			return records;
+		}
+
+		public Throwable getException() {
+			return exception;
+		}
+
+		public String getMessage() {
+			return exception.getMessage();
+		}
+	}
+}
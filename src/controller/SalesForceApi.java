@@ -25,6 +25,19 @@ public class SalesForceApi {
 	private static final String AWS_PASSWORD = readFile("./awsPassword.txt");
 	private static final int DATE_RANGE_PAST_IN_DAYS = 21;
 	private static final int DATE_RANGE_FUTURE_IN_DAYS = 45;
+	private static final int ATTENDANCE_FETCH_SHARDS = 4; // Parallel date ranges for Pike13 attendance, 1 = serial
+	private static final boolean VERIFY_ATTENDANCE_SHARDS = false; // Compare sharded attendance with serial fetch
+	private static final int CLIENT_FETCH_SHARDS = 4; // Parallel person_id ranges for Pike13 clients, 1 = serial
+	private static final boolean VERIFY_CLIENT_SHARDS = false; // Compare sharded clients with serial fetch
+	private static final int PIKE13_CONNECT_TIMEOUT_MSEC = 15000;
+	private static final int PIKE13_READ_TIMEOUT_MSEC = 60000;
+	private static final int PIKE13_MAX_CONNECTIONS = 8; // Pike13 requests in flight at once
+	private static final double PIKE13_REQUESTS_PER_SEC = 10.0; // Adaptive concurrency stays under this rate
+	private static final String PIKE13_BASE_URL = Pike13Connect.DEFAULT_BASE_URL; // Or a Pike13ReplayServer URL
+	private static final String PIKE13_RECORD_DIR = null; // Directory to record Pike13 responses for replay, null = off
+	private static final int SALES_FORCE_MAX_CONNECTIONS = 4; // Salesforce upsert batches in flight at once, 1 = serial
+	private static final String SALES_FORCE_FINGERPRINT_FILE = "./sfFingerprints.txt"; // Skip unchanged records, null = off
+	private static final boolean SALES_FORCE_FULL_RESYNC = false; // Push every contact, account and visit this run
 
 	private static MySqlDatabase sqlDb;
 	private static Pike13SalesforceImport pike13Api;
@@ -50,13 +63,19 @@ public class SalesForceApi {
 		endDate = t.plusDays(DATE_RANGE_FUTURE_IN_DAYS).toString("yyyy-MM-dd");
 
 		new MySqlDbLogging(sqlDb);
-		//MySqlDbLogging.insertLogData(LogDataModel.STARTING_SALES_FORCE_IMPORT, new StudentNameModel("", "", false), 0,
+		//MySqlAccess.insertLogData(LogDataModel.STARTING_SALES_FORCE_IMPORT, new StudentNameModel("", "", false), 0,
 		//		" from " + startDate + " to " + endDate + " ***");
 
 		// Connect to Pike13
 		String pike13Token = readFile("./pike13Token.txt");
-		Pike13Connect pike13Conn = new Pike13Connect(pike13Token);
+		Pike13Connect pike13Conn = new Pike13Connect(pike13Token,
+				new Pike13HttpTransport(PIKE13_CONNECT_TIMEOUT_MSEC, PIKE13_READ_TIMEOUT_MSEC, PIKE13_MAX_CONNECTIONS),
+				new Pike13RateLimiter(PIKE13_REQUESTS_PER_SEC, PIKE13_MAX_CONNECTIONS));
+		pike13Conn.setBaseUrl(PIKE13_BASE_URL);
+		pike13Conn.setRecordCorpus(PIKE13_RECORD_DIR);
 		pike13Api = new Pike13SalesforceImport(pike13Conn);
+		pike13Api.setAttendanceShards(ATTENDANCE_FETCH_SHARDS, VERIFY_ATTENDANCE_SHARDS);
+		pike13Api.setClientShards(CLIENT_FETCH_SHARDS, VERIFY_CLIENT_SHARDS);
 
 		// Connect to SalesForce
 		ConnectorConfig config = new ConnectorConfig();
@@ -78,10 +97,16 @@ public class SalesForceApi {
 
 		// Perform the update to SalesForce
 		SalesForceImportEngine importer = new SalesForceImportEngine(sqlDb, pike13Api, salesForceApi);
+		importer.setSalesForceConnections(SALES_FORCE_MAX_CONNECTIONS);
+		if (SALES_FORCE_FINGERPRINT_FILE != null)
+			importer.setFingerprintStore(
+					new SObjectFingerprintStore(SALES_FORCE_FINGERPRINT_FILE, SALES_FORCE_FULL_RESYNC));
 		LocationLookup.setLocationData(sqlDb.getLocationList());
+		ListUtilities.setLocationCodes();
 		importer.updateSalesForce(today, startDate, endDate);
 		
-		// Show runtime
+		// Show runtime and Pike13 request rate
+		System.out.println(pike13Conn.getRequestMetrics());
 		DateTime endTime = new DateTime().withZone(DateTimeZone.forID("America/Los_Angeles"));
 		System.out.println("Run time = " + (endTime.getMillis() - t.getMillis()) + " msecs");
 
@@ -108,12 +133,12 @@ public class SalesForceApi {
 	private static void exitProgram(int errorCode, String errorMessage) {
 		if (errorCode == -1) {
 			// Success
-			MySqlDbLogging.insertLogData(LogDataModel.SALES_FORCE_IMPORT_COMPLETE, new StudentNameModel("", "", false),
+			MySqlAccess.insertLogData(LogDataModel.SALES_FORCE_IMPORT_COMPLETE, new StudentNameModel("", "", false),
 					0, " from " + startDate + " to " + endDate + " ***");
 		} else {
 			// Failure
-			MySqlDbLogging.insertLogData(errorCode, new StudentNameModel("", "", false), 0, ": " + errorMessage);
-			MySqlDbLogging.insertLogData(LogDataModel.SALES_FORCE_IMPORT_ABORTED, new StudentNameModel("", "", false),
+			MySqlAccess.insertLogData(errorCode, new StudentNameModel("", "", false), 0, ": " + errorMessage);
+			MySqlAccess.insertLogData(LogDataModel.SALES_FORCE_IMPORT_ABORTED, new StudentNameModel("", "", false),
 					0, " from " + startDate + " to " + endDate + " ***");
 		}
 		sqlDb.disconnectDatabase();
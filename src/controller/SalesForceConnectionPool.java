@@ -0,0 +1,107 @@
+package controller;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sforce.soap.enterprise.EnterpriseConnection;
+import com.sforce.ws.ConnectionException;
+import com.sforce.ws.ConnectorConfig;
+
+/**
+ * SalesForceConnectionPool: A fixed set of Salesforce connections that share
+ * the session of one logged-in connection, and a thread per connection to
+ * run calls on them. No two pool calls use a connection at once.
+ *
+ * The pool connections copy the session ID and service endpoint, so they do
+ * not log in again. The logged-in connection itself stays out of the pool,
+ * since the update classes call it directly for queries and deletes; the
+ * import engine runs its Salesforce fetches on the pool. If a copy cannot be
+ * created the pool runs with fewer; only if none can be created does it fall
+ * back to the logged-in connection.
+ */
+public class SalesForceConnectionPool {
+	public static final int DEFAULT_NUM_CONNECTIONS = 4;
+
+	private ArrayBlockingQueue<EnterpriseConnection> idleConns;
+	private ExecutorService executor;
+	private int numConnections;
+
+	public interface ConnectionTask<R> {
+		public R call(EnterpriseConnection connection) throws ConnectionException;
+	}
+
+	public SalesForceConnectionPool(EnterpriseConnection connection, int numConnections) {
+		numConnections = Math.max(1, numConnections);
+		idleConns = new ArrayBlockingQueue<EnterpriseConnection>(numConnections);
+
+		ConnectorConfig config = connection.getConfig();
+		for (int i = 0; i < numConnections; i++) {
+			try {
+				idleConns.add(new EnterpriseConnection(copyConfig(config)));
+
+			} catch (ConnectionException e) {
+				System.out.println("Salesforce connection pool: " + idleConns.size() + " of " + numConnections
+						+ " connections, " + e.getMessage());
+				break;
+			}
+		}
+		if (idleConns.isEmpty())
+			idleConns.add(connection);
+		this.numConnections = idleConns.size();
+
+		final AtomicInteger threadCount = new AtomicInteger(0);
+		executor = Executors.newFixedThreadPool(this.numConnections, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "sf-conn-" + threadCount.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+
+	public int getNumConnections() {
+		return numConnections;
+	}
+
+	public <R> Future<R> submit(final ConnectionTask<R> task) {
+		// Runs the task on a pool thread with an idle connection
+		return executor.submit(new Callable<R>() {
+			@Override
+			public R call() throws Exception {
+				EnterpriseConnection conn = idleConns.take();
+				try {
+					return task.call(conn);
+
+				} finally {
+					idleConns.put(conn);
+				}
+			}
+		});
+	}
+
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	private static ConnectorConfig copyConfig(ConnectorConfig config) {
+		ConnectorConfig copy = new ConnectorConfig();
+		copy.setUsername(config.getUsername());
+		copy.setPassword(config.getPassword());
+		copy.setAuthEndpoint(config.getAuthEndpoint());
+		copy.setServiceEndpoint(config.getServiceEndpoint());
+		copy.setSessionId(config.getSessionId());
+		copy.setConnectionTimeout(config.getConnectionTimeout());
+		copy.setReadTimeout(config.getReadTimeout());
+		copy.setCompression(config.isCompression());
+		copy.setTraceMessage(config.isTraceMessage());
+		if (config.getProxy() != null)
+			copy.setProxy(config.getProxy());
+		return copy;
+	}
+}
@@ -1,114 +1,301 @@
 package controller;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.concurrent.Callable;
 
 import com.sforce.soap.enterprise.EnterpriseConnection;
 import com.sforce.soap.enterprise.sobject.Account;
 import com.sforce.soap.enterprise.sobject.Contact;
 import com.sforce.soap.enterprise.sobject.Contact_Diary__c;
 
+import controller.ImportPhaseRunner.Phase;
+import controller.SalesForceConnectionPool.ConnectionTask;
+
 import model.AttendanceEventModel;
 import model.GraduationModel;
+import model.LogDataModel;
 import model.MySqlDatabase;
 import model.MySqlDbImports;
 import model.SalesForceAttendanceModel;
 import model.SalesForceStaffHoursModel;
 import model.StaffMemberModel;
 import model.StudentImportModel;
+import model.StudentNameModel;
 
 public class SalesForceImportEngine {
+	private static final int MAX_PHASE_THREADS = 4;
 
 	private MySqlDatabase sqlDb;
 	private MySqlDbImports dbImports;
 	private Pike13SalesforceImport pike13Api;
 	private EnterpriseConnection salesForceApi;
+	private int sfMaxConnections = SalesForceConnectionPool.DEFAULT_NUM_CONNECTIONS;
+	private SObjectFingerprintStore fingerprints;
 
 	public SalesForceImportEngine(MySqlDatabase sqlDb, Pike13SalesforceImport pike13Api,
 			EnterpriseConnection salesForceApi) {
+		this(sqlDb, new MySqlDbImports(sqlDb), pike13Api, salesForceApi);
+	}
+
+	public SalesForceImportEngine(MySqlDatabase sqlDb, MySqlDbImports dbImports, Pike13SalesforceImport pike13Api,
+			EnterpriseConnection salesForceApi) {
 		this.sqlDb = sqlDb;
+		this.dbImports = dbImports;
 		this.pike13Api = pike13Api;
 		this.salesForceApi = salesForceApi;
+	}
 
-		dbImports = new MySqlDbImports(sqlDb);
+	public void setSalesForceConnections(int sfMaxConnections) {
+		// Salesforce upsert batches in flight at once, 1 = serial
+		this.sfMaxConnections = sfMaxConnections;
 	}
 
-	public void updateSalesForce(String today, String startDate, String endDate) {
+	public void setFingerprintStore(SObjectFingerprintStore fingerprints) {
+		// Contacts, accounts and attendance unchanged since the last run are not upserted; null = push all
+		this.fingerprints = fingerprints;
+	}
+
+	public void updateSalesForce(final String today, final String startDate, final String endDate) {
 		// Instantiate get & update classes
 		GetRecordsFromSalesForce getRecords = new GetRecordsFromSalesForce(salesForceApi);
-		UpdateRecordsInSalesForce updateRecords = new UpdateRecordsInSalesForce(sqlDb, dbImports, salesForceApi,
-				getRecords);
+		final UpdateRecordsInSalesForce updateRecords = new UpdateRecordsInSalesForce(sqlDb, dbImports, salesForceApi,
+				getRecords, sfMaxConnections);
+		updateRecords.setFingerprintStore(fingerprints);
 
-		// Get SF contacts and accounts and store in list
-		ArrayList<Contact> sfContactList = getRecords.getSalesForceContacts(); // Students & teachers
-		ArrayList<Contact> sfAllContactList = getRecords.getAllSalesForceContacts(); // + all adults
-		ArrayList<Account> sfAccountList = getRecords.getSalesForceAccounts();
+		// SF fetches run at the same time, so each takes a pooled connection rather than sharing the logged-in one
+		final SalesForceConnectionPool connPool = updateRecords.getConnectionPool();
 
-		ArrayList<StudentImportModel> pike13StudentContactList = null;
-		ArrayList<StudentImportModel> pike13AdultContactList = null;
+		// Fetches run in parallel; updates start once their inputs are ready
+		ImportPhaseRunner runner = new ImportPhaseRunner(MAX_PHASE_THREADS);
 
-		// === UPDATE CLIENTS: Students & Parents ===
-		if (sfAllContactList != null && sfAccountList != null) {
-			// Get Pike13 clients and upsert to SalesForce
-			pike13StudentContactList = pike13Api.getClientsForSfImport(false);
-			pike13AdultContactList = pike13Api.getClientsForSfImport(true);
-
-			// Make sure Pike13 didn't have error getting data
-			if (pike13StudentContactList != null && pike13AdultContactList != null) {
-				// Insert account ID for all students & adults
-				ListUtilities.fillInAccountID(pike13StudentContactList, sfAllContactList);
-				ListUtilities.fillInAccountID(pike13AdultContactList, sfAllContactList);
-
-				// Update student & adult contact records
-				updateRecords.updateStudents(pike13StudentContactList, pike13AdultContactList, sfAccountList);
-				updateRecords.updateAdults(pike13StudentContactList, pike13AdultContactList, sfAccountList);
+		// Get SF contacts and accounts, indexed for fast lookup
+		final Phase<ContactIndex> sfContactsPhase = runner.addPhase("Get SF contacts", new Callable<ContactIndex>() {
+			public ContactIndex call() throws Exception {
+				return getContactIndex(fetchOnPool(connPool, new ConnectionTask<ArrayList<Contact>>() {
+					public ArrayList<Contact> call(EnterpriseConnection connection) {
+						return new GetRecordsFromSalesForce(connection).getSalesForceContacts(); // Students & teachers
+					}
+				}));
 			}
-		}
+		});
+		final Phase<ContactIndex> sfAllContactsPhase = runner.addPhase("Get SF all contacts",
+				new Callable<ContactIndex>() {
+					public ContactIndex call() throws Exception {
+						return getContactIndex(fetchOnPool(connPool, new ConnectionTask<ArrayList<Contact>>() {
+							public ArrayList<Contact> call(EnterpriseConnection connection) {
+								// + all adults
+								return new GetRecordsFromSalesForce(connection).getAllSalesForceContacts();
+							}
+						}));
+					}
+				});
+		final Phase<FamilyAccountIndex> sfAccountsPhase = runner.addPhase("Get SF accounts",
+				new Callable<FamilyAccountIndex>() {
+					public FamilyAccountIndex call() throws Exception {
+						// Family accounts created during the run are added to this index
+						ArrayList<Account> sfAccountList = fetchOnPool(connPool,
+								new ConnectionTask<ArrayList<Account>>() {
+									public ArrayList<Account> call(EnterpriseConnection connection) {
+										return new GetRecordsFromSalesForce(connection).getSalesForceAccounts();
+									}
+								});
+						return (sfAccountList == null) ? null : new FamilyAccountIndex(sfAccountList);
+					}
+				});
+
+		// Get Pike13 clients, staff and attendance
+		final Phase<ArrayList<StudentImportModel>> pike13StudentsPhase = runner.addPhase("Get Pike13 students",
+				new Callable<ArrayList<StudentImportModel>>() {
+					public ArrayList<StudentImportModel> call() {
+						return pike13Api.getClientsForSfImport(false);
+					}
+				});
+		final Phase<ArrayList<StudentImportModel>> pike13AdultsPhase = runner.addPhase("Get Pike13 adults",
+				new Callable<ArrayList<StudentImportModel>>() {
+					public ArrayList<StudentImportModel> call() {
+						return pike13Api.getClientsForSfImport(true);
+					}
+				});
+		final Phase<ArrayList<SalesForceAttendanceModel>> pike13AttendancePhase = runner.addPhase(
+				"Get Pike13 attendance", new Callable<ArrayList<SalesForceAttendanceModel>>() {
+					public ArrayList<SalesForceAttendanceModel> call() {
+						return pike13Api.getSalesForceAttendance(startDate, endDate);
+					}
+				});
+		final Phase<ArrayList<StaffMemberModel>> pike13StaffPhase = runner.addPhase("Get Pike13 staff members",
+				new Callable<ArrayList<StaffMemberModel>>() {
+					public ArrayList<StaffMemberModel> call() {
+						return pike13Api.getSalesForceStaffMembers();
+					}
+				});
+		final Phase<StaffDirectory> staffDirectoryPhase = runner.addPhase("Index staff members",
+				new Callable<StaffDirectory>() {
+					public StaffDirectory call() {
+						ArrayList<StaffMemberModel> pike13StaffMembers = pike13StaffPhase.getResult();
+						return (pike13StaffMembers == null) ? null : new StaffDirectory(pike13StaffMembers);
+					}
+				}, pike13StaffPhase);
+		final Phase<ArrayList<SalesForceStaffHoursModel>> pike13StaffHoursPhase = runner.addPhase(
+				"Get Pike13 staff hours", new Callable<ArrayList<SalesForceStaffHoursModel>>() {
+					public ArrayList<SalesForceStaffHoursModel> call() {
+						return pike13Api.getSalesForceStaffHours(startDate, today);
+					}
+				});
+
+		// Get Github comments, then graduations; MySql reads share one connection with logging, so hold its lock
+		final Phase<ArrayList<AttendanceEventModel>> dbAttendancePhase = runner.addPhase("Get DB attendance",
+				new Callable<ArrayList<AttendanceEventModel>>() {
+					public ArrayList<AttendanceEventModel> call() {
+						synchronized (MySqlAccess.LOCK) {
+							return dbImports.getAllEvents(startDate);
+						}
+					}
+				});
+		final Phase<ArrayList<GraduationModel>> gradPhase = runner.addPhase("Get DB graduations",
+				new Callable<ArrayList<GraduationModel>>() {
+					public ArrayList<GraduationModel> call() {
+						synchronized (MySqlAccess.LOCK) {
+							return sqlDb.getAllGradRecords();
+						}
+					}
+				}, dbAttendancePhase);
+		final Phase<ArrayList<Contact_Diary__c>> sfDiaryPhase = runner.addPhase("Get SF diary",
+				new Callable<ArrayList<Contact_Diary__c>>() {
+					public ArrayList<Contact_Diary__c> call() throws Exception {
+						return fetchOnPool(connPool, new ConnectionTask<ArrayList<Contact_Diary__c>>() {
+							public ArrayList<Contact_Diary__c> call(EnterpriseConnection connection) {
+								return new GetRecordsFromSalesForce(connection).getSalesForceDiary();
+							}
+						});
+					}
+				});
+
+		// === UPDATE CLIENTS: Students & Parents ===
+		// Returns the Pike13 students for the attendance update, or null if SF contacts were not available
+		final Phase<ArrayList<StudentImportModel>> updateClientsPhase = runner.addPhase("Update students & adults",
+				new Callable<ArrayList<StudentImportModel>>() {
+					public ArrayList<StudentImportModel> call() {
+						ContactIndex sfContacts = sfContactsPhase.getResult();
+						ContactIndex sfAllContacts = sfAllContactsPhase.getResult();
+						FamilyAccountIndex sfAccounts = sfAccountsPhase.getResult();
+						if (sfContacts == null || sfAllContacts == null || sfAccounts == null)
+							return null;
+
+						ArrayList<StudentImportModel> pike13StudentContactList = pike13StudentsPhase.getResult();
+						ArrayList<StudentImportModel> pike13AdultContactList = pike13AdultsPhase.getResult();
+
+						// Make sure Pike13 didn't have error getting data
+						if (pike13StudentContactList != null && pike13AdultContactList != null) {
+							// Insert account ID for all students & adults
+							ListUtilities.fillInAccountID(pike13StudentContactList, sfAllContacts);
+							ListUtilities.fillInAccountID(pike13AdultContactList, sfAllContacts);
+
+							// Index account managers and their dependents by name
+							AccountManagerIndex acctMgrIndex = new AccountManagerIndex(pike13StudentContactList,
+									pike13AdultContactList);
+
+							// Update student & adult contact records; new contacts are added to both indexes
+							updateRecords.updateStudents(pike13StudentContactList, acctMgrIndex, sfAccounts, sfContacts,
+									sfAllContacts);
+							updateRecords.updateAdults(pike13StudentContactList, pike13AdultContactList, acctMgrIndex,
+									sfAccounts, sfContacts, sfAllContacts);
+						}
+						return pike13StudentContactList;
+					}
+				}, sfContactsPhase, sfAllContactsPhase, sfAccountsPhase, pike13StudentsPhase, pike13AdultsPhase);
 
 		// === UPDATE ATTENDANCE ===
-		// (1) Get Github comments and Pike13 attendance; store in list
-		ArrayList<AttendanceEventModel> dbAttendanceList = dbImports.getAllEvents(startDate);
-		ArrayList<SalesForceAttendanceModel> pike13Attendance = pike13Api.getSalesForceAttendance(startDate, endDate);
-		ArrayList<StaffMemberModel> pike13StaffMembers = pike13Api.getSalesForceStaffMembers();
-
-		// (2) Get SF contacts again in case new students were added
-		if (sfContactList != null && sfAllContactList != null) {
-			sfContactList.clear();
-			sfAllContactList.clear();
-			sfContactList = getRecords.getSalesForceContacts(); // Students & teachers
-			sfAllContactList = getRecords.getAllSalesForceContacts(); // + all adults
-		}
+		// Contact indexes include students added by the client update, so wait for it
+		final Phase<Void> updateAttendancePhase = runner.addPhase("Update attendance", new Callable<Void>() {
+			public Void call() {
+				ArrayList<SalesForceAttendanceModel> pike13Attendance = pike13AttendancePhase.getResult();
+				ArrayList<AttendanceEventModel> dbAttendanceList = dbAttendancePhase.getResult();
+				ContactIndex sfContacts = sfContactsPhase.getResult();
+				ContactIndex sfAllContacts = sfAllContactsPhase.getResult();
+				ArrayList<StudentImportModel> pike13StudentContactList = updateClientsPhase.getResult();
+				StaffDirectory staffDirectory = staffDirectoryPhase.getResult();
 
-		if (pike13Attendance != null && dbAttendanceList != null && sfContactList != null && sfAllContactList != null
-				&& pike13StudentContactList != null && pike13StaffMembers != null) {
-			// (3) Update attendance records
-			updateRecords.updateAttendance(pike13Attendance, dbAttendanceList, sfContactList, sfAllContactList,
-					pike13StudentContactList, pike13StaffMembers);
+				if (pike13Attendance != null && dbAttendanceList != null && sfContacts != null && sfAllContacts != null
+						&& pike13StudentContactList != null && staffDirectory != null) {
+					// Update attendance records
+					updateRecords.updateAttendance(pike13Attendance, dbAttendanceList, sfContacts, sfAllContacts,
+							pike13StudentContactList, staffDirectory);
 
-			// (4) Delete canceled attendance records
-			updateRecords.removeExtraAttendanceRecords(pike13Attendance, startDate, endDate, pike13StudentContactList);
-		}
+					// Delete canceled attendance records
+					updateRecords.removeExtraAttendanceRecords(pike13Attendance, startDate, endDate,
+							pike13StudentContactList);
+				}
+				return null;
+			}
+		}, pike13AttendancePhase, dbAttendancePhase, sfContactsPhase, sfAllContactsPhase, updateClientsPhase,
+				staffDirectoryPhase);
+
+		// === UPDATE STAFF MEMBERS AND HOURS ===
+		// Runs after attendance since it fills in the staff account IDs
+		final Phase<Void> updateStaffPhase = runner.addPhase("Update staff members & hours", new Callable<Void>() {
+			public Void call() {
+				ArrayList<StaffMemberModel> pike13StaffMembers = pike13StaffPhase.getResult();
+				ArrayList<SalesForceStaffHoursModel> pike13StaffHours = pike13StaffHoursPhase.getResult();
+				ContactIndex sfContacts = sfContactsPhase.getResult();
+				ContactIndex sfAllContacts = sfAllContactsPhase.getResult();
+				FamilyAccountIndex sfAccounts = sfAccountsPhase.getResult();
+
+				if (pike13StaffMembers != null && pike13StaffHours != null && sfAllContacts != null
+						&& sfAccounts != null && sfContacts != null) {
+					// Insert account ID into staff records
+					ListUtilities.fillInAccountIDForStaff(pike13StaffMembers, sfAllContacts);
+
+					// Update staff member data and hours
+					updateRecords.updateStaffMembers(pike13StaffMembers, sfContacts, sfAllContacts, sfAccounts);
+					updateRecords.updateStaffHours(staffDirectoryPhase.getResult(), pike13StaffHours, sfContacts);
+				}
+				return null;
+			}
+		}, pike13StaffPhase, pike13StaffHoursPhase, sfContactsPhase, sfAllContactsPhase, sfAccountsPhase,
+				staffDirectoryPhase, updateAttendancePhase);
 
 		// === UPDATE GRADUATION DIARY ENTRIES ===
-		ArrayList<Contact_Diary__c> sfDiaryList = getRecords.getSalesForceDiary();
-		ArrayList<GraduationModel> gradList = sqlDb.getAllGradRecords();
+		// Runs last: graduates, attendance and staff all write through the one MySql connection
+		runner.addPhase("Update graduates", new Callable<Void>() {
+			public Void call() {
+				ArrayList<GraduationModel> gradList = gradPhase.getResult();
+				ContactIndex sfContacts = sfContactsPhase.getResult();
 
-		if (gradList != null && gradList.size() > 0) {
-			// Update records, then remove any processed records
-			updateRecords.updateGraduates(gradList, sfContactList, sfDiaryList);
-			dbImports.removeProcessedGraduations();
-		}
+				if (gradList != null && gradList.size() > 0 && sfContacts != null) {
+					// Update records, then remove any processed records
+					updateRecords.updateGraduates(gradList, sfContacts, sfDiaryPhase.getResult());
+					synchronized (MySqlAccess.LOCK) {
+						dbImports.removeProcessedGraduations();
+					}
+				}
+				return null;
+			}
+		}, gradPhase, sfContactsPhase, updateClientsPhase, sfDiaryPhase, updateStaffPhase);
 
-		// === UPDATE STAFF MEMBERS AND HOURS ===
-		ArrayList<SalesForceStaffHoursModel> pike13StaffHours = pike13Api.getSalesForceStaffHours(startDate, today);
+		runner.waitForAll();
+		updateRecords.shutdown();
 
-		if (pike13StaffMembers != null && pike13StaffHours != null && sfAllContactList != null && sfAccountList != null
-				&& sfContactList != null) {
-			// Insert account ID into staff records
-			ListUtilities.fillInAccountIDForStaff(pike13StaffMembers, sfAllContactList);
+		if (fingerprints != null) {
+			// Save hashes of what was pushed for the next run
+			System.out.println(fingerprints.getSummary());
+			try {
+				fingerprints.save();
 
-			// Update staff member data and hours
-			updateRecords.updateStaffMembers(pike13StaffMembers, sfAllContactList, sfAccountList);
-			updateRecords.updateStaffHours(pike13StaffMembers, pike13StaffHours, sfContactList);
+			} catch (IOException e) {
+				// Next run pushes everything changed since the last saved store
+				MySqlAccess.insertLogData(LogDataModel.SF_CLIENT_IMPORT_ERROR, new StudentNameModel("", "", false),
+						0, " saving fingerprint store: " + e.getMessage());
+			}
 		}
 	}
+
+	private static <R> R fetchOnPool(SalesForceConnectionPool connPool, ConnectionTask<R> task) throws Exception {
+		// Fetch errors are logged by GetRecordsFromSalesForce, which returns null
+		return connPool.submit(task).get();
+	}
+
+	private static ContactIndex getContactIndex(ArrayList<Contact> contactList) {
+		return (contactList == null) ? null : new ContactIndex(contactList);
+	}
 }
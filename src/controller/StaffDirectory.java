@@ -0,0 +1,95 @@
+package controller;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import model.StaffMemberModel;
+
+/**
+ * StaffDirectory: Pike13 staff members hashed by full name and by client ID,
+ * built once per run from Pike13SalesforceImport.getSalesForceStaffMembers.
+ *
+ * The staff category string is converted once to one of the CATEGORY_*
+ * values, so assigning teacher slots on each attendance record does not
+ * repeat the string compares. When a name or client ID appears more than
+ * once, the first staff member in the list wins, same as the list scans.
+ */
+public class StaffDirectory {
+	public static final int CATEGORY_NONE = 0;
+	public static final int CATEGORY_OTHER = 1;
+	public static final int CATEGORY_TEACHING_STAFF = 2;
+	public static final int CATEGORY_VOL_TEACHER = 3;
+	public static final int CATEGORY_STUDENT_TA = 4;
+
+	private final List<StaffMemberModel> staffList;
+	private final HashMap<String, StaffEntry> staffByName;
+	private final HashMap<String, StaffEntry> staffByClientID;
+
+	public StaffDirectory(ArrayList<StaffMemberModel> staffMembers) {
+		staffList = Collections.unmodifiableList(new ArrayList<StaffMemberModel>(staffMembers));
+		staffByName = new HashMap<String, StaffEntry>(staffMembers.size() * 2);
+		staffByClientID = new HashMap<String, StaffEntry>(staffMembers.size() * 2);
+
+		for (StaffMemberModel s : staffMembers) {
+			StaffEntry entry = new StaffEntry(s, convertCategory(s.getCategory()));
+
+			if (!staffByName.containsKey(s.getFullName()))
+				staffByName.put(s.getFullName(), entry);
+			if (s.getClientID() != null && !staffByClientID.containsKey(s.getClientID()))
+				staffByClientID.put(s.getClientID(), entry);
+		}
+	}
+
+	public StaffMemberModel findByName(String fullName) {
+		StaffEntry entry = staffByName.get(fullName);
+		return entry == null ? null : entry.staff;
+	}
+
+	public int getCategoryByName(String fullName) {
+		StaffEntry entry = staffByName.get(fullName);
+		return entry == null ? CATEGORY_NONE : entry.category;
+	}
+
+	public StaffMemberModel findByClientID(String clientID) {
+		StaffEntry entry = staffByClientID.get(clientID);
+		return entry == null ? null : entry.staff;
+	}
+
+	public int getCategoryByClientID(String clientID) {
+		StaffEntry entry = staffByClientID.get(clientID);
+		return entry == null ? CATEGORY_NONE : entry.category;
+	}
+
+	public List<StaffMemberModel> getStaffList() {
+		return staffList;
+	}
+
+	public int size() {
+		return staffList.size();
+	}
+
+	public static int convertCategory(String category) {
+		if (category == null)
+			return CATEGORY_OTHER;
+		else if (category.equals("Teaching Staff"))
+			return CATEGORY_TEACHING_STAFF;
+		else if (category.equals("Vol Teacher"))
+			return CATEGORY_VOL_TEACHER;
+		else if (category.equals("Student TA"))
+			return CATEGORY_STUDENT_TA;
+		else
+			return CATEGORY_OTHER;
+	}
+
+	private static class StaffEntry {
+		private final StaffMemberModel staff;
+		private final int category;
+
+		private StaffEntry(StaffMemberModel staff, int category) {
+			this.staff = staff;
+			this.category = category;
+		}
+	}
+}
@@ -2,6 +2,7 @@ package controller;
 
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.LinkedHashMap;
 
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
@@ -11,7 +12,6 @@ import com.sforce.soap.enterprise.DeleteResult;
 import com.sforce.soap.enterprise.EnterpriseConnection;
 import com.sforce.soap.enterprise.Error;
 import com.sforce.soap.enterprise.QueryResult;
-import com.sforce.soap.enterprise.SaveResult;
 import com.sforce.soap.enterprise.UpsertResult;
 import com.sforce.soap.enterprise.sobject.Account;
 import com.sforce.soap.enterprise.sobject.Contact;
@@ -22,13 +22,18 @@ import com.sforce.soap.enterprise.sobject.Student_Attendance__c;
 import com.sforce.soap.enterprise.sobject.Workshop_by_Teacher__c;
 import com.sforce.ws.ConnectionException;
 
+import controller.SObjectUpsertBatcher.BatchError;
+import controller.SObjectUpsertBatcher.RecordError;
+import controller.SObjectUpsertBatcher.RecordHandler;
+import controller.SObjectUpsertBatcher.UpsertReport;
+
 import model.AttendanceEventModel;
 import model.GraduationModel;
 import model.LocationLookup;
 import model.LogDataModel;
 import model.MySqlDatabase;
 import model.MySqlDbImports;
-import model.MySqlDbLogging;
+import model.RepoNameModel;
 import model.SalesForceAttendanceModel;
 import model.SalesForceStaffHoursModel;
 import model.StaffMemberModel;
@@ -47,26 +52,63 @@ public class UpdateRecordsInSalesForce {
 	private static final String ADMIN_STAFF_NAME = "Staff Admin";
 	private static final double PASSING_GRADE_FOR_CLASSES = 70.0;
 	private static final double PASSING_GRADE_FOR_ORACLE = 65.0;
+	private static final String[] FINGERPRINT_RECORD_TYPES = { "student", "adult", "account", "attendance", "staff" };
 
 	private MySqlDbImports dbImports;
 	private EnterpriseConnection connection;
+	private SalesForceConnectionPool connPool;
+	private int maxBatchesInFlight;
+	private SObjectFingerprintStore fingerprints;
 	private GetRecordsFromSalesForce getRecords;
+	private RepoNameParser repoNameParser = new RepoNameParser();
 
 	private boolean attendanceUpsertError = false;
 	
 	private static final String[] gitEmojis = {":smile:", ":sweat_smile:", ":thumbsup:", ":sunglasses:", ":sleeping:", ":confused:", ":astonished:", 
 			":neutral_face:", ":unamused:", ":cry:", ":tada:", ":question:", ":100:", ":+1:", ":-1:" };
+	private static final CharTrie gitEmojiTrie = new CharTrie();
+
+	static {
+		// Emoji index is the match priority: first emoji in the list wins
+		for (int i = 0; i < gitEmojis.length; i++)
+			gitEmojiTrie.add(gitEmojis[i], i);
+	}
 
 	public UpdateRecordsInSalesForce(MySqlDatabase mySqlDb, MySqlDbImports dbImports, EnterpriseConnection connection,
 			GetRecordsFromSalesForce getRecords) {
+		this(mySqlDb, dbImports, connection, getRecords, SalesForceConnectionPool.DEFAULT_NUM_CONNECTIONS);
+	}
+
+	public UpdateRecordsInSalesForce(MySqlDatabase mySqlDb, MySqlDbImports dbImports, EnterpriseConnection connection,
+			GetRecordsFromSalesForce getRecords, int maxBatchesInFlight) {
 		this.dbImports = dbImports;
 		this.connection = connection;
 		this.getRecords = getRecords;
+
+		// Upsert batches in flight at once, each on its own connection
+		this.connPool = new SalesForceConnectionPool(connection, maxBatchesInFlight);
+		this.maxBatchesInFlight = connPool.getNumConnections();
+	}
+
+	public SalesForceConnectionPool getConnectionPool() {
+		return connPool;
+	}
+
+	public void setFingerprintStore(SObjectFingerprintStore fingerprints) {
+		// Student, adult, staff, account and attendance upserts skip unchanged records; null = push all
+		this.fingerprints = fingerprints;
+		if (fingerprints != null)
+			fingerprints.setExpectedRecordTypes(FINGERPRINT_RECORD_TYPES);
+	}
+
+	public void shutdown() {
+		connPool.shutdown();
 	}
 
-	public void updateStudents(ArrayList<StudentImportModel> pike13Students,
-			ArrayList<StudentImportModel> pike13Managers, ArrayList<Account> sfAccounts) {
+	public void updateStudents(ArrayList<StudentImportModel> pike13Students, AccountManagerIndex acctMgrIndex,
+			FamilyAccountIndex sfAccounts, ContactIndex sfContacts, ContactIndex sfAllContacts) {
 		ArrayList<Contact> contactList = new ArrayList<Contact>();
+		FamilyAccountCreator newAccounts = new FamilyAccountCreator(connPool, maxBatchesInFlight, sfAccounts);
 
 		try {
 			for (int i = 0; i < pike13Students.size(); i++) {
@@ -91,7 +133,7 @@ public class UpdateRecordsInSalesForce {
 				// Check for account manager names
 				if (student.getAccountMgrNames() == null || student.getAccountMgrNames().equals("")) {
 					// Student has no Pike13 account manager, so error
-					MySqlDbLogging.insertLogData(LogDataModel.MISSING_PIKE13_ACCT_MGR_FOR_CLIENT,
+					MySqlAccess.insertLogData(LogDataModel.MISSING_PIKE13_ACCT_MGR_FOR_CLIENT,
 							new StudentNameModel(student.getFirstName(), student.getLastName(), true),
 							student.getClientID(), " " + student.getFullName());
 					continue;
@@ -100,10 +142,10 @@ public class UpdateRecordsInSalesForce {
 				// Find account manager in Pike13 list so we can parse first/last names
 				String accountMgrName = ListUtilities.getFirstNameInString(student.getAccountMgrNames());
 				StudentImportModel acctMgrModel = ListUtilities.findAcctManagerInList(student, accountMgrName,
-						pike13Managers);
+						acctMgrIndex);
 				if (acctMgrModel == null) {
 					// Pike13 account manager not found? This should not happen!
-					MySqlDbLogging.insertLogData(LogDataModel.MISSING_PIKE13_ACCT_MGR_FOR_CLIENT,
+					MySqlAccess.insertLogData(LogDataModel.MISSING_PIKE13_ACCT_MGR_FOR_CLIENT,
 							new StudentNameModel(student.getFirstName(), student.getLastName(), true),
 							student.getClientID(), " " + student.getFullName() + ", manager " + accountMgrName);
 					continue;
@@ -114,42 +156,35 @@ public class UpdateRecordsInSalesForce {
 						acctMgrModel.getLastName() + " " + acctMgrModel.getFirstName() + " Family");
 				Account account = ListUtilities.findAccountInSalesForceList(acctFamilyName, acctMgrModel, sfAccounts);
 
-				if (account.getName().equals("")) {
-					// SalesForce account does not yet exist, so create
-					account.setName(acctFamilyName);
-					account.setType("Family");
-					if (!createAccountRecord(student.getFirstName(), student.getLastName(), student.getClientID(),
-							account))
-						continue;
-
-					// Now that account has been created, need to get account from SF again
-					account = getRecords.getSalesForceAccountByName(acctFamilyName);
-					if (account == null || account.getName().equals(""))
-						continue;
-
-					// Add to list in case more dependents belong to this account
-					sfAccounts.add(account);
-				}
+				if (account.getName().equals(""))
+					// SalesForce account does not yet exist, so create with the other new families below
+					account = newAccounts.getNewAccount(acctFamilyName, student.getFirstName(), student.getLastName(),
+							student.getClientID());
 
 				// Create contact and add to list
-				contactList.add(createContactRecord(false, student, account, pike13Students));
+				Contact c = createContactRecord(false, student, account, pike13Students);
+				newAccounts.addContact(account, c);
+				contactList.add(c);
 			}
 
-			upsertContactRecordList(contactList, "student");
+			// Create new family accounts in batches, then fill in their contacts' account IDs
+			contactList = newAccounts.createAccounts(contactList);
+			upsertChangedContactRecordList(contactList, "student", sfContacts, sfAllContacts);
 
 		} catch (Exception e) {
 			if (e.getMessage() == null || e.getMessage().equals("null")) {
-				MySqlDbLogging.insertLogData(LogDataModel.SF_CLIENT_IMPORT_ERROR, new StudentNameModel("", "", false),
+				MySqlAccess.insertLogData(LogDataModel.SF_CLIENT_IMPORT_ERROR, new StudentNameModel("", "", false),
 						0, "");
 				e.printStackTrace();
 			} else
-				MySqlDbLogging.insertLogData(LogDataModel.SF_CLIENT_IMPORT_ERROR, new StudentNameModel("", "", false),
+				MySqlAccess.insertLogData(LogDataModel.SF_CLIENT_IMPORT_ERROR, new StudentNameModel("", "", false),
 						0, ": " + e.getMessage());
 		}
 	}
 
 	public void updateAdults(ArrayList<StudentImportModel> pike13Students, ArrayList<StudentImportModel> pike13Adults,
-			ArrayList<Account> sfAccounts) {
+			AccountManagerIndex acctMgrIndex, FamilyAccountIndex sfAccounts, ContactIndex sfContacts,
+			ContactIndex sfAllContacts) {
 		ArrayList<Contact> contactList = new ArrayList<Contact>();
 		ArrayList<Account> accountList = new ArrayList<Account>();
 
@@ -170,7 +205,7 @@ public class UpdateRecordsInSalesForce {
 
 				// Get 1st dependent name, use this to get SalesForce Account
 				String dependentName = ListUtilities.getFirstNameInString(adult.getDependentNames());
-				Account account = ListUtilities.findAccountNameInList(dependentName, adult.getAccountID(), pike13Students, pike13Adults,
+				Account account = ListUtilities.findAccountNameInList(dependentName, adult.getAccountID(), acctMgrIndex,
 						sfAccounts);
 
 				if (account.getName().equals(""))
@@ -184,29 +219,30 @@ public class UpdateRecordsInSalesForce {
 				}
 			}
 
-			upsertContactRecordList(contactList, "adult");
+			upsertChangedContactRecordList(contactList, "adult", sfContacts, sfAllContacts);
 			upsertAccountRecordList(accountList, "account");
 
 		} catch (Exception e) {
 			if (e.getMessage() == null || e.getMessage().equals("null")) {
-				MySqlDbLogging.insertLogData(LogDataModel.SF_CLIENT_IMPORT_ERROR, new StudentNameModel("", "", false),
+				MySqlAccess.insertLogData(LogDataModel.SF_CLIENT_IMPORT_ERROR, new StudentNameModel("", "", false),
 						0, "");
 				e.printStackTrace();
 			} else
-				MySqlDbLogging.insertLogData(LogDataModel.SF_CLIENT_IMPORT_ERROR, new StudentNameModel("", "", false),
+				MySqlAccess.insertLogData(LogDataModel.SF_CLIENT_IMPORT_ERROR, new StudentNameModel("", "", false),
 						0, ": " + e.getMessage());
 		}
 	}
 
 	public void updateAttendance(ArrayList<SalesForceAttendanceModel> pike13Attendance,
-			ArrayList<AttendanceEventModel> dbAttendance, ArrayList<Contact> contacts, ArrayList<Contact> allContacts,
-			ArrayList<StudentImportModel> pike13Students, ArrayList<StaffMemberModel> staffMembers) {
+			ArrayList<AttendanceEventModel> dbAttendance, ContactIndex contacts, ContactIndex allContacts,
+			ArrayList<StudentImportModel> pike13Students, StaffDirectory staffDirectory) {
 		ArrayList<Student_Attendance__c> recordList = new ArrayList<Student_Attendance__c>();
-		ArrayList<Contact> workShopGrads = new ArrayList<Contact>();
+		ContactIndex workShopGrads = new ContactIndex();
 		ArrayList<Workshop_by_Teacher__c> wshopByTeacherList = new ArrayList<Workshop_by_Teacher__c>();
 		ArrayList<AttendanceEventModel> attendLevelChanges = new ArrayList<AttendanceEventModel>();
 		String startBillingDate = new DateTime().withZone(DateTimeZone.forID("America/Los_Angeles")).minusDays(7)
 				.toString("yyyy-MM-dd");
+		Pike13ClientMap pike13StudentMap = new Pike13ClientMap(pike13Students);
 
 		try {
 			for (int i = 0; i < pike13Attendance.size(); i++) {
@@ -233,7 +269,7 @@ public class UpdateRecordsInSalesForce {
 				if (inputModel.getEventName() == null || inputModel.getEventName().equals("")) {
 					if (contactWithData.getContact_Type__c() != null
 							&& contactWithData.getContact_Type__c().equals("Student")) {
-						MySqlDbLogging.insertLogData(LogDataModel.BLANK_EVENT_NAME_FOR_ATTENDANCE,
+						MySqlAccess.insertLogData(LogDataModel.BLANK_EVENT_NAME_FOR_ATTENDANCE,
 								new StudentNameModel(inputModel.getFullName(), "", false),
 								Integer.parseInt(inputModel.getClientID()),
 								" on " + inputModel.getServiceDate() + ", " + inputModel.getServiceName());
@@ -246,14 +282,14 @@ public class UpdateRecordsInSalesForce {
 				if (locCode == null) {
 					// Location code not valid, report error if '@' in event name
 					if (inputModel.getEventName() != null && inputModel.getEventName().contains("@"))
-						MySqlDbLogging.insertLogData(LogDataModel.ATTENDANCE_LOC_CODE_INVALID,
+						MySqlAccess.insertLogData(LogDataModel.ATTENDANCE_LOC_CODE_INVALID,
 								new StudentNameModel(inputModel.getFullName(), "", false),
 								Integer.parseInt(inputModel.getClientID()),
 								" for event " + inputModel.getEventName() + " (" + inputModel.getServiceDate() + ")");
 
 				} else if (!LocationLookup.findLocationCodeMatch(locCode, inputModel.getLocation())) {
 					// Location code is valid, but does not match event location
-					MySqlDbLogging.insertLogData(LogDataModel.ATTENDANCE_LOC_CODE_MISMATCH,
+					MySqlAccess.insertLogData(LogDataModel.ATTENDANCE_LOC_CODE_MISMATCH,
 							new StudentNameModel("", "", false), 0,
 							" for event " + inputModel.getEventName() + ", " + inputModel.getLocation());
 				}
@@ -282,6 +318,7 @@ public class UpdateRecordsInSalesForce {
 
 				AttendanceEventModel dbAttend = ListUtilities.findAttendanceEventInList(inputModel.getVisitID(),
 						dbAttendance);
+				RepoNameModel repo = null;
 				if (dbAttend != null) {
 					if (!dbAttend.getGithubComments().equals("")) {
 						a.setNote__c(dbAttend.getGithubComments());
@@ -289,7 +326,8 @@ public class UpdateRecordsInSalesForce {
 					}
 					if (dbAttend.getRepoName() != null && !dbAttend.getRepoName().equals("")) {
 						a.setRepo_Name__c(dbAttend.getRepoName());
-						updateAttendanceModule(a);
+						repo = repoNameParser.parse(dbAttend.getRepoName());
+						updateAttendanceModule(a, repo);
 					}
 					if (!dbAttend.getGitDescription().equals("")) {
 						a.setGit_Description__c(dbAttend.getGitDescription());
@@ -298,8 +336,7 @@ public class UpdateRecordsInSalesForce {
 					}
 				}
 
-				StudentImportModel dbStudent = ListUtilities.findClientIDInPike13List(inputModel.getClientID(),
-						pike13Students);
+				StudentImportModel dbStudent = pike13StudentMap.get(inputModel.getClientID());
 				if (inputModel.getServiceDate().compareTo(startBillingDate) >= 0) {
 					if (dbStudent != null) {
 						if (dbStudent.getFinancialAidPercent().length() > MAX_BILLING_NOTES_FIELD_LENGTH)
@@ -310,7 +347,7 @@ public class UpdateRecordsInSalesForce {
 					}
 				}
 
-				String newStaff = parseTeacherString(inputModel.getStaff(), a, staffMembers);
+				String newStaff = parseTeacherString(inputModel.getStaff(), a, staffDirectory);
 				if (newStaff.length() > MAX_SALESFORCE_FIELD_LENGTH)
 					a.setStaff__c(newStaff.substring(0, MAX_SALESFORCE_FIELD_LENGTH));
 				else
@@ -318,7 +355,7 @@ public class UpdateRecordsInSalesForce {
 
 				// Extract level from DB attendance, store in 'internal level'
 				if (inputModel.getStatus().equals("completed")) {
-					updateAttendLevel(attendLevelChanges, inputModel, contactWithData, a, dbAttend);
+					updateAttendLevel(attendLevelChanges, inputModel, contactWithData, a, dbAttend, repo);
 				}
 
 				a.setService_Date__c(convertDateStringToCalendar(inputModel.getServiceDate()));
@@ -336,51 +373,34 @@ public class UpdateRecordsInSalesForce {
 					createWorkshopByTeacherRecord(wshopByTeacherList, a, c);
 			}
 
-			// Copy up to 200 records to array at a time (max allowed)
-			Student_Attendance__c[] recordArray;
-			int numRecords = recordList.size();
-			int remainingRecords = numRecords;
-			int arrayIdx = 0;
-
-			System.out.println(numRecords + " Pike13 attendance records");
-			if (numRecords > MAX_NUM_UPSERT_RECORDS)
-				recordArray = new Student_Attendance__c[MAX_NUM_UPSERT_RECORDS];
-			else
-				recordArray = new Student_Attendance__c[numRecords];
-
-			for (int i = 0; i < numRecords; i++) {
-				recordArray[arrayIdx] = recordList.get(i);
+			if (fingerprints == null) {
+				System.out.println(recordList.size() + " Pike13 attendance records");
+				upsertAttendanceRecords(recordList, null);
 
-				arrayIdx++;
-				if (arrayIdx == MAX_NUM_UPSERT_RECORDS) {
-					upsertAttendanceRecords(recordArray);
-					remainingRecords -= MAX_NUM_UPSERT_RECORDS;
-					arrayIdx = 0;
-
-					if (remainingRecords > MAX_NUM_UPSERT_RECORDS)
-						recordArray = new Student_Attendance__c[MAX_NUM_UPSERT_RECORDS];
-					else if (remainingRecords > 0)
-						recordArray = new Student_Attendance__c[remainingRecords];
-				}
+			} else {
+				// Only push visits that are new or changed since the last run
+				ArrayList<Student_Attendance__c> changedList = fingerprints.getChangedRecords("attendance",
+						"Visit_Id__c", recordList);
+				System.out.println(recordList.size() + " Pike13 attendance records, " + changedList.size()
+						+ " changed, " + fingerprints.getNumSkipped("attendance") + " skipped, "
+						+ fingerprints.getApiCallsSaved("attendance") + " API calls saved");
+				upsertAttendanceRecords(changedList,
+						new FingerprintHandler<Student_Attendance__c>("attendance", "Visit_Id__c"));
 			}
 
-			// Update remaining records in Salesforce.com
-			if (arrayIdx > 0)
-				upsertAttendanceRecords(recordArray);
-
 		} catch (Exception e) {
 			if (e.getMessage() == null || e.getMessage().equals("null")) {
-				MySqlDbLogging.insertLogData(LogDataModel.SF_ATTENDANCE_IMPORT_ERROR,
+				MySqlAccess.insertLogData(LogDataModel.SF_ATTENDANCE_IMPORT_ERROR,
 						new StudentNameModel("", "", false), 0, "");
 				e.printStackTrace();
 			} else
-				MySqlDbLogging.insertLogData(LogDataModel.SF_ATTENDANCE_IMPORT_ERROR,
+				MySqlAccess.insertLogData(LogDataModel.SF_ATTENDANCE_IMPORT_ERROR,
 						new StudentNameModel("", "", false), 0, ": " + e.getMessage());
 		}
 
 		// Update modified clients to SalesForce
 		if (workShopGrads.size() > 0) {
-			upsertContactRecordList(workShopGrads, "WorkS grad");
+			upsertContactRecordList(workShopGrads.getContactList(), "WorkS grad");
 		}
 		
 		// Update workshops by teacher to SalesForce
@@ -391,79 +411,39 @@ public class UpdateRecordsInSalesForce {
 		System.out.println(attendLevelChanges.size() + " Attendance completed");
 		if (attendLevelChanges.size() > 0) {
 			// Update SF attendance state field in SQL DB
-			for (AttendanceEventModel a : attendLevelChanges)
-				dbImports.updateAttendLevelChanges(a.getVisitID(), a.getState());
+			synchronized (MySqlAccess.LOCK) {
+				for (AttendanceEventModel a : attendLevelChanges)
+					dbImports.updateAttendLevelChanges(a.getVisitID(), a.getState());
+			}
 		}
 	}
 
-	private void updateAttendanceModule(Student_Attendance__c a) {
-		// Extract module from repo name
-		String repoName = a.getRepo_Name__c().toLowerCase();
-		String levelName, moduleName = null;	
-		int moduleStartIdx = 0;
-		
-		// Github classroom names are formatted level-0-module-3 OR level3-module1
-		if (repoName.contains("intro-to-java-workshop"))
-			return;
-		else if (repoName.startsWith("level") && repoName.substring(6).startsWith("-module")) {
-			levelName = repoName.substring(5, 6);
-			moduleStartIdx = 13;
-		} else if (repoName.startsWith("level-") && repoName.substring(7).startsWith("-module")) {
-			levelName = repoName.substring(6, 7);
-			moduleStartIdx = 14;
-		} else if (repoName.startsWith("old-level") && repoName.substring(10).startsWith("-module")) {
-			levelName = repoName.substring(9, 10);
-			moduleStartIdx = 17;
-		} else if (repoName.length() > 10 && repoName.startsWith("level5-0") && repoName.charAt(9) == '-') {
-			levelName = repoName.substring(8, 9);
-			moduleStartIdx = 8;
-		} else if (repoName.startsWith("processingsnake-")) {
-			levelName = "2";
-			moduleName = "2";
-		} else if (repoName.startsWith("league-invaders-")) {
-			levelName = "2";
-			moduleName = "3";
-		} else if (repoName.startsWith("league-level2-game-")) {
-			levelName = "2";
-			moduleName = "4";
-		} else if (repoName.startsWith("level") && 
-				(repoName.substring(6).startsWith("-coding-exam-") || repoName.substring(6).startsWith("-codingexam-"))) {
-			levelName = repoName.substring(5, 6);
-			moduleName = "E";
-		} else if (repoName.startsWith("level-") &&
-				(repoName.substring(7).startsWith("-coding-exam-") || repoName.substring(7).startsWith("-codingexam-"))) {
-			levelName = repoName.substring(6, 7);
-			moduleName = "E";
-		} else {
-			System.out.println("Failed to parse repo: " + a.getContact__r().getFront_Desk_Id__c() + ", " + repoName);
+	private void updateAttendanceModule(Student_Attendance__c a, RepoNameModel repo) {
+		if (!repo.isParsed()) {
+			System.out.println("Failed to parse repo: " + a.getContact__r().getFront_Desk_Id__c() + ", "
+					+ a.getRepo_Name__c().toLowerCase());
 			return; // No matching level in repo name
 		}
 
-		if (moduleName == null) {
-			if (repoName.charAt(moduleStartIdx) == '-')
-				moduleStartIdx++;
-
-			// Now find module
-			if (repoName.charAt(moduleStartIdx) >= '0' && repoName.charAt(moduleStartIdx) <= '9' // module #
-				&& (repoName.length() == (moduleStartIdx + 1) || repoName.charAt(moduleStartIdx + 1) == '-')) {
-				moduleName = repoName.substring(moduleStartIdx, moduleStartIdx + 1);
-			}
-		}
-			
 		// Set the values in the attendance record
-		a.setGit_Level__c(levelName);
-		a.setGit_Module__c(moduleName);
+		if (repo.getGitLevel() != null) {
+			a.setGit_Level__c(repo.getGitLevel());
+			a.setGit_Module__c(repo.getGitModule());
+		}
 	}
 
-	private String getEmojiFeedback(String description) {
-		// Check if description contains any of the emojis in the emoji list
-		for (int i = 0; i < gitEmojis.length; i++) {
-			if (description.contains(gitEmojis[i]))
-				return gitEmojis[i];
-		}
+	static String getEmojiFeedback(String description) {
+		// Check if description contains any of the emojis in the emoji list.
+		// Every emoji starts with ':', so only try the trie at each colon.
+		int colon1 = description.indexOf(':');
+		int emojiIdx = CharTrie.NO_MATCH;
+		for (int pos = colon1; pos >= 0 && emojiIdx != 0; pos = description.indexOf(':', pos + 1))
+			emojiIdx = gitEmojiTrie.matchAt(description, pos, emojiIdx);
+
+		if (emojiIdx != CharTrie.NO_MATCH)
+			return gitEmojis[emojiIdx];
 		
 		// If no standard emoji found, extract any emoji
-		int colon1 = description.indexOf(':');
 		if (colon1 >= 0 && description.length() > colon1 + 2) {
 			int colon2 = description.indexOf(':', colon1 + 1);
 			if (colon2 - colon1 > 1) {
@@ -485,13 +465,13 @@ public class UpdateRecordsInSalesForce {
 
 	private void updateAttendLevel(ArrayList<AttendanceEventModel> attendLevelChanges,
 			SalesForceAttendanceModel inputModel, Contact contactWithData, Student_Attendance__c newAttendRecord,
-			AttendanceEventModel dbAttend) {
+			AttendanceEventModel dbAttend, RepoNameModel repo) {
 
 		// Failed to find attendance record in Tracker DB: this should not happen!
 		if (dbAttend == null) {
 			// Only report error if this was not because of a missing event name
 			if (inputModel.getEventName() != null && !inputModel.getEventName().equals("")) {
-				MySqlDbLogging.insertLogData(LogDataModel.MISSING_VISIT_ID_FOR_SF_IMPORT,
+				MySqlAccess.insertLogData(LogDataModel.MISSING_VISIT_ID_FOR_SF_IMPORT,
 						new StudentNameModel(contactWithData.getFirstName(), contactWithData.getLastName(), false),
 						Integer.parseInt(inputModel.getClientID()), ": Visit ID " + inputModel.getVisitID() + " for "
 								+ inputModel.getEventName() + " on " + inputModel.getServiceDate());
@@ -503,7 +483,7 @@ public class UpdateRecordsInSalesForce {
 		if (inputModel.getEventType().startsWith("class j") && dbAttend.getState().equals("completed")) {
 			// Only update when DB state just transitioned to complete!
 			if (!dbAttend.getState().equals(dbAttend.getLastSFState())) {
-				String repoLevel = getRepoLevelString(newAttendRecord);
+				String repoLevel = (repo == null) ? null : repo.getRepoLevel();
 
 				if (contactWithData.getHighest_Level__c() == null) {
 					// If SF level is null, assume this is level 0
@@ -511,7 +491,7 @@ public class UpdateRecordsInSalesForce {
 
 					// Check if DB attendance is also 0
 					if (!dbAttend.getClassLevel().equals("0"))
-						MySqlDbLogging.insertLogData(LogDataModel.CLASS_LEVEL_MISMATCH,
+						MySqlAccess.insertLogData(LogDataModel.CLASS_LEVEL_MISMATCH,
 								new StudentNameModel(contactWithData.getFirstName(), contactWithData.getLastName(),
 										false),
 								Integer.parseInt(inputModel.getClientID()),
@@ -538,7 +518,7 @@ public class UpdateRecordsInSalesForce {
 					if (!newAttendRecord.getInternal_level__c().equals("") 
 							&& !newAttendRecord.getInternal_level__c().equals(dbAttend.getClassLevel()))
 						// Mismatched levels
-						MySqlDbLogging.insertLogData(LogDataModel.CLASS_LEVEL_MISMATCH,
+						MySqlAccess.insertLogData(LogDataModel.CLASS_LEVEL_MISMATCH,
 								new StudentNameModel(
 										contactWithData.getFirstName(), contactWithData.getLastName(), false),
 								Integer.parseInt(inputModel.getClientID()),
@@ -553,7 +533,7 @@ public class UpdateRecordsInSalesForce {
 				if (repoLevel != null && !repoLevel.equals(newAttendRecord.getInternal_level__c())
 						 && !dbAttend.getEventName().startsWith("EL")) {
 					// Github repo level does not match internal level
-					MySqlDbLogging.insertLogData(LogDataModel.CLASS_LEVEL_MISMATCH,
+					MySqlAccess.insertLogData(LogDataModel.CLASS_LEVEL_MISMATCH,
 							new StudentNameModel(contactWithData.getFirstName(), contactWithData.getLastName(), false),
 							dbAttend.getClientID(),
 							" (SF) for repo '" + newAttendRecord.getRepo_Name__c() + "' on "
@@ -565,46 +545,6 @@ public class UpdateRecordsInSalesForce {
 		}
 	}
 
-	private String getRepoLevelString(Student_Attendance__c newAttendRecord) {
-		// If repo is null, return null
-		if (newAttendRecord.getRepo_Name__c() == null)
-			return null;
-
-		// Check if github repo matches classroom naming for level
-		String levelString = null;
-		String repoName = newAttendRecord.getRepo_Name__c().toLowerCase();
-		if ((repoName.startsWith("level-") || repoName.startsWith("level_")) && repoName.length() > 7 
-				&& (repoName.substring(7).startsWith("-module") || repoName.substring(7).startsWith("-coding") 
-						|| repoName.substring(7).startsWith("-practice") || repoName.substring(7).startsWith("-checkpoint")))
-			levelString = repoName.substring(6, 7);
-		
-		else if (repoName.startsWith("level") && repoName.length() > 6 
-				&& (repoName.substring(6).startsWith("-module") || repoName.substring(6).startsWith("-exam") 
-						|| repoName.substring(6).startsWith("-coding") || repoName.substring(6).startsWith("-checkpoint")))
-			levelString = repoName.substring(5, 6);
-		
-		else if (repoName.startsWith("old-level") && repoName.length() > 10
-				&& repoName.substring(10).startsWith("-module"))
-			levelString = repoName.substring(9, 10);
-		
-		else if (repoName.startsWith("level5-0") && repoName.length() > 9 
-				&& repoName.charAt(9) == '-')
-			levelString = "5";
-		
-		else if (repoName.startsWith("processingsnake-") || repoName.startsWith("league-level2-game") ||
-				 repoName.startsWith("league-invaders-"))
-			levelString = "2";
-		
-		else if (repoName.startsWith("lvl6-project"))
-			levelString = "6";
-
-		// Found github classroom, now check if starts with digit
-		if (levelString != null && levelString.compareTo("0") >= 0 && levelString.compareTo("5") <= 0)
-			return levelString;
-		else
-			return null;
-	}
-
 	private boolean checkForVisitIdNull(SalesForceAttendanceModel inputModel) {
 		if (inputModel.getVisitID() == null || inputModel.getVisitID().equals("null")
 				|| inputModel.getVisitID().equals("")) {
@@ -624,9 +564,10 @@ public class UpdateRecordsInSalesForce {
 		boolean done = false;
 		QueryResult queryResult;
 		ArrayList<String> deleteList = new ArrayList<String>();
+		int deleteCount = 0;
 
 		if (attendanceUpsertError) {
-			MySqlDbLogging.insertLogData(LogDataModel.SALES_FORCE_CANCELED_ATTEND_CLEANUP,
+			MySqlAccess.insertLogData(LogDataModel.SALES_FORCE_CANCELED_ATTEND_CLEANUP,
 					new StudentNameModel("", "", false), 0,
 					", 0 records deleted: aborted due to attendance upsert error(s)");
 			return;
@@ -641,14 +582,24 @@ public class UpdateRecordsInSalesForce {
 			System.out.println(queryResult.getSize() + " future Salesforce attendance records for League Bot");
 
 			if (queryResult.getSize() > 0) {
+				// Hash the Pike13 visit ID's once rather than scanning the list per record
+				VisitIdSet pike13VisitIDs = new VisitIdSet(pike13Attendance);
+
 				while (!done) {
 					SObject[] records = queryResult.getRecords();
 					for (int i = 0; i < records.length; i++) {
 						// Check whether attendance record exists in Pike13
 						Student_Attendance__c a = (Student_Attendance__c) records[i];
-						if (!ListUtilities.findVisitIdInList(a.getVisit_Id__c(), pike13Attendance)) {
+						if (!pike13VisitIDs.contains(a.getVisit_Id__c())) {
 							// Record not found, so add to deletion list
 							deleteList.add(a.getId());
+
+							// Delete cancelled (future) attendance records a batch at a time
+							if (deleteList.size() == MAX_NUM_UPSERT_RECORDS) {
+								deleteAttendanceRecords(deleteList.toArray(new String[0]));
+								deleteCount += deleteList.size();
+								deleteList.clear();
+							}
 						}
 					}
 					if (queryResult.isDone())
@@ -657,10 +608,12 @@ public class UpdateRecordsInSalesForce {
 						queryResult = connection.queryMore(queryResult.getQueryLocator());
 				}
 
-				// Delete cancelled (future) attendance records
-				System.out.println("Attendance record delete from " + startDate + " to " + endDate + ", count: " + deleteList.size());
-				if (deleteList.size() > 0)
-					deleteAttendanceRecords((String[]) deleteList.toArray(new String[0]));
+				// Delete remaining cancelled (future) attendance records
+				if (deleteList.size() > 0) {
+					deleteAttendanceRecords(deleteList.toArray(new String[0]));
+					deleteCount += deleteList.size();
+				}
+				System.out.println("Attendance record delete from " + startDate + " to " + endDate + ", count: " + deleteCount);
 			}
 
 		} catch (Exception e) {
@@ -668,7 +621,7 @@ public class UpdateRecordsInSalesForce {
 		}
 	}
 
-	public void updateGraduates(ArrayList<GraduationModel> gradStudents, ArrayList<Contact> sfContacts,
+	public void updateGraduates(ArrayList<GraduationModel> gradStudents, ContactIndex sfContacts,
 			ArrayList<Contact_Diary__c> sfDiary) {
 		ArrayList<Contact_Diary__c> recordList = new ArrayList<Contact_Diary__c>();
 		ArrayList<Contact> contactList = new ArrayList<Contact>();
@@ -773,7 +726,7 @@ public class UpdateRecordsInSalesForce {
 				}
 
 				recordList.add(diaryEntry);
-				MySqlDbLogging.insertLogData(LogDataModel.STUDENT_GRADUATION,
+				MySqlAccess.insertLogData(LogDataModel.STUDENT_GRADUATION,
 						new StudentNameModel(student.getStudentName(), "", false), student.getClientID(), " "
 								+ diaryEntry.getDescription__c() + " on " + student.getEndDate() + ", # Classes " + numClasses);
 			}
@@ -784,11 +737,11 @@ public class UpdateRecordsInSalesForce {
 
 		} catch (Exception e) {
 			if (e.getMessage() == null || e.getMessage().equals("null")) {
-				MySqlDbLogging.insertLogData(LogDataModel.SF_DIARY_IMPORT_ERROR, new StudentNameModel("", "", false), 0,
+				MySqlAccess.insertLogData(LogDataModel.SF_DIARY_IMPORT_ERROR, new StudentNameModel("", "", false), 0,
 						"");
 				e.printStackTrace();
 			} else
-				MySqlDbLogging.insertLogData(LogDataModel.SF_DIARY_IMPORT_ERROR, new StudentNameModel("", "", false), 0,
+				MySqlAccess.insertLogData(LogDataModel.SF_DIARY_IMPORT_ERROR, new StudentNameModel("", "", false), 0,
 						": " + e.getMessage());
 		}
 	}
@@ -806,9 +759,10 @@ public class UpdateRecordsInSalesForce {
 		return false;
 	}
 
-	public void updateStaffMembers(ArrayList<StaffMemberModel> pike13StaffMembers, ArrayList<Contact> sfContacts,
-			ArrayList<Account> sfAccounts) {
+	public void updateStaffMembers(ArrayList<StaffMemberModel> pike13StaffMembers, ContactIndex sfContacts,
+			ContactIndex sfAllContacts, FamilyAccountIndex sfAccounts) {
 		ArrayList<Contact> recordList = new ArrayList<Contact>();
+		FamilyAccountCreator newAccounts = new FamilyAccountCreator(connPool, maxBatchesInFlight, sfAccounts);
 
 		try {
 			for (int i = 0; i < pike13StaffMembers.size(); i++) {
@@ -817,7 +771,8 @@ public class UpdateRecordsInSalesForce {
 
 				String firstName = staff.getFirstName();
 				String clientID = staff.getClientID();
-				String accountID, contactType = "Adult";
+				String contactType = "Adult";
+				Account account;
 
 				if (firstName.startsWith("TA-") || firstName.toLowerCase().startsWith("trainee-")) {
 					// Remove TA- or Trainee- from front of string
@@ -825,7 +780,7 @@ public class UpdateRecordsInSalesForce {
 
 					// TA's must have valid SFClientID that is different from ClientID
 					if (clientID.equals(staff.getSfClientID())) {
-						MySqlDbLogging.insertLogData(LogDataModel.MISSING_SF_CLIENT_ID_FOR_TA,
+						MySqlAccess.insertLogData(LogDataModel.MISSING_SF_CLIENT_ID_FOR_TA,
 								new StudentNameModel(firstName, staff.getLastName(), false), Integer.parseInt(clientID),
 								" for " + staff.getFullName());
 						continue;
@@ -839,35 +794,42 @@ public class UpdateRecordsInSalesForce {
 				}
 
 				// Get account ID, create account if needed
-				Contact c = ListUtilities.findClientIDInList(-1, clientID, staff.getFullName(), "", sfContacts);
+				Contact c = ListUtilities.findClientIDInList(-1, clientID, staff.getFullName(), "", sfAllContacts);
 				if (c == null) {
-					accountID = getStaffAccountID(staff, sfAccounts);
-					if (accountID == null)
+					account = getStaffAccount(staff, sfAccounts, newAccounts);
+					if (account == null)
 						continue;
-				} else
-					accountID = c.getAccountId();
+				} else {
+					account = new Account();
+					account.setId(c.getAccountId());
+				}
 
 				// Add to list
-				recordList.add(createStaffRecord(staff, firstName, clientID, accountID, contactType));
+				Contact staffContact = createStaffRecord(staff, firstName, clientID, account.getId(), contactType);
+				newAccounts.addContact(account, staffContact);
+				recordList.add(staffContact);
 			}
 
-			upsertContactRecordList(recordList, "staff");
+			// Create new volunteer/teacher accounts in batches, then fill in their account IDs
+			recordList = newAccounts.createAccounts(recordList);
+
+			upsertChangedContactRecordList(recordList, "staff", sfContacts, sfAllContacts);
 
 		} catch (Exception e) {
 			if (e.getMessage() == null || e.getMessage().equals("null")) {
-				MySqlDbLogging.insertLogData(LogDataModel.SF_CLIENT_IMPORT_ERROR, new StudentNameModel("", "", false),
+				MySqlAccess.insertLogData(LogDataModel.SF_CLIENT_IMPORT_ERROR, new StudentNameModel("", "", false),
 						0, "");
 				e.printStackTrace();
 			} else
-				MySqlDbLogging.insertLogData(LogDataModel.SF_CLIENT_IMPORT_ERROR, new StudentNameModel("", "", false),
+				MySqlAccess.insertLogData(LogDataModel.SF_CLIENT_IMPORT_ERROR, new StudentNameModel("", "", false),
 						0, ": " + e.getMessage());
 		}
 	}
 
-	public void updateStaffHours(ArrayList<StaffMemberModel> pike13StaffMembers,
-			ArrayList<SalesForceStaffHoursModel> pike13StaffHours, ArrayList<Contact> contacts) {
+	public void updateStaffHours(StaffDirectory staffDirectory, ArrayList<SalesForceStaffHoursModel> pike13StaffHours,
+			ContactIndex contacts) {
 		ArrayList<Staff_Hours__c> recordList = new ArrayList<Staff_Hours__c>();
-		ArrayList<Staff_Hours__c> adminHoursList = new ArrayList<Staff_Hours__c>();
+		LinkedHashMap<String, AdminHoursSummary> adminHoursMap = new LinkedHashMap<String, AdminHoursSummary>();
 
 		// Get staff admin contact record for updating summary hours
 		Contact adminContact = ListUtilities.findClientIDInList(LogDataModel.MISSING_SALES_FORCE_STAFF_MEMBER,
@@ -894,7 +856,7 @@ public class UpdateRecordsInSalesForce {
 
 				StaffMemberModel staff = ListUtilities.findStaffIDInList(LogDataModel.MISSING_PIKE13_STAFF_MEMBER,
 						inputModel.getClientID(), inputModel.getFullName(), inputModel.getServiceDate(),
-						inputModel.getEventName(), pike13StaffMembers);
+						inputModel.getEventName(), staffDirectory);
 				if (staff == null)
 					continue;
 
@@ -904,46 +866,18 @@ public class UpdateRecordsInSalesForce {
 					continue;
 
 				Staff_Hours__c h = createStaffHoursRecord(inputModel, c);
-				updateAdminHours(inputModel, staff.getCategory(), adminContact, adminHoursList);
+				updateAdminHours(inputModel, staffDirectory.getCategoryByClientID(staff.getClientID()), adminContact,
+						adminHoursMap);
 
 				recordList.add(h);
 			}
 
-			if (adminHoursList.size() > 0) {
-				System.out.println(adminHoursList.size() + " Admin Staff Hour records");
-				recordList.addAll(adminHoursList);
-			}
-
-			// Copy up to 200 records to array at a time (max allowed)
-			Staff_Hours__c[] recordArray;
-			int numRecords = recordList.size();
-			int remainingRecords = numRecords;
-			int arrayIdx = 0;
-
-			if (numRecords > MAX_NUM_UPSERT_RECORDS)
-				recordArray = new Staff_Hours__c[MAX_NUM_UPSERT_RECORDS];
-			else
-				recordArray = new Staff_Hours__c[numRecords];
-
-			for (int i = 0; i < numRecords; i++) {
-				recordArray[arrayIdx] = recordList.get(i);
-
-				arrayIdx++;
-				if (arrayIdx == MAX_NUM_UPSERT_RECORDS) {
-					upsertStaffHoursRecords(recordArray);
-					remainingRecords -= MAX_NUM_UPSERT_RECORDS;
-					arrayIdx = 0;
-
-					if (remainingRecords > MAX_NUM_UPSERT_RECORDS)
-						recordArray = new Staff_Hours__c[MAX_NUM_UPSERT_RECORDS];
-					else if (remainingRecords > 0)
-						recordArray = new Staff_Hours__c[remainingRecords];
-				}
+			if (adminHoursMap.size() > 0) {
+				System.out.println(adminHoursMap.size() + " Admin Staff Hour records");
+				recordList.addAll(createAdminHoursRecords(adminContact, adminHoursMap));
 			}
 
-			// Update remaining records in Salesforce.com
-			if (arrayIdx > 0)
-				upsertStaffHoursRecords(recordArray);
+			upsertStaffHoursRecords(recordList);
 
 		} catch (Exception e) {
 			e.printStackTrace();
@@ -978,36 +912,41 @@ public class UpdateRecordsInSalesForce {
 		return h;
 	}
 
-	private void updateAdminHours(SalesForceStaffHoursModel inputModel, String staffCategory, Contact adminContact,
-			ArrayList<Staff_Hours__c> adminHoursList) {
+	private void updateAdminHours(SalesForceStaffHoursModel inputModel, int staffCategory, Contact adminContact,
+			LinkedHashMap<String, AdminHoursSummary> adminHoursMap) {
 
 		if (adminContact == null)
 			return;
 
-		Staff_Hours__c adminHours = null;
-		for (Staff_Hours__c a : adminHoursList) {
-			if (a.getSchedule_ID__c().equals(inputModel.getScheduleID())) {
-				adminHours = a;
-				break;
-			}
-		}
-
-		// This schedule ID not yet in the list, so create record and add
+		// This schedule ID not yet in the map, so add it
+		AdminHoursSummary adminHours = adminHoursMap.get(inputModel.getScheduleID());
 		if (adminHours == null) {
-			adminHours = createAdminStaffHoursRecord(adminContact, inputModel);
-			if (adminHours == null)
-				return;
-
-			adminHoursList.add(adminHours);
+			adminHours = new AdminHoursSummary(inputModel);
+			adminHoursMap.put(inputModel.getScheduleID(), adminHours);
 		}
 
 		// Update summary counts
-		if (staffCategory.equals("Student TA"))
-			adminHours.setStype_ta_sum__c(adminHours.getStype_ta_sum__c() + 1);
-		else if (staffCategory.equals("Teaching Staff"))
-			adminHours.setStype_staff_sum__c(adminHours.getStype_staff_sum__c() + 1);
-		else if (staffCategory.equals("Vol Teacher"))
-			adminHours.setStype_vol_sum__c(adminHours.getStype_vol_sum__c() + 1);
+		if (staffCategory == StaffDirectory.CATEGORY_STUDENT_TA)
+			adminHours.taSum++;
+		else if (staffCategory == StaffDirectory.CATEGORY_TEACHING_STAFF)
+			adminHours.staffSum++;
+		else if (staffCategory == StaffDirectory.CATEGORY_VOL_TEACHER)
+			adminHours.volSum++;
+	}
+
+	private ArrayList<Staff_Hours__c> createAdminHoursRecords(Contact adminContact,
+			LinkedHashMap<String, AdminHoursSummary> adminHoursMap) {
+		ArrayList<Staff_Hours__c> adminHoursList = new ArrayList<Staff_Hours__c>(adminHoursMap.size());
+
+		// Create one Staff Admin record per schedule ID, in the order first seen
+		for (AdminHoursSummary summary : adminHoursMap.values()) {
+			Staff_Hours__c h = createAdminStaffHoursRecord(adminContact, summary.firstEvent);
+			h.setStype_ta_sum__c((double) summary.taSum);
+			h.setStype_staff_sum__c((double) summary.staffSum);
+			h.setStype_vol_sum__c((double) summary.volSum);
+			adminHoursList.add(h);
+		}
+		return adminHoursList;
 	}
 
 	private Staff_Hours__c createAdminStaffHoursRecord(Contact c, SalesForceStaffHoursModel inputModel) {
@@ -1019,118 +958,77 @@ public class UpdateRecordsInSalesForce {
 				inputModel.getLateCanceled(), inputModel.getEventName(), inputModel.getScheduleID(),
 				inputModel.getServiceCategory());
 
-		// Create staff hours record for Staff Admin
-		Staff_Hours__c h = createStaffHoursRecord(model, c);
-
-		// Initialize SType
-		h.setStype_ta_sum__c(0.0);
-		h.setStype_staff_sum__c(0.0);
-		h.setStype_vol_sum__c(0.0);
-
-		return h;
+		// Create staff hours record for Staff Admin; SType sums are set by caller
+		return createStaffHoursRecord(model, c);
 	}
 
-	private void upsertClientRecords(Contact[] records) {
-		UpsertResult[] upsertResults = null;
-
-		try {
-			// Update the records in Salesforce.com
-			upsertResults = connection.upsert("Front_Desk_ID__c", records);
-
-		} catch (ConnectionException e) {
-			if (e.getMessage() == null || e.getMessage().equals("null")) {
-				MySqlDbLogging.insertLogData(LogDataModel.SALES_FORCE_UPSERT_CLIENTS_ERROR,
-						new StudentNameModel("", "", false), 0, "");
-				e.printStackTrace();
-			} else
-				MySqlDbLogging.insertLogData(LogDataModel.SALES_FORCE_UPSERT_CLIENTS_ERROR,
-						new StudentNameModel("", "", false), 0, ": " + e.getMessage());
-			return;
-		}
+	private void upsertClientRecords(ArrayList<Contact> records, FingerprintHandler<Contact> recordHandler) {
+		// Update the records in Salesforce.com
+		UpsertReport<Contact> report = new SObjectUpsertBatcher<Contact>(connPool, "Front_Desk_ID__c",
+				maxBatchesInFlight).setRecordHandler(recordHandler).upsert(records);
+		if (recordHandler != null)
+			recordHandler.failed(report);
+		logBatchErrors(LogDataModel.SALES_FORCE_UPSERT_CLIENTS_ERROR, report);
 
 		// check the returned results for any errors
-		for (int i = 0; i < upsertResults.length; i++) {
-			if (!upsertResults[i].isSuccess()) {
-				// If client ID is numeric, then use this in error log
-				int clientID = 0;
-				if (records[i].getFront_Desk_Id__c().matches("\\d+"))
-					clientID = Integer.parseInt(records[i].getFront_Desk_Id__c());
-
-				Error[] errors = upsertResults[i].getErrors();
-				for (int j = 0; j < errors.length; j++) {
-					MySqlDbLogging.insertLogData(LogDataModel.SALES_FORCE_UPSERT_CLIENTS_ERROR,
-							new StudentNameModel(records[i].getFirstName(), records[i].getLastName(), false), clientID,
-							": " + errors[j].getMessage());
-				}
+		for (RecordError<Contact> recordError : report.getRecordErrors()) {
+			// If client ID is numeric, then use this in error log
+			Contact c = recordError.getRecord();
+			int clientID = 0;
+			if (c.getFront_Desk_Id__c().matches("\\d+"))
+				clientID = Integer.parseInt(c.getFront_Desk_Id__c());
+
+			Error[] errors = recordError.getErrors();
+			for (int j = 0; j < errors.length; j++) {
+				MySqlAccess.insertLogData(LogDataModel.SALES_FORCE_UPSERT_CLIENTS_ERROR,
+						new StudentNameModel(c.getFirstName(), c.getLastName(), false), clientID,
+						": " + errors[j].getMessage());
 			}
 		}
 	}
 
-	private void upsertAccountRecords(Account[] records) {
-		UpsertResult[] upsertResults = null;
-
-		try {
-			// Update the Account records in Salesforce.com
-			upsertResults = connection.upsert("Id", records);
-
-		} catch (ConnectionException e) {
-			if (e.getMessage() == null || e.getMessage().equals("null")) {
-				MySqlDbLogging.insertLogData(LogDataModel.SALES_FORCE_UPSERT_ACCOUNT_ERROR,
-						new StudentNameModel("", "", false), 0, "");
-				e.printStackTrace();
-			} else
-				MySqlDbLogging.insertLogData(LogDataModel.SALES_FORCE_UPSERT_ACCOUNT_ERROR,
-						new StudentNameModel("", "", false), 0, ": " + e.getMessage());
-			return;
-		}
+	private void upsertAccountRecords(ArrayList<Account> records, FingerprintHandler<Account> recordHandler) {
+		// Update the Account records in Salesforce.com
+		UpsertReport<Account> report = new SObjectUpsertBatcher<Account>(connPool, "Id", maxBatchesInFlight)
+				.setRecordHandler(recordHandler).upsert(records);
+		if (recordHandler != null)
+			recordHandler.failed(report);
+		logBatchErrors(LogDataModel.SALES_FORCE_UPSERT_ACCOUNT_ERROR, report);
 
 		// check the returned results for any errors
-		for (int i = 0; i < upsertResults.length; i++) {
-			if (!upsertResults[i].isSuccess()) {
-				Error[] errors = upsertResults[i].getErrors();
-				for (int j = 0; j < errors.length; j++) {
-					MySqlDbLogging.insertLogData(LogDataModel.SALES_FORCE_UPSERT_ACCOUNT_ERROR,
-							new StudentNameModel(records[i].getName(), "", false), 0,
-							": " + errors[j].getMessage());
-				}
+		for (RecordError<Account> recordError : report.getRecordErrors()) {
+			Error[] errors = recordError.getErrors();
+			for (int j = 0; j < errors.length; j++) {
+				MySqlAccess.insertLogData(LogDataModel.SALES_FORCE_UPSERT_ACCOUNT_ERROR,
+						new StudentNameModel(recordError.getRecord().getName(), "", false), 0,
+						": " + errors[j].getMessage());
 			}
 		}
 	}
 
-	private void upsertAttendanceRecords(Student_Attendance__c[] records) {
-		UpsertResult[] upsertResults = null;
-
-		try {
-			// Update the records in Salesforce.com
-			upsertResults = connection.upsert("Visit_Id__c", records);
-
-		} catch (ConnectionException e) {
+	private void upsertAttendanceRecords(ArrayList<Student_Attendance__c> records,
+			FingerprintHandler<Student_Attendance__c> recordHandler) {
+		// Update the records in Salesforce.com
+		UpsertReport<Student_Attendance__c> report = new SObjectUpsertBatcher<Student_Attendance__c>(connPool,
+				"Visit_Id__c", maxBatchesInFlight).setRecordHandler(recordHandler).upsert(records);
+		if (report.hasErrors())
 			attendanceUpsertError = true;
-			if (e.getMessage() == null || e.getMessage().equals("null")) {
-				MySqlDbLogging.insertLogData(LogDataModel.SALES_FORCE_UPSERT_ATTENDANCE_ERROR,
-						new StudentNameModel("", "", false), 0, "");
-				e.printStackTrace();
-			} else
-				MySqlDbLogging.insertLogData(LogDataModel.SALES_FORCE_UPSERT_ATTENDANCE_ERROR,
-						new StudentNameModel("", "", false), 0, ": " + e.getMessage());
-			return;
-		}
+		if (recordHandler != null)
+			recordHandler.failed(report);
+		logBatchErrors(LogDataModel.SALES_FORCE_UPSERT_ATTENDANCE_ERROR, report);
 
 		// check the returned results for any errors
-		for (int i = 0; i < upsertResults.length; i++) {
-			if (!upsertResults[i].isSuccess()) {
-				// If client ID is numeric, then use this in error log
-				Contact c = records[i].getContact__r();
-				int clientID = 0;
-				if (c != null && c.getFront_Desk_Id__c() != null && c.getFront_Desk_Id__c().matches("\\d+"))
-					clientID = Integer.parseInt(c.getFront_Desk_Id__c());
-
-				attendanceUpsertError = true;
-				Error[] errors = upsertResults[i].getErrors();
-				for (int j = 0; j < errors.length; j++) {
-					MySqlDbLogging.insertLogData(LogDataModel.SALES_FORCE_UPSERT_ATTENDANCE_ERROR,
-							new StudentNameModel("", "", false), clientID, ": " + errors[j].getMessage());
-				}
+		for (RecordError<Student_Attendance__c> recordError : report.getRecordErrors()) {
+			// If client ID is numeric, then use this in error log
+			Contact c = recordError.getRecord().getContact__r();
+			int clientID = 0;
+			if (c != null && c.getFront_Desk_Id__c() != null && c.getFront_Desk_Id__c().matches("\\d+"))
+				clientID = Integer.parseInt(c.getFront_Desk_Id__c());
+
+			Error[] errors = recordError.getErrors();
+			for (int j = 0; j < errors.length; j++) {
+				MySqlAccess.insertLogData(LogDataModel.SALES_FORCE_UPSERT_ATTENDANCE_ERROR,
+						new StudentNameModel("", "", false), clientID, ": " + errors[j].getMessage());
 			}
 		}
 	}
@@ -1144,11 +1042,11 @@ public class UpdateRecordsInSalesForce {
 
 		} catch (ConnectionException e) {
 			if (e.getMessage() == null || e.getMessage().equals("null")) {
-				MySqlDbLogging.insertLogData(LogDataModel.SALES_FORCE_DELETE_ATTENDANCE_ERROR,
+				MySqlAccess.insertLogData(LogDataModel.SALES_FORCE_DELETE_ATTENDANCE_ERROR,
 						new StudentNameModel("", "", false), 0, "");
 				e.printStackTrace();
 			} else
-				MySqlDbLogging.insertLogData(LogDataModel.SALES_FORCE_DELETE_ATTENDANCE_ERROR,
+				MySqlAccess.insertLogData(LogDataModel.SALES_FORCE_DELETE_ATTENDANCE_ERROR,
 						new StudentNameModel("", "", false), 0, ": " + e.getMessage());
 			return;
 		}
@@ -1158,166 +1056,200 @@ public class UpdateRecordsInSalesForce {
 			if (!deleteResults[i].isSuccess()) {
 				Error[] errors = deleteResults[i].getErrors();
 				for (int j = 0; j < errors.length; j++) {
-					MySqlDbLogging.insertLogData(LogDataModel.SALES_FORCE_DELETE_ATTENDANCE_ERROR,
+					MySqlAccess.insertLogData(LogDataModel.SALES_FORCE_DELETE_ATTENDANCE_ERROR,
 							new StudentNameModel("", "", false), 0, ": " + errors[j].getMessage());
 				}
 			}
 		}
 	}
 
-	private void upsertStaffHoursRecords(Staff_Hours__c[] records) {
-		UpsertResult[] upsertResults = null;
-
-		try {
-			// Update the records in Salesforce.com
-			upsertResults = connection.upsert("schedule_client_ID__c", records);
-
-		} catch (ConnectionException e) {
-			if (e.getMessage() == null || e.getMessage().equals("null")) {
-				MySqlDbLogging.insertLogData(LogDataModel.SALES_FORCE_UPSERT_STAFF_HOURS_ERROR,
-						new StudentNameModel("", "", false), 0, "");
-				e.printStackTrace();
-			} else
-				MySqlDbLogging.insertLogData(LogDataModel.SALES_FORCE_UPSERT_STAFF_HOURS_ERROR,
-						new StudentNameModel("", "", false), 0, ": " + e.getMessage());
-			return;
-		}
+	private void upsertStaffHoursRecords(ArrayList<Staff_Hours__c> records) {
+		// Update the records in Salesforce.com
+		UpsertReport<Staff_Hours__c> report = new SObjectUpsertBatcher<Staff_Hours__c>(connPool,
+				"schedule_client_ID__c", maxBatchesInFlight).upsert(records);
+		logBatchErrors(LogDataModel.SALES_FORCE_UPSERT_STAFF_HOURS_ERROR, report);
 
 		// check the returned results for any errors
-		for (int i = 0; i < upsertResults.length; i++) {
-			if (!upsertResults[i].isSuccess()) {
-				Error[] errors = upsertResults[i].getErrors();
-				for (int j = 0; j < errors.length; j++) {
-					MySqlDbLogging.insertLogData(LogDataModel.SALES_FORCE_UPSERT_STAFF_HOURS_ERROR,
-							new StudentNameModel("", "", false),
-							Integer.parseInt(records[i].getStaff_Name__r().getFront_Desk_Id__c()),
-							" (" + records[i].getSchedule_client_ID__c() + "): " + errors[j].getMessage());
-				}
+		for (RecordError<Staff_Hours__c> recordError : report.getRecordErrors()) {
+			Staff_Hours__c h = recordError.getRecord();
+			Error[] errors = recordError.getErrors();
+			for (int j = 0; j < errors.length; j++) {
+				MySqlAccess.insertLogData(LogDataModel.SALES_FORCE_UPSERT_STAFF_HOURS_ERROR,
+						new StudentNameModel("", "", false),
+						Integer.parseInt(h.getStaff_Name__r().getFront_Desk_Id__c()),
+						" (" + h.getSchedule_client_ID__c() + "): " + errors[j].getMessage());
 			}
 		}
 	}
 
 	private void upsertContactRecordList(ArrayList<Contact> recordList, String recordType) {
-		// Copy up to 200 records to array at a time (max allowed)
-		Contact[] recordArray;
-		int numRecords = recordList.size();
-		int remainingRecords = numRecords;
-		int arrayIdx = 0;
-
-		System.out.println(numRecords + " Pike13 " + recordType + " records");
-		if (numRecords > MAX_NUM_UPSERT_RECORDS)
-			recordArray = new Contact[MAX_NUM_UPSERT_RECORDS];
-		else
-			recordArray = new Contact[numRecords];
-
-		for (int i = 0; i < numRecords; i++) {
-			recordArray[arrayIdx] = recordList.get(i);
-
-			arrayIdx++;
-			if (arrayIdx == MAX_NUM_UPSERT_RECORDS) {
-				upsertClientRecords(recordArray);
-				remainingRecords -= MAX_NUM_UPSERT_RECORDS;
-				arrayIdx = 0;
+		System.out.println(recordList.size() + " Pike13 " + recordType + " records");
+		upsertClientRecords(recordList, null);
+	}
 
-				if (remainingRecords > MAX_NUM_UPSERT_RECORDS)
-					recordArray = new Contact[MAX_NUM_UPSERT_RECORDS];
-				else if (remainingRecords > 0)
-					recordArray = new Contact[remainingRecords];
+	private void upsertChangedContactRecordList(ArrayList<Contact> recordList, String recordType,
+			ContactIndex sfContacts, ContactIndex sfAllContacts) {
+		// Full contact records: skip the ones unchanged since the last push
+		ArrayList<Contact> changedList = recordList;
+		if (fingerprints == null)
+			System.out.println(recordList.size() + " Pike13 " + recordType + " records");
+		else {
+			// Contacts deleted or merged away in Salesforce are re-created even if unchanged here
+			for (Contact c : recordList) {
+				if (sfAllContacts.get(c.getFront_Desk_Id__c()) == null)
+					fingerprints.forget(recordType, "Front_Desk_Id__c", c);
 			}
+			changedList = fingerprints.getChangedRecords(recordType, "Front_Desk_Id__c", recordList);
+			System.out.println(recordList.size() + " Pike13 " + recordType + " records, " + changedList.size()
+					+ " changed");
 		}
 
-		// Update remaining records in Salesforce.com
-		if (arrayIdx > 0)
-			upsertClientRecords(recordArray);
+		// Upserted contacts are merged into the contact indexes for the rest of the run
+		ContactMergeHandler mergeHandler = new ContactMergeHandler(recordType, sfContacts, sfAllContacts);
+		upsertClientRecords(changedList, mergeHandler);
+		System.out.println(mergeHandler.numCreated + " " + recordType + " contacts created, "
+				+ mergeHandler.numAdded + " added to contact index");
 	}
 
 	private void upsertAccountRecordList(ArrayList<Account> recordList, String recordType) {
-		// Copy up to 200 records to array at a time (max allowed)
-		Account[] recordArray;
-		int numRecords = recordList.size();
-		int remainingRecords = numRecords;
-		int arrayIdx = 0;
-
-		System.out.println(numRecords + " Pike13 " + recordType + " records");
-		if (numRecords > MAX_NUM_UPSERT_RECORDS)
-			recordArray = new Account[MAX_NUM_UPSERT_RECORDS];
-		else
-			recordArray = new Account[numRecords];
+		if (fingerprints == null) {
+			System.out.println(recordList.size() + " Pike13 " + recordType + " records");
+			upsertAccountRecords(recordList, null);
+			return;
+		}
 
-		for (int i = 0; i < numRecords; i++) {
-			recordArray[arrayIdx] = recordList.get(i);
+		// Skip accounts unchanged since the last push
+		ArrayList<Account> changedList = fingerprints.getChangedRecords(recordType, "Id", recordList);
+		System.out.println(recordList.size() + " Pike13 " + recordType + " records, " + changedList.size() + " changed");
+		upsertAccountRecords(changedList, new FingerprintHandler<Account>(recordType, "Id"));
+	}
 
-			arrayIdx++;
-			if (arrayIdx == MAX_NUM_UPSERT_RECORDS) {
-				upsertAccountRecords(recordArray);
-				remainingRecords -= MAX_NUM_UPSERT_RECORDS;
-				arrayIdx = 0;
+	private class ContactMergeHandler extends FingerprintHandler<Contact> {
+		private ContactIndex sfContacts, sfAllContacts;
+		private int numCreated = 0, numAdded = 0;
 
-				if (remainingRecords > MAX_NUM_UPSERT_RECORDS)
-					recordArray = new Account[MAX_NUM_UPSERT_RECORDS];
-				else if (remainingRecords > 0)
-					recordArray = new Account[remainingRecords];
-			}
+		private ContactMergeHandler(String recordType, ContactIndex sfContacts, ContactIndex sfAllContacts) {
+			super(recordType, "Front_Desk_Id__c");
+			this.sfContacts = sfContacts;
+			this.sfAllContacts = sfAllContacts;
 		}
 
-		// Update remaining records in Salesforce.com
-		if (arrayIdx > 0)
-			upsertAccountRecords(recordArray);
+		@Override
+		public void upserted(Contact record, UpsertResult result) {
+			super.upserted(record, result);
+			if (result.isCreated())
+				numCreated++;
+
+			// Update the fields read by getAllSalesForceContacts, adding the contact if new
+			String clientID = record.getFront_Desk_Id__c();
+			Contact c = sfAllContacts.get(clientID);
+			if (c == null) {
+				c = new Contact();
+				c.setFront_Desk_Id__c(clientID);
+				sfAllContacts.add(c);
+				numAdded++;
+			}
+			c.setId(result.getId());
+			if (record.getAccountId() != null)
+				c.setAccountId(record.getAccountId());
+			if (record.getContact_Type__c() != null)
+				c.setContact_Type__c(record.getContact_Type__c());
+			if (record.getFirstName() != null)
+				c.setFirstName(record.getFirstName());
+			if (record.getLastName() != null)
+				c.setLastName(record.getLastName());
+
+			// Students and teachers are keyed by Front Desk ID only; attendance uses this as its contact reference
+			if (sfContacts.get(clientID) == null && GetRecordsFromSalesForce.isStudentOrTeacher(clientID,
+					RECORD_TYPE_ID_STUDENT.equals(record.getRecordTypeId()), record.getStaff_Category__c())) {
+				Contact key = new Contact();
+				key.setFront_Desk_Id__c(clientID);
+				sfContacts.add(key);
+			}
+		}
 	}
 
-	private void upsertDiaryRecordList(ArrayList<Contact_Diary__c> recordList) {
-		Contact_Diary__c[] recordArray = new Contact_Diary__c[recordList.size()];
-		UpsertResult[] upsertResults = null;
+	private class FingerprintHandler<T extends SObject> implements RecordHandler<T> {
+		private String recordType, keyField;
 
-		// Copy contact diary to record array
-		for (int i = 0; i < recordList.size(); i++) {
-			recordArray[i] = recordList.get(i);
+		private FingerprintHandler(String recordType, String keyField) {
+			this.recordType = recordType;
+			this.keyField = keyField;
 		}
-		System.out.println(recordList.size() + " Graduation records");
 
-		try {
-			// Update the records in Salesforce.com
-			upsertResults = connection.upsert("Id", recordArray);
+		@Override
+		public void upserted(T record, UpsertResult result) {
+			if (fingerprints != null)
+				fingerprints.pushed(recordType, keyField, record);
+		}
 
-		} catch (ConnectionException e) {
-			if (e.getMessage() == null || e.getMessage().equals("null")) {
-				MySqlDbLogging.insertLogData(LogDataModel.SALES_FORCE_UPSERT_DIARY_ERROR,
-						new StudentNameModel("", "", false), 0, "");
-				e.printStackTrace();
+		private void failed(UpsertReport<T> report) {
+			// Failed records lose their hash so the next run pushes them again
+			if (fingerprints == null)
+				return;
 
-			} else
-				MySqlDbLogging.insertLogData(LogDataModel.SALES_FORCE_UPSERT_DIARY_ERROR,
-						new StudentNameModel("", "", false), 0, ": " + e.getMessage());
-			return;
+			for (RecordError<T> recordError : report.getRecordErrors())
+				fingerprints.failed(recordType, keyField, recordError.getRecord());
+			for (BatchError<T> batchError : report.getBatchErrors()) {
+				for (T record : batchError.getRecords())
+					fingerprints.failed(recordType, keyField, record);
+			}
 		}
+	}
 
-		// check the returned results for any errors
-		for (int i = 0; i < upsertResults.length; i++) {
-			int clientID = 0;
-			String clientIdString = recordArray[i].getStudent_Contact__r().getFront_Desk_Id__c();
+	private void upsertDiaryRecordList(ArrayList<Contact_Diary__c> recordList) {
+		System.out.println(recordList.size() + " Graduation records");
 
-			// If client ID is numeric, then use this in error log
-			if (clientIdString.matches("\\d+"))
-				clientID = Integer.parseInt(clientIdString);
-
-			if (upsertResults[i].isSuccess()) {
-				if (clientID > 0) {
-					// Graduation diary entry successfully added to SF, so update SQL DB flag
-					String graduateName = recordArray[i].getStudent_Contact__r().getFull_Name__c();
-					dbImports.updateGradInSfField(clientID, graduateName, recordArray[i].getPike_13_ID_Level__c(), true);
-				}
+		// Update the records in Salesforce.com
+		UpsertReport<Contact_Diary__c> report = new SObjectUpsertBatcher<Contact_Diary__c>(connPool, "Id",
+				maxBatchesInFlight).setRecordHandler(new RecordHandler<Contact_Diary__c>() {
+					@Override
+					public void upserted(Contact_Diary__c diaryEntry, UpsertResult result) {
+						int clientID = getDiaryClientID(diaryEntry);
+						if (clientID > 0) {
+							// Graduation diary entry successfully added to SF, so update SQL DB flag
+							String graduateName = diaryEntry.getStudent_Contact__r().getFull_Name__c();
+							synchronized (MySqlAccess.LOCK) {
+								dbImports.updateGradInSfField(clientID, graduateName,
+										diaryEntry.getPike_13_ID_Level__c(), true);
+							}
+						}
+					}
+				}).upsert(recordList);
+		logBatchErrors(LogDataModel.SALES_FORCE_UPSERT_DIARY_ERROR, report);
 
-			} else {
-				Error[] errors = upsertResults[i].getErrors();
-				for (int j = 0; j < errors.length; j++) {
-					MySqlDbLogging.insertLogData(LogDataModel.SALES_FORCE_UPSERT_DIARY_ERROR,
-							new StudentNameModel("", "", false), clientID, ": " + errors[j].getMessage());
-				}
+		// check the returned results for any errors
+		for (RecordError<Contact_Diary__c> recordError : report.getRecordErrors()) {
+			Error[] errors = recordError.getErrors();
+			for (int j = 0; j < errors.length; j++) {
+				MySqlAccess.insertLogData(LogDataModel.SALES_FORCE_UPSERT_DIARY_ERROR,
+						new StudentNameModel("", "", false), getDiaryClientID(recordError.getRecord()),
+						": " + errors[j].getMessage());
 			}
 		}
 	}
 
-	private void updateWorkshopGrad(ArrayList<Contact> workShopGrads, SalesForceAttendanceModel inputModel) {
+	private int getDiaryClientID(Contact_Diary__c diaryEntry) {
+		// If client ID is numeric, then use this in error log
+		String clientIdString = diaryEntry.getStudent_Contact__r().getFront_Desk_Id__c();
+		if (clientIdString.matches("\\d+"))
+			return Integer.parseInt(clientIdString);
+		return 0;
+	}
+
+	private void logBatchErrors(int logType, UpsertReport<?> report) {
+		// Calls that failed outright, one log entry per call
+		for (BatchError<?> batchError : report.getBatchErrors()) {
+			if (batchError.getMessage() == null || batchError.getMessage().equals("null")) {
+				MySqlAccess.insertLogData(logType, new StudentNameModel("", "", false), 0, "");
+				batchError.getException().printStackTrace();
+			} else
+				MySqlAccess.insertLogData(logType, new StudentNameModel("", "", false), 0,
+						": " + batchError.getMessage());
+		}
+	}
+
+	private void updateWorkshopGrad(ContactIndex workShopGrads, SalesForceAttendanceModel inputModel) {
 		// Check for null lists
 		if (inputModel.getEventName() == null || inputModel.getStatus() == null || inputModel.getServiceDate() == null)
 			return;
@@ -1347,71 +1279,29 @@ public class UpdateRecordsInSalesForce {
 	}
 
 	private void upsertWorkshopByTeacherRecordList(ArrayList<Workshop_by_Teacher__c> recordList) {
-		// Copy up to 200 records to array at a time (max allowed)
-		Workshop_by_Teacher__c[] recordArray;
-		int numRecords = recordList.size();
-		int remainingRecords = numRecords;
-		int arrayIdx = 0;
-
-		System.out.println(numRecords + " Workshop by Teacher records");
-		if (numRecords > MAX_NUM_UPSERT_RECORDS)
-			recordArray = new Workshop_by_Teacher__c[MAX_NUM_UPSERT_RECORDS];
-		else
-			recordArray = new Workshop_by_Teacher__c[numRecords];
-
-		for (int i = 0; i < numRecords; i++) {
-			recordArray[arrayIdx] = recordList.get(i);
-
-			arrayIdx++;
-			if (arrayIdx == MAX_NUM_UPSERT_RECORDS) {
-				upsertWorkshopByTeacherRecords(recordArray);
-				remainingRecords -= MAX_NUM_UPSERT_RECORDS;
-				arrayIdx = 0;
-
-				if (remainingRecords > MAX_NUM_UPSERT_RECORDS)
-					recordArray = new Workshop_by_Teacher__c[MAX_NUM_UPSERT_RECORDS];
-				else if (remainingRecords > 0)
-					recordArray = new Workshop_by_Teacher__c[remainingRecords];
-			}
-		}
-
-		// Update remaining records in Salesforce.com
-		if (arrayIdx > 0)
-			upsertWorkshopByTeacherRecords(recordArray);
+		System.out.println(recordList.size() + " Workshop by Teacher records");
+		upsertWorkshopByTeacherRecords(recordList);
 	}
 	
-	private void upsertWorkshopByTeacherRecords(Workshop_by_Teacher__c[] records) {
-		UpsertResult[] upsertResults = null;
-
-		try {
-			// Update the records in Salesforce.com
-			upsertResults = connection.upsert("Unique_Id__c", records);
-
-		} catch (ConnectionException e) {
-			if (e.getMessage() == null || e.getMessage().equals("null")) {
-				MySqlDbLogging.insertLogData(LogDataModel.SF_UPSERT_WSHOP_BY_TEACHER_ERROR,
-						new StudentNameModel("", "", false), 0, "");
-				e.printStackTrace();
-			} else
-				MySqlDbLogging.insertLogData(LogDataModel.SF_UPSERT_WSHOP_BY_TEACHER_ERROR,
-						new StudentNameModel("", "", false), 0, ": " + e.getMessage());
-			return;
-		}
+	private void upsertWorkshopByTeacherRecords(ArrayList<Workshop_by_Teacher__c> records) {
+		// Update the records in Salesforce.com
+		UpsertReport<Workshop_by_Teacher__c> report = new SObjectUpsertBatcher<Workshop_by_Teacher__c>(connPool,
+				"Unique_Id__c", maxBatchesInFlight).upsert(records);
+		logBatchErrors(LogDataModel.SF_UPSERT_WSHOP_BY_TEACHER_ERROR, report);
 
 		// check the returned results for any errors
-		for (int i = 0; i < upsertResults.length; i++) {
-			if (!upsertResults[i].isSuccess()) {
-				// If client ID is numeric, then use this in error log
-				int clientID = 0;
-				if (records[i].getWShop_Contact__r() != null && records[i].getWShop_Contact__r().getFront_Desk_Id__c().matches("\\d+"))
-					clientID = Integer.parseInt(records[i].getWShop_Contact__r().getFront_Desk_Id__c());
-
-				Error[] errors = upsertResults[i].getErrors();
-				for (int j = 0; j < errors.length; j++) {
-					MySqlDbLogging.insertLogData(LogDataModel.SF_UPSERT_WSHOP_BY_TEACHER_ERROR,
-							new StudentNameModel("", "", false), clientID,
-							": " + errors[j].getMessage());
-				}
+		for (RecordError<Workshop_by_Teacher__c> recordError : report.getRecordErrors()) {
+			// If client ID is numeric, then use this in error log
+			Contact c = recordError.getRecord().getWShop_Contact__r();
+			int clientID = 0;
+			if (c != null && c.getFront_Desk_Id__c().matches("\\d+"))
+				clientID = Integer.parseInt(c.getFront_Desk_Id__c());
+
+			Error[] errors = recordError.getErrors();
+			for (int j = 0; j < errors.length; j++) {
+				MySqlAccess.insertLogData(LogDataModel.SF_UPSERT_WSHOP_BY_TEACHER_ERROR,
+						new StudentNameModel("", "", false), clientID,
+						": " + errors[j].getMessage());
 			}
 		}
 	}
@@ -1643,45 +1533,6 @@ public class UpdateRecordsInSalesForce {
 		return c;
 	}
 
-	private boolean createAccountRecord(String firstName, String lastName, int clientID, Account account) {
-		SaveResult[] saveResults = null;
-		Account[] acctList = new Account[] { account };
-
-		try {
-			// Update the account records in Salesforce.com
-			saveResults = connection.create(acctList);
-
-		} catch (ConnectionException e) {
-			if (e.getMessage() == null || e.getMessage().equals("null")) {
-				MySqlDbLogging.insertLogData(LogDataModel.SALES_FORCE_UPSERT_ACCOUNT_ERROR,
-						new StudentNameModel(firstName, lastName, false), clientID, " for " + account.getName());
-				e.printStackTrace();
-			} else
-				MySqlDbLogging.insertLogData(LogDataModel.SALES_FORCE_UPSERT_ACCOUNT_ERROR,
-						new StudentNameModel(firstName, lastName, false), clientID,
-						" for " + account.getName() + ": " + e.getMessage());
-			return false;
-		}
-
-		// check the returned results for any errors
-		if (saveResults[0].isSuccess()) {
-			System.out.println("Created SalesForce account for " + firstName + " " + lastName + ": " + account.getName());
-//			MySqlDbLogging.insertLogData(LogDataModel.CREATE_SALES_FORCE_ACCOUNT,
-//					new StudentNameModel(firstName, lastName, false), clientID,
-//					" for " + firstName + " " + lastName + ": " + account.getName());
-			return true;
-
-		} else {
-			Error[] errors = saveResults[0].getErrors();
-			for (int j = 0; j < errors.length; j++) {
-				MySqlDbLogging.insertLogData(LogDataModel.SALES_FORCE_UPSERT_ACCOUNT_ERROR,
-						new StudentNameModel(firstName, lastName, false), clientID,
-						" for " + account.getName() + ": " + errors[j].getMessage());
-			}
-			return false;
-		}
-	}
-
 	private void createWorkshopByTeacherRecord(ArrayList<Workshop_by_Teacher__c> wshopList,
 			Student_Attendance__c sfAttend, Contact contact) {
 		String uniqueID = ((Integer) sfAttend.getService_Date__c().get(Calendar.YEAR)).toString() 
@@ -1717,17 +1568,21 @@ public class UpdateRecordsInSalesForce {
 			return firstFlag;
 	}
 
-	private String getStaffAccountID(StaffMemberModel staff, ArrayList<Account> sfAccounts) {
+	private Account getStaffAccount(StaffMemberModel staff, FamilyAccountIndex sfAccounts,
+			FamilyAccountCreator newAccounts) {
 
 		// Check if staff member already has an account ID
-		if (staff.getAccountID() != null && !staff.getAccountID().equals(""))
-			return staff.getAccountID();
+		if (staff.getAccountID() != null && !staff.getAccountID().equals("")) {
+			Account account = new Account();
+			account.setId(staff.getAccountID());
+			return account;
+		}
 
 		// Check if student-teacher or parent
 		if (staff.getFirstName().startsWith("TA-") || staff.getFirstName().toLowerCase().startsWith("trainee-") 
 				|| staff.isAlsoClient()) {
 			// All TA's and existing clients must already have an account
-			MySqlDbLogging.insertLogData(LogDataModel.MISSING_ACCOUNT_FOR_TA_OR_PARENT,
+			MySqlAccess.insertLogData(LogDataModel.MISSING_ACCOUNT_FOR_TA_OR_PARENT,
 					new StudentNameModel(staff.getFullName(), "", false), 0, " " + staff.getFullName());
 			return null;
 		}
@@ -1737,28 +1592,12 @@ public class UpdateRecordsInSalesForce {
 		Account account = ListUtilities.findAccountByName(acctFamilyName, sfAccounts);
 		if (account != null) {
 			// Account name already exists
-			return account.getId();
+			return account;
 		}
 
-		// New volunteer/teacher: create an account
-		account = new Account();
-		account.setName(acctFamilyName);
-		account.setType("Family");
-		if (!createAccountRecord(staff.getFirstName(), staff.getLastName(), Integer.parseInt(staff.getClientID()),
-				account))
-			return null;
-
-		// Now that account has been created, need to get account from SF again
-		account = getRecords.getSalesForceAccountByName(acctFamilyName);
-		if (account == null || account.getName().equals("")) {
-			MySqlDbLogging.insertLogData(LogDataModel.UPSERTED_ACCOUNT_RETRIEVAL_ERROR,
-					new StudentNameModel(staff.getFullName(), "", false), 0, " for " + acctFamilyName);
-			return null;
-		}
-
-		// Add to SF account list
-		sfAccounts.add(account);
-		return account.getId();
+		// New volunteer/teacher: account is created with the other new accounts
+		return newAccounts.getNewAccount(acctFamilyName, staff.getFirstName(), staff.getLastName(),
+				Integer.parseInt(staff.getClientID()));
 	}
 
 	private static String parsePhone(String origPhone) {
@@ -1777,16 +1616,13 @@ public class UpdateRecordsInSalesForce {
 		return phone;
 	}
 
-	private static Address parseAddress(String origAddress) {
+	static Address parseAddress(String origAddress) {
 		Address mailAddr = new Address();
 		String address = origAddress;
 
-		// Replace all CR/LF characters in address
-		if (address.contains("\\r") || address.contains("\\n")) {
-			address = address.replace(",\\r\\n", ", ");
-			address = address.replace("\\r\\n", ", ");
-			address = address.replace("\\n", ", ");
-		}
+		// Replace each line break (CR/LF, CR or LF) in address with a comma
+		if (address.indexOf('\r') >= 0 || address.indexOf('\n') >= 0)
+			address = address.replaceAll(",?(\\r\\n|\\r|\\n)", ", ");
 
 		// Find street by looking for next comma
 		int idx = address.indexOf(',');
@@ -1843,7 +1679,7 @@ public class UpdateRecordsInSalesForce {
 	}
 
 	private String parseTeacherString(String teachers, Student_Attendance__c attend,
-			ArrayList<StaffMemberModel> staffList) {
+			StaffDirectory staffDirectory) {
 
 		// Clear the old values in SalesForce record.
 		// Note: Set field won't work if string empty!
@@ -1879,23 +1715,23 @@ public class UpdateRecordsInSalesForce {
 			newTeachers += values[i];
 
 			// Only add staff members to teacher fields
-			StaffMemberModel staff = ListUtilities.findStaffNameInList(values[i], staffList);
-			if (staff == null)
+			int category = staffDirectory.getCategoryByName(values[i]);
+			if (category == StaffDirectory.CATEGORY_NONE)
 				continue;
 
-			if (staff.getCategory().equals("Teaching Staff")) {
+			if (category == StaffDirectory.CATEGORY_TEACHING_STAFF) {
 				if (attend.getTeacher_1__c().trim().equals(""))
 					attend.setTeacher_1__c(values[i]);
 				else if (attend.getTeacher_2__c().trim().equals(""))
 					attend.setTeacher_2__c(values[i]);
 
-			} else if (staff.getCategory().equals("Vol Teacher")) {
+			} else if (category == StaffDirectory.CATEGORY_VOL_TEACHER) {
 				if (attend.getTeacher_3_Vol__c().trim().equals(""))
 					attend.setTeacher_3_Vol__c(values[i]);
 				else if (attend.getTeacher_4_Vol__c().trim().equals(""))
 					attend.setTeacher_4_Vol__c(values[i]);
 				
-			} else if (staff.getCategory().equals("Student TA") && studentTA.equals(""))
+			} else if (category == StaffDirectory.CATEGORY_STUDENT_TA && studentTA.equals(""))
 				studentTA = values[i];
 		}
 		
@@ -1955,11 +1791,11 @@ public class UpdateRecordsInSalesForce {
 		} catch (Exception e) {
 			if (e.getMessage() == null) {
 				e.printStackTrace();
-				MySqlDbLogging.insertLogData(LogDataModel.SF_DIARY_IMPORT_ERROR, new StudentNameModel("", "", false),
+				MySqlAccess.insertLogData(LogDataModel.SF_DIARY_IMPORT_ERROR, new StudentNameModel("", "", false),
 						clientID, " for Level " + level);
 
 			} else
-				MySqlDbLogging.insertLogData(LogDataModel.SF_DIARY_IMPORT_ERROR,
+				MySqlAccess.insertLogData(LogDataModel.SF_DIARY_IMPORT_ERROR,
 						new StudentNameModel("", "", false), clientID, " for Level " + level + ": " + e.getMessage());
 		}
 		return 0;
@@ -1985,4 +1821,14 @@ public class UpdateRecordsInSalesForce {
 		}
 		return output;
 	}
+
+	private static class AdminHoursSummary {
+		// Staff hours for the first staff member seen on this schedule ID
+		private SalesForceStaffHoursModel firstEvent;
+		private int taSum = 0, staffSum = 0, volSum = 0;
+
+		private AdminHoursSummary(SalesForceStaffHoursModel firstEvent) {
+			this.firstEvent = firstEvent;
+		}
+	}
 }
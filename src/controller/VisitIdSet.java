@@ -0,0 +1,96 @@
+package controller;
+
+import java.util.ArrayList;
+
+import model.SalesForceAttendanceModel;
+
+/**
+ * VisitIdSet: Open-addressing hash set of Pike13 visit IDs stored as primitive
+ * longs, used to check SalesForce attendance records against the Pike13
+ * attendance list without boxing or scanning the list.
+ */
+public class VisitIdSet {
+	private static final long EMPTY_SLOT = 0;
+
+	private long[] slots;
+	private int mask;
+	private int size = 0;
+	private boolean hasZero = false;
+
+	public VisitIdSet(ArrayList<SalesForceAttendanceModel> attendanceList) {
+		// Keep table at most half full
+		int capacity = 16;
+		while (capacity < attendanceList.size() * 2)
+			capacity <<= 1;
+
+		slots = new long[capacity];
+		mask = capacity - 1;
+
+		for (SalesForceAttendanceModel a : attendanceList) {
+			long visitID = parseVisitId(a.getVisitID());
+			if (visitID >= 0)
+				add(visitID);
+		}
+	}
+
+	public boolean contains(String visitIdString) {
+		long visitID = parseVisitId(visitIdString);
+		if (visitID < 0)
+			return false;
+
+		if (visitID == EMPTY_SLOT)
+			return hasZero;
+
+		int idx = hash(visitID) & mask;
+		while (slots[idx] != EMPTY_SLOT) {
+			if (slots[idx] == visitID)
+				return true;
+			idx = (idx + 1) & mask;
+		}
+		return false;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	private void add(long visitID) {
+		if (visitID == EMPTY_SLOT) {
+			if (!hasZero) {
+				hasZero = true;
+				size++;
+			}
+			return;
+		}
+
+		int idx = hash(visitID) & mask;
+		while (slots[idx] != EMPTY_SLOT) {
+			if (slots[idx] == visitID)
+				return;
+			idx = (idx + 1) & mask;
+		}
+		slots[idx] = visitID;
+		size++;
+	}
+
+	private static int hash(long key) {
+		// Mix the bits so sequential visit IDs spread across the table
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+	private static long parseVisitId(String visitIdString) {
+		// Returns -1 if the visit ID is missing or not numeric
+		if (visitIdString == null || visitIdString.length() == 0 || visitIdString.length() > 18)
+			return -1;
+
+		long visitID = 0;
+		for (int i = 0; i < visitIdString.length(); i++) {
+			char ch = visitIdString.charAt(i);
+			if (ch < '0' || ch > '9')
+				return -1;
+			visitID = (visitID * 10) + (ch - '0');
+		}
+		return visitID;
+	}
+}
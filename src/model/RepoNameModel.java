@@ -0,0 +1,42 @@
+package model;
+
+/**
+ * RepoNameModel: Level and module parsed from a github classroom repo name.
+ *
+ * gitLevel and gitModule are the values stored in the attendance record,
+ * while repoLevel is the level (0 - 5) used to check the attendance level.
+ *
+ */
+public class RepoNameModel {
+	private String gitLevel, gitModule;
+	private String repoLevel;
+	private boolean parsed;
+
+	public RepoNameModel(String gitLevel, String gitModule, String repoLevel, boolean parsed) {
+		this.gitLevel = gitLevel;
+		this.gitModule = gitModule;
+		this.repoLevel = repoLevel;
+		this.parsed = parsed;
+	}
+
+	public String getGitLevel() {
+		return gitLevel;
+	}
+
+	public String getGitModule() {
+		return gitModule;
+	}
+
+	public String getRepoLevel() {
+		return repoLevel;
+	}
+
+	public boolean isExam() {
+		return gitModule != null && gitModule.equals("E");
+	}
+
+	public boolean isParsed() {
+		// False when the repo name does not follow any classroom naming
+		return parsed;
+	}
+}
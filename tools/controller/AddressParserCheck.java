@@ -0,0 +1,72 @@
+package controller;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import com.sforce.soap.enterprise.Address;
+
+/**
+ * AddressParserCheck: Table of Pike13 address fields, as JSON strings the way
+ * Pike13 sends them, with the mailing address UpdateRecordsInSalesForce
+ * should parse from each. Each field is decoded by Pike13RowDecoder first, so
+ * escaped line breaks reach the parser as real CR/LF characters.
+ *
+ * Usage: AddressParserCheck (exits 1 if any case fails)
+ */
+public class AddressParserCheck {
+	// JSON field, expected street, city, zip; null street = no address
+	private static final String[][] CASES = {
+			// Single line
+			{ "\"123 Main St, San Diego, CA 92130\"", "123 Main St", "San Diego", "92130" },
+			{ "\"123 Main St, San Diego, CA, 92130\"", "123 Main St", "San Diego", "92130" },
+			{ "\"123 Main St, San Diego, California 92130\"", "123 Main St", "San Diego", "92130" },
+			{ "\"123 Main St, San Diego, CA 92130, United States\"", "123 Main St", "San Diego", "92130" },
+			{ "\"123 Main St, San Diego, CA. 92130-1234\"", "123 Main St", "San Diego", "92130" },
+			{ "\"123 Main St, Portland, OR 97201\"", null, null, null },
+			{ "\"123 Main St, San Diego, CA 921\"", null, null, null },
+			{ "\"123 Main St\"", null, null, null },
+			{ "\"\"", null, null, null },
+
+			// Multi-line: CR/LF, CR or LF, with or without a trailing comma
+			{ "\"123 Main St\\r\\nSan Diego, CA 92130\"", "123 Main St", "San Diego", "92130" },
+			{ "\"123 Main St,\\r\\nSan Diego, CA 92130\"", "123 Main St", "San Diego", "92130" },
+			{ "\"123 Main St\\rSan Diego, CA 92130\"", "123 Main St", "San Diego", "92130" },
+			{ "\"123 Main St\\nSan Diego, CA 92130\"", "123 Main St", "San Diego", "92130" },
+			{ "\"123 Main St,\\nSan Diego,\\nCA 92130\"", "123 Main St", "San Diego", "92130" },
+			{ "\"123 Main St\\r\\nSan Diego\\r\\nCA 92130\\r\\nUnited States\"", "123 Main St", "San Diego", "92130" },
+			{ "\"123 Main St\\r\\nPortland, OR 97201\"", null, null, null } };
+
+	public static void main(String[] args) {
+		int numFailed = 0;
+		for (String[] c : CASES) {
+			String field = decodeField(c[0]);
+			Address addr = UpdateRecordsInSalesForce.parseAddress(field);
+
+			String result = (addr == null) ? "no address"
+					: addr.getStreet() + " | " + addr.getCity() + " | " + addr.getState() + " | " + addr.getPostalCode();
+			String expected = (c[1] == null) ? "no address" : c[1] + " | " + c[2] + " | CA | " + c[3];
+			boolean passed = result.equals(expected);
+			if (!passed)
+				numFailed++;
+
+			System.out.println((passed ? "ok   " : "FAIL ") + c[0] + " -> " + result
+					+ (passed ? "" : " (expected " + expected + ")"));
+		}
+
+		System.out.println((CASES.length - numFailed) + " of " + CASES.length + " cases passed");
+		System.exit(numFailed == 0 ? 0 : 1);
+	}
+
+	private static String decodeField(String jsonField) {
+		// Decode as a one-row Pike13 report page
+		String page = "{\"data\":{\"attributes\":{\"rows\":[[" + jsonField + "]],\"has_more\":false}}}";
+		final String[] field = new String[1];
+		Pike13RowDecoder.decode(new ByteArrayInputStream(page.getBytes(StandardCharsets.UTF_8)),
+				new Pike13RowDecoder.RowHandler() {
+					public void handleRow(Pike13RowDecoder.Row row) {
+						field[0] = row.getString(0);
+					}
+				});
+		return field[0];
+	}
+}
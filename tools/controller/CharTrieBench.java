@@ -0,0 +1,225 @@
+package controller;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.joda.time.DateTime;
+
+import model.LocationLookup;
+
+/**
+ * CharTrieBench: Time per row for the two CharTrie matchers against the
+ * loops they replaced: the emoji feedback in github commit messages
+ * (getEmojiFeedback against one contains() per emoji) and the location code
+ * in class event names (LocationCodeMatcher against the per-location
+ * indexOf search), checking that both give the same answers.
+ *
+ * Commit messages are read one per line from the given file, such as the
+ * output of git log --format=%s, or generated. Event names use the
+ * SyntheticLeagueData locations.
+ *
+ * Usage: CharTrieBench [commit message file]
+ */
+public class CharTrieBench {
+	private static final long SEED = 20200301L;
+	private static final int NUM_MESSAGES = 20000;
+	private static final int NUM_EVENT_NAMES = 200;
+	private static final int NUM_ATTENDANCE_ROWS = 20000;
+	private static final int NUM_ROUNDS = 10;
+	private static final int MAX_EMOJI_FIELD_LENGTH = 35;
+
+	private static final String[] gitEmojis = { ":smile:", ":sweat_smile:", ":thumbsup:", ":sunglasses:",
+			":sleeping:", ":confused:", ":astonished:", ":neutral_face:", ":unamused:", ":cry:", ":tada:", ":question:",
+			":100:", ":+1:", ":-1:" };
+	private static final String[] MESSAGE_WORDS = { "finished", "level", "module", "recipe", "fixed", "bug", "in",
+			"the", "game", "added", "jeopardy", "questions", "refactor", "cleanup", "merge", "branch", "master",
+			"of", "https://github.com/league-level2-student/league-invaders-jdoe", "update", "readme.md", "todo:",
+			"note:", "done" };
+	private static final String[] OTHER_EMOJIS = { ":smiley:", ":nuetral_face:", ":rocket:", ":fire:", ":heart:" };
+	private static final String[] DAY_NAMES = { "Mon", "Tue", "Wed", "Thu", "Fri", "Sat" };
+
+	private static long sink = 0;
+
+	public static void main(String[] args) throws IOException {
+		Random random = new Random(SEED);
+		List<String> messages = (args.length > 0)
+				? Files.readAllLines(Paths.get(args[0]), StandardCharsets.UTF_8)
+				: generateMessages(random);
+
+		// Comments are lower-cased before the emoji is found
+		String[] descriptions = new String[messages.size()];
+		for (int i = 0; i < descriptions.length; i++)
+			descriptions[i] = messages.get(i).toLowerCase();
+		benchEmojis(descriptions);
+
+		String today = new DateTime().toString("yyyy-MM-dd");
+		SyntheticLeagueData data = new SyntheticLeagueData(1, SEED, today, today, today);
+		LocationLookup.setLocationData(data.getLocations());
+		benchLocationCodes(generateEventNames(random));
+
+		if (sink == 42)
+			System.out.println();
+	}
+
+	private static void benchEmojis(String[] descriptions) {
+		int numDiffs = 0, numEmojis = 0;
+		for (String d : descriptions) {
+			String emoji = UpdateRecordsInSalesForce.getEmojiFeedback(d);
+			if (!emoji.equals(getEmojiFeedbackByLoop(d)))
+				numDiffs++;
+			if (!emoji.equals(""))
+				numEmojis++;
+		}
+		System.out.println(descriptions.length + " commit messages, " + numEmojis + " with emoji feedback, "
+				+ numDiffs + " differ");
+
+		for (int round = 0; round < NUM_ROUNDS; round++) {
+			long startNanos = System.nanoTime();
+			for (String d : descriptions)
+				sink += getEmojiFeedbackByLoop(d).length();
+			long loopNanos = System.nanoTime() - startNanos;
+
+			startNanos = System.nanoTime();
+			for (String d : descriptions)
+				sink += UpdateRecordsInSalesForce.getEmojiFeedback(d).length();
+			long trieNanos = System.nanoTime() - startNanos;
+
+			System.out.println("Emoji round " + (round + 1) + ": loop " + loopNanos / descriptions.length
+					+ " nsecs/message, trie " + trieNanos / descriptions.length + " nsecs/message");
+		}
+	}
+
+	private static void benchLocationCodes(String[] eventNames) {
+		// Attendance rows repeat the same few class names
+		Random random = new Random(SEED);
+		String[] rows = new String[NUM_ATTENDANCE_ROWS];
+		for (int i = 0; i < rows.length; i++)
+			rows[i] = eventNames[random.nextInt(eventNames.length)];
+
+		int numDiffs = 0;
+		LocationCodeMatcher checkMatcher = new LocationCodeMatcher();
+		for (String eventName : eventNames) {
+			String locCode = checkMatcher.findLocCode(eventName);
+			String oldLocCode = findLocCodeByLoop(eventName);
+			if (locCode == null ? oldLocCode != null : !locCode.equals(oldLocCode))
+				numDiffs++;
+		}
+		System.out.println(LocationLookup.getNumLocactions() + " locations, " + eventNames.length + " event names, "
+				+ rows.length + " attendance rows, " + numDiffs + " differ");
+
+		for (int round = 0; round < NUM_ROUNDS; round++) {
+			long startNanos = System.nanoTime();
+			for (String eventName : rows) {
+				String locCode = findLocCodeByLoop(eventName);
+				sink += (locCode == null) ? 0 : locCode.length();
+			}
+			long loopNanos = System.nanoTime() - startNanos;
+
+			// New matcher each round, as each sync builds one
+			startNanos = System.nanoTime();
+			LocationCodeMatcher matcher = new LocationCodeMatcher();
+			for (String eventName : rows) {
+				String locCode = matcher.findLocCode(eventName);
+				sink += (locCode == null) ? 0 : locCode.length();
+			}
+			long trieNanos = System.nanoTime() - startNanos;
+
+			System.out.println("Location round " + (round + 1) + ": loop " + loopNanos / rows.length
+					+ " nsecs/row, trie " + trieNanos / rows.length + " nsecs/row");
+		}
+	}
+
+	private static List<String> generateMessages(Random random) {
+		ArrayList<String> messages = new ArrayList<String>(NUM_MESSAGES);
+		for (int i = 0; i < NUM_MESSAGES; i++) {
+			StringBuilder message = new StringBuilder();
+			int numWords = 2 + random.nextInt(12);
+			for (int j = 0; j < numWords; j++)
+				message.append(j == 0 ? "" : " ").append(MESSAGE_WORDS[random.nextInt(MESSAGE_WORDS.length)]);
+
+			// About half the students leave an emoji, usually at the end
+			int kind = random.nextInt(10);
+			if (kind < 4)
+				message.append(" ").append(gitEmojis[random.nextInt(gitEmojis.length)]);
+			else if (kind == 4)
+				message.insert(0, gitEmojis[random.nextInt(gitEmojis.length)] + " ");
+			else if (kind == 5)
+				message.append(" ").append(OTHER_EMOJIS[random.nextInt(OTHER_EMOJIS.length)]);
+			messages.add(message.toString());
+		}
+		return messages;
+	}
+
+	private static String[] generateEventNames(Random random) {
+		String[] eventNames = new String[NUM_EVENT_NAMES];
+		int numLocations = LocationLookup.getNumLocactions();
+		for (int i = 0; i < eventNames.length; i++) {
+			String locCode = LocationLookup.getLocationCodeString(1 + random.nextInt(numLocations));
+			String time = DAY_NAMES[random.nextInt(DAY_NAMES.length)] + " " + (9 + random.nextInt(9)) + ":00";
+			int kind = random.nextInt(10);
+			if (kind < 6)
+				eventNames[i] = "L" + random.nextInt(8) + "@" + locCode + " " + time;
+			else if (kind < 8)
+				eventNames[i] = "Java @ " + locCode + " " + time;
+			else if (kind == 8)
+				eventNames[i] = "Python Workshop@" + locCode + " " + time;
+			else
+				eventNames[i] = "Office Hours " + time;
+		}
+		return eventNames;
+	}
+
+	private static String getEmojiFeedbackByLoop(String description) {
+		// getEmojiFeedback before the emoji trie
+		for (int i = 0; i < gitEmojis.length; i++) {
+			if (description.contains(gitEmojis[i]))
+				return gitEmojis[i];
+		}
+
+		int colon1 = description.indexOf(':');
+		if (colon1 >= 0 && description.length() > colon1 + 2) {
+			int colon2 = description.indexOf(':', colon1 + 1);
+			if (colon2 - colon1 > 1) {
+				String foundEmoji = description.substring(colon1, colon2 + 1);
+				if (foundEmoji.length() > MAX_EMOJI_FIELD_LENGTH)
+					foundEmoji = foundEmoji.substring(0, MAX_EMOJI_FIELD_LENGTH);
+
+				if (foundEmoji.equals(":nuetral_face:"))
+					return ":neutral_face:";
+				if (foundEmoji.equals(":smiley:"))
+					return ":smile:";
+				if (!foundEmoji.contains(" ")) {
+					return foundEmoji;
+				}
+			}
+		}
+		return "";
+	}
+
+	private static String findLocCodeByLoop(String sourceString) {
+		// ListUtilities.findLocCodeInList before LocationCodeMatcher
+		int locPos;
+
+		for (int i = 1; i <= LocationLookup.getNumLocactions(); i++) {
+			String locCodeString = LocationLookup.getLocationCodeString(i);
+
+			locPos = sourceString.indexOf("@ " + locCodeString + " ");
+			if (locPos >= 0) {
+				String locSubString = sourceString.substring(locPos + 2);
+				return locSubString.substring(0, locSubString.indexOf(" "));
+			}
+
+			locPos = sourceString.indexOf("@" + locCodeString + " ");
+			if (locPos >= 0) {
+				String locSubString = sourceString.substring(locPos + 1);
+				return locSubString.substring(0, locSubString.indexOf(" "));
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,98 @@
+package controller;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+
+import com.sforce.soap.enterprise.sobject.Contact;
+
+/**
+ * ContactIndexBench: Time per Front Desk ID lookup for the list scan that
+ * findClientIDInList used to do against ContactIndex, at several contact
+ * counts. A tenth of the lookups are for clients with no contact, which
+ * scan the whole list.
+ *
+ * Usage: ContactIndexBench [number of contacts] ... (default 10000 50000
+ * 200000)
+ */
+public class ContactIndexBench {
+	private static final long SEED = 20200301L;
+	private static final int NUM_LOOKUPS = 2000;
+	private static final int NUM_ROUNDS = 3;
+	private static final int INDEX_REPEATS = 100; // Index lookups are too quick to time once
+	private static final int FIRST_CLIENT_ID = 100000;
+
+	private static long sink = 0;
+
+	public static void main(String[] args) {
+		String[] contactCounts = (args.length > 0) ? args : new String[] { "10000", "50000", "200000" };
+
+		ArrayList<String> results = new ArrayList<String>();
+		for (String contactCount : contactCounts)
+			results.add(runBench(Integer.parseInt(contactCount)));
+
+		System.out.println("\ncontacts,index build msecs,scan nsecs/lookup,index nsecs/lookup");
+		for (String result : results)
+			System.out.println(result);
+		if (sink == 42)
+			System.out.println();
+	}
+
+	private static String runBench(int numContacts) {
+		Random random = new Random(SEED);
+
+		// Contacts in random order, as returned by the SOQL query
+		ArrayList<Contact> contactList = new ArrayList<Contact>(numContacts);
+		for (int i = 0; i < numContacts; i++) {
+			Contact c = new Contact();
+			c.setFront_Desk_Id__c(String.valueOf(FIRST_CLIENT_ID + i));
+			contactList.add(c);
+		}
+		Collections.shuffle(contactList, random);
+
+		String[] lookups = new String[NUM_LOOKUPS];
+		for (int i = 0; i < NUM_LOOKUPS; i++) {
+			if (i % 10 == 0)
+				lookups[i] = String.valueOf(FIRST_CLIENT_ID + numContacts + random.nextInt(numContacts));
+			else
+				lookups[i] = String.valueOf(FIRST_CLIENT_ID + random.nextInt(numContacts));
+		}
+
+		long buildNanos = 0, scanNanos = 0, indexNanos = 0;
+		for (int round = 0; round < NUM_ROUNDS; round++) {
+			long startNanos = System.nanoTime();
+			for (String clientID : lookups)
+				sink += (scanForClientID(clientID, contactList) == null) ? 0 : 1;
+			scanNanos = System.nanoTime() - startNanos;
+
+			startNanos = System.nanoTime();
+			ContactIndex contactIndex = new ContactIndex(contactList);
+			buildNanos = System.nanoTime() - startNanos;
+
+			startNanos = System.nanoTime();
+			for (int i = 0; i < INDEX_REPEATS; i++) {
+				for (String clientID : lookups)
+					sink += (contactIndex.get(clientID) == null) ? 0 : 1;
+			}
+			indexNanos = (System.nanoTime() - startNanos) / INDEX_REPEATS;
+		}
+
+		// Last round, once the JIT has settled
+		String result = numContacts + "," + String.format("%.1f", buildNanos / 1e6) + "," + scanNanos / NUM_LOOKUPS
+				+ "," + indexNanos / NUM_LOOKUPS;
+		System.out.println(numContacts + " contacts: index built in " + String.format("%.1f", buildNanos / 1e6)
+				+ " msecs, scan " + scanNanos / NUM_LOOKUPS + " nsecs/lookup, index " + indexNanos / NUM_LOOKUPS
+				+ " nsecs/lookup");
+		return result;
+	}
+
+	private static Contact scanForClientID(String clientID, ArrayList<Contact> contactList) {
+		// The loop in findClientIDInList before ContactIndex
+		for (Contact c : contactList) {
+			if (c.getFront_Desk_Id__c().equals(clientID)) {
+				return c;
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,78 @@
+package controller;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import controller.ImportPhaseRunner.Phase;
+
+/**
+ * ImportPhaseSimulation: Runs the SalesForceImportEngine phase graph on an
+ * ImportPhaseRunner with each phase sleeping for the time it took in a
+ * SyntheticScaleRun at scale 1, so the schedule can be checked without any
+ * stand-ins. Prints the runner's phase timings and the most update phases
+ * that were writing through the MySql connection at the same time.
+ *
+ * Usage: ImportPhaseSimulation [-overlap] (-overlap runs graduates alongside
+ * attendance, the way the graph was first built)
+ */
+public class ImportPhaseSimulation {
+	private static final int MAX_PHASE_THREADS = 4;
+
+	private static AtomicInteger dbWriters = new AtomicInteger(0);
+	private static AtomicInteger maxDbWriters = new AtomicInteger(0);
+
+	public static void main(String[] args) {
+		boolean overlapGraduates = args.length > 0 && args[0].equals("-overlap");
+		ImportPhaseRunner runner = new ImportPhaseRunner(MAX_PHASE_THREADS);
+
+		// Fetches
+		Phase<Void> sfContacts = addPhase(runner, "Get SF contacts", 731, false);
+		Phase<Void> sfAllContacts = addPhase(runner, "Get SF all contacts", 1125, false);
+		Phase<Void> sfAccounts = addPhase(runner, "Get SF accounts", 701, false);
+		Phase<Void> pike13Students = addPhase(runner, "Get Pike13 students", 1479, false);
+		Phase<Void> pike13Adults = addPhase(runner, "Get Pike13 adults", 2424, false);
+		Phase<Void> pike13Attendance = addPhase(runner, "Get Pike13 attendance", 2863, false);
+		Phase<Void> pike13Staff = addPhase(runner, "Get Pike13 staff members", 191, false);
+		Phase<Void> staffDirectory = addPhase(runner, "Index staff members", 13, false, pike13Staff);
+		Phase<Void> pike13StaffHours = addPhase(runner, "Get Pike13 staff hours", 855, false);
+		Phase<Void> dbAttendance = addPhase(runner, "Get DB attendance", 10, false);
+		Phase<Void> grads = addPhase(runner, "Get DB graduations", 10, false, dbAttendance);
+		Phase<Void> sfDiary = addPhase(runner, "Get SF diary", 397, false);
+
+		// Updates
+		Phase<Void> updateClients = addPhase(runner, "Update students & adults", 2849, true, sfContacts,
+				sfAllContacts, sfAccounts, pike13Students, pike13Adults);
+		Phase<Void> updateAttendance = addPhase(runner, "Update attendance", 11147, true, pike13Attendance,
+				dbAttendance, sfContacts, sfAllContacts, updateClients, staffDirectory);
+		Phase<Void> updateStaff = addPhase(runner, "Update staff members & hours", 736, true, pike13Staff,
+				pike13StaffHours, sfContacts, sfAllContacts, sfAccounts, staffDirectory, updateAttendance);
+		if (overlapGraduates)
+			addPhase(runner, "Update graduates", 4591, true, grads, sfContacts, updateClients, sfDiary);
+		else
+			addPhase(runner, "Update graduates", 4591, true, grads, sfContacts, updateClients, sfDiary, updateStaff);
+
+		runner.waitForAll();
+		System.out.println("Most update phases writing to MySql at once = " + maxDbWriters.get());
+	}
+
+	private static Phase<Void> addPhase(ImportPhaseRunner runner, String name, final long msecs,
+			final boolean writesDb, Phase<?>... dependsOn) {
+		return runner.addPhase(name, new Callable<Void>() {
+			public Void call() throws InterruptedException {
+				if (writesDb) {
+					int writers = dbWriters.incrementAndGet();
+					while (writers > maxDbWriters.get())
+						maxDbWriters.compareAndSet(maxDbWriters.get(), writers);
+				}
+				try {
+					Thread.sleep(msecs);
+
+				} finally {
+					if (writesDb)
+						dbWriters.decrementAndGet();
+				}
+				return null;
+			}
+		}, dependsOn);
+	}
+}
@@ -0,0 +1,112 @@
+package controller;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+
+import model.LocationLookup;
+import model.LocationModel;
+import model.StudentImportModel;
+
+/**
+ * Pike13ClientMapBench: Time and allocation per attendance row for the regex
+ * check and student list scan that findClientIDInPike13List used to do
+ * against Pike13ClientMap, at several student counts. One row in ten is for
+ * a client who is not a student (the whole list is scanned) and one in a
+ * hundred has a non-numeric client ID.
+ *
+ * Usage: Pike13ClientMapBench [number of students] ... (default 1000 5000
+ * 20000)
+ */
+public class Pike13ClientMapBench {
+	private static final long SEED = 20200301L;
+	private static final int NUM_LOOKUPS = 20000;
+	private static final int NUM_ROUNDS = 3;
+	private static final int MAP_REPEATS = 20; // Map lookups are too quick to time once
+	private static final int FIRST_CLIENT_ID = 5000000;
+
+	private static long sink = 0;
+
+	public static void main(String[] args) {
+		String[] studentCounts = (args.length > 0) ? args : new String[] { "1000", "5000", "20000" };
+		LocationLookup.setLocationData(new ArrayList<LocationModel>());
+
+		ArrayList<String> results = new ArrayList<String>();
+		for (String studentCount : studentCounts)
+			results.add(runBench(Integer.parseInt(studentCount)));
+
+		System.out.println("\nstudents,scan nsecs/row,scan bytes/row,map nsecs/row,map bytes/row");
+		for (String result : results)
+			System.out.println(result);
+		if (sink == 42)
+			System.out.println();
+	}
+
+	private static String runBench(int numStudents) {
+		Random random = new Random(SEED);
+
+		ArrayList<StudentImportModel> studentList = new ArrayList<StudentImportModel>(numStudents);
+		for (int i = 0; i < numStudents; i++)
+			studentList.add(new StudentImportModel(FIRST_CLIENT_ID + i, "Last" + i, "First" + i, "", "", "", "", "",
+					"", "", "", "", "", "", "", "", "", 0, ""));
+		Collections.shuffle(studentList, random);
+
+		// Client ID strings from the attendance rows
+		String[] lookups = new String[NUM_LOOKUPS];
+		for (int i = 0; i < NUM_LOOKUPS; i++) {
+			if (i % 100 == 0)
+				lookups[i] = "";
+			else if (i % 10 == 0)
+				lookups[i] = String.valueOf(FIRST_CLIENT_ID + numStudents + random.nextInt(numStudents));
+			else
+				lookups[i] = String.valueOf(FIRST_CLIENT_ID + random.nextInt(numStudents));
+		}
+
+		com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		long threadID = Thread.currentThread().getId();
+		long scanNanos = 0, scanBytes = 0, mapNanos = 0, mapBytes = 0;
+		for (int round = 0; round < NUM_ROUNDS; round++) {
+			long startBytes = threadBean.getThreadAllocatedBytes(threadID);
+			long startNanos = System.nanoTime();
+			for (String clientID : lookups)
+				sink += (scanForClientID(clientID, studentList) == null) ? 0 : 1;
+			scanNanos = System.nanoTime() - startNanos;
+			scanBytes = threadBean.getThreadAllocatedBytes(threadID) - startBytes;
+
+			// Map is built once per updateAttendance call, so its build is part of the cost
+			startBytes = threadBean.getThreadAllocatedBytes(threadID);
+			startNanos = System.nanoTime();
+			for (int i = 0; i < MAP_REPEATS; i++) {
+				Pike13ClientMap studentMap = new Pike13ClientMap(studentList);
+				for (String clientID : lookups)
+					sink += (studentMap.get(clientID) == null) ? 0 : 1;
+			}
+			mapNanos = (System.nanoTime() - startNanos) / MAP_REPEATS;
+			mapBytes = (threadBean.getThreadAllocatedBytes(threadID) - startBytes) / MAP_REPEATS;
+		}
+
+		// Last round, once the JIT has settled
+		System.out.println(numStudents + " students, " + NUM_LOOKUPS + " rows: scan " + scanNanos / 1000000
+				+ " msecs, " + scanBytes / 1024 + " KB allocated; map " + mapNanos / 1000 + " usecs, "
+				+ mapBytes / 1024 + " KB allocated (including build)");
+		return numStudents + "," + scanNanos / NUM_LOOKUPS + "," + scanBytes / NUM_LOOKUPS + ","
+				+ mapNanos / NUM_LOOKUPS + "," + mapBytes / NUM_LOOKUPS;
+	}
+
+	private static StudentImportModel scanForClientID(String clientIDString,
+			ArrayList<StudentImportModel> clientList) {
+		// findClientIDInPike13List before Pike13ClientMap
+		if (!clientIDString.matches("\\d+") || clientList == null)
+			return null;
+
+		int clientID = Integer.parseInt(clientIDString);
+
+		for (StudentImportModel m : clientList) {
+			if (m.getClientID() == clientID)
+				return m;
+		}
+		return null;
+	}
+}
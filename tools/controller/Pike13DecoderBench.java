@@ -0,0 +1,219 @@
+package controller;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import javax.json.JsonValue;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+
+import model.LocationLookup;
+import model.MySqlDatabase;
+import model.MySqlDbLogging;
+
+/**
+ * Pike13DecoderBench: Time and allocation per page for the old Pike13 page
+ * decoding (javax.json tree, then stripQuotes on each string field's JSON
+ * text) against Pike13RowDecoder, on a recorded 500-row clients page served
+ * by Pike13ReplayServer.
+ *
+ * With no corpus given, the clients report is recorded from
+ * Pike13ReportStandIn at scale 1 into a temporary corpus first.
+ *
+ * Usage: Pike13DecoderBench [corpus dir] [pages per round]
+ */
+public class Pike13DecoderBench {
+	private static final long SEED = 20200301L;
+	private static final int PAGE_ROWS = 500;
+	private static final int NUM_ROUNDS = 5;
+
+	private static Pike13Connect pike13Conn = new Pike13Connect("bench");
+	private static long sink = 0;
+
+	public static void main(String[] args) throws IOException {
+		String corpusDirName = (args.length > 0) ? args[0] : recordCorpus();
+		int pagesPerRound = (args.length > 1) ? Integer.parseInt(args[1]) : 200;
+
+		// Pick a full clients page and fetch it back through the replay server
+		String pageKey = null;
+		for (Map.Entry<String, byte[]> entry : new Pike13ResponseCorpus(corpusDirName).loadAll().entrySet()) {
+			if (entry.getKey().contains("/clients/") && countRows(entry.getValue()) == PAGE_ROWS) {
+				pageKey = entry.getKey();
+				break;
+			}
+		}
+		if (pageKey == null) {
+			System.out.println("No " + PAGE_ROWS + "-row clients page in " + corpusDirName);
+			return;
+		}
+
+		Pike13ReplayServer replayServer = new Pike13ReplayServer(corpusDirName, 0, 0);
+		replayServer.start(0);
+		byte[] page;
+		try {
+			int idx = pageKey.indexOf('\n');
+			page = fetchPage(replayServer.getBaseUrl() + pageKey.substring(0, idx), pageKey.substring(idx + 1));
+		} finally {
+			replayServer.stop();
+		}
+		System.out.println("Clients page: " + countRows(page) + " rows, " + page.length + " bytes");
+
+		// Fields whose text differs are the ones with JSON escapes, which only the new decoder undoes
+		HashMap<String, Integer> oldFields = new HashMap<String, Integer>();
+		HashMap<String, Integer> newFields = new HashMap<String, Integer>();
+		decodeOld(page, oldFields);
+		decodeNew(page, newFields);
+		int numDiffs = 0;
+		for (Map.Entry<String, Integer> entry : oldFields.entrySet()) {
+			if (!entry.getValue().equals(newFields.get(entry.getKey())))
+				numDiffs++;
+		}
+		System.out.println(oldFields.size() + " fields, " + numDiffs + " differ (escaped characters)");
+
+		com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		long threadID = Thread.currentThread().getId();
+		for (int round = 0; round < NUM_ROUNDS; round++) {
+			long startBytes = threadBean.getThreadAllocatedBytes(threadID);
+			long startNanos = System.nanoTime();
+			for (int i = 0; i < pagesPerRound; i++)
+				decodeOld(page, null);
+			long oldNanos = System.nanoTime() - startNanos;
+			long oldBytes = threadBean.getThreadAllocatedBytes(threadID) - startBytes;
+
+			startBytes = threadBean.getThreadAllocatedBytes(threadID);
+			startNanos = System.nanoTime();
+			for (int i = 0; i < pagesPerRound; i++)
+				decodeNew(page, null);
+			long newNanos = System.nanoTime() - startNanos;
+			long newBytes = threadBean.getThreadAllocatedBytes(threadID) - startBytes;
+
+			System.out.printf("Round %d: old %.2f msecs %d KB per page, new %.2f msecs %d KB per page%n", round + 1,
+					oldNanos / 1e6 / pagesPerRound, oldBytes / pagesPerRound / 1024, newNanos / 1e6 / pagesPerRound,
+					newBytes / pagesPerRound / 1024);
+		}
+		if (sink == 42)
+			System.out.println();
+	}
+
+	private static void decodeOld(byte[] page, HashMap<String, Integer> fields) {
+		// Same as Pike13Connect.readInputStream and the field reads before Pike13RowDecoder
+		JsonReader reader = Json.createReader(new ByteArrayInputStream(page));
+		JsonObject attributes = ((JsonObject) reader.read()).getJsonObject("data").getJsonObject("attributes");
+		JsonArray rows = attributes.getJsonArray("rows");
+		for (int i = 0; i < rows.size(); i++) {
+			JsonArray row = rows.getJsonArray(i);
+			for (int col = 0; col < row.size(); col++) {
+				JsonValue value = row.get(col);
+				String field = (value.getValueType() == JsonValue.ValueType.NUMBER) ? value.toString()
+						: pike13Conn.stripQuotes(value.toString());
+				sink += field.length();
+				if (fields != null)
+					fields.put(i + "," + col, field.hashCode());
+			}
+		}
+		if (attributes.getBoolean("has_more"))
+			sink += attributes.getString("last_key").length();
+	}
+
+	private static void decodeNew(byte[] page, final HashMap<String, Integer> fields) {
+		final int[] rowNum = new int[1];
+		Pike13RowDecoder.PageInfo pageInfo = Pike13RowDecoder.decode(new ByteArrayInputStream(page),
+				new Pike13RowDecoder.RowHandler() {
+					public void handleRow(Pike13RowDecoder.Row row) {
+						for (int col = 0; col < row.size(); col++) {
+							String field = row.getString(col);
+							sink += field.length();
+							if (fields != null)
+								fields.put(rowNum[0] + "," + col, field.hashCode());
+						}
+						rowNum[0]++;
+					}
+				});
+		if (pageInfo.hasMore())
+			sink += pageInfo.getLastKey().length();
+	}
+
+	private static int countRows(byte[] page) {
+		final int[] numRows = new int[1];
+		Pike13RowDecoder.decode(new ByteArrayInputStream(page), new Pike13RowDecoder.RowHandler() {
+			public void handleRow(Pike13RowDecoder.Row row) {
+				numRows[0]++;
+			}
+		});
+		return numRows[0];
+	}
+
+	private static byte[] fetchPage(String urlString, String query) throws IOException {
+		// Uncompressed, so the bytes are what the decoders read
+		HttpURLConnection conn = (HttpURLConnection) new URL(urlString).openConnection();
+		conn.setRequestMethod("POST");
+		conn.setDoOutput(true);
+		OutputStream out = conn.getOutputStream();
+		out.write(query.getBytes(StandardCharsets.UTF_8));
+		out.close();
+		if (conn.getResponseCode() != HttpURLConnection.HTTP_OK)
+			throw new IOException("Replay server returned " + conn.getResponseCode() + " for " + urlString);
+
+		InputStream in = conn.getInputStream();
+		ByteArrayOutputStream page = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int len;
+		while ((len = in.read(buffer)) > 0)
+			page.write(buffer, 0, len);
+		in.close();
+		return page.toByteArray();
+	}
+
+	static String recordCorpus() throws IOException {
+		// Clients report from the synthetic stand-in at scale 1; also used by Pike13TransportBench
+		DateTime t = new DateTime().withZone(DateTimeZone.forID("America/Los_Angeles"));
+		String today = t.toString("yyyy-MM-dd");
+		SyntheticLeagueData data = new SyntheticLeagueData(1, SEED, t.minusDays(30).toString("yyyy-MM-dd"), today,
+				t.plusDays(30).toString("yyyy-MM-dd"));
+
+		// No database: log entries fail to insert and are not retried
+		new MySqlDbLogging(new MySqlDatabase("", MySqlDatabase.SALES_FORCE_SYNC_SSH_PORT) {
+			@Override
+			public boolean connectDatabase() {
+				return false;
+			}
+		});
+		LocationLookup.setLocationData(data.getLocations());
+
+		File corpusDir = Files.createTempDirectory("pike13Corpus").toFile();
+		corpusDir.deleteOnExit();
+		Pike13ReportStandIn pike13 = new Pike13ReportStandIn(data, 0, 0);
+		pike13.start(0);
+		try {
+			Pike13Connect recordConn = new Pike13Connect("synthetic");
+			recordConn.setBaseUrl(pike13.getBaseUrl());
+			recordConn.setRecordCorpus(corpusDir.getPath());
+			Pike13SalesforceImport pike13Api = new Pike13SalesforceImport(recordConn);
+			pike13Api.setClientShards(1, false);
+			pike13Api.getClientsForSfImport(false);
+		} finally {
+			pike13.stop();
+		}
+
+		for (File entryFile : corpusDir.listFiles())
+			entryFile.deleteOnExit();
+		return corpusDir.getPath();
+	}
+}
@@ -0,0 +1,367 @@
+package controller;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonException;
+import javax.json.JsonNumber;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import javax.json.JsonString;
+import javax.json.JsonValue;
+import javax.json.stream.JsonGenerator;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Pike13ReportStandIn: Local stand-in for the Pike13 reporting API that runs
+ * the import's queries against SyntheticLeagueData, so the import can be
+ * load-tested at any scale with no network. Point Pike13Connect at
+ * getBaseUrl().
+ *
+ * Queries are evaluated the way Pike13 does: the requested fields in order,
+ * the filter (and, or, eq, ne, gt, lt, btw, starts, wo, emp, nemp), a sort on
+ * one field and cursor paging with has_more / last_key, at most 500 rows a
+ * page. Fields the generator does not fill in come back null. The rows
+ * matching a query are kept so each page does not filter the whole report.
+ */
+public class Pike13ReportStandIn {
+	private static final String REPORTS_PATH = "/desk/api/v3/reports/";
+	private static final int MAX_PAGE_LIMIT = 500;
+	private static final int NUM_HANDLER_THREADS = 16;
+
+	private SyntheticLeagueData data;
+	private int latencyMsec, jitterMsec;
+	private Random random = new Random();
+	private ConcurrentHashMap<String, int[]> matchCache = new ConcurrentHashMap<String, int[]>();
+	private AtomicInteger numRequests = new AtomicInteger(), numErrors = new AtomicInteger();
+	private AtomicLong numRows = new AtomicLong(), numBytes = new AtomicLong();
+
+	private HttpServer server;
+	private ExecutorService executor;
+
+	private interface RowFilter {
+		public boolean matches(int rowIdx);
+	}
+
+	public Pike13ReportStandIn(SyntheticLeagueData data, int latencyMsec, int jitterMsec) {
+		this.data = data;
+		this.latencyMsec = latencyMsec;
+		this.jitterMsec = jitterMsec;
+	}
+
+	public void start(int port) throws IOException {
+		// Without nodelay, requests on a reused socket stall on delayed ACKs; read when the server class loads
+		if (System.getProperty("sun.net.httpserver.nodelay") == null)
+			System.setProperty("sun.net.httpserver.nodelay", "true");
+
+		server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+		server.createContext("/", new HttpHandler() {
+			public void handle(HttpExchange exchange) throws IOException {
+				handleRequest(exchange);
+			}
+		});
+		executor = Executors.newFixedThreadPool(NUM_HANDLER_THREADS);
+		server.setExecutor(executor);
+		server.start();
+	}
+
+	public void stop() {
+		if (server != null) {
+			server.stop(0);
+			executor.shutdownNow();
+			server = null;
+		}
+	}
+
+	public String getBaseUrl() {
+		return "http://localhost:" + server.getAddress().getPort();
+	}
+
+	public int getNumRequests() {
+		return numRequests.get();
+	}
+
+	public String getMetrics() {
+		return "Pike13 stand-in: " + numRequests.get() + " requests, " + numRows.get() + " rows, "
+				+ (numBytes.get() / 1024) + " KB, " + numErrors.get() + " errors";
+	}
+
+	private void handleRequest(HttpExchange exchange) throws IOException {
+		try {
+			numRequests.incrementAndGet();
+
+			// Simulate network and server time
+			int delayMsec = latencyMsec;
+			if (jitterMsec > 0)
+				delayMsec += random.nextInt(jitterMsec + 1);
+			if (delayMsec > 0)
+				Thread.sleep(delayMsec);
+
+			// Path is /desk/api/v3/reports/<report>/queries
+			String path = exchange.getRequestURI().getPath();
+			SyntheticLeagueData.Report report = null;
+			String reportName = null;
+			if (path.startsWith(REPORTS_PATH) && path.endsWith("/queries")) {
+				reportName = path.substring(REPORTS_PATH.length(), path.length() - "/queries".length());
+				report = data.getReport(reportName);
+			}
+			if (report == null) {
+				sendError(exchange, 404, "No report for " + path);
+				return;
+			}
+
+			JsonObject attributes;
+			JsonReader reader = Json.createReader(new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8));
+			try {
+				attributes = reader.readObject().getJsonObject("data").getJsonObject("attributes");
+			} finally {
+				reader.close();
+			}
+
+			byte[] response;
+			try {
+				response = runQuery(reportName, report, attributes);
+
+			} catch (JsonException | ClassCastException | NullPointerException | IllegalArgumentException e) {
+				sendError(exchange, 400, "Bad query: " + e.getMessage());
+				return;
+			}
+
+			String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+			if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+				response = gzip(response);
+				exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+			}
+			numBytes.addAndGet(response.length);
+
+			exchange.getResponseHeaders().set("Content-Type", "application/vnd.api+json; charset=utf-8");
+			exchange.sendResponseHeaders(200, response.length);
+			OutputStream out = exchange.getResponseBody();
+			out.write(response);
+			out.close();
+
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+
+		} catch (JsonException e) {
+			sendError(exchange, 400, "Bad query: " + e.getMessage());
+
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private byte[] runQuery(String reportName, SyntheticLeagueData.Report report, JsonObject attributes) {
+		JsonArray fields = attributes.getJsonArray("fields");
+		JsonObject page = attributes.getJsonObject("page");
+		JsonArray filter = attributes.getJsonArray("filter");
+		JsonArray sort = attributes.getJsonArray("sort");
+
+		int limit = MAX_PAGE_LIMIT;
+		int start = 0;
+		if (page != null) {
+			if (page.containsKey("limit"))
+				limit = Math.max(1, Math.min(MAX_PAGE_LIMIT, page.getInt("limit")));
+			if (page.containsKey("starting_after"))
+				start = Integer.parseInt(page.getString("starting_after"));
+		}
+
+		// Rows matching this filter and sort, for all pages of the query
+		String cacheKey = reportName + "|" + filter + "|" + sort;
+		int[] matches = matchCache.get(cacheKey);
+		if (matches == null) {
+			matches = findMatches(report, filter, sort);
+			matchCache.put(cacheKey, matches);
+		}
+
+		int[] columns = new int[fields.size()];
+		for (int i = 0; i < columns.length; i++)
+			columns[i] = report.getColumnIdx(fields.getString(i));
+
+		int end = Math.min(matches.length, start + limit);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		JsonGenerator generator = Json.createGenerator(out);
+		generator.writeStartObject().writeStartObject("data").write("type", "queries")
+				.writeStartObject("attributes").writeStartArray("rows");
+
+		for (int i = start; i < end; i++) {
+			generator.writeStartArray();
+			for (int colIdx : columns) {
+				Object value = report.getValue(matches[i], colIdx);
+				if (value == null)
+					generator.writeNull();
+				else if (value instanceof Integer)
+					generator.write((Integer) value);
+				else if (value instanceof Double)
+					generator.write((Double) value);
+				else
+					generator.write(value.toString());
+			}
+			generator.writeEnd();
+		}
+		generator.writeEnd().write("total_count", matches.length).write("has_more", end < matches.length);
+		if (end < matches.length)
+			generator.write("last_key", String.valueOf(end));
+		generator.writeEnd().writeEnd().writeEnd();
+		generator.close();
+
+		numRows.addAndGet(Math.max(0, end - start));
+		return out.toByteArray();
+	}
+
+	private int[] findMatches(final SyntheticLeagueData.Report report, JsonArray filter, JsonArray sort) {
+		RowFilter rowFilter = (filter == null) ? null : compileFilter(report, filter);
+		ArrayList<Integer> rowList = new ArrayList<Integer>();
+		for (int i = 0; i < report.getNumRows(); i++) {
+			if (rowFilter == null || rowFilter.matches(i))
+				rowList.add(i);
+		}
+
+		// Sort is "field+" or "field-"; otherwise rows stay in report order
+		if (sort != null && sort.size() > 0) {
+			String sortField = sort.getString(0);
+			final boolean descending = sortField.endsWith("-");
+			final int colIdx = report.getColumnIdx(sortField.substring(0, sortField.length() - 1));
+			Collections.sort(rowList, new Comparator<Integer>() {
+				@Override
+				public int compare(Integer row1, Integer row2) {
+					int result = compareValues(report.getValue(row1, colIdx), report.getValue(row2, colIdx));
+					return descending ? -result : result;
+				}
+			});
+		}
+
+		int[] matches = new int[rowList.size()];
+		for (int i = 0; i < matches.length; i++)
+			matches[i] = rowList.get(i);
+		return matches;
+	}
+
+	private RowFilter compileFilter(final SyntheticLeagueData.Report report, JsonArray filter) {
+		String op = filter.getString(0);
+
+		if (op.equals("and") || op.equals("or")) {
+			JsonArray terms = filter.getJsonArray(1);
+			final RowFilter[] termFilters = new RowFilter[terms.size()];
+			for (int i = 0; i < termFilters.length; i++)
+				termFilters[i] = compileFilter(report, terms.getJsonArray(i));
+
+			final boolean isAnd = op.equals("and");
+			return new RowFilter() {
+				public boolean matches(int rowIdx) {
+					for (RowFilter termFilter : termFilters) {
+						if (termFilter.matches(rowIdx) != isAnd)
+							return !isAnd;
+					}
+					return isAnd;
+				}
+			};
+		}
+
+		final int colIdx = report.getColumnIdx(filter.getString(1));
+		if (op.equals("emp") || op.equals("nemp")) {
+			final boolean isEmpty = op.equals("emp");
+			return new RowFilter() {
+				public boolean matches(int rowIdx) {
+					Object value = report.getValue(rowIdx, colIdx);
+					return (value == null || value.toString().equals("")) == isEmpty;
+				}
+			};
+		}
+
+		final String operator = op;
+		if (op.equals("btw")) {
+			final Object low = getLiteral(filter.getJsonArray(2).get(0));
+			final Object high = getLiteral(filter.getJsonArray(2).get(1));
+			return new RowFilter() {
+				public boolean matches(int rowIdx) {
+					Object value = report.getValue(rowIdx, colIdx);
+					return value != null && compareValues(value, low) >= 0 && compareValues(value, high) <= 0;
+				}
+			};
+		}
+
+		final Object literal = getLiteral(filter.get(2));
+		if (!op.equals("eq") && !op.equals("ne") && !op.equals("gt") && !op.equals("lt") && !op.equals("starts")
+				&& !op.equals("wo"))
+			throw new IllegalArgumentException("unsupported operator '" + op + "'");
+
+		return new RowFilter() {
+			public boolean matches(int rowIdx) {
+				Object value = report.getValue(rowIdx, colIdx);
+				if (value == null)
+					return operator.equals("ne") || operator.equals("wo");
+
+				if (operator.equals("starts"))
+					return value.toString().startsWith(literal.toString());
+				else if (operator.equals("wo"))
+					return !value.toString().contains(literal.toString()); // Without: does not contain
+
+				int result = compareValues(value, literal);
+				if (operator.equals("eq"))
+					return result == 0;
+				else if (operator.equals("ne"))
+					return result != 0;
+				else if (operator.equals("gt"))
+					return result > 0;
+				return result < 0;
+			}
+		};
+	}
+
+	private static Object getLiteral(JsonValue jsonValue) {
+		if (jsonValue instanceof JsonNumber)
+			return ((JsonNumber) jsonValue).doubleValue();
+		else if (jsonValue instanceof JsonString)
+			return ((JsonString) jsonValue).getString();
+		return jsonValue.toString();
+	}
+
+	private static int compareValues(Object value1, Object value2) {
+		// Nulls first; numbers by value, otherwise as strings
+		if (value1 == null || value2 == null)
+			return (value1 == null ? 0 : 1) - (value2 == null ? 0 : 1);
+		if (value1 instanceof Number && value2 instanceof Number)
+			return Double.compare(((Number) value1).doubleValue(), ((Number) value2).doubleValue());
+		return value1.toString().compareTo(value2.toString());
+	}
+
+	private void sendError(HttpExchange exchange, int responseCode, String message) throws IOException {
+		numErrors.incrementAndGet();
+		System.out.println("Pike13 stand-in: " + message);
+
+		byte[] response = ("{\"errors\":[" + Json.createArrayBuilder().add(message).build().get(0) + "]}")
+				.getBytes(StandardCharsets.UTF_8);
+		exchange.sendResponseHeaders(responseCode, response.length);
+		OutputStream out = exchange.getResponseBody();
+		out.write(response);
+		out.close();
+	}
+
+	private static byte[] gzip(byte[] data) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4 + 64);
+		GZIPOutputStream gzipOut = new GZIPOutputStream(out);
+		gzipOut.write(data);
+		gzipOut.close();
+		return out.toByteArray();
+	}
+}
@@ -0,0 +1,124 @@
+package controller;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+/**
+ * Pike13TransportBench: Time per page and response bytes for fetching the
+ * pages in a recorded corpus from Pike13ReplayServer, the way Pike13Connect
+ * did before Pike13HttpTransport (a new uncompressed connection per page,
+ * disconnected after the read) and through Pike13HttpTransport (gzip, socket
+ * kept alive between pages). Both decode each page with Pike13RowDecoder.
+ *
+ * With no corpus given, the clients report is recorded from
+ * Pike13ReportStandIn at scale 1 into a temporary corpus first. The replay
+ * server latency stands in for the Pike13 server time.
+ *
+ * Usage: Pike13TransportBench [corpus dir] [latency msec] [rounds]
+ */
+public class Pike13TransportBench {
+	private static long sink = 0;
+
+	public static void main(String[] args) throws IOException {
+		String corpusDirName = (args.length > 0) ? args[0] : Pike13DecoderBench.recordCorpus();
+		int latencyMsec = (args.length > 1) ? Integer.parseInt(args[1]) : 2;
+		int numRounds = (args.length > 2) ? Integer.parseInt(args[2]) : 10;
+
+		// Report queries only; core API pages are fetched with GET
+		ArrayList<String> pageKeys = new ArrayList<String>();
+		for (String key : new Pike13ResponseCorpus(corpusDirName).loadAll().keySet()) {
+			if (key.contains("/reports/"))
+				pageKeys.add(key);
+		}
+
+		Pike13ReplayServer replayServer = new Pike13ReplayServer(corpusDirName, latencyMsec, 0);
+		replayServer.start(0);
+		try {
+			System.out.println(pageKeys.size() + " recorded pages, " + latencyMsec + " msec server latency");
+			Pike13HttpTransport transport = new Pike13HttpTransport();
+			for (int round = 0; round < numRounds; round++) {
+				long oldBytes = 0, newBytes = 0;
+				long startNanos = System.nanoTime();
+				for (String key : pageKeys)
+					oldBytes += fetchUncompressed(replayServer.getBaseUrl(), key);
+				long oldNanos = System.nanoTime() - startNanos;
+
+				startNanos = System.nanoTime();
+				for (String key : pageKeys)
+					newBytes += fetchWithTransport(transport, replayServer.getBaseUrl(), key);
+				long newNanos = System.nanoTime() - startNanos;
+
+				System.out.printf("Round %d: old %.2f msecs %d KB per page, transport %.2f msecs %d KB per page%n",
+						round + 1, oldNanos / 1e6 / pageKeys.size(), oldBytes / pageKeys.size() / 1024,
+						newNanos / 1e6 / pageKeys.size(), newBytes / pageKeys.size() / 1024);
+			}
+			System.out.println(replayServer.getMetrics());
+
+		} finally {
+			replayServer.stop();
+		}
+		if (sink == 42)
+			System.out.println();
+	}
+
+	private static long fetchUncompressed(String baseUrl, String key) throws IOException {
+		// Pike13Connect before the transport: new connection, disconnected after the read
+		HttpURLConnection conn = (HttpURLConnection) new URL(baseUrl + getPath(key)).openConnection();
+		try {
+			sendQuery(conn, key);
+			InputStream inputStream = conn.getInputStream();
+			decodePage(inputStream);
+			inputStream.close();
+			return conn.getContentLengthLong();
+
+		} finally {
+			conn.disconnect();
+		}
+	}
+
+	private static long fetchWithTransport(Pike13HttpTransport transport, String baseUrl, String key)
+			throws IOException {
+		HttpURLConnection conn = transport.openConnection(baseUrl + getPath(key));
+		try {
+			sendQuery(conn, key);
+			InputStream inputStream = transport.getInputStream(conn);
+			decodePage(inputStream);
+			transport.finishInputStream(conn, inputStream);
+			return conn.getContentLengthLong();
+
+		} finally {
+			transport.release(conn);
+		}
+	}
+
+	private static void sendQuery(HttpURLConnection conn, String key) throws IOException {
+		conn.setRequestMethod("POST");
+		conn.setRequestProperty("Content-type", "application/vnd.api+json; charset=UTF-8");
+		conn.setDoOutput(true);
+		OutputStream outputStream = conn.getOutputStream();
+		outputStream.write(key.substring(key.indexOf('\n') + 1).getBytes(StandardCharsets.UTF_8));
+		outputStream.close();
+
+		if (conn.getResponseCode() != HttpURLConnection.HTTP_OK)
+			throw new IOException("Replay server returned " + conn.getResponseCode() + " for " + getPath(key));
+	}
+
+	private static void decodePage(InputStream inputStream) {
+		Pike13RowDecoder.PageInfo pageInfo = Pike13RowDecoder.decode(inputStream, new Pike13RowDecoder.RowHandler() {
+			public void handleRow(Pike13RowDecoder.Row row) {
+				sink += row.size();
+			}
+		});
+		sink += pageInfo.hasMore() ? 1 : 0;
+	}
+
+	private static String getPath(String key) {
+		// Corpus keys are the request path and query body
+		return key.substring(0, key.indexOf('\n'));
+	}
+}
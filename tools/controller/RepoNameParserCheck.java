@@ -0,0 +1,74 @@
+package controller;
+
+import model.RepoNameModel;
+
+/**
+ * RepoNameParserCheck: Table of github classroom repo names with the level,
+ * module, exam flag and repo level RepoNameParser should give each, the same
+ * as the repo name rules in UpdateRecordsInSalesForce before the parser
+ * replaced them ("level" and "level1-module" used to throw). "-" = null; a
+ * level of "unparsed" means the name matches no level rule.
+ *
+ * Usage: RepoNameParserCheck (exits 1 if any case fails)
+ */
+public class RepoNameParserCheck {
+	// Repo name, level, module, exam flag, repo level
+	private static final String[][] CASES = {
+			// Classroom names: level3-module1 and level-3-module-1
+			{ "level3-module1-jdoe", "3", "1", "false", "3" },
+			{ "level3-module-1-jdoe", "3", "1", "false", "3" },
+			{ "level-0-module-3-jdoe", "0", "3", "false", "0" },
+			{ "level-0-module3-jdoe", "0", "3", "false", "0" },
+			{ "Level1-Module2-JDoe", "1", "2", "false", "1" },
+			{ "level1-module12-jdoe", "1", "-", "false", "1" },
+			{ "level1-module", "1", "-", "false", "1" },
+			{ "level1-module4", "1", "4", "false", "1" },
+			{ "level7-module1-jdoe", "7", "1", "false", "-" },
+			{ "old-level2-module4-jdoe", "2", "4", "false", "2" },
+			{ "level5-01-jdoe", "1", "1", "false", "5" },
+
+			// Coding exams
+			{ "level4-coding-exam-jdoe", "4", "E", "true", "4" },
+			{ "level4-codingexam-jdoe", "4", "E", "true", "4" },
+			{ "level-4-coding-exam-jdoe", "4", "E", "true", "4" },
+			{ "level-4-codingexam-jdoe", "4", "E", "true", "4" },
+			{ "level2-exam-jdoe", "unparsed", "-", "false", "2" },
+
+			// Older project names
+			{ "processingsnake-jdoe", "2", "2", "false", "2" },
+			{ "league-invaders-jdoe", "2", "3", "false", "2" },
+			{ "league-level2-game-jdoe", "2", "4", "false", "2" },
+			{ "intro-to-java-workshop-jdoe", "-", "-", "false", "-" },
+
+			// Repo level only, or nothing
+			{ "level_3-practice-jdoe", "unparsed", "-", "false", "3" },
+			{ "level-3-checkpoint-jdoe", "unparsed", "-", "false", "3" },
+			{ "lvl6-project-jdoe", "unparsed", "-", "false", "-" },
+			{ "level", "unparsed", "-", "false", "-" },
+			{ "my-first-repo", "unparsed", "-", "false", "-" } };
+
+	public static void main(String[] args) {
+		RepoNameParser parser = new RepoNameParser();
+		int numFailed = 0;
+		for (String[] c : CASES) {
+			RepoNameModel model = parser.parse(c[0]);
+
+			String result = (model.isParsed() ? show(model.getGitLevel()) : "unparsed") + " | "
+					+ show(model.getGitModule()) + " | " + model.isExam() + " | " + show(model.getRepoLevel());
+			String expected = c[1] + " | " + c[2] + " | " + c[3] + " | " + c[4];
+			boolean passed = result.equals(expected);
+			if (!passed)
+				numFailed++;
+
+			System.out.println((passed ? "ok   " : "FAIL ") + c[0] + " -> " + result
+					+ (passed ? "" : " (expected " + expected + ")"));
+		}
+
+		System.out.println((CASES.length - numFailed) + " of " + CASES.length + " cases passed");
+		System.exit(numFailed == 0 ? 0 : 1);
+	}
+
+	private static String show(String value) {
+		return (value == null) ? "-" : value;
+	}
+}
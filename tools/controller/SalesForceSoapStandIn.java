@@ -0,0 +1,787 @@
+package controller;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.xml.namespace.QName;
+
+import com.sforce.soap.enterprise.CreateResponse_element;
+import com.sforce.soap.enterprise.Create_element;
+import com.sforce.soap.enterprise.DeleteResponse_element;
+import com.sforce.soap.enterprise.DeleteResult;
+import com.sforce.soap.enterprise.Delete_element;
+import com.sforce.soap.enterprise.Error;
+import com.sforce.soap.enterprise.LoginResponse_element;
+import com.sforce.soap.enterprise.LoginResult;
+import com.sforce.soap.enterprise.Login_element;
+import com.sforce.soap.enterprise.QueryMoreResponse_element;
+import com.sforce.soap.enterprise.QueryMore_element;
+import com.sforce.soap.enterprise.QueryResponse_element;
+import com.sforce.soap.enterprise.QueryResult;
+import com.sforce.soap.enterprise.Query_element;
+import com.sforce.soap.enterprise.SaveResult;
+import com.sforce.soap.enterprise.SessionHeader_element;
+import com.sforce.soap.enterprise.StatusCode;
+import com.sforce.soap.enterprise.UpsertResponse_element;
+import com.sforce.soap.enterprise.UpsertResult;
+import com.sforce.soap.enterprise.Upsert_element;
+import com.sforce.soap.enterprise.sobject.SObject;
+import com.sforce.ws.ConnectionException;
+import com.sforce.ws.ConnectorConfig;
+import com.sforce.ws.bind.TypeMapper;
+import com.sforce.ws.bind.XMLizable;
+import com.sforce.ws.parser.PullParserException;
+import com.sforce.ws.parser.XmlInputStream;
+import com.sforce.ws.parser.XmlOutputStream;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * SalesForceSoapStandIn: In-process stand-in for the Salesforce Enterprise
+ * SOAP endpoint, so upsert and query work can be load-tested without a real
+ * org or API quota. Use getConnectorConfig() (or point the ConnectorConfig
+ * auth and service endpoints here) and create the EnterpriseConnection as
+ * usual.
+ *
+ * Supports login, query / queryMore with query locators, upsert on an
+ * external ID field, create and delete against an in-memory store of the
+ * generated sObject classes. Requests and responses are read and written
+ * with the Enterprise API's own classes, so the wire format always matches
+ * the client. Each call can be delayed by a fixed latency plus jitter, can
+ * fail as a whole (REQUEST_LIMIT_EXCEEDED fault) or have single records
+ * fail (UNABLE_TO_LOCK_ROW) at a given rate.
+ *
+ * Like the real org, Contact.Record_Type__c is a formula: it is set from
+ * RecordTypeId on each insert and upsert, using the names given to
+ * addRecordType; seeded records keep the value they were added with. A
+ * query returns Id only if it is selected, as the SOAP API does.
+ */
+public class SalesForceSoapStandIn {
+	public static final String API_PATH = "/services/Soap/c/41.0";
+	private static final String ENTERPRISE_NS = "urn:enterprise.soap.sforce.com";
+	private static final String SOBJECT_NS = "urn:sobject.enterprise.soap.sforce.com";
+	private static final String FAULT_NS = "urn:fault.enterprise.soap.sforce.com";
+	private static final String SOAP_ENVELOPE_NS = "http://schemas.xmlsoap.org/soap/envelope/";
+	private static final String SCHEMA_NS = "http://www.w3.org/2001/XMLSchema";
+	private static final String SCHEMA_INSTANCE_NS = "http://www.w3.org/2001/XMLSchema-instance";
+	private static final String SOBJECT_PACKAGE = "com.sforce.soap.enterprise.sobject.";
+
+	private static final int MAX_RECORDS_PER_CALL = 200;
+	private static final int DEFAULT_QUERY_BATCH_SIZE = 2000;
+	private static final int NUM_HANDLER_THREADS = 16;
+
+	// Settings
+	private int latencyMsec, jitterMsec;
+	private double callFaultRate = 0, recordErrorRate = 0;
+	private int queryBatchSize = DEFAULT_QUERY_BATCH_SIZE;
+	private String userName = "League Bot";
+	private Random random = new Random();
+
+	// In-memory org, guarded by 'this'
+	private HashMap<String, TypeStore> storesByType = new HashMap<String, TypeStore>();
+	private HashMap<String, QueryCursor> queryCursors = new HashMap<String, QueryCursor>();
+	private HashMap<String, String> sessions = new HashMap<String, String>();
+	private HashMap<String, String> recordTypeNames = new HashMap<String, String>();
+	private long nextIdNum = 1;
+	private String userId;
+
+	// Metrics
+	private LinkedHashMap<String, Integer> callCounts = new LinkedHashMap<String, Integer>();
+	private int numFaults = 0, numRecordErrors = 0, numRecordsWritten = 0;
+
+	private HttpServer server;
+	private ExecutorService executor;
+
+	public SalesForceSoapStandIn(int latencyMsec, int jitterMsec) {
+		this.latencyMsec = latencyMsec;
+		this.jitterMsec = jitterMsec;
+		userId = newId("005");
+	}
+
+	public void setCallFaultRate(double callFaultRate) {
+		// Fraction of calls that fail with a SOAP fault
+		this.callFaultRate = callFaultRate;
+	}
+
+	public void setRecordErrorRate(double recordErrorRate) {
+		// Fraction of records in upsert/create/delete calls that fail
+		this.recordErrorRate = recordErrorRate;
+	}
+
+	public void setQueryBatchSize(int queryBatchSize) {
+		this.queryBatchSize = queryBatchSize;
+	}
+
+	public synchronized void addRecordType(String recordTypeId, String name) {
+		// Record_Type__c is a formula on the record type name; set it when RecordTypeId is written
+		recordTypeNames.put(recordTypeId, name);
+	}
+
+	public void setUserName(String userName) {
+		// CreatedBy.Name for new records
+		this.userName = userName;
+	}
+
+	public void start(int port) throws IOException {
+		// Without nodelay, requests on a reused socket stall on delayed ACKs; read when the server class loads
+		if (System.getProperty("sun.net.httpserver.nodelay") == null)
+			System.setProperty("sun.net.httpserver.nodelay", "true");
+
+		server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+		server.createContext("/services/Soap/", new HttpHandler() {
+			public void handle(HttpExchange exchange) throws IOException {
+				handleRequest(exchange);
+			}
+		});
+		executor = Executors.newFixedThreadPool(NUM_HANDLER_THREADS);
+		server.setExecutor(executor);
+		server.start();
+	}
+
+	public void stop() {
+		if (server != null) {
+			server.stop(0);
+			executor.shutdownNow();
+			server = null;
+		}
+	}
+
+	public String getEndpoint() {
+		// Used for both the auth and service endpoints
+		return "http://localhost:" + server.getAddress().getPort() + API_PATH;
+	}
+
+	public ConnectorConfig getConnectorConfig(String username, String password) {
+		ConnectorConfig config = new ConnectorConfig();
+		config.setUsername(username);
+		config.setPassword(password);
+		config.setAuthEndpoint(getEndpoint());
+		config.setServiceEndpoint(getEndpoint());
+		return config;
+	}
+
+	public synchronized String addRecord(SObject record) {
+		// Seed the org; returns the record's ID
+		TypeStore store = getStore(record.getClass().getSimpleName(), true);
+		if (record.getId() == null)
+			record.setId(newId(store.keyPrefix));
+		setCreatedBy(record);
+		store.put(record);
+		return record.getId();
+	}
+
+	public synchronized ArrayList<SObject> getRecords(String objectType) {
+		TypeStore store = getStore(objectType, false);
+		return store == null ? new ArrayList<SObject>() : new ArrayList<SObject>(store.records.values());
+	}
+
+	public synchronized int getNumApiCalls() {
+		int numCalls = 0;
+		for (Integer count : callCounts.values())
+			numCalls += count;
+		return numCalls - getCount("login");
+	}
+
+	public synchronized String getMetrics() {
+		return "SF stand-in: " + getNumApiCalls() + " API calls " + callCounts + ", " + numRecordsWritten
+				+ " records written, " + numFaults + " faults, " + numRecordErrors + " record errors";
+	}
+
+	private void handleRequest(HttpExchange exchange) throws IOException {
+		try {
+			InputStream in = exchange.getRequestBody();
+			if ("gzip".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("Content-Encoding")))
+				in = new GZIPInputStream(in);
+
+			// Simulate network and server time
+			int delayMsec = latencyMsec;
+			if (jitterMsec > 0)
+				delayMsec += random.nextInt(jitterMsec + 1);
+			if (delayMsec > 0)
+				Thread.sleep(delayMsec);
+
+			byte[] response;
+			int responseCode = 200;
+			try {
+				response = writeEnvelope(processRequest(in));
+
+			} catch (SoapFault fault) {
+				synchronized (this) {
+					numFaults++;
+				}
+				response = writeFault(fault);
+				responseCode = 500;
+			}
+
+			String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+			if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+				response = gzip(response);
+				exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+			}
+			exchange.getResponseHeaders().set("Content-Type", "text/xml; charset=utf-8");
+			exchange.sendResponseHeaders(responseCode, response.length);
+			OutputStream out = exchange.getResponseBody();
+			out.write(response);
+			out.close();
+
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+
+		} catch (IOException | RuntimeException e) {
+			e.printStackTrace();
+			exchange.sendResponseHeaders(500, -1);
+
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private ResponseElement processRequest(InputStream in) throws IOException, SoapFault {
+		TypeMapper typeMapper = new TypeMapper();
+		typeMapper.setPackagePrefix(null);
+		XmlInputStream xin = new XmlInputStream();
+
+		try {
+			xin.setInput(in, "UTF-8");
+
+			// Envelope, optional session header, then the operation in the body
+			String sessionId = null;
+			xin.nextTag();
+			xin.nextTag();
+			if ("Header".equals(xin.getName())) {
+				while (true) {
+					xin.peekTag();
+					if (xin.getEventType() == XmlInputStream.START_TAG && "SessionHeader".equals(xin.getName())) {
+						SessionHeader_element sessionHeader = new SessionHeader_element();
+						sessionHeader.load(xin, typeMapper);
+						sessionId = sessionHeader.getSessionId();
+
+					} else if (xin.getEventType() == XmlInputStream.START_TAG)
+						throw new SoapFault("UNKNOWN_EXCEPTION", "Unsupported header " + xin.getName());
+
+					else if (xin.getEventType() == XmlInputStream.END_TAG && "Header".equals(xin.getName())) {
+						xin.next();
+						break;
+					}
+				}
+				xin.nextTag();
+			}
+			if (!"Body".equals(xin.getName()))
+				throw new SoapFault("UNKNOWN_EXCEPTION", "SOAP Body not found");
+
+			xin.peekTag();
+			String operation = xin.getName();
+			countCall(operation);
+
+			if (operation.equals("login")) {
+				Login_element request = new Login_element();
+				request.load(xin, typeMapper);
+				return login(request);
+			}
+
+			// Everything else needs a session, and may be failed on purpose
+			checkSession(sessionId);
+			if (callFaultRate > 0 && random.nextDouble() < callFaultRate)
+				throw new SoapFault("REQUEST_LIMIT_EXCEEDED", "TotalRequests Limit exceeded. (injected)");
+
+			if (operation.equals("query")) {
+				Query_element request = new Query_element();
+				request.load(xin, typeMapper);
+				return query(request.getQueryString());
+
+			} else if (operation.equals("queryMore")) {
+				QueryMore_element request = new QueryMore_element();
+				request.load(xin, typeMapper);
+				return queryMore(request.getQueryLocator());
+
+			} else if (operation.equals("upsert")) {
+				Upsert_element request = new Upsert_element();
+				request.load(xin, typeMapper);
+				return upsert(request.getExternalIDFieldName(), request.getSObjects());
+
+			} else if (operation.equals("create")) {
+				Create_element request = new Create_element();
+				request.load(xin, typeMapper);
+				return create(request.getSObjects());
+
+			} else if (operation.equals("delete")) {
+				Delete_element request = new Delete_element();
+				request.load(xin, typeMapper);
+				return delete(request.getIds());
+			}
+			throw new SoapFault("UNKNOWN_EXCEPTION", "Operation '" + operation + "' is not supported by the stand-in");
+
+		} catch (ConnectionException | PullParserException e) {
+			throw new SoapFault("UNKNOWN_EXCEPTION", "Bad request: " + e.getMessage());
+		}
+	}
+
+	private synchronized ResponseElement login(Login_element request) throws SoapFault {
+		if (request.getUsername() == null || request.getPassword() == null || request.getPassword().isEmpty())
+			throw new SoapFault("INVALID_LOGIN", "Invalid username, password, security token; or user locked out.");
+
+		String sessionId = "00D" + Long.toHexString(random.nextLong()) + Long.toHexString(random.nextLong());
+		sessions.put(sessionId, request.getUsername());
+
+		LoginResult result = new LoginResult();
+		result.setMetadataServerUrl(getEndpoint());
+		result.setPasswordExpired(false);
+		result.setSandbox(true);
+		result.setServerUrl(getEndpoint());
+		result.setSessionId(sessionId);
+		result.setUserId(userId);
+
+		LoginResponse_element response = new LoginResponse_element();
+		response.setResult(result);
+		return new ResponseElement("loginResponse", response);
+	}
+
+	private synchronized ResponseElement query(String queryString) throws SoapFault {
+		SoqlQuery query;
+		ArrayList<SObject> records = new ArrayList<SObject>();
+		try {
+			query = SoqlQuery.parse(queryString);
+			TypeStore store = getStore(query.getObjectType(), true);
+			for (SObject record : store.records.values()) {
+				if (query.matches(record))
+					records.add(record);
+			}
+
+			query.sort(records);
+			if (query.getLimit() >= 0 && records.size() > query.getLimit())
+				records = new ArrayList<SObject>(records.subList(0, query.getLimit()));
+
+			// Copy selected fields now, so later writes don't show up in queryMore
+			for (int i = 0; i < records.size(); i++)
+				records.set(i, query.select(records.get(i)));
+
+		} catch (IllegalArgumentException e) {
+			throw new SoapFault("MALFORMED_QUERY", e.getMessage());
+		}
+
+		QueryCursor cursor = new QueryCursor("01g" + newId("").substring(3), records);
+		QueryResponse_element response = new QueryResponse_element();
+		response.setResult(nextQueryBatch(cursor));
+		return new ResponseElement("queryResponse", response);
+	}
+
+	private synchronized ResponseElement queryMore(String queryLocator) throws SoapFault {
+		int dashIdx = queryLocator == null ? -1 : queryLocator.lastIndexOf('-');
+		QueryCursor cursor = dashIdx < 0 ? null : queryCursors.get(queryLocator.substring(0, dashIdx));
+		if (cursor == null || !queryLocator.substring(dashIdx + 1).equals(String.valueOf(cursor.position)))
+			throw new SoapFault("INVALID_QUERY_LOCATOR", "invalid query locator");
+
+		QueryMoreResponse_element response = new QueryMoreResponse_element();
+		response.setResult(nextQueryBatch(cursor));
+		return new ResponseElement("queryMoreResponse", response);
+	}
+
+	private QueryResult nextQueryBatch(QueryCursor cursor) {
+		int end = Math.min(cursor.records.size(), cursor.position + queryBatchSize);
+		QueryResult result = new QueryResult();
+		result.setRecords(cursor.records.subList(cursor.position, end).toArray(new SObject[0]));
+		result.setSize(cursor.records.size());
+		cursor.position = end;
+
+		if (end < cursor.records.size()) {
+			queryCursors.put(cursor.cursorId, cursor);
+			result.setDone(false);
+			result.setQueryLocator(cursor.cursorId + "-" + end);
+		} else {
+			queryCursors.remove(cursor.cursorId);
+			result.setDone(true);
+			result.setQueryLocator(null);
+		}
+		return result;
+	}
+
+	private synchronized ResponseElement upsert(String externalIdField, SObject[] records) throws SoapFault {
+		checkRecordCount(records.length);
+		UpsertResult[] results = new UpsertResult[records.length];
+
+		for (int i = 0; i < records.length; i++) {
+			UpsertResult result = new UpsertResult();
+			results[i] = result;
+			SObject record = records[i];
+			TypeStore store = getStore(record.getClass().getSimpleName(), true);
+			SObjectFields fields = SObjectFields.forClass(record.getClass());
+
+			if (!fields.hasField(externalIdField)) {
+				result.setErrors(getErrors(StatusCode.INVALID_FIELD, "Field " + externalIdField + " is not an external ID"));
+				continue;
+			}
+
+			Object keyValue = fields.get(record, externalIdField);
+			if (isInjectedError(result)) {
+				continue;
+
+			} else if (keyValue == null && !externalIdField.equalsIgnoreCase("Id")) {
+				result.setErrors(getErrors(StatusCode.REQUIRED_FIELD_MISSING,
+						"Missing value for external ID field " + externalIdField));
+				continue;
+			}
+
+			// Update the match, or insert if there is none
+			String existingId = (keyValue == null) ? null : store.find(externalIdField, keyValue.toString());
+			if (existingId == null && externalIdField.equalsIgnoreCase("Id") && keyValue != null) {
+				result.setErrors(getErrors(StatusCode.INVALID_CROSS_REFERENCE_KEY, "invalid cross reference id"));
+				continue;
+			}
+
+			if (existingId != null) {
+				store.update(existingId, record);
+				setRecordTypeName(store.records.get(existingId));
+				result.setCreated(false);
+				result.setId(existingId);
+			} else {
+				insert(store, record);
+				result.setCreated(true);
+				result.setId(record.getId());
+			}
+			result.setSuccess(true);
+			numRecordsWritten++;
+		}
+
+		UpsertResponse_element response = new UpsertResponse_element();
+		response.setResult(results);
+		return new ResponseElement("upsertResponse", response);
+	}
+
+	private synchronized ResponseElement create(SObject[] records) throws SoapFault {
+		checkRecordCount(records.length);
+		SaveResult[] results = new SaveResult[records.length];
+
+		for (int i = 0; i < records.length; i++) {
+			SaveResult result = new SaveResult();
+			results[i] = result;
+			if (isInjectedError(result))
+				continue;
+
+			if (records[i].getId() != null) {
+				result.setErrors(getErrors(StatusCode.INVALID_FIELD, "cannot specify Id in an insert call"));
+				continue;
+			}
+
+			insert(getStore(records[i].getClass().getSimpleName(), true), records[i]);
+			result.setId(records[i].getId());
+			result.setSuccess(true);
+			numRecordsWritten++;
+		}
+
+		CreateResponse_element response = new CreateResponse_element();
+		response.setResult(results);
+		return new ResponseElement("createResponse", response);
+	}
+
+	private synchronized ResponseElement delete(String[] ids) throws SoapFault {
+		checkRecordCount(ids.length);
+		DeleteResult[] results = new DeleteResult[ids.length];
+
+		for (int i = 0; i < ids.length; i++) {
+			DeleteResult result = new DeleteResult();
+			results[i] = result;
+			result.setId(ids[i]);
+			if (isInjectedError(result))
+				continue;
+
+			TypeStore store = null;
+			for (TypeStore s : storesByType.values()) {
+				if (s.records.containsKey(ids[i]))
+					store = s;
+			}
+			if (store == null) {
+				result.setErrors(getErrors(StatusCode.ENTITY_IS_DELETED, "entity is deleted"));
+				continue;
+			}
+
+			store.remove(ids[i]);
+			result.setSuccess(true);
+			numRecordsWritten++;
+		}
+
+		DeleteResponse_element response = new DeleteResponse_element();
+		response.setResult(results);
+		return new ResponseElement("deleteResponse", response);
+	}
+
+	private void insert(TypeStore store, SObject record) {
+		record.setId(newId(store.keyPrefix));
+		record.setFieldsToNull(new String[0]);
+		setCreatedBy(record);
+		setRecordTypeName(record);
+		store.put(record);
+	}
+
+	private void setRecordTypeName(SObject record) {
+		SObjectFields fields = SObjectFields.forClass(record.getClass());
+		if (!fields.hasField("RecordTypeId") || !fields.hasField("Record_Type__c"))
+			return;
+
+		Object recordTypeId = fields.get(record, "RecordTypeId");
+		if (recordTypeId != null && recordTypeNames.containsKey(recordTypeId))
+			fields.set(record, "Record_Type__c", recordTypeNames.get(recordTypeId));
+	}
+
+	private void setCreatedBy(SObject record) {
+		// CreatedBy is a User with only the name filled in
+		SObjectFields fields = SObjectFields.forClass(record.getClass());
+		if (!fields.hasField("CreatedBy") || fields.get(record, "CreatedBy") != null)
+			return;
+
+		try {
+			Object user = fields.getFieldType("CreatedBy").getDeclaredConstructor().newInstance();
+			SObjectFields.forClass(user.getClass()).set(user, "Name", userName);
+			fields.set(record, "CreatedBy", user);
+			if (fields.hasField("CreatedById"))
+				fields.set(record, "CreatedById", userId);
+
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private boolean isInjectedError(Object result) {
+		// Fails this record if chosen; results start out unsuccessful
+		if (recordErrorRate <= 0 || random.nextDouble() >= recordErrorRate)
+			return false;
+
+		Error[] errors = getErrors(StatusCode.UNABLE_TO_LOCK_ROW, "unable to obtain exclusive access to this record (injected)");
+		if (result instanceof UpsertResult)
+			((UpsertResult) result).setErrors(errors);
+		else if (result instanceof SaveResult)
+			((SaveResult) result).setErrors(errors);
+		else
+			((DeleteResult) result).setErrors(errors);
+		numRecordErrors++;
+		return true;
+	}
+
+	private static Error[] getErrors(StatusCode statusCode, String message) {
+		Error error = new Error();
+		error.setStatusCode(statusCode);
+		error.setMessage(message);
+		error.setFields(new String[0]);
+		return new Error[] { error };
+	}
+
+	private void checkRecordCount(int numRecords) throws SoapFault {
+		if (numRecords > MAX_RECORDS_PER_CALL)
+			throw new SoapFault("EXCEEDED_ID_LIMIT", "record limit reached. cannot submit more than "
+					+ MAX_RECORDS_PER_CALL + " records into this call");
+	}
+
+	private synchronized void checkSession(String sessionId) throws SoapFault {
+		if (sessionId == null || !sessions.containsKey(sessionId))
+			throw new SoapFault("INVALID_SESSION_ID", "Invalid Session ID found in SessionHeader: Session not found");
+	}
+
+	private synchronized void countCall(String operation) {
+		callCounts.put(operation, getCount(operation) + 1);
+	}
+
+	private int getCount(String operation) {
+		Integer count = callCounts.get(operation);
+		return count == null ? 0 : count;
+	}
+
+	private TypeStore getStore(String objectType, boolean create) {
+		// Object types are not case sensitive; the class must exist in the Enterprise API
+		TypeStore store = storesByType.get(objectType.toLowerCase());
+		if (store == null && create) {
+			try {
+				Class<?> sObjectClass = Class.forName(SOBJECT_PACKAGE + objectType);
+				store = new TypeStore(sObjectClass);
+				storesByType.put(objectType.toLowerCase(), store);
+
+			} catch (ClassNotFoundException e) {
+				throw new IllegalArgumentException("sObject type '" + objectType + "' is not supported");
+			}
+		}
+		return store;
+	}
+
+	private String newId(String keyPrefix) {
+		// 18 character ID starting with the object's key prefix
+		String idNum = Long.toString(nextIdNum++, 36).toUpperCase();
+		StringBuilder id = new StringBuilder(keyPrefix);
+		while (id.length() + idNum.length() < 18)
+			id.append('0');
+		return id.append(idNum).toString();
+	}
+
+	private byte[] writeEnvelope(ResponseElement response) throws IOException {
+		TypeMapper typeMapper = new TypeMapper();
+		typeMapper.setPackagePrefix(null);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		XmlOutputStream xout = startEnvelope(out);
+
+		xout.setPrefix("", ENTERPRISE_NS);
+		xout.setPrefix("sf", SOBJECT_NS);
+		response.element.write(new QName(ENTERPRISE_NS, response.name), xout, typeMapper);
+
+		endEnvelope(xout);
+		return out.toByteArray();
+	}
+
+	private byte[] writeFault(SoapFault fault) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		XmlOutputStream xout = startEnvelope(out);
+
+		xout.setPrefix("sf", FAULT_NS);
+		xout.writeStartTag(SOAP_ENVELOPE_NS, "Fault");
+		xout.writeStringElement(null, "faultcode", "sf:" + fault.faultCode);
+		xout.writeStringElement(null, "faultstring", fault.faultCode + ": " + fault.getMessage());
+		xout.writeEndTag(SOAP_ENVELOPE_NS, "Fault");
+
+		endEnvelope(xout);
+		return out.toByteArray();
+	}
+
+	private static XmlOutputStream startEnvelope(OutputStream out) throws IOException {
+		XmlOutputStream xout = new XmlOutputStream(out, false);
+		xout.startDocument();
+		xout.setPrefix("soapenv", SOAP_ENVELOPE_NS);
+		xout.setPrefix("xsd", SCHEMA_NS);
+		xout.setPrefix("xsi", SCHEMA_INSTANCE_NS);
+		xout.writeStartTag(SOAP_ENVELOPE_NS, "Envelope");
+		xout.writeStartTag(SOAP_ENVELOPE_NS, "Body");
+		return xout;
+	}
+
+	private static void endEnvelope(XmlOutputStream xout) throws IOException {
+		xout.writeEndTag(SOAP_ENVELOPE_NS, "Body");
+		xout.writeEndTag(SOAP_ENVELOPE_NS, "Envelope");
+		xout.endDocument();
+		xout.close();
+	}
+
+	private static byte[] gzip(byte[] data) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4 + 64);
+		GZIPOutputStream gzipOut = new GZIPOutputStream(out);
+		gzipOut.write(data);
+		gzipOut.close();
+		return out.toByteArray();
+	}
+
+	private static class ResponseElement {
+		private String name;
+		private XMLizable element;
+
+		private ResponseElement(String name, XMLizable element) {
+			this.name = name;
+			this.element = element;
+		}
+	}
+
+	private static class SoapFault extends Exception {
+		private static final long serialVersionUID = 1L;
+		private String faultCode;
+
+		private SoapFault(String faultCode, String message) {
+			super(message);
+			this.faultCode = faultCode;
+		}
+	}
+
+	private static class QueryCursor {
+		private String cursorId;
+		private ArrayList<SObject> records;
+		private int position = 0;
+
+		private QueryCursor(String cursorId, ArrayList<SObject> records) {
+			this.cursorId = cursorId;
+			this.records = records;
+		}
+	}
+
+	private static class TypeStore {
+		private String keyPrefix;
+		private SObjectFields fields;
+		private LinkedHashMap<String, SObject> records = new LinkedHashMap<String, SObject>();
+
+		// Lookup by field value, built the first time a field is used as an external ID
+		private HashMap<String, HashMap<String, String>> indexes = new HashMap<String, HashMap<String, String>>();
+
+		private TypeStore(Class<?> sObjectClass) {
+			String name = sObjectClass.getSimpleName();
+			keyPrefix = name.equals("Account") ? "001" : name.equals("Contact") ? "003" : name.equals("User") ? "005"
+					: "a0" + (char) ('A' + Math.abs(name.hashCode()) % 26);
+			fields = SObjectFields.forClass(sObjectClass);
+		}
+
+		private String find(String field, String value) {
+			if (field.equalsIgnoreCase("Id"))
+				return records.containsKey(value) ? value : null;
+			return getIndex(field).get(value);
+		}
+
+		private void put(SObject record) {
+			records.put(record.getId(), record);
+			addToIndexes(record);
+		}
+
+		private void update(String id, SObject changes) {
+			// Set fields are copied; fieldsToNull are cleared
+			SObject record = records.get(id);
+			removeFromIndexes(record);
+
+			for (String field : fields.getFieldNames()) {
+				Object value = fields.get(changes, field);
+				if (value != null && !field.equals("Id"))
+					fields.set(record, field, value);
+			}
+			for (String field : changes.getFieldsToNull()) {
+				if (fields.hasField(field))
+					fields.set(record, field, null);
+			}
+			addToIndexes(record);
+		}
+
+		private void remove(String id) {
+			removeFromIndexes(records.remove(id));
+		}
+
+		private HashMap<String, String> getIndex(String field) {
+			String key = field.toLowerCase();
+			HashMap<String, String> index = indexes.get(key);
+			if (index == null) {
+				index = new HashMap<String, String>();
+				for (SObject record : records.values()) {
+					Object value = fields.get(record, field);
+					if (value != null)
+						index.put(value.toString(), record.getId());
+				}
+				indexes.put(key, index);
+			}
+			return index;
+		}
+
+		private void addToIndexes(SObject record) {
+			for (String field : indexes.keySet()) {
+				Object value = fields.get(record, field);
+				if (value != null)
+					indexes.get(field).put(value.toString(), record.getId());
+			}
+		}
+
+		private void removeFromIndexes(SObject record) {
+			for (String field : indexes.keySet()) {
+				Object value = fields.get(record, field);
+				if (value != null)
+					indexes.get(field).remove(value.toString());
+			}
+		}
+	}
+}
@@ -0,0 +1,382 @@
+package controller;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+
+import com.sforce.soap.enterprise.sobject.SObject;
+
+/**
+ * SoqlQuery: Parses and runs the subset of SOQL used by the import against
+ * in-memory sObjects, for the Salesforce stand-in.
+ *
+ * Supports SELECT with parent fields (CreatedBy.Name), FROM, WHERE with
+ * AND / OR / NOT, parentheses, =, !=, <>, <, <=, >, >= and IN, ORDER BY
+ * one field ASC or DESC, and LIMIT. Literals are quoted strings, numbers,
+ * true / false, null and unquoted dates (2019-06-30). String comparisons
+ * ignore case, like Salesforce. Results only have the selected fields set,
+ * so Id is null unless selected. Parse errors throw IllegalArgumentException.
+ */
+public class SoqlQuery {
+	private String objectType;
+	private ArrayList<String> selectFields = new ArrayList<String>();
+	private Condition whereCondition;
+	private String orderByField;
+	private boolean orderDescending;
+	private int limit = -1;
+
+	// Parser state
+	private ArrayList<String> tokens;
+	private int tokenIdx;
+
+	public interface Condition {
+		public boolean matches(SObject sObject);
+	}
+
+	private SoqlQuery(String soql) {
+		tokens = tokenize(soql);
+		tokenIdx = 0;
+
+		expectKeyword("SELECT");
+		do {
+			selectFields.add(nextToken());
+		} while (acceptToken(","));
+
+		expectKeyword("FROM");
+		objectType = nextToken();
+
+		if (acceptKeyword("WHERE"))
+			whereCondition = parseOr();
+
+		if (acceptKeyword("ORDER")) {
+			expectKeyword("BY");
+			orderByField = nextToken();
+			if (acceptKeyword("DESC"))
+				orderDescending = true;
+			else
+				acceptKeyword("ASC");
+			if (acceptKeyword("NULLS") && !acceptKeyword("FIRST"))
+				expectKeyword("LAST");
+		}
+
+		if (acceptKeyword("LIMIT"))
+			limit = Integer.parseInt(nextToken());
+
+		if (tokenIdx < tokens.size())
+			throw new IllegalArgumentException("Unexpected token '" + tokens.get(tokenIdx) + "' in query");
+		tokens = null;
+	}
+
+	public static SoqlQuery parse(String soql) {
+		return new SoqlQuery(soql);
+	}
+
+	public String getObjectType() {
+		return objectType;
+	}
+
+	public ArrayList<String> getSelectFields() {
+		return selectFields;
+	}
+
+	public int getLimit() {
+		// -1 if no limit
+		return limit;
+	}
+
+	public boolean matches(SObject sObject) {
+		return whereCondition == null || whereCondition.matches(sObject);
+	}
+
+	public void sort(ArrayList<SObject> records) {
+		if (orderByField == null)
+			return;
+
+		Collections.sort(records, new Comparator<SObject>() {
+			@Override
+			public int compare(SObject s1, SObject s2) {
+				// Nulls first, as in Salesforce ascending order
+				Object v1 = getFieldValue(s1, orderByField);
+				Object v2 = getFieldValue(s2, orderByField);
+				int result;
+				if (v1 == null || v2 == null)
+					result = (v1 == null ? 0 : 1) - (v2 == null ? 0 : 1);
+				else
+					result = compareValues(v1, v2);
+				return orderDescending ? -result : result;
+			}
+		});
+	}
+
+	public SObject select(SObject sObject) {
+		// Copy of the record with only the selected fields set; Id is null unless selected, as in the SOAP API
+		try {
+			SObject result = sObject.getClass().getDeclaredConstructor().newInstance();
+
+			for (String field : selectFields) {
+				int dotIdx = field.indexOf('.');
+				if (dotIdx < 0) {
+					SObjectFields.forClass(result.getClass()).set(result, field, getFieldValue(sObject, field));
+					continue;
+				}
+
+				// Parent field: copy the parent with just this field
+				String parentName = field.substring(0, dotIdx);
+				String parentField = field.substring(dotIdx + 1);
+				SObjectFields fields = SObjectFields.forClass(result.getClass());
+				Object parent = fields.get(sObject, parentName);
+				if (parent == null)
+					continue;
+
+				Object resultParent = fields.get(result, parentName);
+				if (resultParent == null) {
+					resultParent = parent.getClass().getDeclaredConstructor().newInstance();
+					fields.set(result, parentName, resultParent);
+				}
+				SObjectFields.forClass(parent.getClass()).set(resultParent, parentField,
+						SObjectFields.forClass(parent.getClass()).get(parent, parentField));
+			}
+			return result;
+
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("Cannot copy " + sObject.getClass().getSimpleName(), e);
+		}
+	}
+
+	public static Object getFieldValue(Object sObject, String fieldPath) {
+		// Follows parent relationships, e.g. CreatedBy.Name
+		int dotIdx;
+		while ((dotIdx = fieldPath.indexOf('.')) >= 0) {
+			sObject = SObjectFields.forClass(sObject.getClass()).get(sObject, fieldPath.substring(0, dotIdx));
+			if (sObject == null)
+				return null;
+			fieldPath = fieldPath.substring(dotIdx + 1);
+		}
+		return SObjectFields.forClass(sObject.getClass()).get(sObject, fieldPath);
+	}
+
+	public static int compareValues(Object fieldValue, Object literal) {
+		if (fieldValue instanceof Calendar)
+			return formatDate((Calendar) fieldValue).compareTo(literal.toString());
+
+		if (fieldValue instanceof Number && literal instanceof Number)
+			return Double.compare(((Number) fieldValue).doubleValue(), ((Number) literal).doubleValue());
+
+		if (fieldValue instanceof Boolean && literal instanceof Boolean)
+			return ((Boolean) fieldValue).compareTo((Boolean) literal);
+
+		return fieldValue.toString().compareToIgnoreCase(literal.toString());
+	}
+
+	public static String formatDate(Calendar date) {
+		return String.format("%04d-%02d-%02d", date.get(Calendar.YEAR), date.get(Calendar.MONTH) + 1,
+				date.get(Calendar.DAY_OF_MONTH));
+	}
+
+	private Condition parseOr() {
+		final Condition left = parseAnd();
+		if (!acceptKeyword("OR"))
+			return left;
+
+		final Condition right = parseOr();
+		return new Condition() {
+			public boolean matches(SObject sObject) {
+				return left.matches(sObject) || right.matches(sObject);
+			}
+		};
+	}
+
+	private Condition parseAnd() {
+		final Condition left = parseTerm();
+		if (!acceptKeyword("AND"))
+			return left;
+
+		final Condition right = parseAnd();
+		return new Condition() {
+			public boolean matches(SObject sObject) {
+				return left.matches(sObject) && right.matches(sObject);
+			}
+		};
+	}
+
+	private Condition parseTerm() {
+		if (acceptToken("(")) {
+			Condition condition = parseOr();
+			expectToken(")");
+			return condition;
+		}
+
+		if (acceptKeyword("NOT")) {
+			final Condition condition = parseTerm();
+			return new Condition() {
+				public boolean matches(SObject sObject) {
+					return !condition.matches(sObject);
+				}
+			};
+		}
+
+		final String field = nextToken();
+		final String operator = nextToken().toUpperCase();
+
+		if (operator.equals("IN") || operator.equals("NOT")) {
+			final boolean notIn = operator.equals("NOT");
+			if (notIn)
+				expectKeyword("IN");
+
+			final ArrayList<Object> values = new ArrayList<Object>();
+			expectToken("(");
+			do {
+				values.add(parseLiteral(nextToken()));
+			} while (acceptToken(","));
+			expectToken(")");
+
+			return new Condition() {
+				public boolean matches(SObject sObject) {
+					Object fieldValue = getFieldValue(sObject, field);
+					boolean found = false;
+					for (Object value : values) {
+						if (fieldValue != null && value != null && compareValues(fieldValue, value) == 0)
+							found = true;
+					}
+					return found != notIn;
+				}
+			};
+		}
+
+		if (!operator.equals("=") && !operator.equals("!=") && !operator.equals("<>") && !operator.equals("<")
+				&& !operator.equals("<=") && !operator.equals(">") && !operator.equals(">="))
+			throw new IllegalArgumentException("Unsupported operator '" + operator + "' in query");
+
+		final Object literal = parseLiteral(nextToken());
+		return new Condition() {
+			public boolean matches(SObject sObject) {
+				Object fieldValue = getFieldValue(sObject, field);
+				if (fieldValue == null && literal instanceof Boolean)
+					fieldValue = Boolean.FALSE; // Checkbox fields are never null
+
+				if (fieldValue == null || literal == null) {
+					boolean same = (fieldValue == literal);
+					if (operator.equals("="))
+						return same;
+					else if (operator.equals("!=") || operator.equals("<>"))
+						return !same;
+					return false;
+				}
+
+				int result = compareValues(fieldValue, literal);
+				if (operator.equals("="))
+					return result == 0;
+				else if (operator.equals("!=") || operator.equals("<>"))
+					return result != 0;
+				else if (operator.equals("<"))
+					return result < 0;
+				else if (operator.equals("<="))
+					return result <= 0;
+				else if (operator.equals(">"))
+					return result > 0;
+				else
+					return result >= 0;
+			}
+		};
+	}
+
+	private static Object parseLiteral(String token) {
+		if (token.startsWith("'"))
+			return token.substring(1, token.length() - 1);
+		if (token.equalsIgnoreCase("null"))
+			return null;
+		if (token.equalsIgnoreCase("true") || token.equalsIgnoreCase("false"))
+			return Boolean.valueOf(token);
+		if (token.length() == 10 && token.charAt(4) == '-' && token.charAt(7) == '-')
+			return token; // Date, compared as yyyy-MM-dd
+
+		try {
+			return Double.valueOf(token);
+
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Bad value '" + token + "' in query");
+		}
+	}
+
+	private static ArrayList<String> tokenize(String soql) {
+		ArrayList<String> tokens = new ArrayList<String>();
+		int i = 0;
+
+		while (i < soql.length()) {
+			char c = soql.charAt(i);
+			if (Character.isWhitespace(c)) {
+				i++;
+
+			} else if (c == '\'') {
+				// Quoted string, keep the quotes and remove escapes
+				StringBuilder token = new StringBuilder("'");
+				for (i++; i < soql.length() && soql.charAt(i) != '\''; i++) {
+					if (soql.charAt(i) == '\\' && i + 1 < soql.length())
+						i++;
+					token.append(soql.charAt(i));
+				}
+				if (i >= soql.length())
+					throw new IllegalArgumentException("Unterminated string in query");
+				tokens.add(token.append('\'').toString());
+				i++;
+
+			} else if (c == '(' || c == ')' || c == ',') {
+				tokens.add(String.valueOf(c));
+				i++;
+
+			} else if (c == '=' || c == '!' || c == '<' || c == '>') {
+				// One or two character operator
+				int end = i + 1;
+				if (end < soql.length() && (soql.charAt(end) == '=' || (c == '<' && soql.charAt(end) == '>')))
+					end++;
+				tokens.add(soql.substring(i, end));
+				i = end;
+
+			} else {
+				// Name, number, date or keyword
+				int end = i;
+				while (end < soql.length() && (Character.isLetterOrDigit(soql.charAt(end)) || soql.charAt(end) == '_'
+						|| soql.charAt(end) == '.' || soql.charAt(end) == '-' || soql.charAt(end) == ':'))
+					end++;
+				if (end == i)
+					throw new IllegalArgumentException("Unexpected character '" + c + "' in query");
+				tokens.add(soql.substring(i, end));
+				i = end;
+			}
+		}
+		return tokens;
+	}
+
+	private String nextToken() {
+		if (tokenIdx >= tokens.size())
+			throw new IllegalArgumentException("Unexpected end of query");
+		return tokens.get(tokenIdx++);
+	}
+
+	private boolean acceptToken(String token) {
+		if (tokenIdx < tokens.size() && tokens.get(tokenIdx).equals(token)) {
+			tokenIdx++;
+			return true;
+		}
+		return false;
+	}
+
+	private boolean acceptKeyword(String keyword) {
+		if (tokenIdx < tokens.size() && tokens.get(tokenIdx).equalsIgnoreCase(keyword)) {
+			tokenIdx++;
+			return true;
+		}
+		return false;
+	}
+
+	private void expectToken(String token) {
+		if (!acceptToken(token))
+			throw new IllegalArgumentException("Expected '" + token + "' in query");
+	}
+
+	private void expectKeyword(String keyword) {
+		if (!acceptKeyword(keyword))
+			throw new IllegalArgumentException("Expected " + keyword + " in query");
+	}
+}
@@ -0,0 +1,666 @@
+package controller;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Random;
+
+import org.joda.time.Days;
+import org.joda.time.LocalDate;
+import org.joda.time.LocalTime;
+
+import com.sforce.soap.enterprise.sobject.Account;
+import com.sforce.soap.enterprise.sobject.Contact;
+import com.sforce.soap.enterprise.sobject.Contact_Diary__c;
+
+import model.AttendanceEventModel;
+import model.GraduationModel;
+import model.LocationModel;
+import model.StudentNameModel;
+
+/**
+ * SyntheticLeagueData: Generates a made-up League at a given scale factor for
+ * load tests with Pike13ReportStandIn and SalesForceSoapStandIn. Scale factor
+ * 1 is roughly the League today; 2 or 3 is the League doubled or tripled.
+ *
+ * Pike13 data is returned as report tables keyed by Pike13 field name:
+ * families with an account manager and dependents, students in weekly
+ * classes with a visit each week of the window, workshops, leave, staff
+ * members and their staff hours. The Salesforce side holds the accounts,
+ * contacts and diary entries from earlier syncs, with some families and
+ * students left out so the sync has records to create. Github comments,
+ * graduations and locations come back as the MySql model classes.
+ *
+ * Data is consistent across all of these (names, ID's, levels, locations)
+ * and the same seed always generates the same League.
+ */
+public class SyntheticLeagueData {
+	// Sizes at scale factor 1
+	private static final int BASE_NUM_FAMILIES = 700;
+	private static final int BASE_NUM_STAFF = 120;
+	private static final int BASE_NUM_WORKSHOPS = 12;
+	private static final int STUDENTS_PER_CLASS = 8;
+	private static final int STUDENTS_PER_WORKSHOP = 10;
+	private static final int MAX_LEVEL = 8;
+
+	// Fractions of records that exercise the less common paths
+	private static final double FAMILY_IN_SF_FRACTION = 0.95; // Others are new families
+	private static final double STUDENT_IN_SF_FRACTION = 0.97; // Others are new students in a known family
+	private static final double STAFF_IN_SF_FRACTION = 0.95;
+	private static final double INACTIVE_STUDENT_FRACTION = 0.03; // No visits in over a year
+	private static final double SLAM_CLASS_FRACTION = 0.05;
+	private static final double TA_FRACTION = 0.10; // Staff who are also students
+	private static final double LEAVE_FRACTION = 0.01;
+	private static final double GRADUATION_FRACTION = 0.03;
+	private static final double GITHUB_COMMENT_FRACTION = 0.40;
+
+	// Days of visits before the window start and after the window end
+	private static final int DAYS_BEFORE_WINDOW = 14;
+	private static final int DAYS_AFTER_WINDOW = 30;
+
+	// Salesforce contact record types, as in UpdateRecordsInSalesForce
+	private static final String RECORD_TYPE_ID_STUDENT = "012o000000089x0AAA";
+	private static final String RECORD_TYPE_ID_ADULT = "012o000000089wzAAA";
+
+	// Pike13 custom fields that are filled in
+	private static final String GENDER_FIELD = "custom_field_106320";
+	private static final String GITHUB_FIELD = "custom_field_127885";
+	private static final String GRAD_YEAR_FIELD = "custom_field_145902";
+	private static final String SCHOOL_ATTENDING_FIELD = "custom_field_106316";
+	private static final String EMERG_CONTACT_NAME_FIELD = "custom_field_106321";
+	private static final String EMERG_CONTACT_PHONE_FIELD = "custom_field_106322";
+	private static final String EMERG_CONTACT_EMAIL_FIELD = "custom_field_149434";
+	private static final String CURRENT_GRADE_FIELD = "custom_field_106463";
+	private static final String FINANCIAL_AID_FIELD = "custom_field_106317";
+	private static final String FINANCIAL_AID_PERCENT_FIELD = "custom_field_108413";
+	private static final String CURRENT_LEVEL_FIELD = "custom_field_157737";
+	private static final String STUD_ADDR_SAME_FIELD = "custom_field_165176";
+	private static final String WORK_WITH_COMPUTER_FIELD = "custom_field_165181";
+	private static final String STAFF_SF_CLIENT_ID_FIELD = "custom_field_152501";
+	private static final String STAFF_CATEGORY_FIELD = "custom_field_106325";
+	private static final String STAFF_KEY_HOLDER_FIELD = "custom_field_149098";
+	private static final String STAFF_CURR_BOARD_MEMBER_FIELD = "custom_field_153299";
+	private static final String STAFF_CURR_STAFF_MEMBER_FIELD = "custom_field_153300";
+
+	// Report tables
+	private static final String[] CLIENT_COLUMNS = { "person_id", "email", "phone", "address", "birthdate",
+			"completed_visits", "future_visits", "has_signed_waiver", "has_membership", "current_plans",
+			"home_location_name", "first_name", "last_name", SCHOOL_ATTENDING_FIELD, GENDER_FIELD,
+			EMERG_CONTACT_NAME_FIELD, EMERG_CONTACT_PHONE_FIELD, CURRENT_GRADE_FIELD, GRAD_YEAR_FIELD,
+			EMERG_CONTACT_EMAIL_FIELD, FINANCIAL_AID_FIELD, FINANCIAL_AID_PERCENT_FIELD, GITHUB_FIELD,
+			"first_visit_date", "account_manager_names", "account_manager_emails", "account_manager_phones",
+			"dependent_names", CURRENT_LEVEL_FIELD, STUD_ADDR_SAME_FIELD, WORK_WITH_COMPUTER_FIELD, "person_state",
+			"days_since_last_visit" };
+	private static final String[] ENROLLMENT_COLUMNS = { "person_id", "service_date", "service_time", "event_name",
+			"service_name", "service_category", "state", "visit_id", "event_occurrence_id", "service_location_name",
+			"instructor_names", "full_name", "end_at", "duration_in_hours", "service_state" };
+	private static final String[] STAFF_COLUMNS = { "person_id", "first_name", "last_name", STAFF_SF_CLIENT_ID_FIELD,
+			STAFF_CATEGORY_FIELD, "role", GENDER_FIELD, "phone", "address", "email", "home_location_name",
+			GITHUB_FIELD, "birthdate", "past_events", "future_events", STAFF_KEY_HOLDER_FIELD,
+			STAFF_CURR_BOARD_MEMBER_FIELD, STAFF_CURR_STAFF_MEMBER_FIELD, "also_client", "person_state" };
+	private static final String[] STAFF_HOURS_COLUMNS = { "person_id", "service_name", "service_date", "service_time",
+			"duration_in_hours", "service_location_name", "completed_enrollment_count", "noshowed_enrollment_count",
+			"late_canceled_enrollment_count", "event_name", "event_occurrence_id", "full_name", "service_category",
+			"attendance_completed", "home_location_name" };
+
+	private static final String[] LOC_CODES = { "CV", "PH", "OC", "SD", "EV", "RB" };
+	private static final String[] LOC_NAMES = { "Carmel Valley", "Point Hope", "Old Cove", "San Delmar", "East Vista",
+			"Rancho Bay" };
+	private static final String[] DAY_NAMES = { "Mon", "Tue", "Wed", "Thu", "Fri", "Sat" }; // Joda day 1 - 6
+	private static final String[] CLASS_TIMES = { "10:00", "13:00", "15:30", "16:30", "18:00" };
+	private static final String[] STAFF_CATEGORIES = { "Teaching Staff", "Vol Teacher", "Volunteer", "Admin Staff",
+			"Board Member" };
+	private static final String[] ADULT_FIRST_NAMES = { "Maria", "David", "Jennifer", "Michael", "Linda", "James",
+			"Patricia", "Robert", "Susan", "Daniel", "Karen", "Thomas", "Nancy", "Steven", "Lisa", "Kevin", "Angela",
+			"Brian", "Monica", "Jose", "Grace", "Andrew", "Helen", "Victor", "Rosa", "Paul", "Irene", "Samuel", "Diana",
+			"Henry", "Laura", "Omar", "Teresa", "Raj", "Mei", "Carlos", "Priya", "Alan", "Nadia", "Frank" };
+	private static final String[] KID_FIRST_NAMES = { "Ava", "Ethan", "Mia", "Noah", "Chloe", "Liam", "Zoe", "Lucas",
+			"Emma", "Mason", "Lily", "Aiden", "Sofia", "Caleb", "Nora", "Owen", "Ella", "Isaac", "Maya", "Leo", "Aria",
+			"Jacob", "Ruby", "Elijah", "Hazel", "Gabriel", "Layla", "Ryan", "Stella", "Dylan", "Ivy", "Nathan", "Luna",
+			"Adrian", "Jade", "Kai", "Nina", "Miles", "Tara", "Felix" };
+	private static final String[] SURNAME_STARTS = { "Al", "Bar", "Cal", "Dor", "Es", "Fen", "Gar", "Hal", "Is",
+			"Jor", "Kel", "Lan", "Mar", "Nor", "Os", "Pel", "Quin", "Ros", "Sal", "Tor", "Ul", "Val", "Wes", "Yar",
+			"Zel", "Bren", "Cor", "Del", "Har", "Mon" };
+	private static final String[] SURNAME_MIDDLES = { "", "a", "e", "i", "o", "an", "er", "in" };
+	private static final String[] SURNAME_ENDS = { "son", "ton", "ley", "field", "berg", "man", "ford", "well",
+			"wood", "by", "dale", "more", "ger", "lin", "ski", "ez", "ard", "ett", "ino", "ova", "ridge", "stein",
+			"worth", "ham", "quist", "cott", "hurst", "ner", "den", "vich" };
+	private static final String[] GITHUB_COMMENTS = { "Finished the module :)", "Worked on loops", "Stuck on arrays",
+			"Great progress today!", "Debugged the game, it works", "Started the final project" };
+
+	private Random random;
+	private LocalDate today, startDate, endDate;
+	private int nextPersonID = 1000001;
+	private int nextVisitID = 200000001;
+	private int nextOccurrenceID = 150000001;
+	private HashSet<String> usedNames = new HashSet<String>();
+
+	private ArrayList<Family> families = new ArrayList<Family>();
+	private ArrayList<Student> students = new ArrayList<Student>();
+	private ArrayList<Staff> staffList = new ArrayList<Staff>();
+	private ArrayList<ClassSchedule> classes = new ArrayList<ClassSchedule>();
+
+	private Report clients = new Report(CLIENT_COLUMNS);
+	private Report enrollments = new Report(ENROLLMENT_COLUMNS);
+	private Report staffMembers = new Report(STAFF_COLUMNS);
+	private Report staffHours = new Report(STAFF_HOURS_COLUMNS);
+	private ArrayList<AttendanceEventModel> dbAttendance = new ArrayList<AttendanceEventModel>();
+	private ArrayList<GraduationModel> graduations = new ArrayList<GraduationModel>();
+	private ArrayList<LocationModel> locations = new ArrayList<LocationModel>();
+
+	public SyntheticLeagueData(double scaleFactor, long seed, String startDate, String today, String endDate) {
+		random = new Random(seed);
+		this.startDate = LocalDate.parse(startDate);
+		this.today = LocalDate.parse(today);
+		this.endDate = LocalDate.parse(endDate);
+
+		for (int i = 0; i < LOC_CODES.length; i++)
+			locations.add(new LocationModel(i + 1, LOC_CODES[i], LOC_NAMES[i], LOC_NAMES[i] + " Library", ""));
+
+		createFamilies((int) Math.round(BASE_NUM_FAMILIES * scaleFactor));
+		createStaff((int) Math.round(BASE_NUM_STAFF * scaleFactor));
+		createClasses();
+		createWorkshops((int) Math.round(BASE_NUM_WORKSHOPS * scaleFactor));
+		createLeave();
+		addClientRows();
+		addStaffRows();
+		createGraduations();
+	}
+
+	public Report getReport(String reportName) {
+		// Report name as in the Pike13 reporting URL, or null if not generated
+		if (reportName.equals("clients"))
+			return clients;
+		else if (reportName.equals("enrollments"))
+			return enrollments;
+		else if (reportName.equals("staff_members"))
+			return staffMembers;
+		else if (reportName.equals("event_occurrence_staff_members"))
+			return staffHours;
+		return null;
+	}
+
+	public ArrayList<LocationModel> getLocations() {
+		return locations;
+	}
+
+	public ArrayList<AttendanceEventModel> getDbAttendance() {
+		// Tracker DB attendance with Github comments, as from MySqlDbImports.getAllEvents(startDate)
+		return dbAttendance;
+	}
+
+	public ArrayList<GraduationModel> getGraduations() {
+		return graduations;
+	}
+
+	public void addToSalesForce(SalesForceSoapStandIn salesForce) {
+		// Contact record types used by UpdateRecordsInSalesForce
+		salesForce.addRecordType(RECORD_TYPE_ID_STUDENT, "Student");
+		salesForce.addRecordType(RECORD_TYPE_ID_ADULT, "Adult");
+
+		// Family accounts, then contacts and diary entries from earlier syncs
+		for (Family family : families) {
+			if (!family.inSalesForce)
+				continue;
+
+			family.accountID = salesForce.addRecord(createAccount(family.manager));
+			salesForce.addRecord(createContact(family.manager, family.accountID, "Adult"));
+
+			for (Student student : family.kids) {
+				if (!student.inSalesForce)
+					continue;
+
+				Contact contact = createContact(student, family.accountID, "Student");
+				if (student.gradLevel >= 0)
+					contact.setHighest_Level__c((double) student.gradLevel);
+				salesForce.addRecord(contact);
+
+				for (int level = 0; level <= student.gradLevel; level++) {
+					Contact_Diary__c diary = new Contact_Diary__c();
+					diary.setPike_13_ID_Level__c(student.personID + "" + level);
+					salesForce.addRecord(diary);
+				}
+			}
+		}
+
+		for (Staff staff : staffList) {
+			if (!staff.inSalesForce || staff.student != null)
+				continue; // TA's are already student contacts
+
+			Contact contact = createContact(staff, salesForce.addRecord(createAccount(staff)), "Adult");
+			contact.setStaff_Category__c(staff.category);
+			salesForce.addRecord(contact);
+		}
+	}
+
+	public String getSummary() {
+		return families.size() + " families, " + students.size() + " students, " + staffList.size() + " staff, "
+				+ classes.size() + " classes, " + clients.getNumRows() + " clients, " + enrollments.getNumRows()
+				+ " visits, " + staffHours.getNumRows() + " staff hours, " + dbAttendance.size() + " DB events, "
+				+ graduations.size() + " graduations";
+	}
+
+	private void createFamilies(int numFamilies) {
+		for (int i = 0; i < numFamilies; i++) {
+			Family family = new Family();
+			family.inSalesForce = random.nextDouble() < FAMILY_IN_SF_FRACTION;
+			family.homeLocation = locations.get(random.nextInt(locations.size())).getLocNameLong();
+
+			// Account manager's full name must be unique, since accounts are matched by name
+			String lastName, firstName;
+			do {
+				lastName = pick(SURNAME_STARTS) + pick(SURNAME_MIDDLES) + pick(SURNAME_ENDS);
+				firstName = pick(ADULT_FIRST_NAMES);
+			} while (!usedNames.add(firstName + " " + lastName));
+			family.manager = new Person(nextPersonID(), firstName, lastName);
+
+			// 1 to 3 kids with different first names
+			int numKids = 1 + (random.nextInt(100) < 55 ? 0 : random.nextInt(100) < 78 ? 1 : 2);
+			HashSet<String> kidNames = new HashSet<String>();
+			while (family.kids.size() < numKids) {
+				String kidName = pick(KID_FIRST_NAMES);
+				if (!kidNames.add(kidName))
+					continue;
+
+				Student student = new Student(nextPersonID(), kidName, lastName);
+				student.family = family;
+				student.inSalesForce = family.inSalesForce && random.nextDouble() < STUDENT_IN_SF_FRACTION;
+				student.gradLevel = random.nextInt(MAX_LEVEL + 1) - 1;
+				student.isActive = random.nextDouble() >= INACTIVE_STUDENT_FRACTION;
+				student.birthYear = today.getYear() - 8 - random.nextInt(10);
+				if (random.nextInt(10) < 6)
+					student.githubName = (kidName + lastName).toLowerCase() + random.nextInt(100);
+				family.kids.add(student);
+				students.add(student);
+			}
+			families.add(family);
+		}
+	}
+
+	private void createStaff(int numStaff) {
+		for (int i = 0; i < numStaff; i++) {
+			Staff staff;
+			if (random.nextDouble() < TA_FRACTION) {
+				// Student TA: a separate Pike13 person linked to their student ID
+				Student student = students.get(random.nextInt(students.size()));
+				staff = new Staff(nextPersonID(), "TA-" + student.firstName, student.lastName);
+				staff.student = student;
+				staff.category = "Student TA";
+
+			} else {
+				String firstName, lastName;
+				do {
+					firstName = pick(ADULT_FIRST_NAMES);
+					lastName = pick(SURNAME_STARTS) + pick(SURNAME_MIDDLES) + pick(SURNAME_ENDS);
+				} while (!usedNames.add(firstName + " " + lastName));
+				staff = new Staff(nextPersonID(), firstName, lastName);
+				staff.category = STAFF_CATEGORIES[random.nextInt(10) < 6 ? random.nextInt(3) : random.nextInt(5)];
+			}
+			staff.inSalesForce = random.nextDouble() < STAFF_IN_SF_FRACTION;
+			staff.homeLocation = random.nextInt(50) == 0 ? "Tax ID# 95-0000000"
+					: locations.get(random.nextInt(locations.size())).getLocNameLong();
+			staffList.add(staff);
+		}
+	}
+
+	private void createClasses() {
+		// Active students by class level, so each class is one level
+		ArrayList<ArrayList<Student>> studentsByLevel = new ArrayList<ArrayList<Student>>();
+		for (int level = 0; level <= MAX_LEVEL; level++)
+			studentsByLevel.add(new ArrayList<Student>());
+		for (Student student : students) {
+			if (student.isActive)
+				studentsByLevel.get(student.gradLevel + 1).add(student);
+		}
+
+		ArrayList<Staff> teachers = new ArrayList<Staff>();
+		for (Staff staff : staffList) {
+			if (!staff.category.equals("Admin Staff") && !staff.category.equals("Board Member"))
+				teachers.add(staff);
+		}
+
+		for (int level = 0; level <= MAX_LEVEL; level++) {
+			ArrayList<Student> levelStudents = studentsByLevel.get(level);
+			for (int i = 0; i < levelStudents.size(); i += STUDENTS_PER_CLASS) {
+				boolean isSlam = random.nextDouble() < SLAM_CLASS_FRACTION;
+				int locIdx = random.nextInt(locations.size());
+				int day = 1 + random.nextInt(DAY_NAMES.length);
+				String time = CLASS_TIMES[day == 6 ? random.nextInt(2) : 2 + random.nextInt(3)];
+
+				ClassSchedule schedule = new ClassSchedule();
+				schedule.level = level;
+				schedule.dayOfWeek = day;
+				schedule.startTime = time;
+				schedule.durationHours = isSlam ? 3.0 : 2.0;
+				schedule.location = locations.get(locIdx).getLocNameLong();
+				schedule.serviceCategory = isSlam ? "class jslam" : "class java";
+				schedule.serviceName = (isSlam ? "Summer Slam Level " : "Java Level ") + level;
+				schedule.eventName = (isSlam ? "SL" : "L") + level + "@" + LOC_CODES[locIdx] + " " + DAY_NAMES[day - 1]
+						+ " " + time;
+
+				// One or two teachers
+				schedule.teachers.add(teachers.get(random.nextInt(teachers.size())));
+				if (random.nextBoolean()) {
+					Staff teacher2 = teachers.get(random.nextInt(teachers.size()));
+					if (teacher2 != schedule.teachers.get(0))
+						schedule.teachers.add(teacher2);
+				}
+				schedule.students.addAll(levelStudents.subList(i, Math.min(i + STUDENTS_PER_CLASS, levelStudents.size())));
+				classes.add(schedule);
+
+				// Weekly visits across the window
+				LocalDate date = startDate.minusDays(DAYS_BEFORE_WINDOW);
+				while (date.getDayOfWeek() != day)
+					date = date.plusDays(1);
+				for (; !date.isAfter(endDate.plusDays(DAYS_AFTER_WINDOW)); date = date.plusWeeks(1))
+					addOccurrence(schedule, date);
+			}
+		}
+	}
+
+	private void createWorkshops(int numWorkshops) {
+		ArrayList<Staff> teachers = new ArrayList<Staff>();
+		for (Staff staff : staffList) {
+			if (staff.category.equals("Teaching Staff") || staff.category.equals("Vol Teacher"))
+				teachers.add(staff);
+		}
+		if (teachers.isEmpty() || students.isEmpty())
+			return;
+
+		// Anywhere from the window start until after the window
+		int numDays = Days.daysBetween(startDate, endDate.plusDays(DAYS_AFTER_WINDOW)).getDays() + 1;
+		for (int i = 0; i < numWorkshops; i++) {
+			int locIdx = random.nextInt(locations.size());
+			LocalDate date = startDate.plusDays(random.nextInt(Math.max(1, numDays)));
+
+			ClassSchedule workshop = new ClassSchedule();
+			workshop.level = -1;
+			workshop.startTime = CLASS_TIMES[random.nextInt(2)];
+			workshop.durationHours = 3.0;
+			workshop.location = locations.get(locIdx).getLocNameLong();
+			workshop.serviceCategory = "works python";
+			workshop.serviceName = "Python Workshop";
+			workshop.eventName = "Python Workshop@" + LOC_CODES[locIdx] + " " + date.toString("MM/dd");
+			workshop.teachers.add(teachers.get(random.nextInt(teachers.size())));
+			for (int j = 0; j < STUDENTS_PER_WORKSHOP; j++) {
+				Student student = students.get(random.nextInt(students.size()));
+				if (student.isActive && !workshop.students.contains(student))
+					workshop.students.add(student);
+			}
+			classes.add(workshop);
+			addOccurrence(workshop, date);
+		}
+	}
+
+	private void createLeave() {
+		// Leave of absence, registered after the window
+		for (Student student : students) {
+			if (!student.isActive || random.nextDouble() >= LEAVE_FRACTION)
+				continue;
+
+			LocalDate date = endDate.plusDays(1 + random.nextInt(DAYS_AFTER_WINDOW));
+			addVisit(student, date, "10:00", 1.0, "Leave of Absence", "Leave of Absence", "leave", "registered",
+					nextOccurrenceID++, student.family.homeLocation, "", "");
+		}
+	}
+
+	private void addOccurrence(ClassSchedule schedule, LocalDate date) {
+		int occurrenceID = nextOccurrenceID++;
+		int numCompleted = 0, numNoShow = 0, numCanceled = 0;
+		String teacherNames = "";
+		for (Staff teacher : schedule.teachers)
+			teacherNames += (teacherNames.equals("") ? "" : ", ") + teacher.getFullName();
+
+		for (Student student : schedule.students) {
+			String state = "registered";
+			if (date.isBefore(today)) {
+				int roll = random.nextInt(100);
+				state = roll < 88 ? "completed" : roll < 95 ? "noshowed" : "late_canceled";
+			}
+			if (state.equals("completed"))
+				numCompleted++;
+			else if (state.equals("noshowed"))
+				numNoShow++;
+			else if (state.equals("late_canceled"))
+				numCanceled++;
+
+			int visitID = addVisit(student, date, schedule.startTime, schedule.durationHours, schedule.eventName,
+					schedule.serviceName, schedule.serviceCategory, state, occurrenceID, schedule.location, teacherNames,
+					schedule.level < 0 ? "" : String.valueOf(schedule.level));
+			student.lastVisit = date.isBefore(today) && (student.lastVisit == null || date.isAfter(student.lastVisit))
+					? date : student.lastVisit;
+			if (state.equals("completed"))
+				student.completedVisits++;
+			else if (state.equals("registered"))
+				student.futureVisits++;
+
+			// Tracker DB gets completed and registered visits since the window start
+			if (!date.isBefore(startDate) && (state.equals("completed") || state.equals("registered"))) {
+				boolean hasComment = state.equals("completed") && random.nextDouble() < GITHUB_COMMENT_FRACTION
+						&& student.githubName != null;
+				String repoName = hasComment ? "level" + schedule.level + "-module" + random.nextInt(5) + "-"
+						+ student.githubName : null;
+
+				// Visits more than a week old were already synced as completed
+				String lastSFState = date.isBefore(today.minusDays(7)) ? state : "registered";
+				dbAttendance.add(new AttendanceEventModel(student.personID, visitID,
+						new java.sql.Date(date.toDate().getTime()), schedule.startTime, schedule.eventName,
+						hasComment ? student.githubName : "", repoName, hasComment ? pick(GITHUB_COMMENTS) : "", "",
+						new StudentNameModel(student.firstName, student.lastName, true), schedule.serviceCategory, state,
+						lastSFState, teacherNames, schedule.level < 0 ? "" : String.valueOf(schedule.level)));
+			}
+		}
+
+		// One staff hours row per teacher
+		for (Staff teacher : schedule.teachers) {
+			staffHours.addRow(teacher.personID, schedule.serviceName, date.toString("yyyy-MM-dd"), schedule.startTime,
+					schedule.durationHours, schedule.location, numCompleted, numNoShow, numCanceled, schedule.eventName,
+					occurrenceID, teacher.getFullName(), schedule.serviceCategory, date.isBefore(today) ? "t" : "f",
+					teacher.homeLocation);
+			if (date.isBefore(today))
+				teacher.pastEvents++;
+			else
+				teacher.futureEvents++;
+		}
+	}
+
+	private int addVisit(Student student, LocalDate date, String startTime, double durationHours, String eventName,
+			String serviceName, String serviceCategory, String state, int occurrenceID, String location,
+			String teacherNames, String level) {
+		int visitID = nextVisitID++;
+		LocalTime endTime = LocalTime.parse(startTime).plusMinutes((int) (durationHours * 60));
+
+		enrollments.addRow(student.personID, date.toString("yyyy-MM-dd"), startTime, eventName, serviceName,
+				serviceCategory, state, visitID, occurrenceID, location, teacherNames, student.getFullName(),
+				date.toString("yyyy-MM-dd") + "T" + endTime.toString("HH:mm:ss") + "-07:00", durationHours,
+				random.nextInt(50) == 0 ? "inactive" : "active");
+		return visitID;
+	}
+
+	private void addClientRows() {
+		for (Family family : families) {
+			Person manager = family.manager;
+			String dependents = "";
+			for (Student student : family.kids)
+				dependents += (dependents.equals("") ? "" : ", ") + student.getFullName();
+
+			clients.addRow(manager.personID, manager.getEmail(), manager.phone, manager.address, null, 0, 0, "t", "f",
+					null, family.homeLocation, manager.firstName, manager.lastName, null, null, null, null, null, null,
+					null, "f", null, null, null, null, null, null, dependents, null, "f", "f", "active", null);
+
+			for (Student student : family.kids) {
+				Integer daysSinceVisit = student.lastVisit == null ? null
+						: Days.daysBetween(student.lastVisit, today).getDays();
+				if (!student.isActive)
+					daysSinceVisit = 400 + random.nextInt(300);
+				boolean hasAid = random.nextInt(10) == 0;
+
+				clients.addRow(student.personID, student.getEmail(), manager.phone, manager.address,
+						student.birthYear + "-0" + (1 + random.nextInt(9)) + "-1" + random.nextInt(10),
+						student.completedVisits, student.futureVisits, "t", random.nextBoolean() ? "t" : "f",
+						"Monthly Membership", family.homeLocation, student.firstName, student.lastName,
+						"Vista " + pick(SURNAME_ENDS) + " School", random.nextBoolean() ? "Male" : "Female",
+						manager.getFullName(), manager.phone, String.valueOf(today.getYear() - student.birthYear - 5),
+						String.valueOf(student.birthYear + 18), manager.getEmail(), hasAid ? "t" : "f",
+						hasAid ? "50% aid" : null, student.githubName,
+						today.minusDays(100 + random.nextInt(1000)).toString("yyyy-MM-dd"), manager.getFullName(),
+						manager.getEmail(), manager.phone, null, String.valueOf(student.gradLevel + 1), "t", "f",
+						"active", daysSinceVisit);
+			}
+		}
+
+		// Test account that the student filter leaves out
+		clients.addRow(nextPersonID(), "test@jointheleague.org", null, null, null, 0, 1, "f", "f", null, null,
+				"TestChild", "Test", null, null, null, null, null, null, null, "f", null, null, null, null, null, null,
+				null, null, "f", "f", "active", null);
+	}
+
+	private void addStaffRows() {
+		for (Staff staff : staffList) {
+			String sfClientID = staff.student == null ? "" : String.valueOf(staff.student.personID);
+			boolean isStaff = staff.category.equals("Teaching Staff") || staff.category.equals("Admin Staff");
+
+			staffMembers.addRow(staff.personID, staff.firstName, staff.lastName, sfClientID, staff.category,
+					"staff_member", random.nextBoolean() ? "Male" : "Female", staff.phone, staff.address,
+					staff.getEmail(), staff.homeLocation, null, "1980-0" + (1 + random.nextInt(9)) + "-15",
+					staff.pastEvents, staff.futureEvents, random.nextInt(4) == 0 ? "t" : "f",
+					staff.category.equals("Board Member") ? "t" : "f", isStaff ? "t" : "f",
+					staff.student == null ? "f" : "t", "active");
+		}
+	}
+
+	private void createGraduations() {
+		for (Student student : students) {
+			if (!student.isActive || student.gradLevel >= MAX_LEVEL - 1 || random.nextDouble() >= GRADUATION_FRACTION)
+				continue;
+
+			int level = student.gradLevel + 1;
+			graduations.add(new GraduationModel(student.personID, student.getFullName(), level, "", "L" + level,
+					startDate.toString("yyyy-MM-dd"), today.toString("yyyy-MM-dd"), false, false, false));
+		}
+	}
+
+	private Account createAccount(Person person) {
+		Account account = new Account();
+		account.setName(person.lastName + " " + person.firstName + " Family");
+		account.setType("Family");
+		return account;
+	}
+
+	private Contact createContact(Person person, String accountID, String contactType) {
+		Contact contact = new Contact();
+		contact.setFirstName(person.firstName);
+		contact.setLastName(person.lastName);
+		contact.setFront_Desk_Id__c(String.valueOf(person.personID));
+		contact.setAccountId(accountID);
+		contact.setContact_Type__c(contactType);
+		contact.setRecord_Type__c(contactType);
+		contact.setEmail(person.getEmail());
+		return contact;
+	}
+
+	private int nextPersonID() {
+		// Gaps between ID's, as in Pike13
+		nextPersonID += 1 + random.nextInt(20);
+		return nextPersonID;
+	}
+
+	private String pick(String[] values) {
+		return values[random.nextInt(values.length)];
+	}
+
+	public static class Report {
+		// Rows of String, Integer, Double or null values
+		private String[] columns;
+		private HashMap<String, Integer> columnIdx = new HashMap<String, Integer>();
+		private ArrayList<Object[]> rows = new ArrayList<Object[]>();
+
+		private Report(String[] columns) {
+			this.columns = columns;
+			for (int i = 0; i < columns.length; i++)
+				columnIdx.put(columns[i], i);
+		}
+
+		public int getColumnIdx(String fieldName) {
+			// -1 if the field is not generated, so is always null
+			Integer idx = columnIdx.get(fieldName);
+			return idx == null ? -1 : idx;
+		}
+
+		public int getNumRows() {
+			return rows.size();
+		}
+
+		public Object getValue(int rowIdx, int colIdx) {
+			return colIdx < 0 ? null : rows.get(rowIdx)[colIdx];
+		}
+
+		private void addRow(Object... values) {
+			if (values.length != columns.length)
+				throw new IllegalArgumentException(values.length + " values for " + columns.length + " columns");
+			rows.add(values);
+		}
+	}
+
+	private class Person {
+		int personID;
+		String firstName, lastName, phone, address;
+
+		private Person(int personID, String firstName, String lastName) {
+			this.personID = personID;
+			this.firstName = firstName;
+			this.lastName = lastName;
+			phone = "(858) 555-" + (1000 + random.nextInt(9000));
+			// Some addresses are on two lines, as entered in Pike13
+			address = (100 + random.nextInt(9900)) + " " + pick(SURNAME_STARTS) + "a Way"
+					+ (personID % 4 == 0 ? "\r\n" : ", ") + "San Diego, CA 92130";
+		}
+
+		String getFullName() {
+			return firstName + " " + lastName;
+		}
+
+		String getEmail() {
+			return (firstName + "." + lastName + personID % 1000).toLowerCase() + "@example.com";
+		}
+	}
+
+	private class Family {
+		Person manager;
+		ArrayList<Student> kids = new ArrayList<Student>();
+		String homeLocation, accountID;
+		boolean inSalesForce;
+	}
+
+	private class Student extends Person {
+		Family family;
+		boolean inSalesForce, isActive;
+		int gradLevel; // Highest level passed, -1 for none
+		int birthYear, completedVisits, futureVisits;
+		String githubName;
+		LocalDate lastVisit;
+
+		private Student(int personID, String firstName, String lastName) {
+			super(personID, firstName, lastName);
+		}
+	}
+
+	private class Staff extends Person {
+		Student student; // Student TA's only
+		String category, homeLocation;
+		boolean inSalesForce;
+		int pastEvents, futureEvents;
+
+		private Staff(int personID, String firstName, String lastName) {
+			super(personID, firstName, lastName);
+		}
+	}
+
+	private class ClassSchedule {
+		int level, dayOfWeek;
+		String startTime, eventName, serviceName, serviceCategory, location;
+		double durationHours;
+		ArrayList<Staff> teachers = new ArrayList<Staff>();
+		ArrayList<Student> students = new ArrayList<Student>();
+	}
+}
@@ -0,0 +1,182 @@
+package controller;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+
+import com.sforce.soap.enterprise.Connector;
+import com.sforce.soap.enterprise.EnterpriseConnection;
+import com.sforce.ws.ConnectionException;
+
+import model.AttendanceEventModel;
+import model.GraduationModel;
+import model.LocationLookup;
+import model.MySqlDatabase;
+import model.MySqlDbImports;
+import model.MySqlDbLogging;
+
+/**
+ * SyntheticScaleRun: Runs the whole Salesforce sync on generated data at one
+ * or more scale factors, with Pike13ReportStandIn and SalesForceSoapStandIn
+ * in place of Pike13 and Salesforce, and prints the run time and request
+ * counts for each so scaling curves can be drawn on one machine.
+ *
+ * MySql reads come from the generator; MySql writes and log entries are
+ * dropped since there is no database.
+ *
+ * With -delta, each scale runs the sync three times against the same
+ * stand-ins with a fingerprint store: an initial run with an empty store, a
+ * delta run with nothing changed, and a forced full resync.
+ *
+ * Usage: SyntheticScaleRun [-delta] [scale factor] ... (default 1 2 3)
+ */
+public class SyntheticScaleRun {
+	private static final long SEED = 20200301L;
+	private static final int DATE_RANGE_PAST_IN_DAYS = 21; // Same window as SalesForceApi
+	private static final int DATE_RANGE_FUTURE_IN_DAYS = 45;
+	private static final int PIKE13_LATENCY_MSEC = 100;
+	private static final int PIKE13_JITTER_MSEC = 50;
+	private static final int SF_LATENCY_MSEC = 150;
+	private static final int SF_JITTER_MSEC = 50;
+	private static final int PIKE13_MAX_CONNECTIONS = 8;
+	private static final double PIKE13_REQUESTS_PER_SEC = 10.0;
+	private static final int FETCH_SHARDS = 4;
+	private static final String[] DELTA_RUNS = { "initial", "delta", "full resync" };
+
+	public static void main(String[] args) {
+		boolean deltaRuns = args.length > 0 && args[0].equals("-delta");
+		if (deltaRuns)
+			args = Arrays.copyOfRange(args, 1, args.length);
+		String[] scaleFactors = (args.length > 0) ? args : new String[] { "1", "2", "3" };
+
+		DateTime t = new DateTime().withZone(DateTimeZone.forID("America/Los_Angeles"));
+		String today = t.toString("yyyy-MM-dd");
+		String startDate = t.minusDays(DATE_RANGE_PAST_IN_DAYS).toString("yyyy-MM-dd");
+		String endDate = t.plusDays(DATE_RANGE_FUTURE_IN_DAYS).toString("yyyy-MM-dd");
+
+		ArrayList<String> results = new ArrayList<String>();
+		for (String scaleFactor : scaleFactors)
+			results.addAll(runSync(Double.parseDouble(scaleFactor), today, startDate, endDate, deltaRuns));
+
+		System.out.println("\nscale,run,clients,visits,staff hours,sync msecs,pike13 requests,sf api calls");
+		for (String result : results)
+			System.out.println(result);
+		System.exit(0);
+	}
+
+	private static ArrayList<String> runSync(double scaleFactor, String today, String startDate, String endDate,
+			boolean deltaRuns) {
+		ArrayList<String> results = new ArrayList<String>();
+		long genStartMsec = System.currentTimeMillis();
+		final SyntheticLeagueData data = new SyntheticLeagueData(scaleFactor, SEED, startDate, today, endDate);
+		System.out.println("\n*** Scale " + scaleFactor + ": " + data.getSummary() + " ("
+				+ (System.currentTimeMillis() - genStartMsec) + " msecs to generate)");
+
+		Pike13ReportStandIn pike13 = new Pike13ReportStandIn(data, PIKE13_LATENCY_MSEC, PIKE13_JITTER_MSEC);
+		SalesForceSoapStandIn salesForce = new SalesForceSoapStandIn(SF_LATENCY_MSEC, SF_JITTER_MSEC);
+		File fingerprintFile = null;
+		try {
+			pike13.start(0);
+			salesForce.start(0);
+			data.addToSalesForce(salesForce);
+
+			// No database: log entries fail to insert and are not retried
+			MySqlDatabase sqlDb = new MySqlDatabase("", MySqlDatabase.SALES_FORCE_SYNC_SSH_PORT) {
+				@Override
+				public boolean connectDatabase() {
+					return false;
+				}
+
+				@Override
+				public ArrayList<GraduationModel> getAllGradRecords() {
+					return data.getGraduations();
+				}
+			};
+			new MySqlDbLogging(sqlDb);
+			MySqlDbImports dbImports = new MySqlDbImports(sqlDb) {
+				@Override
+				public ArrayList<AttendanceEventModel> getAllEvents(String startDate) {
+					return data.getDbAttendance();
+				}
+
+				@Override
+				public void updateAttendLevelChanges(int visitID, String state) {
+				}
+
+				@Override
+				public void updateGradInSfField(int clientID, String studentName, String clientLevelKey,
+						boolean newValue) {
+				}
+
+				@Override
+				public void removeProcessedGraduations() {
+				}
+			};
+			LocationLookup.setLocationData(data.getLocations());
+			ListUtilities.setLocationCodes();
+
+			// Connect the same way as SalesForceApi
+			Pike13Connect pike13Conn = new Pike13Connect("synthetic",
+					new Pike13HttpTransport(Pike13HttpTransport.DEFAULT_CONNECT_TIMEOUT_MSEC,
+							Pike13HttpTransport.DEFAULT_READ_TIMEOUT_MSEC, PIKE13_MAX_CONNECTIONS),
+					new Pike13RateLimiter(PIKE13_REQUESTS_PER_SEC, PIKE13_MAX_CONNECTIONS));
+			pike13Conn.setBaseUrl(pike13.getBaseUrl());
+			Pike13SalesforceImport pike13Api = new Pike13SalesforceImport(pike13Conn);
+			pike13Api.setAttendanceShards(FETCH_SHARDS, false);
+			pike13Api.setClientShards(FETCH_SHARDS, false);
+			EnterpriseConnection salesForceApi = Connector
+					.newConnection(salesForce.getConnectorConfig("leaguebot@jointheleague.org", "synthetic"));
+
+			String[] runNames = deltaRuns ? DELTA_RUNS : new String[] { "full" };
+			if (deltaRuns) {
+				fingerprintFile = File.createTempFile("sfFingerprints", ".txt");
+				fingerprintFile.delete();
+			}
+
+			for (int run = 0; run < runNames.length; run++) {
+				int startPike13Requests = pike13.getNumRequests();
+				int startSfApiCalls = salesForce.getNumApiCalls();
+				SalesForceImportEngine engine = new SalesForceImportEngine(sqlDb, dbImports, pike13Api, salesForceApi);
+				if (deltaRuns)
+					engine.setFingerprintStore(new SObjectFingerprintStore(fingerprintFile.getPath(), run == 2));
+
+				System.out.println("\n*** Scale " + scaleFactor + ", " + runNames[run] + " run");
+				long syncStartMsec = System.currentTimeMillis();
+				engine.updateSalesForce(today, startDate, endDate);
+				long syncMsec = System.currentTimeMillis() - syncStartMsec;
+
+				System.out.println("Sync time = " + syncMsec + " msecs");
+				System.out.println(pike13Conn.getRequestMetrics());
+				System.out.println(pike13.getMetrics());
+				System.out.println(salesForce.getMetrics());
+				System.out.println("SF records after sync: " + salesForce.getRecords("Account").size() + " accounts, "
+						+ salesForce.getRecords("Contact").size() + " contacts, "
+						+ salesForce.getRecords("Student_Attendance__c").size() + " attendance, "
+						+ salesForce.getRecords("Staff_Hours__c").size() + " staff hours, "
+						+ salesForce.getRecords("Contact_Diary__c").size() + " diary");
+
+				results.add(scaleFactor + "," + runNames[run] + "," + data.getReport("clients").getNumRows() + ","
+						+ data.getReport("enrollments").getNumRows() + ","
+						+ data.getReport("event_occurrence_staff_members").getNumRows() + "," + syncMsec + ","
+						+ (pike13.getNumRequests() - startPike13Requests) + ","
+						+ (salesForce.getNumApiCalls() - startSfApiCalls));
+			}
+			return results;
+
+		} catch (IOException | ConnectionException e) {
+			System.out.println("Scale " + scaleFactor + " failed: " + e.getMessage());
+			results.add(scaleFactor + ",failed");
+			return results;
+
+		} finally {
+			pike13.stop();
+			salesForce.stop();
+			if (fingerprintFile != null)
+				fingerprintFile.delete();
+		}
+	}
+}